@@ -0,0 +1,172 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.ObjectItem;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.Condition;
+import com.eainde.synapse.forms.domain.rules.LogicalOperator;
+import com.eainde.synapse.forms.domain.rules.Operator;
+import com.eainde.synapse.forms.domain.rules.RuleBlock;
+import com.eainde.synapse.forms.domain.rules.ValidationAction;
+import com.eainde.synapse.forms.domain.rules.ValidationRule;
+import com.eainde.synapse.forms.domain.rules.VisibilityRule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Form definitions used by the benchmarks.
+ * The "fixture" shapes are loaded from the test-fixtures/*.json forms of synapse-forms, which the
+ * build copies onto the classpath; the "scaled" shapes are generated with hundreds of fields and, for V3, deeply nested RuleBlocks.
+ */
+public final class BenchmarkForms {
+
+    public static final String FIXTURE = "fixture";
+    public static final String SCALED = "scaled";
+
+    static final int SCALED_FIELD_COUNT = 400;
+    static final int SCALED_RULE_DEPTH = 8;
+
+    private static final ObjectMapper MAPPER = new FormRendererConfig().formObjectMapper();
+
+    private BenchmarkForms() {
+    }
+
+    /**
+     * Returns a form that is valid for the given format.
+     * V1 and V2 do not accept RuleBlock-based rules, so only the V3 shapes carry them.
+     */
+    public static CanonicalFormMessage forFormat(TargetFormat format, String shape) {
+        boolean withRules = format == TargetFormat.SYNAPSE_FORM_V3;
+        return switch (shape) {
+            case FIXTURE -> withRules ? complexRulesV3() : gridPermissions();
+            case SCALED -> scaled(SCALED_FIELD_COUNT, withRules ? SCALED_RULE_DEPTH : 0);
+            default -> throw new IllegalArgumentException("Unknown form shape: " + shape);
+        };
+    }
+
+    /**
+     * Loads test-fixtures/example4_permissions.json: a grid with per-role permissions.
+     */
+    public static CanonicalFormMessage gridPermissions() {
+        return fixture("example4_permissions.json");
+    }
+
+    /**
+     * Loads test-fixtures/example5_v3_nested_rules.json: a V3 form with a nested RuleBlock.
+     */
+    public static CanonicalFormMessage complexRulesV3() {
+        return fixture("example5_v3_nested_rules.json");
+    }
+
+    private static CanonicalFormMessage fixture(String name) {
+        try (InputStream in = BenchmarkForms.class.getResourceAsStream("/test-fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture not on the classpath: " + name);
+            }
+            return MAPPER.readValue(in, CanonicalFormMessage.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read fixture " + name, e);
+        }
+    }
+
+    /**
+     * Generates a form with {@code fieldCount} fields laid out two per row, ten rows per group.
+     * Every tenth field is a three-column grid. With a positive {@code ruleDepth}, every fifth
+     * field gets a conditional validation rule and every row a visibility rule, each a
+     * RuleBlock nested {@code ruleDepth} levels deep.
+     */
+    public static CanonicalFormMessage scaled(int fieldCount, int ruleDepth) {
+        Map<String, FieldDefinition> fields = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            String key = "field_" + i;
+            if (i % 10 == 9) {
+                fields.put(key, ArrayField.builder()
+                        .widget("table")
+                        .labelKey("scaled.grid." + i)
+                        .permissions(List.of("VIEW:USER", "EDIT:ANALYST", "EDIT:ADMIN"))
+                        .items(new ObjectItem(Map.of(
+                                "country", SimpleField.builder().type("string").widget("select")
+                                        .labelKey("scaled.col.country").optionsKey("country_list").build(),
+                                "isHrtc", SimpleField.builder().type("boolean").widget("switch")
+                                        .labelKey("scaled.col.is_hrtc").build(),
+                                "exposure", SimpleField.builder().type("number").widget("percentage")
+                                        .labelKey("scaled.col.exposure")
+                                        .validation(ValidationRules.builder().minimum(0).maximum(100).build()).build()
+                        )))
+                        .build());
+                continue;
+            }
+            ValidationRules.Builder validation = ValidationRules.builder().required(i % 3 == 0);
+            if (ruleDepth > 0 && i % 5 == 0 && i > 0) {
+                validation.rules(List.of(new ValidationRule(
+                        nestedBlock(i, ruleDepth), new ValidationAction(true, null, null))));
+            }
+            fields.put(key, SimpleField.builder()
+                    .type(i % 2 == 0 ? "string" : "number")
+                    .widget(i % 2 == 0 ? "text" : "currency")
+                    .labelKey("scaled.field." + i)
+                    .validation(validation.build())
+                    .permissions(List.of("VIEW:USER", "EDIT:ANALYST", "EDIT:ADMIN"))
+                    .build());
+        }
+
+        List<LayoutElement> layout = new ArrayList<>();
+        List<LayoutElement> rows = new ArrayList<>();
+        for (int i = 0; i < fieldCount; i += 2) {
+            List<LayoutElement> refs = new ArrayList<>();
+            refs.add(new FieldRef("field_" + i));
+            if (i + 1 < fieldCount) {
+                refs.add(new FieldRef("field_" + (i + 1)));
+            }
+            List<VisibilityRule> visibility = ruleDepth > 0 && i > 0
+                    ? List.of(new VisibilityRule(nestedBlock(i, ruleDepth), true))
+                    : null;
+            rows.add(new Row(refs, visibility));
+            if (rows.size() == 10 || i + 2 >= fieldCount) {
+                layout.add(new Group("scaled.group." + layout.size(), rows));
+                rows = new ArrayList<>();
+            }
+        }
+
+        return CanonicalFormMessage.builder()
+                .formId("scaled_" + fieldCount + "_" + ruleDepth)
+                .schemaVersion(ruleDepth > 0 ? "3.0.0" : "1.0.0")
+                .layout(layout)
+                .fields(fields)
+                .build();
+    }
+
+    /**
+     * Builds an alternating AND/OR chain {@code depth} levels deep over fields preceding {@code fieldIndex}.
+     */
+    private static RuleBlock nestedBlock(int fieldIndex, int depth) {
+        RuleBlock block = null;
+        for (int level = depth; level > 0; level--) {
+            String dependency = "field_" + ((fieldIndex + level) % fieldIndex);
+            block = new RuleBlock(
+                    level % 2 == 0 ? LogicalOperator.AND : LogicalOperator.OR,
+                    List.of(
+                            new Condition(dependency, Operator.IS_NOT_BLANK, null),
+                            new Condition(dependency, Operator.IN, List.of("A", "B", "C"))
+                    ),
+                    block == null ? null : List.of(block));
+        }
+        return block;
+    }
+}
@@ -0,0 +1,82 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.codec.FormCodec;
+import com.eainde.synapse.forms.codec.FormEncoding;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding the V3 form definition with {@link FormCodec}, against plain JSON. The
+ * encoded sizes are compared in {@code FormCodecTest}, not here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormCodecBenchmark {
+
+    @Param({"BINARY", "SMILE", "CBOR"})
+    private FormEncoding encoding;
+
+    @Param({BenchmarkForms.FIXTURE, BenchmarkForms.SCALED})
+    private String shape;
+
+    private ObjectMapper objectMapper;
+    private FormCodec codec;
+    private CanonicalFormMessage message;
+    private byte[] encoded;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new FormRendererConfig().formObjectMapper();
+        codec = new FormCodec(objectMapper, encoding);
+        message = BenchmarkForms.forFormat(TargetFormat.SYNAPSE_FORM_V3, shape);
+        encoded = codec.encode(message);
+        json = objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(message);
+    }
+
+    @Benchmark
+    public CanonicalFormMessage decode() {
+        return codec.decode(encoded, CanonicalFormMessage.class);
+    }
+
+    @Benchmark
+    public byte[] fromJson() {
+        return codec.fromJson(json);
+    }
+
+    @Benchmark
+    public byte[] encodeJsonBaseline() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public CanonicalFormMessage decodeJsonBaseline() throws IOException {
+        return objectMapper.readValue(json, CanonicalFormMessage.class);
+    }
+}
@@ -0,0 +1,71 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.CompiledForm;
+import com.eainde.synapse.FormConverter;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FormConverter#convert} from a form definition JSON string to jsonSchema + uiSchema,
+ * and from a {@link CompiledForm} parsed once in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormConverterBenchmark {
+
+    @Param({BenchmarkForms.FIXTURE, BenchmarkForms.SCALED})
+    private String shape;
+
+    @Param({"USER", "ANALYST"})
+    private String role;
+
+    private FormConverter converter;
+    private String inputJson;
+    private Map<String, String> labelMap;
+    private CompiledForm compiled;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper objectMapper = new FormRendererConfig().formObjectMapper();
+        CanonicalFormMessage form = BenchmarkForms.FIXTURE.equals(shape)
+                ? BenchmarkForms.gridPermissions()
+                : BenchmarkForms.scaled(BenchmarkForms.SCALED_FIELD_COUNT, 0);
+        converter = new FormConverter();
+        inputJson = objectMapper.writeValueAsString(form);
+        labelMap = new HashMap<>();
+        form.fields().forEach((key, field) -> labelMap.put(field.getLabelKey(), "Label for " + key));
+        compiled = converter.compile(inputJson);
+    }
+
+    @Benchmark
+    public ObjectNode convert() throws JsonProcessingException {
+        return converter.convert(inputJson, role, labelMap);
+    }
+
+    @Benchmark
+    public ObjectNode convertCompiled() {
+        return converter.convert(compiled, role, labelMap);
+    }
+}
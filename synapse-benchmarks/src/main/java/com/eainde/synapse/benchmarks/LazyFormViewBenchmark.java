@@ -0,0 +1,72 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.forms.codec.FormCodec;
+import com.eainde.synapse.forms.codec.FormEncoding;
+import com.eainde.synapse.forms.codec.LazyFormView;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading one field of the scaled form: through a {@link LazyFormView} over JSON and over the
+ * binary encoding, against deserializing the whole {@link CanonicalFormMessage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyFormViewBenchmark {
+
+    private ObjectMapper objectMapper;
+    private FormCodec codec;
+    private byte[] json;
+    private byte[] binary;
+    private String key;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new FormRendererConfig().formObjectMapper();
+        codec = new FormCodec(objectMapper, FormEncoding.BINARY);
+        CanonicalFormMessage message = BenchmarkForms.scaled(BenchmarkForms.SCALED_FIELD_COUNT, BenchmarkForms.SCALED_RULE_DEPTH);
+        json = objectMapper.writeValueAsBytes(message);
+        binary = codec.encode(message);
+        key = message.fields().keySet().iterator().next();
+    }
+
+    @Benchmark
+    public FieldDefinition eagerJson() throws IOException {
+        return objectMapper.readValue(json, CanonicalFormMessage.class).fields().get(key);
+    }
+
+    @Benchmark
+    public FieldDefinition eagerBinary() {
+        return codec.decode(binary, CanonicalFormMessage.class).fields().get(key);
+    }
+
+    @Benchmark
+    public FieldDefinition lazyJson() {
+        return LazyFormView.ofJson(objectMapper, json).field(key);
+    }
+
+    @Benchmark
+    public FieldDefinition lazyBinary() {
+        return codec.view(binary).field(key);
+    }
+}
@@ -0,0 +1,67 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.forms.JsonFormatRenderer;
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end renders through {@link JsonFormatRenderer}: bean validation, mapping and schema validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderPipelineBenchmark {
+
+    @Param({"SYNAPSE_FORM_V1", "SYNAPSE_FORM_V2", "SYNAPSE_FORM_V3"})
+    private TargetFormat format;
+
+    @Param({BenchmarkForms.FIXTURE, BenchmarkForms.SCALED})
+    private String shape;
+
+    private JsonFormatRenderer renderer;
+    private CanonicalFormMessage message;
+    private OutputStream sink;
+
+    @Setup
+    public void setUp() {
+        renderer = new FormRendererConfig().jsonFormatRenderer();
+        message = BenchmarkForms.forFormat(format, shape);
+        sink = OutputStream.nullOutputStream();
+        // Fail fast if a generated form is not valid for the format under test.
+        renderer.render(message, format);
+    }
+
+    @Benchmark
+    public String render() {
+        return renderer.render(message, format);
+    }
+
+    @Benchmark
+    public JsonNode renderToNode() {
+        return renderer.renderToNode(message, format);
+    }
+
+    @Benchmark
+    public void renderToStream() {
+        renderer.render(message, format, sink);
+    }
+}
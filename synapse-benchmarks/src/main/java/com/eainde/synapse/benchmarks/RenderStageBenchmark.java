@@ -0,0 +1,81 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.adapter.JsonFormAdapter;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.exception.ValidationError;
+import com.eainde.synapse.forms.validation.SchemaValidator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each render pipeline stage in isolation, fed with the same inputs the pipeline would pass it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderStageBenchmark {
+
+    @Param({"SYNAPSE_FORM_V1", "SYNAPSE_FORM_V2", "SYNAPSE_FORM_V3"})
+    private TargetFormat format;
+
+    @Param({BenchmarkForms.FIXTURE, BenchmarkForms.SCALED})
+    private String shape;
+
+    private Validator beanValidator;
+    private JsonFormAdapter adapter;
+    private SchemaValidator schemaValidator;
+    private CanonicalFormMessage message;
+    private JsonNode mappedNode;
+
+    @Setup
+    public void setUp() {
+        FormRendererConfig config = new FormRendererConfig();
+        ObjectMapper objectMapper = config.formObjectMapper();
+        beanValidator = config.beanValidator();
+        schemaValidator = config.schemaValidator();
+        adapter = switch (format) {
+            case SYNAPSE_FORM_V1 -> config.dynamicFormV1Mapper(objectMapper);
+            case SYNAPSE_FORM_V2 -> config.dynamicFormV2Mapper(objectMapper);
+            case SYNAPSE_FORM_V3 -> config.dynamicFormV3Mapper(objectMapper);
+        };
+        message = BenchmarkForms.forFormat(format, shape);
+        mappedNode = adapter.map(message);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CanonicalFormMessage>> beanValidation() {
+        return beanValidator.validate(message);
+    }
+
+    @Benchmark
+    public JsonNode adapterMapping() {
+        return adapter.map(message);
+    }
+
+    @Benchmark
+    public List<ValidationError> schemaValidation() {
+        return schemaValidator.validate(mappedNode, format);
+    }
+}
@@ -0,0 +1,62 @@
+package com.eainde.synapse.benchmarks;
+
+import com.eainde.synapse.forms.engine.FormRules;
+import com.eainde.synapse.forms.engine.RuleEvaluation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side evaluation of the scaled V3 form's visibility and validation rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleEvaluationBenchmark {
+
+    private FormRules rules;
+    private Map<String, Object> values;
+    private Object[] slotValues;
+
+    @Setup
+    public void setUp() {
+        rules = FormRules.compile(BenchmarkForms.scaled(BenchmarkForms.SCALED_FIELD_COUNT, BenchmarkForms.SCALED_RULE_DEPTH));
+        values = new HashMap<>();
+        for (int i = 0; i < BenchmarkForms.SCALED_FIELD_COUNT; i++) {
+            values.put("field_" + i, i % 4 == 0 ? "A" : "Z");
+        }
+        slotValues = new Object[rules.slotCount()];
+        for (int slot = 0; slot < slotValues.length; slot++) {
+            slotValues[slot] = values.get(rules.fieldKey(slot));
+        }
+    }
+
+    @Benchmark
+    public FormRules compile() {
+        return FormRules.compile(BenchmarkForms.scaled(BenchmarkForms.SCALED_FIELD_COUNT, BenchmarkForms.SCALED_RULE_DEPTH));
+    }
+
+    @Benchmark
+    public RuleEvaluation evaluateMap() {
+        return rules.evaluate(values);
+    }
+
+    @Benchmark
+    public RuleEvaluation evaluateSlots() {
+        return rules.evaluate(slotValues);
+    }
+}
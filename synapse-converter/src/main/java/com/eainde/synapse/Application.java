@@ -1,11 +1,14 @@
 package com.eainde.synapse;
 
+import com.eainde.synapse.labels.LabelBundle;
+import com.eainde.synapse.labels.LabelBundleStore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 public class Application {
@@ -15,7 +18,8 @@ public class Application {
         ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
 
         // --- This Label Map is CRUCIAL ---
-        // In a real app, you would load this from a database or properties file.
+        // In a real app, you would load this from a database or properties file per locale
+        // and preload it into the LabelBundleStore at startup.
         Map<String, String> dummyLabelMap = new HashMap<>();
 
         // Labels for Example 1 & 2
@@ -92,12 +96,15 @@ public class Application {
         }
         """;
 
+        LabelBundleStore labelStore = new LabelBundleStore();
+        LabelBundle labels = labelStore.preload(Map.of(Locale.ENGLISH, dummyLabelMap)).get(Locale.ENGLISH);
+
         System.out.println("--- Processing Example 4 (Role: ANALYST) ---");
 
         // Define the user context
         String userRole = "ANALYST";
 
-        ObjectNode output4 = converter.convert(inputJson4, userRole, dummyLabelMap);
+        ObjectNode output4 = converter.convert(inputJson4, userRole, labels);
         System.out.println(mapper.writeValueAsString(output4));
 
 
@@ -105,18 +112,18 @@ public class Application {
 
         // System.out.println("\n--- Processing Example 1 (Role: USER) ---");
         // String inputJson1 = ... (paste example 1 JSON here) ...
-        // ObjectNode output1 = converter.convert(inputJson1, "USER", dummyLabelMap);
+        // ObjectNode output1 = converter.convert(inputJson1, "USER", labels);
         // System.out.println(mapper.writeValueAsString(output1));
 
         // System.out.println("\n--- Processing Example 2 (Role: ADMIN) ---");
         // String inputJson2 = ... (paste example 2 JSON here) ...
-        // ObjectNode output2 = converter.convert(inputJson2, "ADMIN", dummyLabelMap);
+        // ObjectNode output2 = converter.convert(inputJson2, "ADMIN", labels);
         // System.out.println(mapper.writeValueAsString(output2));
 
         // System.out.println("\n--- Processing Example 3 (Role: USER) ---");
         // Note: I fixed a typo in your input 3 ("type: "Group" -> "type": "Group")
         // String inputJson3 = ... (paste example 3 JSON here) ...
-        // ObjectNode output3 = converter.convert(inputJson3, "USER", dummyLabelMap);
+        // ObjectNode output3 = converter.convert(inputJson3, "USER", labels);
         // System.out.println(mapper.writeValueAsString(output3));
     }
 }
@@ -0,0 +1,347 @@
+package com.eainde.synapse;
+
+import com.eainde.synapse.labels.LabelBundle;
+import com.eainde.synapse.labels.LabelBundleStore;
+import com.eainde.synapse.labels.LabelResolver;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Caches {@link FormConverter} output per (form definition, role, label version).
+ * <p>
+ * Definitions are identified by the SHA-256 of their JSON, so equal definitions share entries
+ * whatever object they arrive in. Outputs are stored as serialized UTF-8 bytes in an LRU map
+ * bounded by their total size; the compiled definitions behind them are kept in a second, smaller
+ * LRU map, so a new role or label version only re-projects an already parsed form. Outputs do not
+ * depend on that map: a definition whose compiled form was evicted is still served from its outputs.
+ * <p>
+ * The label version identifies the contents of the label map: callers must pass a new version
+ * whenever the labels change, or call {@link #invalidateLabelVersion(long)}. With a {@link LabelBundle}
+ * the bundle's own version is used, and {@link #invalidateOnReload(LabelBundleStore)} drops the
+ * outputs of replaced bundles. Bundle versions and caller-supplied versions share one key space, so
+ * a cache should be fed by one or the other.
+ * <p>
+ * Conversions run outside the lock. Every invalidation advances an epoch, and a conversion that
+ * started before an invalidation returns its output without caching it, so an invalidation that
+ * lands mid-conversion is never undone by the conversion's insert.
+ */
+public class CachingFormConverter {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final FormConverter converter;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long maximumWeightBytes;
+    private final int maximumCompiledForms;
+
+    private final LinkedHashMap<OutputKey, Output> outputs = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<FormHash, CompiledForm> compiledForms = new LinkedHashMap<>(16, 0.75f, true);
+    private long weightBytes;
+    private long epoch;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private CachingFormConverter(Builder builder) {
+        this.converter = builder.converter;
+        this.maximumWeightBytes = builder.maximumWeightBytes;
+        this.maximumCompiledForms = builder.maximumCompiledForms;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Converts the form for a role, serving repeat conversions from the cache.
+     *
+     * @param inputJson    The input form definition as a JSON string.
+     * @param userRole     The role of the user (e.g., "ANALYST").
+     * @param labelMap     A map to resolve labelKeys.
+     * @param labelVersion Identifies the contents of the label map.
+     * @return A fresh ObjectNode containing the generated jsonSchema and uiSchema.
+     * @throws JsonProcessingException if the input JSON is invalid.
+     */
+    public ObjectNode convert(String inputJson, String userRole, Map<String, String> labelMap, long labelVersion)
+            throws JsonProcessingException {
+        return toNode(lookup(inputJson, userRole, resolver(labelMap), labelVersion));
+    }
+
+    /**
+     * Like {@link #convert(String, String, Map, long)}, but returns the output as UTF-8 JSON bytes.
+     * The array is a copy.
+     */
+    public byte[] convertToBytes(String inputJson, String userRole, Map<String, String> labelMap, long labelVersion)
+            throws JsonProcessingException {
+        return lookup(inputJson, userRole, resolver(labelMap), labelVersion).clone();
+    }
+
+    /**
+     * Like {@link #convert(String, String, Map, long)}, but writes the cached UTF-8 JSON bytes straight to the
+     * stream without copying them. The stream is not flushed or closed.
+     */
+    public void convertTo(String inputJson, String userRole, Map<String, String> labelMap, long labelVersion,
+                          OutputStream out) throws IOException {
+        out.write(lookup(inputJson, userRole, resolver(labelMap), labelVersion));
+    }
+
+    /**
+     * Converts the form for a role with a label bundle, keyed on the bundle's version.
+     *
+     * @see #convert(String, String, Map, long)
+     */
+    public ObjectNode convert(String inputJson, String userRole, LabelBundle labels) throws JsonProcessingException {
+        return toNode(lookup(inputJson, userRole, labels, labels.getVersion()));
+    }
+
+    /**
+     * Like {@link #convert(String, String, LabelBundle)}, but returns the output as UTF-8 JSON bytes.
+     * The array is a copy.
+     */
+    public byte[] convertToBytes(String inputJson, String userRole, LabelBundle labels) throws JsonProcessingException {
+        return lookup(inputJson, userRole, labels, labels.getVersion()).clone();
+    }
+
+    /**
+     * Like {@link #convert(String, String, LabelBundle)}, but writes the cached UTF-8 JSON bytes straight to the stream.
+     * The stream is not flushed or closed.
+     */
+    public void convertTo(String inputJson, String userRole, LabelBundle labels, OutputStream out) throws IOException {
+        out.write(lookup(inputJson, userRole, labels, labels.getVersion()));
+    }
+
+    /**
+     * Drops the outputs of a bundle whenever the store replaces it.
+     */
+    public void invalidateOnReload(LabelBundleStore store) {
+        store.addListener((previous, current) -> invalidateLabelVersion(previous.getVersion()));
+    }
+
+    /**
+     * Drops every output and the compiled form of this definition.
+     */
+    public void invalidateForm(String inputJson) {
+        FormHash hash = hash(inputJson);
+        synchronized (this) {
+            epoch++;
+            compiledForms.remove(hash);
+            removeOutputs((key, output) -> key.form().equals(hash));
+        }
+    }
+
+    /**
+     * Drops every output and compiled form of any definition with this formId.
+     */
+    public synchronized void invalidateFormId(String formId) {
+        epoch++;
+        compiledForms.values().removeIf(form -> formId.equals(form.getFormId()));
+        removeOutputs((key, output) -> formId.equals(output.formId()));
+    }
+
+    /**
+     * Drops every output rendered with this label version.
+     */
+    public synchronized void invalidateLabelVersion(long labelVersion) {
+        epoch++;
+        removeOutputs((key, output) -> key.labelVersion() == labelVersion);
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+        outputs.clear();
+        compiledForms.clear();
+        weightBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the total size of the cached outputs, in bytes.
+     */
+    public synchronized long getWeightBytes() {
+        return weightBytes;
+    }
+
+    public synchronized int size() {
+        return outputs.size();
+    }
+
+    private byte[] lookup(String inputJson, String userRole, LabelResolver labels, long labelVersion)
+            throws JsonProcessingException {
+        OutputKey key = new OutputKey(hash(inputJson), userRole, labelVersion);
+        CompiledForm form;
+        long startEpoch;
+        synchronized (this) {
+            Output cached = outputs.get(key);
+            if (cached != null) {
+                hits++;
+                return cached.bytes();
+            }
+            form = compiledForms.get(key.form());
+            misses++;
+            startEpoch = epoch;
+        }
+
+        if (form == null) {
+            form = converter.compile(inputJson);
+        }
+        byte[] output = serialize(form, userRole, labels);
+        synchronized (this) {
+            if (epoch != startEpoch) {
+                // Invalidated while converting: the output may be stale for the next caller.
+                return output;
+            }
+            compiledForms.put(key.form(), form);
+            trimCompiledForms();
+            Output previous = outputs.put(key, new Output(form.getFormId(), output));
+            weightBytes += output.length - (previous == null ? 0 : previous.bytes().length);
+            trimOutputs();
+        }
+        return output;
+    }
+
+    private ObjectNode toNode(byte[] output) throws JsonProcessingException {
+        try {
+            return (ObjectNode) objectMapper.readTree(output);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // Reading from a byte array only fails on malformed content.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] serialize(CompiledForm form, String userRole, LabelResolver labels) {
+        ByteArrayBuilder bytes = new ByteArrayBuilder();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(bytes)) {
+            converter.write(form, userRole, labels, generator);
+        } catch (IOException e) {
+            // A ByteArrayBuilder does not fail on write.
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void trimOutputs() {
+        Iterator<Output> eldest = outputs.values().iterator();
+        // Always keep the newest entry, even if it alone exceeds the bound.
+        while (weightBytes > maximumWeightBytes && outputs.size() > 1 && eldest.hasNext()) {
+            weightBytes -= eldest.next().bytes().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private void trimCompiledForms() {
+        Iterator<CompiledForm> eldest = compiledForms.values().iterator();
+        while (compiledForms.size() > maximumCompiledForms && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private void removeOutputs(BiPredicate<OutputKey, Output> predicate) {
+        Iterator<Map.Entry<OutputKey, Output>> entries = outputs.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<OutputKey, Output> entry = entries.next();
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                weightBytes -= entry.getValue().bytes().length;
+                entries.remove();
+            }
+        }
+    }
+
+    private static LabelResolver resolver(Map<String, String> labelMap) {
+        return labelKey -> labelMap.getOrDefault(labelKey, labelKey);
+    }
+
+    /**
+     * The first 128 bits of the SHA-256 of a definition's JSON.
+     */
+    private static FormHash hash(String inputJson) {
+        MessageDigest digest = SHA_256.get();
+        ByteBuffer hash = ByteBuffer.wrap(digest.digest(inputJson.getBytes(StandardCharsets.UTF_8)));
+        return new FormHash(hash.getLong(), hash.getLong());
+    }
+
+    private record FormHash(long high, long low) {
+    }
+
+    private record OutputKey(FormHash form, String role, long labelVersion) {
+    }
+
+    /**
+     * A serialized output and the formId of its definition, kept so that outputs can be found by
+     * formId after the compiled definition has left its map.
+     */
+    private record Output(String formId, byte[] bytes) {
+    }
+
+    public static class Builder {
+        private FormConverter converter = new FormConverter();
+        private long maximumWeightBytes = 64L * 1024 * 1024;
+        private int maximumCompiledForms = 256;
+
+        public Builder converter(FormConverter converter) {
+            this.converter = converter;
+            return this;
+        }
+
+        /**
+         * Upper bound on the total size of the cached outputs. Defaults to 64 MiB.
+         */
+        public Builder maximumWeightBytes(long maximumWeightBytes) {
+            if (maximumWeightBytes <= 0) {
+                throw new IllegalArgumentException("maximumWeightBytes must be positive: " + maximumWeightBytes);
+            }
+            this.maximumWeightBytes = maximumWeightBytes;
+            return this;
+        }
+
+        /**
+         * Upper bound on the number of parsed definitions kept for re-projection. Defaults to 256.
+         */
+        public Builder maximumCompiledForms(int maximumCompiledForms) {
+            if (maximumCompiledForms <= 0) {
+                throw new IllegalArgumentException("maximumCompiledForms must be positive: " + maximumCompiledForms);
+            }
+            this.maximumCompiledForms = maximumCompiledForms;
+            return this;
+        }
+
+        public CachingFormConverter build() {
+            return new CachingFormConverter(this);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.eainde.synapse;
+
+import com.eainde.synapse.model.ArrayItems;
+import com.eainde.synapse.model.FieldDefinition;
+import com.eainde.synapse.model.InputForm;
+import com.eainde.synapse.model.LayoutElement;
+import com.eainde.synapse.model.Validation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A form definition parsed once and flattened for repeated conversion.
+ * <p>
+ * Every field, including the fields of array items, gets a dense index in definition order.
+ * Which fields are read-only depends only on the role, so it is computed once per role as a
+ * {@link BitSet} over those indexes; converting the same form for another role is then a
+ * re-projection of the same tree. Instances are immutable apart from that per-role cache and
+ * are safe to share between threads.
+ */
+public final class CompiledForm {
+
+    /** Upper bound on cached role views, so arbitrary role strings cannot grow the cache without limit. */
+    static final int MAX_CACHED_ROLES = 64;
+
+    private final String formId;
+    private final List<CompiledField> fields;
+    private final List<String> required;
+    private final List<LayoutElement> layout;
+    private final List<List<String>> permissions = new ArrayList<>();
+    private final Map<String, BitSet> readOnlyByRole = new ConcurrentHashMap<>();
+
+    CompiledForm(InputForm inputForm) {
+        this.formId = inputForm.getFormId();
+        this.fields = compileFields(inputForm.getFields());
+        this.required = requiredKeys(inputForm.getFields());
+        this.layout = inputForm.getLayout();
+    }
+
+    /**
+     * A field of the form or of an array item.
+     *
+     * @param index         Dense index across the whole form, in definition order.
+     * @param items         Fields of the array item, or {@code null} if this field does not render items.
+     * @param itemsRequired Keys of the required item fields.
+     */
+    record CompiledField(int index, String key, String type, String labelKey, Integer minimum, Integer maximum,
+                         String itemsType, List<CompiledField> items, List<String> itemsRequired) {
+    }
+
+    public String getFormId() {
+        return formId;
+    }
+
+    /**
+     * Returns the number of fields, including the fields of array items.
+     */
+    public int getFieldCount() {
+        return permissions.size();
+    }
+
+    List<CompiledField> fields() {
+        return fields;
+    }
+
+    List<String> required() {
+        return required;
+    }
+
+    List<LayoutElement> layout() {
+        return layout;
+    }
+
+    /**
+     * Returns the indexes of the fields the role may not edit. The returned set must not be modified.
+     */
+    BitSet readOnly(String userRole) {
+        BitSet cached = readOnlyByRole.get(userRole);
+        if (cached != null) {
+            return cached;
+        }
+        BitSet readOnly = new BitSet(permissions.size());
+        for (int i = 0; i < permissions.size(); i++) {
+            if (!hasEditPermission(permissions.get(i), userRole)) {
+                readOnly.set(i);
+            }
+        }
+        if (readOnlyByRole.size() < MAX_CACHED_ROLES) {
+            readOnlyByRole.putIfAbsent(userRole, readOnly);
+        }
+        return readOnly;
+    }
+
+    /**
+     * Checks if the user role has EDIT permission.
+     * If permissions list is null or empty, access is granted by default.
+     */
+    private static boolean hasEditPermission(List<String> permissions, String userRole) {
+        if (permissions == null || permissions.isEmpty()) {
+            return true; // Editable by default
+        }
+        String editPermission = "EDIT:" + userRole.toUpperCase();
+        for (String permission : permissions) {
+            if (permission.equalsIgnoreCase(editPermission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<CompiledField> compileFields(Map<String, FieldDefinition> definitions) {
+        List<CompiledField> compiled = new ArrayList<>(definitions.size());
+        for (Map.Entry<String, FieldDefinition> entry : definitions.entrySet()) {
+            compiled.add(compileField(entry.getKey(), entry.getValue()));
+        }
+        return List.copyOf(compiled);
+    }
+
+    private CompiledField compileField(String key, FieldDefinition definition) {
+        int index = permissions.size();
+        permissions.add(definition.getPermissions());
+
+        Validation validation = definition.getValidation();
+        Integer minimum = validation == null ? null : validation.getMinimum();
+        Integer maximum = validation == null ? null : validation.getMaximum();
+
+        String labelKey = definition.getLabelKey();
+
+        ArrayItems itemsDefinition = definition.getItems();
+        if (!"array".equals(definition.getType()) || itemsDefinition == null) {
+            return new CompiledField(index, key, definition.getType(), labelKey, minimum, maximum,
+                    null, null, null);
+        }
+        Map<String, FieldDefinition> itemDefinitions = itemsDefinition.getFields() == null
+                ? Map.of()
+                : itemsDefinition.getFields();
+        return new CompiledField(index, key, definition.getType(), labelKey, minimum, maximum,
+                itemsDefinition.getType(), compileFields(itemDefinitions), requiredKeys(itemDefinitions));
+    }
+
+    private static List<String> requiredKeys(Map<String, FieldDefinition> definitions) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, FieldDefinition> entry : definitions.entrySet()) {
+            Validation validation = entry.getValue().getValidation();
+            if (validation != null && Boolean.TRUE.equals(validation.getRequired())) {
+                keys.add(entry.getKey());
+            }
+        }
+        return List.copyOf(keys);
+    }
+}
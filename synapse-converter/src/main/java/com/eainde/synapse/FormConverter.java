@@ -0,0 +1,273 @@
+package com.eainde.synapse;
+
+import com.eainde.synapse.CompiledForm.CompiledField;
+import com.eainde.synapse.labels.LabelBundle;
+import com.eainde.synapse.labels.LabelResolver;
+import com.eainde.synapse.model.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+public class FormConverter {
+    private final ObjectMapper objectMapper;
+
+    public FormConverter() {
+        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Main conversion method.
+     *
+     * @param inputJson The input form definition as a JSON string.
+     * @param userRole  The role of the user (e.g., "ANALYST").
+     * @param labelMap  A map to resolve labelKeys (e.g., "kyc.sof.title" -> "Source of Funds").
+     * @return An ObjectNode containing the generated jsonSchema and uiSchema.
+     * @throws JsonProcessingException if the input JSON is invalid.
+     */
+    public ObjectNode convert(String inputJson, String userRole, Map<String, String> labelMap)
+            throws JsonProcessingException {
+        return convert(compile(inputJson), userRole, resolver(labelMap));
+    }
+
+    /**
+     * Like {@link #convert(String, String, Map)}, resolving labels with a {@link LabelBundle} or other resolver.
+     */
+    public ObjectNode convert(String inputJson, String userRole, LabelResolver labels)
+            throws JsonProcessingException {
+        return convert(compile(inputJson), userRole, labels);
+    }
+
+    /**
+     * Parses a form definition once, for repeated conversion with {@link #convert(CompiledForm, String, LabelResolver)}.
+     *
+     * @param inputJson The input form definition as a JSON string.
+     * @return The compiled form. It is immutable and can be shared between threads.
+     * @throws JsonProcessingException if the input JSON is invalid.
+     */
+    public CompiledForm compile(String inputJson) throws JsonProcessingException {
+        return new CompiledForm(objectMapper.readValue(inputJson, InputForm.class));
+    }
+
+    /**
+     * Converts a compiled form for a role.
+     *
+     * @param form     The compiled form definition.
+     * @param userRole The role of the user (e.g., "ANALYST").
+     * @param labelMap A map to resolve labelKeys.
+     * @return An ObjectNode containing the generated jsonSchema and uiSchema.
+     */
+    public ObjectNode convert(CompiledForm form, String userRole, Map<String, String> labelMap) {
+        return convert(form, userRole, resolver(labelMap));
+    }
+
+    /**
+     * Converts a compiled form for a role.
+     *
+     * @param form     The compiled form definition.
+     * @param userRole The role of the user (e.g., "ANALYST").
+     * @param labels   Resolves labelKeys, typically a {@link LabelBundle}.
+     * @return An ObjectNode containing the generated jsonSchema and uiSchema.
+     */
+    public ObjectNode convert(CompiledForm form, String userRole, LabelResolver labels) {
+        TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+        try {
+            write(form, userRole, labels, buffer);
+            return objectMapper.readTree(buffer.asParser());
+        } catch (IOException e) {
+            // A token buffer does not fail on write or replay.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the jsonSchema and uiSchema of a compiled form for a role in a single pass.
+     *
+     * @param form      The compiled form definition.
+     * @param userRole  The role of the user (e.g., "ANALYST").
+     * @param labelMap  A map to resolve labelKeys.
+     * @param generator The generator to write the output object to.
+     * @throws IOException if the generator fails to write.
+     */
+    public void write(CompiledForm form, String userRole, Map<String, String> labelMap, JsonGenerator generator)
+            throws IOException {
+        write(form, userRole, resolver(labelMap), generator);
+    }
+
+    /**
+     * Writes the jsonSchema and uiSchema of a compiled form for a role in a single pass.
+     *
+     * @param form      The compiled form definition.
+     * @param userRole  The role of the user (e.g., "ANALYST").
+     * @param labels    Resolves labelKeys, typically a {@link LabelBundle}.
+     * @param generator The generator to write the output object to.
+     * @throws IOException if the generator fails to write.
+     */
+    public void write(CompiledForm form, String userRole, LabelResolver labels, JsonGenerator generator)
+            throws IOException {
+        BitSet readOnly = form.readOnly(userRole);
+
+        generator.writeStartObject();
+        generator.writeFieldName("jsonSchema");
+        writeJsonSchema(generator, form, readOnly, labels);
+        generator.writeFieldName("uiSchema");
+        writeUiSchema(generator, form.layout(), labels);
+        generator.writeEndObject();
+    }
+
+    private static LabelResolver resolver(Map<String, String> labelMap) {
+        return labelKey -> labelMap.getOrDefault(labelKey, labelKey);
+    }
+
+    // --- JSON Schema Generation ---
+
+    private void writeJsonSchema(JsonGenerator generator, CompiledForm form, BitSet readOnly,
+                                 LabelResolver labels) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("$schema", "https://json-schema.org/draft/2020-12/schema");
+        generator.writeStringField("type", "object");
+        writeProperties(generator, form.fields(), form.required(), readOnly, labels);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the "properties" and "required" members for a list of fields.
+     */
+    private void writeProperties(JsonGenerator generator, List<CompiledField> fields, List<String> required,
+                                 BitSet readOnly, LabelResolver labels) throws IOException {
+        generator.writeObjectFieldStart("properties");
+        for (CompiledField field : fields) {
+            generator.writeFieldName(field.key());
+            writeSchemaProperty(generator, field, readOnly, labels);
+        }
+        generator.writeEndObject();
+
+        generator.writeArrayFieldStart("required");
+        for (String key : required) {
+            generator.writeString(key);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Recursively writes a JSON Schema property for a given field.
+     */
+    private void writeSchemaProperty(JsonGenerator generator, CompiledField field, BitSet readOnly,
+                                     LabelResolver labels) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", field.type());
+        generator.writeStringField("title", labels.resolve(field.labelKey()));
+
+        // Add validations (other than 'required')
+        if (field.minimum() != null) generator.writeNumberField("minimum", field.minimum());
+        if (field.maximum() != null) generator.writeNumberField("maximum", field.maximum());
+
+        // Add permissions (readOnly flag)
+        if (readOnly.get(field.index())) {
+            generator.writeBooleanField("readOnly", true);
+        }
+
+        // Handle arrays (recursion)
+        if (field.items() != null) {
+            generator.writeObjectFieldStart("items");
+            generator.writeStringField("type", field.itemsType()); // "object"
+            writeProperties(generator, field.items(), field.itemsRequired(), readOnly, labels);
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    // --- UI Schema Generation ---
+
+    private void writeUiSchema(JsonGenerator generator, List<LayoutElement> layout, LabelResolver labels)
+            throws IOException {
+        // Special case: If root has only one Group, the uiSchema *is* that Group.
+        if (layout.size() == 1 && layout.get(0) instanceof Group) {
+            writeUiGroup(generator, (Group) layout.get(0), labels);
+        } else {
+            // Otherwise, root is a VerticalLayout containing the elements.
+            generator.writeStartObject();
+            generator.writeStringField("type", "VerticalLayout");
+            generator.writeArrayFieldStart("elements");
+            for (LayoutElement el : layout) {
+                writeUiElement(generator, el, labels);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Generic dispatcher for writing any UI element.
+     */
+    private void writeUiElement(JsonGenerator generator, LayoutElement el, LabelResolver labels)
+            throws IOException {
+        if (el instanceof Group) {
+            writeUiGroup(generator, (Group) el, labels);
+        } else if (el instanceof Row) {
+            writeUiRow(generator, (Row) el);
+        } else {
+            // 'Field' elements are handled inside 'writeUiRow'; elsewhere they leave an empty element.
+            generator.writeStartObject();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes a UI "Group"
+     */
+    private void writeUiGroup(JsonGenerator generator, Group group, LabelResolver labels) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "Group");
+        generator.writeStringField("label", labels.resolve(group.getLabelKey()));
+        generator.writeArrayFieldStart("elements");
+        for (LayoutElement el : group.getElements()) {
+            writeUiElement(generator, el, labels); // Recursive call
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a UI "Row", which becomes either a "Control" or a "HorizontalLayout".
+     */
+    private void writeUiRow(JsonGenerator generator, Row row) throws IOException {
+        List<LayoutElement> rowElements = row.getElements();
+
+        // Rule: A Row with one Field becomes a Control.
+        if (rowElements.size() == 1 && rowElements.get(0) instanceof Field) {
+            writeUiControl(generator, ((Field) rowElements.get(0)).getKey());
+        }
+        // Rule: A Row with multiple elements becomes a HorizontalLayout.
+        else {
+            generator.writeStartObject();
+            generator.writeStringField("type", "HorizontalLayout");
+            generator.writeArrayFieldStart("elements");
+            for (LayoutElement el : rowElements) {
+                if (el instanceof Field) {
+                    writeUiControl(generator, ((Field) el).getKey());
+                }
+                // You could also handle nested Groups/Rows here if your spec allows it.
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes a UI "Control"
+     */
+    private void writeUiControl(JsonGenerator generator, String fieldKey) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "Control");
+        generator.writeStringField("scope", "#/properties/" + fieldKey);
+        generator.writeEndObject();
+    }
+}
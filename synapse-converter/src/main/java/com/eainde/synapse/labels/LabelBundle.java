@@ -0,0 +1,150 @@
+package com.eainde.synapse.labels;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable, versioned set of labels for one locale.
+ * <p>
+ * Keys are kept in a sorted array with their values at the same index. Lookups go
+ * through an open-addressing table of those indexes keyed by {@link String#hashCode()}, which
+ * strings cache, so resolving a label is a few array reads with no locking. Bundles are safe to
+ * share between threads.
+ * <p>
+ * Versions are assigned by the {@link LabelBundleStore} and are unique across locales, so a
+ * version alone identifies the labels an output was rendered with.
+ */
+public final class LabelBundle implements LabelResolver {
+
+    private final Locale locale;
+    private final long version;
+    private final String[] keys;
+    private final String[] values;
+    /** Index + 1 of the key in each slot, or 0 for an empty slot. */
+    private final int[] slots;
+    private final int mask;
+
+    LabelBundle(Locale locale, long version, Map<String, String> labels) {
+        this.locale = Objects.requireNonNull(locale, "locale");
+        this.version = version;
+
+        String[] sortedKeys = new String[labels.size()];
+        int n = 0;
+        for (String key : labels.keySet()) {
+            sortedKeys[n++] = Objects.requireNonNull(key, "labelKey");
+        }
+        Arrays.sort(sortedKeys);
+        this.keys = sortedKeys;
+        this.values = new String[sortedKeys.length];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            String value = labels.get(sortedKeys[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("No label for " + sortedKeys[i]);
+            }
+            values[i] = value;
+        }
+
+        // At most half full, so probe sequences stay short.
+        int capacity = Integer.highestOneBit(Math.max(1, sortedKeys.length) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < sortedKeys.length; i++) {
+            int slot = spread(sortedKeys[i].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the index of the key, or -1 if the bundle has no label for it.
+     * Indexes follow the sorted key order and are stable for the life of the bundle.
+     */
+    public int indexOf(String labelKey) {
+        if (labelKey == null) {
+            return -1;
+        }
+        int slot = spread(labelKey.hashCode()) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            String key = keys[entry - 1];
+            if (key == labelKey || key.equals(labelKey)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the label at an index returned by {@link #indexOf(String)}.
+     */
+    public String get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the label for the key, or {@code null} if there is none.
+     */
+    public String get(String labelKey) {
+        int index = indexOf(labelKey);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public String resolve(String labelKey) {
+        int index = indexOf(labelKey);
+        return index < 0 ? labelKey : values[index];
+    }
+
+    /**
+     * Returns the labels as a new map, in key order.
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+        return map;
+    }
+
+    /**
+     * True if this bundle holds exactly these labels.
+     */
+    boolean hasSameLabels(Map<String, String> labels) {
+        if (labels.size() != keys.length) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (!values[i].equals(labels.get(keys[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LabelBundle[locale=" + locale + ", version=" + version + ", size=" + keys.length + "]";
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
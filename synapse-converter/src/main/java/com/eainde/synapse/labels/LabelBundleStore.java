@@ -0,0 +1,127 @@
+package com.eainde.synapse.labels;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds the current {@link LabelBundle} of each locale.
+ * <p>
+ * The bundles are published as an immutable snapshot behind a volatile reference: readers never
+ * lock, and a reload builds the new bundles off to the side and swaps the snapshot in one write.
+ * Every published bundle gets a version that is unique within the store; republishing identical
+ * labels keeps the current bundle and its version, so downstream caches are only invalidated by
+ * real changes.
+ */
+public class LabelBundleStore {
+
+    /**
+     * Notified after a bundle was replaced, for example to invalidate outputs rendered with it.
+     */
+    @FunctionalInterface
+    public interface ReplacementListener {
+
+        /**
+         * @param previous The bundle that was replaced.
+         * @param current  The bundle now published for the same locale.
+         */
+        void replaced(LabelBundle previous, LabelBundle current);
+    }
+
+    private final List<ReplacementListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Map<Locale, LabelBundle> bundles = Map.of();
+    private long lastVersion;
+
+    /**
+     * Returns the current bundle of the locale, or {@code null} if none was published.
+     */
+    public LabelBundle get(Locale locale) {
+        return bundles.get(locale);
+    }
+
+    /**
+     * Returns the current bundle of the locale, falling back to its language and then to the fallback locale.
+     *
+     * @throws IllegalStateException if none of them has a bundle.
+     */
+    public LabelBundle get(Locale locale, Locale fallback) {
+        Map<Locale, LabelBundle> snapshot = bundles;
+        LabelBundle bundle = snapshot.get(locale);
+        if (bundle == null) {
+            bundle = snapshot.get(Locale.forLanguageTag(locale.getLanguage()));
+        }
+        if (bundle == null) {
+            bundle = snapshot.get(fallback);
+        }
+        if (bundle == null) {
+            throw new IllegalStateException("No label bundle for " + locale + " or " + fallback);
+        }
+        return bundle;
+    }
+
+    /**
+     * Returns the current bundles, keyed by locale.
+     */
+    public Map<Locale, LabelBundle> snapshot() {
+        return bundles;
+    }
+
+    /**
+     * Publishes the labels of one locale.
+     *
+     * @return The bundle now published for the locale.
+     */
+    public LabelBundle publish(Locale locale, Map<String, String> labels) {
+        return preload(Map.of(locale, labels)).get(locale);
+    }
+
+    /**
+     * Publishes the labels of several locales at once. Readers see either none or all of them.
+     *
+     * @param labelsByLocale The labels of each locale, for example as loaded from the database at startup.
+     * @return The bundles now published for those locales.
+     */
+    public Map<Locale, LabelBundle> preload(Map<Locale, ? extends Map<String, String>> labelsByLocale) {
+        Map<Locale, LabelBundle> published = new HashMap<>(labelsByLocale.size() * 2);
+        Map<LabelBundle, LabelBundle> replaced = new HashMap<>();
+        synchronized (this) {
+            Map<Locale, LabelBundle> next = new HashMap<>(bundles);
+            for (Map.Entry<Locale, ? extends Map<String, String>> entry : labelsByLocale.entrySet()) {
+                LabelBundle previous = next.get(entry.getKey());
+                if (previous != null && previous.hasSameLabels(entry.getValue())) {
+                    published.put(entry.getKey(), previous);
+                    continue;
+                }
+                LabelBundle bundle = new LabelBundle(entry.getKey(), ++lastVersion, entry.getValue());
+                next.put(entry.getKey(), bundle);
+                published.put(entry.getKey(), bundle);
+                if (previous != null) {
+                    replaced.put(previous, bundle);
+                }
+            }
+            bundles = Map.copyOf(next);
+        }
+        replaced.forEach((previous, current) -> listeners.forEach(listener -> listener.replaced(previous, current)));
+        return published;
+    }
+
+    /**
+     * Removes the bundle of the locale. Listeners are not notified, as nothing replaced it.
+     */
+    public synchronized LabelBundle remove(Locale locale) {
+        Map<Locale, LabelBundle> next = new HashMap<>(bundles);
+        LabelBundle removed = next.remove(locale);
+        bundles = Map.copyOf(next);
+        return removed;
+    }
+
+    public void addListener(ReplacementListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ReplacementListener listener) {
+        listeners.remove(listener);
+    }
+}
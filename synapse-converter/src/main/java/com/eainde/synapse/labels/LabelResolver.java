@@ -0,0 +1,13 @@
+package com.eainde.synapse.labels;
+
+/**
+ * Resolves a labelKey to its display text.
+ */
+@FunctionalInterface
+public interface LabelResolver {
+
+    /**
+     * Returns the text for the key, or the key itself if it has no label.
+     */
+    String resolve(String labelKey);
+}
@@ -9,10 +9,14 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.util.List;
 import java.util.Map;
 
-public class FormConverter {
+/**
+ * The tree-building converter {@link FormConverter} replaced, kept as the reference its output is
+ * compared against.
+ */
+class BaselineFormConverter {
     private final ObjectMapper objectMapper;
 
-    public FormConverter() {
+    BaselineFormConverter() {
         this.objectMapper = new ObjectMapper();
     }
 
@@ -25,7 +29,7 @@ public class FormConverter {
      * @return An ObjectNode containing the generated jsonSchema and uiSchema.
      * @throws JsonProcessingException if the input JSON is invalid.
      */
-    public ObjectNode convert(String inputJson, String userRole, Map<String, String> labelMap)
+    ObjectNode convert(String inputJson, String userRole, Map<String, String> labelMap)
             throws JsonProcessingException {
 
         // 1. Parse the input JSON string into our POJO model
@@ -0,0 +1,135 @@
+package com.eainde.synapse;
+
+import com.eainde.synapse.labels.LabelBundle;
+import com.eainde.synapse.labels.LabelBundleStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingFormConverterTest {
+
+    private static final String FORM = FormConverterTest.fixture("example4_permissions.json");
+    private static final String OTHER_FORM = FormConverterTest.fixture("example1_simple.json");
+    private static final Map<String, String> LABELS = Map.of("kyc.sof.q1.source", "Primary source of funds");
+
+    private final CachingFormConverter cache = CachingFormConverter.builder().build();
+
+    @Test
+    void repeatConversionsAreServedFromTheCache() throws Exception {
+        byte[] first = cache.convertToBytes(FORM, "USER", LABELS, 1);
+        byte[] second = cache.convertToBytes(FORM, "USER", LABELS, 1);
+
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+        assertThat(cache.convert(FORM, "USER", LABELS, 1)).isEqualTo(new FormConverter().convert(FORM, "USER", LABELS));
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getWeightBytes()).isEqualTo(first.length);
+    }
+
+    @Test
+    void rolesAndLabelVersionsAreCachedSeparately() throws Exception {
+        cache.convertToBytes(FORM, "USER", LABELS, 1);
+        cache.convertToBytes(FORM, "ANALYST", LABELS, 1);
+        cache.convertToBytes(FORM, "USER", Map.of("kyc.sof.q1.source", "Source"), 2);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.getMissCount()).isEqualTo(3);
+        assertThat(cache.convert(FORM, "USER", Map.of(), 2).at("/jsonSchema/properties/primarySource/title").asText())
+                .isEqualTo("Source");
+    }
+
+    @Test
+    void invalidationDropsOnlyMatchingOutputs() throws Exception {
+        cache.convertToBytes(FORM, "USER", LABELS, 1);
+        cache.convertToBytes(FORM, "USER", LABELS, 2);
+        cache.convertToBytes(OTHER_FORM, "USER", LABELS, 1);
+
+        cache.invalidateLabelVersion(2);
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.invalidateFormId("kyc_sof_grid_perms");
+        assertThat(cache.size()).isEqualTo(1);
+
+        cache.invalidateForm(OTHER_FORM);
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getWeightBytes()).isZero();
+    }
+
+    @Test
+    void outputsAreBoundedByTheirTotalSize() throws Exception {
+        int outputSize = cache.convertToBytes(FORM, "USER", LABELS, 1).length;
+        CachingFormConverter bounded = CachingFormConverter.builder().maximumWeightBytes(outputSize * 2L).build();
+
+        for (long version = 0; version < 5; version++) {
+            bounded.convertToBytes(FORM, "USER", LABELS, version);
+        }
+
+        assertThat(bounded.size()).isEqualTo(2);
+        assertThat(bounded.getEvictionCount()).isEqualTo(3);
+        assertThat(bounded.getWeightBytes()).isLessThanOrEqualTo(outputSize * 2L);
+    }
+
+    @Test
+    void outputsOutliveTheirEvictedCompiledForms() throws Exception {
+        CachingFormConverter bounded = CachingFormConverter.builder().maximumCompiledForms(2).build();
+        List<String> forms = FormConverterTest.FIXTURES.subList(0, 3);
+
+        for (int round = 0; round < 3; round++) {
+            for (String name : forms) {
+                bounded.convertToBytes(FormConverterTest.fixture(name), "USER", LABELS, 1);
+            }
+        }
+
+        assertThat(bounded.size()).isEqualTo(3);
+        assertThat(bounded.getMissCount()).isEqualTo(3);
+        assertThat(bounded.getHitCount()).isEqualTo(6);
+
+        // The evicted definition's outputs are still found by formId.
+        bounded.invalidateFormId(new FormConverter().compile(FormConverterTest.fixture(forms.get(0))).getFormId());
+        assertThat(bounded.size()).isEqualTo(2);
+    }
+
+    @Test
+    void anInvalidationDuringAConversionIsNotUndoneByItsInsert() throws Exception {
+        Map<String, String> labels = new HashMap<>(LABELS) {
+            private boolean invalidated;
+
+            @Override
+            public String getOrDefault(Object key, String defaultValue) {
+                if (!invalidated) {
+                    invalidated = true;
+                    cache.invalidateLabelVersion(1);
+                }
+                return super.getOrDefault(key, defaultValue);
+            }
+        };
+
+        byte[] output = cache.convertToBytes(FORM, "USER", labels, 1);
+
+        assertThat(new ObjectMapper().readTree(output)).isEqualTo(new FormConverter().convert(FORM, "USER", LABELS));
+        assertThat(cache.size()).isZero();
+        cache.convertToBytes(FORM, "USER", LABELS, 1);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void reloadedBundlesDropTheirOutputs() throws Exception {
+        LabelBundleStore store = new LabelBundleStore();
+        cache.invalidateOnReload(store);
+        LabelBundle first = store.publish(Locale.ENGLISH, LABELS);
+        cache.convertToBytes(FORM, "USER", first);
+
+        LabelBundle second = store.publish(Locale.ENGLISH, Map.of("kyc.sof.q1.source", "Source"));
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.convert(FORM, "USER", second).at("/jsonSchema/properties/primarySource/title").asText())
+                .isEqualTo("Source");
+    }
+}
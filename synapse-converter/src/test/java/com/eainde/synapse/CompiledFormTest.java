@@ -0,0 +1,35 @@
+package com.eainde.synapse;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledFormTest {
+
+    private final FormConverter converter = new FormConverter();
+
+    @Test
+    void roleViewsAreCachedUpToTheBound() throws Exception {
+        CompiledForm form = converter.compile(FormConverterTest.fixture("example4_permissions.json"));
+
+        for (int i = 0; i < CompiledForm.MAX_CACHED_ROLES; i++) {
+            String role = "ROLE_" + i;
+            assertThat(form.readOnly(role)).isSameAs(form.readOnly(role));
+        }
+
+        String uncached = "ROLE_" + CompiledForm.MAX_CACHED_ROLES;
+        BitSet first = form.readOnly(uncached);
+        assertThat(form.readOnly(uncached)).isNotSameAs(first).isEqualTo(first);
+        assertThat(form.readOnly("ROLE_0")).isSameAs(form.readOnly("ROLE_0"));
+    }
+
+    @Test
+    void fieldsOfArrayItemsAreIndexedWithTheForm() throws Exception {
+        CompiledForm form = converter.compile(FormConverterTest.fixture("example4_permissions.json"));
+
+        assertThat(form.getFormId()).isEqualTo("kyc_sof_grid_perms");
+        assertThat(form.getFieldCount()).isGreaterThan(form.fields().size());
+    }
+}
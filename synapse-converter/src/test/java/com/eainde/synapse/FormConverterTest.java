@@ -0,0 +1,72 @@
+package com.eainde.synapse;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FormConverterTest {
+
+    static final List<String> FIXTURES = List.of(
+            "example1_simple.json",
+            "example2_multi_group.json",
+            "example3_grid.json",
+            "example4_permissions.json",
+            "example4_v2_conditional.json",
+            "example5_v3_nested_rules.json",
+            "example6_v3_nested_rules.json");
+
+    private static final List<String> ROLES = List.of("USER", "ANALYST", "admin", "AUDITOR");
+
+    private static final Map<String, String> LABELS = Map.of(
+            "kyc.sof.q1.source", "Primary source of funds",
+            "kyc.sof.grid.title", "Countries",
+            "kyc.sof.group1.primary_title", "Primary");
+
+    private final FormConverter converter = new FormConverter();
+    private final BaselineFormConverter baseline = new BaselineFormConverter();
+
+    static String fixture(String name) {
+        try (InputStream in = FormConverterTest.class.getResourceAsStream("/test-fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void compiledConversionMatchesTheBaselineForEveryFixtureAndRole() throws Exception {
+        for (String name : FIXTURES) {
+            String json = fixture(name);
+            CompiledForm compiled = converter.compile(json);
+            for (String role : ROLES) {
+                ObjectNode expected = baseline.convert(json, role, LABELS);
+
+                assertThat(converter.convert(json, role, LABELS)).as(name + " as " + role).isEqualTo(expected);
+                assertThat(converter.convert(compiled, role, LABELS)).as(name + " as " + role).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void readOnlyFieldsFollowTheRolesEditPermissions() throws Exception {
+        CompiledForm compiled = converter.compile(fixture("example4_permissions.json"));
+
+        ObjectNode asUser = converter.convert(compiled, "USER", LABELS);
+        ObjectNode asAnalyst = converter.convert(compiled, "analyst", LABELS);
+
+        assertThat(asUser.at("/jsonSchema/properties/primarySource/readOnly").asBoolean()).isTrue();
+        assertThat(asAnalyst.at("/jsonSchema/properties/primarySource/readOnly").isMissingNode()).isTrue();
+        assertThat(asUser.at("/jsonSchema/properties/primarySource/title").asText()).isEqualTo("Primary source of funds");
+    }
+}
@@ -0,0 +1,99 @@
+package com.eainde.synapse.labels;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LabelBundleStoreTest {
+
+    private final LabelBundleStore store = new LabelBundleStore();
+
+    @Test
+    void publishedBundlesResolveTheirLabels() {
+        LabelBundle bundle = store.publish(Locale.ENGLISH, Map.of("kyc.sof.title", "Source of Funds", "b", "B"));
+
+        assertThat(store.get(Locale.ENGLISH)).isSameAs(bundle);
+        assertThat(bundle.get(new String("kyc.sof.title"))).isEqualTo("Source of Funds");
+        assertThat(bundle.resolve("missing")).isEqualTo("missing");
+        assertThat(bundle.get("missing")).isNull();
+        assertThat(bundle.get(bundle.indexOf("b"))).isEqualTo("B");
+        assertThat(bundle.toMap()).containsExactly(Map.entry("b", "B"), Map.entry("kyc.sof.title", "Source of Funds"));
+    }
+
+    @Test
+    void versionsAreUniqueAcrossLocalesAndReloads() {
+        Map<Locale, LabelBundle> preloaded = store.preload(Map.of(
+                Locale.ENGLISH, Map.of("a", "A"),
+                Locale.GERMAN, Map.of("a", "Ä")));
+        LabelBundle reloaded = store.publish(Locale.ENGLISH, Map.of("a", "A2"));
+
+        assertThat(preloaded).containsOnlyKeys(Locale.ENGLISH, Locale.GERMAN);
+        assertThat(List.of(preloaded.get(Locale.ENGLISH).getVersion(), preloaded.get(Locale.GERMAN).getVersion(),
+                reloaded.getVersion())).doesNotHaveDuplicates();
+        assertThat(reloaded.getVersion())
+                .isGreaterThan(Math.max(preloaded.get(Locale.ENGLISH).getVersion(), preloaded.get(Locale.GERMAN).getVersion()));
+    }
+
+    @Test
+    void republishingIdenticalLabelsKeepsTheBundleAndItsVersion() {
+        List<LabelBundle> replaced = new ArrayList<>();
+        store.addListener((previous, current) -> replaced.add(previous));
+        LabelBundle first = store.publish(Locale.ENGLISH, Map.of("a", "A"));
+
+        LabelBundle again = store.publish(Locale.ENGLISH, new HashMap<>(Map.of("a", "A")));
+
+        assertThat(again).isSameAs(first);
+        assertThat(replaced).isEmpty();
+    }
+
+    @Test
+    void hotReloadSwapsTheBundleAndNotifiesListeners() {
+        List<LabelBundle[]> replacements = new ArrayList<>();
+        store.addListener((previous, current) -> replacements.add(new LabelBundle[]{previous, current}));
+        LabelBundle first = store.publish(Locale.ENGLISH, Map.of("a", "A"));
+        LabelBundle german = store.publish(Locale.GERMAN, Map.of("a", "Ä"));
+        Map<Locale, LabelBundle> before = store.snapshot();
+
+        LabelBundle second = store.publish(Locale.ENGLISH, Map.of("a", "A2"));
+
+        assertThat(store.get(Locale.ENGLISH)).isSameAs(second);
+        assertThat(store.get(Locale.GERMAN)).isSameAs(german);
+        assertThat(before.get(Locale.ENGLISH)).isSameAs(first);
+        assertThat(first.resolve("a")).isEqualTo("A");
+        assertThat(second.resolve("a")).isEqualTo("A2");
+        assertThat(replacements).hasSize(1);
+        assertThat(replacements.get(0)).containsExactly(first, second);
+    }
+
+    @Test
+    void removedListenersAndRemovedBundlesAreNotNotified() {
+        List<LabelBundle> replaced = new ArrayList<>();
+        LabelBundleStore.ReplacementListener listener = (previous, current) -> replaced.add(previous);
+        store.addListener(listener);
+        LabelBundle first = store.publish(Locale.ENGLISH, Map.of("a", "A"));
+
+        assertThat(store.remove(Locale.ENGLISH)).isSameAs(first);
+        store.publish(Locale.ENGLISH, Map.of("a", "A2"));
+        store.removeListener(listener);
+        store.publish(Locale.ENGLISH, Map.of("a", "A3"));
+
+        assertThat(replaced).isEmpty();
+    }
+
+    @Test
+    void lookupsFallBackToTheLanguageAndThenTheFallbackLocale() {
+        LabelBundle english = store.publish(Locale.ENGLISH, Map.of("a", "A"));
+        LabelBundle french = store.publish(Locale.FRENCH, Map.of("a", "À"));
+
+        assertThat(store.get(Locale.UK, Locale.FRENCH)).isSameAs(english);
+        assertThat(store.get(Locale.GERMANY, Locale.FRENCH)).isSameAs(french);
+        assertThatThrownBy(() -> store.get(Locale.GERMANY, Locale.ITALIAN)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -1,6 +1,8 @@
 package com.eainde.synapse.client;
 
 import com.eainde.synapse.dto.UserDTO;
+import com.eainde.synapse.dto.UserLookup;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -17,6 +19,28 @@ public interface UserApiClient {
      */
     Mono<UserDTO> findUserById(String userId);
 
+    /**
+     * Fetches a user by their unique ID, without hiding failures.
+     * Unlike findUserById, only a missing user (404) completes empty; timeouts and
+     * server errors are signalled as errors, so callers can tell them apart.
+     * The default looks the id up through findUsersByIds, which flags failed lookups.
+     * @param userId The ID of the user to fetch.
+     * @return A Mono containing the UserDTO, or Mono.empty() if not found.
+     */
+    default Mono<UserDTO> fetchUserById(String userId) {
+        return findUsersByIds(Flux.just(userId))
+                .next()
+                .flatMap(lookup -> lookup.isFailed() ? Mono.error(lookup.error()) : Mono.justOrEmpty(lookup.user()));
+    }
+
+    /**
+     * Fetches many users, grouping the ids into as few requests as possible.
+     * Ids that are already being fetched, by this or any other call, are not requested again.
+     * @param userIds The IDs of the users to fetch. They may repeat.
+     * @return One UserLookup per requested ID, in request order. Failed lookups are flagged, not errors.
+     */
+    Flux<UserLookup> findUsersByIds(Flux<String> userIds);
+
     // You could add other methods like:
     // Mono<UserDTO> findUserByEmail(String email);
     // Mono<UserDTO> createUser(UserDTO newUser);
@@ -0,0 +1,413 @@
+package com.eainde.synapse.client.impl;
+
+import com.eainde.synapse.client.UserApiClient;
+import com.eainde.synapse.dto.UserDTO;
+import com.eainde.synapse.dto.UserLookup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A read-through cache in front of another {@link UserApiClient}.
+ * <p>
+ * Users are fresh for {@code ttl}. For {@code staleWhileRevalidate} after that they are still
+ * served immediately, while a refresh runs in the background. Users the service does not know
+ * (404) are cached for {@code negativeTtl}; failed fetches are not cached at all, so a transient
+ * error is never remembered as "not found". Concurrent misses for the same id share one fetch.
+ * The stale users of a bulk lookup are refreshed together, through the delegate's batched
+ * {@link UserApiClient#findUsersByIds(Flux)}.
+ * The cache holds at most {@code maximumSize} users and evicts the least recently used first.
+ * <p>
+ * Meters: {@code synapse.client.cache.requests} (tag {@code result}: hit, negative_hit, stale_hit,
+ * miss), {@code synapse.client.cache.refreshes} (tag {@code outcome}: success, failure),
+ * {@code synapse.client.cache.evictions} and the {@code synapse.client.cache.size} gauge, all
+ * tagged with {@code client}.
+ */
+public class CachingUserApiClient implements UserApiClient {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingUserApiClient.class);
+
+    private final UserApiClient delegate;
+    private final Clock clock;
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final long negativeTtlMillis;
+
+    /** Guarded by itself; in access order, for LRU eviction. */
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, Mono<Optional<UserDTO>>> loading = new ConcurrentHashMap<>();
+    /** Ids being refreshed by a bulk lookup. */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter refreshSuccesses;
+    private final Counter refreshFailures;
+    private final Counter evictions;
+
+    /**
+     * @param user       The cached user, or {@code null} for a user the service does not know.
+     * @param freshUntil Until when the entry is served as is, in clock millis.
+     * @param staleUntil Until when the entry is served while it is refreshed.
+     */
+    private record Entry(UserDTO user, long freshUntil, long staleUntil) {
+    }
+
+    private CachingUserApiClient(Builder builder) {
+        this.delegate = builder.delegate;
+        this.clock = builder.clock;
+        this.ttlMillis = builder.ttl.toMillis();
+        this.staleMillis = builder.staleWhileRevalidate.toMillis();
+        this.negativeTtlMillis = builder.negativeTtl.toMillis();
+        int maximumSize = builder.maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        MeterRegistry registry = builder.meterRegistry;
+        String client = builder.name;
+        this.hits = requests(registry, client, "hit");
+        this.negativeHits = requests(registry, client, "negative_hit");
+        this.staleHits = requests(registry, client, "stale_hit");
+        this.misses = requests(registry, client, "miss");
+        this.refreshSuccesses = refreshes(registry, client, "success");
+        this.refreshFailures = refreshes(registry, client, "failure");
+        this.evictions = Counter.builder("synapse.client.cache.evictions")
+                .description("Users evicted to keep the cache within its maximum size")
+                .tag("client", client)
+                .register(registry);
+        Gauge.builder("synapse.client.cache.size", this, CachingUserApiClient::size)
+                .description("Users currently cached, including not-found entries")
+                .tag("client", client)
+                .register(registry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String client, String result) {
+        return Counter.builder("synapse.client.cache.requests")
+                .description("User lookups by cache outcome")
+                .tag("client", client)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter refreshes(MeterRegistry registry, String client, String outcome) {
+        return Counter.builder("synapse.client.cache.refreshes")
+                .description("Background refreshes of stale users")
+                .tag("client", client)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public static Builder builder(UserApiClient delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public Mono<UserDTO> findUserById(String userId) {
+        return fetchUserById(userId)
+                .onErrorResume(e -> Mono.empty()); // Same contract as the delegate: empty on errors
+    }
+
+    @Override
+    public Mono<UserDTO> fetchUserById(String userId) {
+        return Mono.defer(() -> {
+            Entry entry = cached(userId, this::refresh);
+            if (entry != null) {
+                return Mono.justOrEmpty(entry.user());
+            }
+            return load(userId, false).flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    /**
+     * Cached users are answered immediately; the misses are passed on to the delegate's
+     * {@link UserApiClient#findUsersByIds(Flux)} as one stream, so they are still batched. So are
+     * the refreshes of the stale users, as a second stream that outlives the lookup; it is only
+     * started by the first stale hit.
+     */
+    @Override
+    public Flux<UserLookup> findUsersByIds(Flux<String> userIds) {
+        return Flux.defer(() -> {
+            Sinks.Many<String> missed = Sinks.many().unicast().onBackpressureBuffer();
+            StaleRefresh stale = new StaleRefresh();
+            Map<String, Sinks.One<UserLookup>> waiting = new ConcurrentHashMap<>();
+
+            Flux<UserLookup> fetched = delegate.findUsersByIds(missed.asFlux())
+                    .doOnNext(lookup -> {
+                        if (!lookup.isFailed()) {
+                            store(lookup.userId(), lookup.user());
+                        }
+                        Sinks.One<UserLookup> result = waiting.remove(lookup.userId());
+                        if (result != null) {
+                            result.tryEmitValue(lookup);
+                        }
+                    })
+                    // Anything still waiting when the delegate is done will never get a result.
+                    .doFinally(signal -> waiting.forEach((id, result) -> result.tryEmitValue(new UserLookup(id, null,
+                            new IllegalStateException("No result for user " + id)))))
+                    .thenMany(Flux.empty());
+
+            Flux<UserLookup> results = userIds
+                    .doFinally(signal -> {
+                        missed.tryEmitComplete();
+                        stale.complete();
+                    })
+                    .flatMapSequential(id -> {
+                        Entry entry = cached(id, stale::add);
+                        if (entry != null) {
+                            return Mono.just(new UserLookup(id, entry.user()));
+                        }
+                        Sinks.One<UserLookup> result = Sinks.one();
+                        Sinks.One<UserLookup> existing = waiting.putIfAbsent(id, result);
+                        if (existing != null) {
+                            return existing.asMono();
+                        }
+                        missed.tryEmitNext(id);
+                        return result.asMono();
+                    }, Queues.SMALL_BUFFER_SIZE);
+
+            return Flux.merge(results, fetched);
+        });
+    }
+
+    /**
+     * Drops a user, e.g. after it was changed through another channel.
+     */
+    public void invalidate(String userId) {
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the entry to serve, counting the outcome and handing a stale one's id to
+     * {@code refresh}, or {@code null} on a miss.
+     */
+    private Entry cached(String userId, Consumer<String> refresh) {
+        long now = clock.millis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(userId);
+            if (entry != null && now >= entry.staleUntil()) {
+                entries.remove(userId);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (now < entry.freshUntil()) {
+            (entry.user() == null ? negativeHits : hits).increment();
+        } else {
+            staleHits.increment();
+            refresh.accept(userId);
+        }
+        return entry;
+    }
+
+    private void refresh(String userId) {
+        if (refreshing.contains(userId)) {
+            return; // A bulk lookup is refreshing it already.
+        }
+        load(userId, true).subscribe(user -> {
+        }, e -> log.warn("Failed to refresh user with id {}, serving the stale entry: {}", userId, e.getMessage()));
+    }
+
+    /**
+     * Refreshes stale users through the delegate's bulk lookup, which batches them and bounds
+     * the requests in flight. Failed refreshes keep the stale entries.
+     *
+     * @param claimed The ids this stream took from {@link #refreshing}, released when it ends.
+     */
+    private void refreshAll(Flux<String> staleIds, Set<String> claimed) {
+        delegate.findUsersByIds(staleIds)
+                .doOnNext(lookup -> {
+                    if (lookup.isFailed()) {
+                        refreshFailures.increment();
+                        log.warn("Failed to refresh user with id {}, serving the stale entry: {}",
+                                lookup.userId(), lookup.error().getMessage());
+                    } else {
+                        store(lookup.userId(), lookup.user());
+                        refreshSuccesses.increment();
+                    }
+                    refreshing.remove(lookup.userId());
+                })
+                .doFinally(signal -> claimed.forEach(refreshing::remove))
+                .subscribe(lookup -> {
+                }, e -> log.warn("Failed to refresh stale users: {}", e.getMessage()));
+    }
+
+    /**
+     * The stale ids of one bulk lookup. Their refresh stream starts with the first of them, so a
+     * lookup without stale hits starts none.
+     */
+    private final class StaleRefresh {
+        /** The ids this lookup took from {@link #refreshing}. */
+        private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+        private Sinks.Many<String> ids;
+
+        synchronized void add(String userId) {
+            if (loading.containsKey(userId) || !refreshing.add(userId)) {
+                return; // Already being fetched or refreshed.
+            }
+            claimed.add(userId);
+            if (ids == null) {
+                ids = Sinks.many().unicast().onBackpressureBuffer();
+                refreshAll(ids.asFlux(), claimed);
+            }
+            ids.tryEmitNext(userId);
+        }
+
+        synchronized void complete() {
+            if (ids != null) {
+                ids.tryEmitComplete();
+            }
+        }
+    }
+
+    /**
+     * Fetches a user, sharing the fetch with concurrent misses and refreshes of the same id.
+     * The outcome of a refresh is counted once, however many stale hits joined it.
+     */
+    private Mono<Optional<UserDTO>> load(String userId, boolean refresh) {
+        return loading.computeIfAbsent(userId, key -> {
+            Mono<Optional<UserDTO>> user = delegate.fetchUserById(key)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnNext(found -> store(key, found.orElse(null)));
+            if (refresh) {
+                user = user.doOnSuccess(found -> refreshSuccesses.increment())
+                        .doOnError(e -> refreshFailures.increment());
+            }
+            return user.doFinally(signal -> loading.remove(key)).cache();
+        });
+    }
+
+    private void store(String userId, UserDTO user) {
+        long now = clock.millis();
+        Entry entry = user == null
+                ? new Entry(null, now + negativeTtlMillis, now + negativeTtlMillis)
+                : new Entry(user, now + ttlMillis, now + ttlMillis + staleMillis);
+        synchronized (entries) {
+            entries.put(userId, entry);
+        }
+    }
+
+    public static class Builder {
+        private final UserApiClient delegate;
+        private String name = "user-api";
+        private int maximumSize = 10_000;
+        private Duration ttl = Duration.ofMinutes(5);
+        private Duration staleWhileRevalidate = Duration.ofMinutes(1);
+        private Duration negativeTtl = Duration.ofSeconds(30);
+        private MeterRegistry meterRegistry;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(UserApiClient delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * The {@code client} tag of the cache meters. Defaults to {@code user-api}.
+         */
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * How long a user is served without a refresh. Defaults to 5 minutes.
+         */
+        public Builder ttl(Duration ttl) {
+            if (ttl == null) {
+                throw new IllegalArgumentException("ttl is required");
+            }
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * How long after its TTL a user is still served while a refresh runs. Defaults to 1 minute.
+         */
+        public Builder staleWhileRevalidate(Duration staleWhileRevalidate) {
+            if (staleWhileRevalidate == null) {
+                throw new IllegalArgumentException("staleWhileRevalidate is required");
+            }
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            return this;
+        }
+
+        /**
+         * How long a 404 is remembered. Defaults to 30 seconds.
+         */
+        public Builder negativeTtl(Duration negativeTtl) {
+            if (negativeTtl == null) {
+                throw new IllegalArgumentException("negativeTtl is required");
+            }
+            this.negativeTtl = negativeTtl;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public CachingUserApiClient build() {
+            if (meterRegistry == null) {
+                throw new IllegalStateException("meterRegistry is required");
+            }
+            return new CachingUserApiClient(this);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.eainde.synapse.client.impl;
 
 import com.eainde.synapse.client.UserApiClient;
+import com.eainde.synapse.config.ExchangeObservationFilter;
 import com.eainde.synapse.config.ExternalServiceProperties;
+import com.eainde.synapse.config.HttpClientFactory;
 import com.eainde.synapse.dto.UserDTO;
+import com.eainde.synapse.dto.UserLookup;
+import com.eainde.synapse.resilience.ResiliencePipeline;
+import com.eainde.synapse.resilience.ResiliencePipelineFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,46 +15,130 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
+import reactor.core.publisher.Sinks;
 
-import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * This is the IMPLEMENTATION.
  * It implements the UserApiClient interface using WebClient.
  * This class is what actually performs the external API call.
+ * Every fetch is registered while it is in flight, so concurrent lookups of the same id share one request.
  */
 @Service // This registers it as a Spring bean
 public class UserApiClientImpl implements UserApiClient {
 
     private static final Logger log = LoggerFactory.getLogger(UserApiClientImpl.class);
     private final WebClient webClient;
+    private final ExternalServiceProperties.Batch batch;
+    private final ResiliencePipeline resilience;
+    private final Map<String, Mono<UserDTO>> inFlight = new ConcurrentHashMap<>();
 
     @Autowired
     public UserApiClientImpl(
             WebClient.Builder webClientBuilder, // We get the pre-configured builder
-            ExternalServiceProperties properties // We get our properties object
+            ExternalServiceProperties properties, // We get our properties object
+            HttpClientFactory httpClientFactory, // Hands out the service's connection pool
+            ResiliencePipelineFactory resiliencePipelineFactory // Limits, hedges, retries and breaks calls
     ) {
         // Create a service-specific WebClient
         ExternalServiceProperties.ServiceConfig userApiConfig = properties.getUserApi();
         String baseUrl = userApiConfig.getBaseUrl();
 
-        // Create a service-specific HttpClient for custom timeouts
-        HttpClient httpClient = HttpClient.create()
-                .responseTimeout(Duration.ofSeconds(userApiConfig.getTimeoutSeconds()));
-
+        // A service-specific HttpClient, on its own pool and with its own timeouts
         this.webClient = webClientBuilder
                 .clone() // Clone the builder to not modify the original bean
                 .baseUrl(baseUrl)
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultRequest(ExchangeObservationFilter.service("user-api")) // Tags its meters and logs
+                .clientConnector(new ReactorClientHttpConnector(httpClientFactory.create("user-api", userApiConfig)))
                 .build();
+        this.batch = userApiConfig.getBatch();
+        this.resilience = resiliencePipelineFactory.create("user-api", userApiConfig.getResilience());
 
         log.info("Initialized UserApiClient with base URL: {}", baseUrl);
     }
 
     @Override
     public Mono<UserDTO> findUserById(String userId) {
+        return fetchUserById(userId)
+                .onErrorResume(e -> Mono.empty()); // Return empty if an error occurs
+    }
+
+    @Override
+    public Mono<UserDTO> fetchUserById(String userId) {
+        return Mono.defer(() -> shared(List.of(userId), ids -> fetchOne(userId)).get(userId));
+    }
+
+    /**
+     * With a bulk endpoint configured, ids are buffered until {@code maxSize} arrive or {@code maxWait}
+     * passes, and each buffer becomes one bulk request; otherwise every id is a single GET. Either way,
+     * at most {@code concurrency} requests are in flight and results are emitted in request order.
+     * Buffers are only cut when a request slot is free, so a slow service backpressures the ids
+     * instead of overflowing the buffer.
+     */
+    @Override
+    public Flux<UserLookup> findUsersByIds(Flux<String> userIds) {
+        if (batch.getBulkPath() == null) {
+            return userIds.flatMapSequential(id -> lookup(id, fetchUserById(id)), batch.getConcurrency());
+        }
+        return userIds
+                .bufferTimeout(batch.getMaxSize(), batch.getMaxWait(), true)
+                .flatMapSequential(this::lookupBatch, batch.getConcurrency());
+    }
+
+    private Flux<UserLookup> lookupBatch(List<String> ids) {
+        return Flux.defer(() -> {
+            Map<String, Mono<UserDTO>> users = shared(new LinkedHashSet<>(ids), this::fetchBulk);
+            // Subscribe to every id at once, so waiting on another call's request doesn't delay ours.
+            return Flux.mergeSequential(ids.stream().map(id -> lookup(id, users.get(id))).toList());
+        });
+    }
+
+    private static Mono<UserLookup> lookup(String userId, Mono<UserDTO> user) {
+        return user.map(found -> new UserLookup(userId, found))
+                .defaultIfEmpty(new UserLookup(userId, null))
+                .onErrorResume(e -> Mono.just(new UserLookup(userId, null, e)));
+    }
+
+    /**
+     * Returns a lookup per id. Ids nobody is fetching yet are fetched together by one call of
+     * {@code fetch}, which starts when the first of their lookups is subscribed; the others join
+     * the fetch already in flight.
+     */
+    private Map<String, Mono<UserDTO>> shared(Collection<String> ids,
+                                              Function<List<String>, Mono<Map<String, UserDTO>>> fetch) {
+        List<String> started = new ArrayList<>();
+        Map<String, Mono<UserDTO>> registered = new HashMap<>();
+        // Another caller may subscribe to a registered lookup before all ids are registered; it waits for this.
+        Sinks.Empty<Void> ready = Sinks.empty();
+        Mono<Map<String, UserDTO>> response = ready.asMono()
+                .then(Mono.defer(() -> fetch.apply(started)))
+                .doFinally(signal -> registered.forEach(inFlight::remove))
+                .cache();
+
+        Map<String, Mono<UserDTO>> users = new HashMap<>();
+        for (String id : ids) {
+            users.put(id, inFlight.computeIfAbsent(id, key -> {
+                Mono<UserDTO> user = response.mapNotNull(found -> found.get(key));
+                started.add(key);
+                registered.put(key, user);
+                return user;
+            }));
+        }
+        ready.tryEmitEmpty();
+        return users;
+    }
+
+    private Mono<Map<String, UserDTO>> fetchOne(String userId) {
         return this.webClient.get()
                 .uri("/users/{id}", userId) // Appends to the base URL
                 .retrieve()
@@ -57,9 +146,23 @@ public class UserApiClientImpl implements UserApiClient {
                 .onStatus(httpStatus -> httpStatus.equals(HttpStatus.NOT_FOUND),
                         clientResponse -> Mono.empty())
                 .bodyToMono(UserDTO.class)
-                // Handle any other errors
+                .transform(resilience::decorate)
+                // Log any other errors once, however many lookups share this request
                 .doOnError(e -> log.error("Failed to fetch user with id {}: {}", userId, e.getMessage()))
-                .onErrorResume(e -> Mono.empty()); // Return empty if an error occurs
+                .map(user -> Map.of(userId, user))
+                .defaultIfEmpty(Map.of());
     }
-}
 
+    private Mono<Map<String, UserDTO>> fetchBulk(List<String> userIds) {
+        return this.webClient.post()
+                .uri(batch.getBulkPath())
+                .bodyValue(userIds)
+                .retrieve()
+                .bodyToFlux(UserDTO.class)
+                // Results are correlated by id; unknown ids are simply absent
+                .filter(user -> user.getId() != null)
+                .collectMap(UserDTO::getId)
+                .transform(resilience::decorate)
+                .doOnError(e -> log.error("Failed to fetch {} users in bulk: {}", userIds.size(), e.getMessage()));
+    }
+}
@@ -0,0 +1,203 @@
+package com.eainde.synapse.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Measures every exchange, and logs a sample of them in full.
+ * <p>
+ * Requests are attributed to the service named by {@link #service(String)}, or {@code default}.
+ * Per service, {@code synapse.client.requests} times each exchange until the response headers
+ * arrive, tagged with the status class ({@code 2xx}, ..., or {@code error} / {@code cancelled});
+ * its count doubles as the status-class counter. {@code synapse.client.requests.active} gauges the
+ * exchanges in flight.
+ * <p>
+ * A {@code logSampleRate} share of exchanges is logged at INFO with method, URL, status, duration and
+ * headers; the configured headers and all query values are redacted. Nothing is built for an
+ * exchange that isn't sampled, so with a rate of 0 or INFO off, logging costs nothing.
+ */
+public class ExchangeObservationFilter implements ExchangeFilterFunction {
+
+    /**
+     * The request attribute holding the service name.
+     */
+    public static final String SERVICE_ATTRIBUTE = ExchangeObservationFilter.class.getName() + ".service";
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeObservationFilter.class);
+    private static final String DEFAULT_SERVICE = "default";
+    private static final String REDACTED = "***";
+
+    private final MeterRegistry meterRegistry;
+    private final double logSampleRate;
+    private final Set<String> redactedHeaders;
+    private final boolean redactQuery;
+    private final boolean percentileHistogram;
+    private final Map<String, ServiceMeters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry Where the meters go, or {@code null} to only log.
+     */
+    public ExchangeObservationFilter(ExternalServiceProperties.Observation observation, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.logSampleRate = observation.getLogSampleRate();
+        this.redactedHeaders = observation.getRedactedHeaders().stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.redactQuery = observation.isRedactQuery();
+        this.percentileHistogram = observation.isPercentileHistogram();
+    }
+
+    /**
+     * Attributes a WebClient's requests to a service, e.g.
+     * {@code builder.defaultRequest(ExchangeObservationFilter.service("user-api"))}.
+     */
+    public static Consumer<WebClient.RequestHeadersSpec<?>> service(String name) {
+        return spec -> spec.attribute(SERVICE_ATTRIBUTE, name);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        boolean sampled = logSampleRate > 0 && log.isInfoEnabled()
+                && (logSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < logSampleRate);
+        if (meterRegistry == null && !sampled) {
+            return next.exchange(request);
+        }
+        return Mono.defer(() -> {
+            String service = (String) request.attribute(SERVICE_ATTRIBUTE).orElse(DEFAULT_SERVICE);
+            Exchange exchange = new Exchange(meterRegistry == null ? null : meters(service), System.nanoTime());
+            return next.exchange(request)
+                    .doOnNext(response -> exchange.response = response)
+                    .doFinally(signal -> {
+                        long nanos = System.nanoTime() - exchange.start;
+                        String outcome = outcome(signal, exchange.response);
+                        if (exchange.meters != null) {
+                            exchange.meters.finish(outcome, nanos);
+                        }
+                        if (sampled) {
+                            log(service, request, exchange.response, outcome, nanos);
+                        }
+                    });
+        });
+    }
+
+    private static String outcome(SignalType signal, ClientResponse response) {
+        if (signal == SignalType.CANCEL) {
+            return "cancelled";
+        }
+        if (response == null) {
+            return "error";
+        }
+        return response.statusCode().value() / 100 + "xx";
+    }
+
+    private ServiceMeters meters(String service) {
+        ServiceMeters existing = meters.get(service);
+        return existing != null ? existing : meters.computeIfAbsent(service, ServiceMeters::new);
+    }
+
+    private void log(String service, ClientRequest request, ClientResponse response, String outcome, long nanos) {
+        log.info("exchange service={} method={} url={} outcome={} status={} durationMs={} requestHeaders={} responseHeaders={}",
+                service, request.method(), url(request.url()), outcome,
+                response == null ? "-" : response.statusCode().value(),
+                TimeUnit.NANOSECONDS.toMillis(nanos),
+                headers(request.headers()),
+                response == null ? "{}" : headers(response.headers().asHttpHeaders()));
+    }
+
+    private String url(URI url) {
+        String query = url.getRawQuery();
+        if (!redactQuery || query == null) {
+            return url.toString();
+        }
+        String redacted = Arrays.stream(query.split("&"))
+                .map(parameter -> {
+                    int equals = parameter.indexOf('=');
+                    return equals < 0 ? parameter : parameter.substring(0, equals + 1) + REDACTED;
+                })
+                .collect(Collectors.joining("&"));
+        String full = url.toString();
+        return full.substring(0, full.indexOf('?') + 1) + redacted;
+    }
+
+    private String headers(HttpHeaders headers) {
+        return headers.entrySet().stream()
+                .map(header -> header.getKey() + "="
+                        + (redactedHeaders.contains(header.getKey().toLowerCase(Locale.ROOT)) ? REDACTED : header.getValue()))
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    /**
+     * One exchange in flight; the response is set once the headers arrive.
+     */
+    private static final class Exchange {
+        private final ServiceMeters meters;
+        private final long start;
+        private ClientResponse response;
+
+        private Exchange(ServiceMeters meters, long start) {
+            this.meters = meters;
+            this.start = start;
+            if (meters != null) {
+                meters.active.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The meters of one service, with a timer per outcome registered up front.
+     */
+    private final class ServiceMeters {
+        private final AtomicInteger active = new AtomicInteger();
+        private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+        private final String service;
+
+        private ServiceMeters(String service) {
+            this.service = service;
+            Gauge.builder("synapse.client.requests.active", active, AtomicInteger::get)
+                    .description("Exchanges waiting for a response")
+                    .tag("service", service)
+                    .register(meterRegistry);
+            for (String outcome : new String[]{"1xx", "2xx", "3xx", "4xx", "5xx", "error", "cancelled"}) {
+                timers.put(outcome, timer(outcome));
+            }
+        }
+
+        private Timer timer(String outcome) {
+            return Timer.builder("synapse.client.requests")
+                    .description("Time until the response headers arrive, by status class")
+                    .tag("service", service)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(meterRegistry);
+        }
+
+        private void finish(String outcome, long nanos) {
+            active.decrementAndGet();
+            Timer timer = timers.get(outcome);
+            (timer != null ? timer : timers.computeIfAbsent(outcome, this::timer)).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.eainde.synapse.config;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -7,6 +11,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
  * Maps the `external.services` properties from application.properties
  * into a type-safe object.
@@ -23,10 +30,214 @@ public class ExternalServiceProperties {
     @NotNull
     private ServiceConfig weatherApi;
 
+    @Valid
+    private Observation observation = new Observation();
+
     @Data
     public static class ServiceConfig {
         @NotBlank
         private String baseUrl;
         private int timeoutSeconds = 10; // Default timeout
+
+        @Valid
+        private Batch batch = new Batch();
+
+        @Valid
+        private Cache cache = new Cache();
+
+        @Valid
+        private Connection connection = new Connection();
+
+        @Valid
+        private Resilience resilience = new Resilience();
+    }
+
+    /**
+     * How bulk lookups are grouped into requests.
+     */
+    @Data
+    public static class Batch {
+        /**
+         * Path of the bulk endpoint, which takes a JSON array of ids as a POST body and returns
+         * the users it found. When unset, lookups fan out as single GETs.
+         */
+        private String bulkPath;
+
+        @Min(1)
+        private int maxSize = 100; // Ids per bulk request
+
+        @NotNull
+        private Duration maxWait = Duration.ofMillis(10); // How long a partial batch waits for more ids
+
+        @Min(1)
+        private int concurrency = 4; // Bulk requests, or single GETs, in flight per lookup
+    }
+
+    /**
+     * What is recorded about the exchanges with all services.
+     */
+    @Data
+    public static class Observation {
+        @DecimalMin("0.0")
+        @DecimalMax("1.0")
+        private double logSampleRate = 0.0; // Share of exchanges logged in full, at INFO
+
+        @NotNull
+        private List<String> redactedHeaders = List.of( // Logged as ***, in any case
+                "Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie");
+
+        private boolean redactQuery = true; // Query parameter values are logged as ***
+
+        private boolean percentileHistogram = true; // Publish latency histogram buckets, for percentiles across instances
+    }
+
+    /**
+     * The service's own connection pool, and the protocol spoken over it.
+     */
+    @Data
+    public static class Connection {
+        @Min(1)
+        private int maxConnections = 100;
+
+        @Min(1)
+        private int pendingAcquireMaxCount = 500; // Requests queued for a connection before they are rejected
+
+        @NotNull
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5); // How long a request waits for a connection
+
+        @NotNull
+        private Duration maxIdleTime = Duration.ofSeconds(30); // Closed when unused for longer, before the server does
+
+        @NotNull
+        private Duration maxLifeTime = Duration.ofMinutes(5); // Closed when older, so DNS changes are picked up
+
+        @NotNull
+        private Duration evictInBackground = Duration.ofSeconds(30); // How often idle and old connections are closed
+
+        @NotNull
+        private Duration connectTimeout = Duration.ofSeconds(5);
+
+        private boolean http2 = false; // Negotiated over TLS (h2), or cleartext h2c for http URLs; falls back to HTTP/1.1
+
+        private boolean compress = false; // Sends Accept-Encoding: gzip and decompresses responses
+    }
+
+    /**
+     * How calls to the service are limited, hedged, retried and cut off.
+     */
+    @Data
+    public static class Resilience {
+        private boolean enabled = false;
+
+        @Valid
+        private Limit limit = new Limit();
+
+        @Valid
+        private Hedge hedge = new Hedge();
+
+        @Valid
+        private Retry retry = new Retry();
+
+        @Valid
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        /**
+         * The adaptive concurrency limit: grows while calls succeed quickly, shrinks on failures and slow calls.
+         */
+        @Data
+        public static class Limit {
+            private boolean enabled = true;
+
+            @Min(1)
+            private int initial = 20;
+
+            @Min(1)
+            private int min = 2;
+
+            @Min(1)
+            private int max = 200;
+
+            @DecimalMin(value = "0.0", inclusive = false)
+            @DecimalMax(value = "1.0", inclusive = false)
+            private double backoffRatio = 0.9; // The limit is multiplied by this on a failure or slow call
+
+            @NotNull
+            private Duration latencyThreshold = Duration.ofSeconds(1); // Slower calls count as a sign of overload
+        }
+
+        /**
+         * A second attempt for calls slower than a percentile of recent latencies.
+         */
+        @Data
+        public static class Hedge {
+            private boolean enabled = true;
+
+            @DecimalMin(value = "0.0", inclusive = false)
+            @DecimalMax(value = "1.0", inclusive = false)
+            private double percentile = 0.95;
+
+            @NotNull
+            private Duration minDelay = Duration.ofMillis(20); // Never hedged sooner
+
+            @Min(1)
+            private int minSamples = 100; // Latencies needed before hedging starts
+        }
+
+        @Data
+        public static class Retry {
+            @Min(1)
+            private int maxAttempts = 2; // Including the first
+
+            @NotNull
+            private Duration minBackoff = Duration.ofMillis(50);
+
+            @NotNull
+            private Duration maxBackoff = Duration.ofMillis(500);
+
+            @DecimalMin("0.0")
+            @DecimalMax("1.0")
+            private double jitter = 0.5; // Each backoff varies by up to this share of itself
+        }
+
+        @Data
+        public static class CircuitBreaker {
+            private boolean enabled = true;
+
+            @DecimalMin(value = "0.0", inclusive = false)
+            @DecimalMax("1.0")
+            private double failureRateThreshold = 0.5;
+
+            @Min(1)
+            private int minimumCalls = 20; // Calls in the window before the rate counts
+
+            @Min(1)
+            private int windowSize = 50; // Most recent calls the rate is taken over
+
+            @NotNull
+            private Duration openDuration = Duration.ofSeconds(10); // Calls fail fast for this long
+
+            @Min(1)
+            private int halfOpenCalls = 3; // Trial calls that must all succeed to close again
+        }
+    }
+
+    /**
+     * The read-through cache in front of the client.
+     */
+    @Data
+    public static class Cache {
+        private boolean enabled = false;
+
+        @Min(1)
+        private int maximumSize = 10_000; // Entries, including remembered 404s
+
+        @NotNull
+        private Duration ttl = Duration.ofMinutes(5); // How long an entry is served without a refresh
+
+        @NotNull
+        private Duration staleWhileRevalidate = Duration.ofMinutes(1); // Served while refreshing, after the TTL
+
+        @NotNull
+        private Duration negativeTtl = Duration.ofSeconds(30); // How long a 404 is remembered
     }
 }
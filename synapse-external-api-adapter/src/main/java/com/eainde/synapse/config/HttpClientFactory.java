@@ -0,0 +1,148 @@
+package com.eainde.synapse.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Creates the Reactor Netty clients behind our WebClients.
+ * <p>
+ * All clients run on one set of event loops. Each service gets its own named connection pool,
+ * sized and evicted as configured in {@link ExternalServiceProperties.Connection}, so a slow
+ * service can't take the connections of another; clients created under the same name share it.
+ * With a {@link MeterRegistry}, every pool publishes {@code synapse.client.pool.*} gauges, tagged
+ * with the pool name and remote address.
+ */
+public class HttpClientFactory {
+
+    private final LoopResources loopResources;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry Where the pool gauges go, or {@code null} for none.
+     */
+    public HttpClientFactory(LoopResources loopResources, MeterRegistry meterRegistry) {
+        this.loopResources = loopResources;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns a client for a service: its pool, its protocol, and response, read and write
+     * timeouts of {@code timeoutSeconds}.
+     */
+    public HttpClient create(String name, ExternalServiceProperties.ServiceConfig config) {
+        ExternalServiceProperties.Connection connection = config.getConnection();
+        boolean secure = config.getBaseUrl() != null && config.getBaseUrl().startsWith("https:");
+        return create(name, connection, Duration.ofSeconds(config.getTimeoutSeconds()), secure);
+    }
+
+    HttpClient create(String name, ExternalServiceProperties.Connection connection, Duration timeout, boolean secure) {
+        HttpClient client = HttpClient.create(provider(name, connection))
+                .runOn(loopResources)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connection.getConnectTimeout().toMillis())
+                .responseTimeout(timeout)
+                .doOnConnected(conn -> conn
+                        .addHandlerLast(new ReadTimeoutHandler(timeout.toMillis(), TimeUnit.MILLISECONDS))
+                        .addHandlerLast(new WriteTimeoutHandler(timeout.toMillis(), TimeUnit.MILLISECONDS)))
+                .compress(connection.isCompress());
+        if (connection.isHttp2()) {
+            client = secure
+                    ? client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure()
+                    : client.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        return client;
+    }
+
+    /**
+     * The pool for a name; the first configuration it is requested with wins.
+     */
+    ConnectionProvider provider(String name, ExternalServiceProperties.Connection connection) {
+        return providers.computeIfAbsent(name, key -> {
+            ConnectionProvider.Builder builder = ConnectionProvider.builder(key)
+                    .maxConnections(connection.getMaxConnections())
+                    .pendingAcquireMaxCount(connection.getPendingAcquireMaxCount())
+                    .pendingAcquireTimeout(connection.getPendingAcquireTimeout())
+                    .maxIdleTime(connection.getMaxIdleTime())
+                    .maxLifeTime(connection.getMaxLifeTime())
+                    .evictInBackground(connection.getEvictInBackground());
+            if (meterRegistry != null) {
+                PoolMeters meters = new PoolMeters(meterRegistry);
+                builder.metrics(true, () -> meters);
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * Closes every pool. The event loops belong to the caller.
+     */
+    public void dispose() {
+        providers.values().forEach(ConnectionProvider::dispose);
+        providers.clear();
+    }
+
+    /**
+     * Registers gauges for each remote address a pool connects to, and removes them with the pool.
+     */
+    private static class PoolMeters implements ConnectionProvider.MeterRegistrar {
+        private final MeterRegistry registry;
+        private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+
+        PoolMeters(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+            Tags tags = Tags.of("pool", poolName, "remote", remoteAddress.toString());
+            meters.put(id, List.of(
+                    gauge("synapse.client.pool.connections", "Connections in use",
+                            tags.and("state", "active"), metrics, ConnectionPoolMetrics::acquiredSize),
+                    gauge("synapse.client.pool.connections", "Open connections waiting to be used",
+                            tags.and("state", "idle"), metrics, ConnectionPoolMetrics::idleSize),
+                    gauge("synapse.client.pool.connections", "Open connections",
+                            tags.and("state", "total"), metrics, ConnectionPoolMetrics::allocatedSize),
+                    gauge("synapse.client.pool.pending", "Requests waiting for a connection",
+                            tags, metrics, ConnectionPoolMetrics::pendingAcquireSize),
+                    gauge("synapse.client.pool.max.connections", "Most connections the pool opens",
+                            tags, metrics, ConnectionPoolMetrics::maxAllocatedSize),
+                    gauge("synapse.client.pool.max.pending", "Most requests that wait for a connection",
+                            tags, metrics, ConnectionPoolMetrics::maxPendingAcquireSize)));
+        }
+
+        @Override
+        public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+            List<Meter> removed = meters.remove(id);
+            if (removed != null) {
+                removed.forEach(registry::remove);
+            }
+        }
+
+        private Meter gauge(String name, String description, Tags tags, ConnectionPoolMetrics metrics,
+                            ToDoubleFunction<ConnectionPoolMetrics> value) {
+            return Gauge.builder(name, metrics, value)
+                    .description(description)
+                    .tags(tags)
+                    .strongReference(true) // The pool only holds its metrics weakly
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.eainde.synapse.config;
+
+import com.eainde.synapse.client.UserApiClient;
+import com.eainde.synapse.client.impl.CachingUserApiClient;
+import com.eainde.synapse.client.impl.UserApiClientImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Puts the read-through cache in front of {@link UserApiClientImpl} when
+ * {@code external.services.user-api.cache.enabled} is set. Callers inject {@link UserApiClient}
+ * and get the cached client.
+ */
+@Configuration
+public class UserApiClientConfig {
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "external.services.user-api.cache", name = "enabled", havingValue = "true")
+    public CachingUserApiClient cachingUserApiClient(UserApiClientImpl userApiClient,
+                                                     ExternalServiceProperties properties,
+                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        ExternalServiceProperties.Cache cache = properties.getUserApi().getCache();
+        return CachingUserApiClient.builder(userApiClient)
+                .maximumSize(cache.getMaximumSize())
+                .ttl(cache.getTtl())
+                .staleWhileRevalidate(cache.getStaleWhileRevalidate())
+                .negativeTtl(cache.getNegativeTtl())
+                // Without an application registry the counters are still kept, just not exported
+                .meterRegistry(meterRegistry.getIfAvailable(SimpleMeterRegistry::new))
+                .build();
+    }
+}
@@ -1,20 +1,18 @@
 package com.eainde.synapse.config;
 
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
+import com.eainde.synapse.resilience.ResiliencePipelineFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import reactor.netty.resources.LoopResources;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 /**
  * Central configuration for WebClient.
@@ -24,40 +22,44 @@ import java.util.concurrent.TimeUnit;
 @Configuration
 public class WebClientConfig {
 
-    private static final Logger log = LoggerFactory.getLogger(WebClientConfig.class);
+    // One set of event loops for every client, instead of one per HttpClient
+    @Bean(destroyMethod = "dispose")
+    public LoopResources httpLoopResources() {
+        return LoopResources.create("synapse-http");
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public HttpClientFactory httpClientFactory(LoopResources httpLoopResources,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        return new HttpClientFactory(httpLoopResources, meterRegistry.getIfAvailable());
+    }
 
     @Bean
-    public WebClient.Builder webClientBuilder() {
+    public ResiliencePipelineFactory resiliencePipelineFactory(ObjectProvider<MeterRegistry> meterRegistry) {
+        // Without an application registry the meters are still kept, just not exported
+        return new ResiliencePipelineFactory(meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    @Bean
+    public ExchangeObservationFilter exchangeObservationFilter(ExternalServiceProperties properties,
+                                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ExchangeObservationFilter(properties.getObservation(), meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    public WebClient.Builder webClientBuilder(HttpClientFactory httpClientFactory,
+                                              ExchangeObservationFilter exchangeObservationFilter) {
 
         // This is a default HTTP client with some sensible defaults
-        // It's used by the WebClient.Builder
-        HttpClient httpClient = HttpClient.create()
-                .doOnConnected(conn -> conn
-                        .addHandlerLast(new ReadTimeoutHandler(10, TimeUnit.SECONDS))
-                        .addHandlerLast(new WriteTimeoutHandler(10, TimeUnit.SECONDS)));
+        // It's used by the WebClient.Builder; services replace it with one on their own pool
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(httpClientFactory.create(
+                "default", new ExternalServiceProperties.Connection(), Duration.ofSeconds(10), false));
 
         return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .clientConnector(connector)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .filter(logRequest())
-                .filter(logResponse());
-    }
-
-    // This filter logs request details
-    private ExchangeFilterFunction logRequest() {
-        return ExchangeFilterFunction.ofRequestProcessor(clientRequest -> {
-            log.info("Request: {} {}", clientRequest.method(), clientRequest.url());
-            clientRequest.headers().forEach((name, values) -> values.forEach(value -> log.debug("  {}: {}", name, value)));
-            return Mono.just(clientRequest);
-        });
-    }
-
-    // This filter logs response status
-    private ExchangeFilterFunction logResponse() {
-        return ExchangeFilterFunction.ofResponseProcessor(clientResponse -> {
-            log.info("Response Status: {}", clientResponse.statusCode());
-            return Mono.just(clientResponse);
-        });
+                // Latency and status meters for every exchange, and full logs for a sample of them
+                .filter(exchangeObservationFilter);
     }
 }
@@ -1,4 +1,12 @@
 package com.eainde.synapse.dto;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class UserDTO {
+    private String id; // Correlates bulk lookup results with the requested ids
 }
@@ -0,0 +1,26 @@
+package com.eainde.synapse.dto;
+
+/**
+ * The result of looking up one id in a bulk lookup.
+ *
+ * @param userId The requested id.
+ * @param user   The user, or {@code null} if it was not found or could not be fetched.
+ * @param error  Why the user could not be fetched, or {@code null} if the lookup succeeded.
+ */
+public record UserLookup(String userId, UserDTO user, Throwable error) {
+
+    public UserLookup(String userId, UserDTO user) {
+        this(userId, user, null);
+    }
+
+    public boolean isFound() {
+        return user != null;
+    }
+
+    /**
+     * True if the lookup failed, e.g. on a timeout or server error. Such a user may well exist.
+     */
+    public boolean isFailed() {
+        return error != null;
+    }
+}
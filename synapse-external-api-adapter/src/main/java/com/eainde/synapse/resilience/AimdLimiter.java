@@ -0,0 +1,83 @@
+package com.eainde.synapse.resilience;
+
+import java.time.Duration;
+
+/**
+ * A concurrency limit that adapts to the service: additive increase, multiplicative decrease.
+ * <p>
+ * Each call that succeeds within {@code latencyThreshold} while at least half the limit is in use
+ * raises the limit by one; each failure or slow call multiplies it by {@code backoffRatio}. So the
+ * limit grows while the service keeps up and shrinks as soon as its latency rises, before queues
+ * build up on either side. Calls over the limit are rejected rather than queued.
+ */
+public class AimdLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    // Guarded by this
+    private double limit;
+    private int inFlight;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, Duration latencyThreshold) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= initialLimit <= maxLimit, got "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1): " + backoffRatio);
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+    }
+
+    /**
+     * Takes a permit, if one is free. Every permit taken is given back by exactly one of
+     * {@link #onSuccess}, {@link #onDropped} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void onSuccess(long latencyNanos) {
+        if (latencyNanos > latencyThresholdNanos) {
+            backOff();
+        } else if (inFlight * 2 >= (int) limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+    }
+
+    public synchronized void onDropped() {
+        backOff();
+        inFlight--;
+    }
+
+    /**
+     * Gives a permit back without learning from the call, e.g. when it was cancelled.
+     */
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    private void backOff() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
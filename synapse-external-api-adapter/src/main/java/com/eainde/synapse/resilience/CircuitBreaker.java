@@ -0,0 +1,162 @@
+package com.eainde.synapse.resilience;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling a service that keeps failing, so callers fail fast instead of waiting on it.
+ * <p>
+ * While closed, the outcomes of the last {@code windowSize} calls are kept; once at least
+ * {@code minimumCalls} were made and {@code failureRateThreshold} of them failed, the breaker opens
+ * and rejects every call for {@code openDuration}. It then lets {@code halfOpenCalls} trial calls
+ * through: if they all succeed it closes, and the first failure opens it again.
+ * <p>
+ * Permits are tagged with the generation of the state they were granted in, which changes on
+ * every transition. Outcomes reported with a permit from an earlier generation are ignored, so a
+ * slow call let through before the breaker opened cannot close it from the half-open state.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /** Returned by {@link #tryAcquire()} when the call is not permitted. */
+    public static final long NO_PERMIT = -1;
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoTime;
+    private final Consumer<State> listener;
+
+    // Guarded by this
+    private final boolean[] failed;
+    private int count;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int trialPermits;
+    private int trialSuccesses;
+
+    /**
+     * @param listener Told about every state change, under the breaker's lock.
+     */
+    public CircuitBreaker(double failureRateThreshold, int minimumCalls, int windowSize, Duration openDuration,
+                          int halfOpenCalls, LongSupplier nanoTime, Consumer<State> listener) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]: " + failureRateThreshold);
+        }
+        if (minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Expected 1 <= minimumCalls <= windowSize and halfOpenCalls >= 1");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.failed = new boolean[windowSize];
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoTime = nanoTime;
+        this.listener = listener;
+    }
+
+    /**
+     * Asks for a permit to make a call. Every permitted call is reported by exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}, with its permit.
+     *
+     * @return The permit, or {@link #NO_PERMIT} if the call may not be made.
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoTime.getAsLong() - openedAt < openNanos) {
+                return NO_PERMIT;
+            }
+            transition(State.HALF_OPEN);
+            trialPermits = halfOpenCalls;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialPermits == 0) {
+                return NO_PERMIT;
+            }
+            trialPermits--;
+        }
+        return generation;
+    }
+
+    public synchronized void onSuccess(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++trialSuccesses == halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (count >= minimumCalls && failures >= failureRateThreshold * count) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Reports a permitted call that was cancelled before it had an outcome.
+     */
+    public synchronized void onIgnored(long permit) {
+        if (permit == generation && state == State.HALF_OPEN && trialPermits + trialSuccesses < halfOpenCalls) {
+            trialPermits++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (count == failed.length) {
+            if (failed[next]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        failed[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        openedAt = nanoTime.getAsLong();
+        transition(State.OPEN);
+    }
+
+    private void close() {
+        count = 0;
+        next = 0;
+        failures = 0;
+        transition(State.CLOSED);
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+        listener.accept(to);
+    }
+}
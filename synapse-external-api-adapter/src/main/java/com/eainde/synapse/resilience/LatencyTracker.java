@@ -0,0 +1,48 @@
+package com.eainde.synapse.resilience;
+
+import java.util.Arrays;
+
+/**
+ * A percentile of the most recent latencies. It is recomputed every eighth of the window, so
+ * recording stays cheap.
+ */
+final class LatencyTracker {
+
+    private final double percentile;
+    private final int minSamples;
+
+    // Guarded by this
+    private final long[] samples;
+    private int count;
+    private int next;
+    private int sinceUpdate;
+    private long value = -1;
+
+    LatencyTracker(double percentile, int window, int minSamples) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be in (0, 1): " + percentile);
+        }
+        this.percentile = percentile;
+        this.minSamples = Math.min(minSamples, window);
+        this.samples = new long[window];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (count >= minSamples && (value < 0 || ++sinceUpdate >= Math.max(1, samples.length / 8))) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            value = sorted[(int) Math.ceil(percentile * count) - 1];
+            sinceUpdate = 0;
+        }
+    }
+
+    /**
+     * The percentile in nanos, or -1 until {@code minSamples} latencies were recorded.
+     */
+    synchronized long get() {
+        return value;
+    }
+}
@@ -0,0 +1,31 @@
+package com.eainde.synapse.resilience;
+
+/**
+ * A call that was not made, to protect the service or ourselves. Not retried.
+ */
+public class RejectedCallException extends RuntimeException {
+
+    public enum Reason {
+        /** The circuit breaker is open. */
+        CIRCUIT_OPEN,
+        /** The concurrency limit is reached. */
+        LIMIT_EXCEEDED
+    }
+
+    private final String service;
+    private final Reason reason;
+
+    public RejectedCallException(String service, Reason reason) {
+        super("Call to " + service + " rejected: " + reason, null, false, false); // Thrown at load, skip the stack trace
+        this.service = service;
+        this.reason = reason;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,325 @@
+package com.eainde.synapse.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Guards the calls to one service. Use it as {@code call.transform(pipeline::decorate)}; the call
+ * is subscribed once per attempt, so it must be lazy, as WebClient calls are.
+ * <p>
+ * Each attempt needs a permit from the {@link AimdLimiter} and the {@link CircuitBreaker}, and
+ * fails fast with a {@link RejectedCallException} without one. An attempt still running after the
+ * hedge percentile of recent latencies is hedged with a second one, and the first result wins.
+ * Failed attempts are retried with jittered exponential backoff. Which errors count as failures
+ * is up to the {@code failurePredicate}; other errors, such as a 400, pass through untouched.
+ * <p>
+ * Meters, tagged with {@code service}: {@code synapse.client.resilience.limit} and
+ * {@code .in.flight} gauges, {@code .rejected} (tag {@code reason}), {@code .hedges},
+ * {@code .retries}, {@code .circuit.state} (0 closed, 1 half open, 2 open) and
+ * {@code .circuit.transitions} (tag {@code state}).
+ */
+public class ResiliencePipeline {
+
+    private final String service;
+    private final AimdLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyTracker latencies;
+    private final long minHedgeDelayNanos;
+    private final Retry retry;
+    private final Predicate<Throwable> failurePredicate;
+
+    private final Counter limitRejections;
+    private final Counter circuitRejections;
+    private final Counter hedges;
+
+    private ResiliencePipeline(Builder builder) {
+        this.service = builder.service;
+        this.limiter = builder.limiter;
+        this.failurePredicate = builder.failurePredicate;
+        this.latencies = builder.hedgePercentile > 0
+                ? new LatencyTracker(builder.hedgePercentile, builder.hedgeWindow, builder.hedgeMinSamples)
+                : null;
+        this.minHedgeDelayNanos = builder.minHedgeDelay.toNanos();
+
+        MeterRegistry registry = builder.meterRegistry;
+        this.limitRejections = rejections(registry, "limit_exceeded");
+        this.circuitRejections = rejections(registry, "circuit_open");
+        this.hedges = Counter.builder("synapse.client.resilience.hedges")
+                .description("Attempts hedged with a second request")
+                .tag("service", service)
+                .register(registry);
+        Counter retries = Counter.builder("synapse.client.resilience.retries")
+                .description("Failed attempts that were retried")
+                .tag("service", service)
+                .register(registry);
+        if (limiter != null) {
+            Gauge.builder("synapse.client.resilience.limit", limiter, AimdLimiter::getLimit)
+                    .description("Current concurrency limit")
+                    .tag("service", service)
+                    .register(registry);
+            Gauge.builder("synapse.client.resilience.in.flight", limiter, AimdLimiter::getInFlight)
+                    .description("Attempts holding a permit")
+                    .tag("service", service)
+                    .register(registry);
+        }
+        if (builder.circuitBreaker != null) {
+            CircuitBreakerSpec spec = builder.circuitBreaker;
+            Map<CircuitBreaker.State, Counter> transitions = new EnumMap<>(CircuitBreaker.State.class);
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                transitions.put(state, Counter.builder("synapse.client.resilience.circuit.transitions")
+                        .description("Circuit breaker state changes, by the new state")
+                        .tag("service", service)
+                        .tag("state", state.name().toLowerCase(Locale.ROOT))
+                        .register(registry));
+            }
+            this.circuitBreaker = new CircuitBreaker(spec.failureRateThreshold, spec.minimumCalls, spec.windowSize,
+                    spec.openDuration, spec.halfOpenCalls, builder.nanoTime, state -> transitions.get(state).increment());
+            Gauge.builder("synapse.client.resilience.circuit.state", circuitBreaker, b -> b.getState().ordinal())
+                    .description("0 closed, 1 half open, 2 open")
+                    .tag("service", service)
+                    .register(registry);
+        } else {
+            this.circuitBreaker = null;
+        }
+        this.retry = builder.maxAttempts > 1
+                ? Retry.backoff(builder.maxAttempts - 1, builder.minBackoff)
+                .maxBackoff(builder.maxBackoff)
+                .jitter(builder.jitter)
+                .filter(e -> !(e instanceof RejectedCallException) && failurePredicate.test(e))
+                .doBeforeRetry(signal -> retries.increment())
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure())
+                : null;
+    }
+
+    private Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("synapse.client.resilience.rejected")
+                .description("Attempts rejected without calling the service")
+                .tag("service", service)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public static Builder builder(String service) {
+        return new Builder(service);
+    }
+
+    public <T> Mono<T> decorate(Mono<T> call) {
+        Mono<Optional<T>> once = latencies == null ? attempt(call) : hedged(call);
+        return (retry == null ? once : once.retryWhen(retry)).flatMap(Mono::justOrEmpty);
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker == null ? CircuitBreaker.State.CLOSED : circuitBreaker.getState();
+    }
+
+    public int getLimit() {
+        return limiter == null ? Integer.MAX_VALUE : limiter.getLimit();
+    }
+
+    /**
+     * Races a second attempt against one that is slower than the hedge percentile. An attempt
+     * that fails before then fails the whole, as the retry will deal with it.
+     */
+    private <T> Mono<Optional<T>> hedged(Mono<T> call) {
+        return Mono.defer(() -> {
+            long percentile = latencies.get();
+            if (percentile < 0) {
+                return attempt(call);
+            }
+            Duration delay = Duration.ofNanos(Math.max(percentile, minHedgeDelayNanos));
+            Sinks.One<Boolean> primaryFailed = Sinks.one();
+            Mono<Optional<T>> primary = attempt(call)
+                    .doOnError(e -> primaryFailed.tryEmitValue(true));
+            Mono<Optional<T>> hedge = Mono.delay(delay)
+                    .takeUntilOther(primaryFailed.asMono())
+                    .flatMap(tick -> {
+                        hedges.increment();
+                        return attempt(call);
+                    });
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorMap(NoSuchElementException.class, ResiliencePipeline::firstFailure);
+        });
+    }
+
+    /**
+     * The first real error behind {@code Mono.firstWithValue} giving up.
+     */
+    private static Throwable firstFailure(NoSuchElementException e) {
+        for (Throwable cause : Exceptions.unwrapMultiple(e.getCause())) {
+            if (!(cause instanceof NoSuchElementException)) {
+                return cause;
+            }
+        }
+        return e;
+    }
+
+    private <T> Mono<Optional<T>> attempt(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (limiter != null && !limiter.tryAcquire()) {
+                limitRejections.increment();
+                return Mono.error(new RejectedCallException(service, RejectedCallException.Reason.LIMIT_EXCEEDED));
+            }
+            long permit = circuitBreaker == null ? CircuitBreaker.NO_PERMIT : circuitBreaker.tryAcquire();
+            if (circuitBreaker != null && permit == CircuitBreaker.NO_PERMIT) {
+                if (limiter != null) {
+                    limiter.onIgnored();
+                }
+                circuitRejections.increment();
+                return Mono.error(new RejectedCallException(service, RejectedCallException.Reason.CIRCUIT_OPEN));
+            }
+            Attempt attempt = new Attempt(System.nanoTime(), permit);
+            return call.map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnError(e -> attempt.error = e)
+                    .doFinally(signal -> finish(attempt, signal));
+        });
+    }
+
+    private void finish(Attempt attempt, SignalType signal) {
+        long nanos = System.nanoTime() - attempt.start;
+        if (signal == SignalType.CANCEL) {
+            if (limiter != null) {
+                limiter.onIgnored();
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onIgnored(attempt.permit);
+            }
+        } else if (attempt.error != null && failurePredicate.test(attempt.error)) {
+            if (limiter != null) {
+                limiter.onDropped();
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onFailure(attempt.permit);
+            }
+        } else {
+            if (limiter != null) {
+                limiter.onSuccess(nanos);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess(attempt.permit);
+            }
+            if (latencies != null && attempt.error == null) {
+                latencies.record(nanos);
+            }
+        }
+    }
+
+    private static final class Attempt {
+        private final long start;
+        /** The circuit breaker's permit for this attempt. */
+        private final long permit;
+        private Throwable error;
+
+        private Attempt(long start, long permit) {
+            this.start = start;
+            this.permit = permit;
+        }
+    }
+
+    private record CircuitBreakerSpec(double failureRateThreshold, int minimumCalls, int windowSize,
+                                      Duration openDuration, int halfOpenCalls) {
+    }
+
+    public static class Builder {
+        private final String service;
+        private AimdLimiter limiter;
+        private CircuitBreakerSpec circuitBreaker;
+        private double hedgePercentile;
+        private int hedgeWindow = 1024;
+        private int hedgeMinSamples = 100;
+        private Duration minHedgeDelay = Duration.ZERO;
+        private int maxAttempts = 1;
+        private Duration minBackoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+        private double jitter = 0.5;
+        private Predicate<Throwable> failurePredicate = e -> true;
+        private MeterRegistry meterRegistry;
+        private LongSupplier nanoTime = System::nanoTime;
+
+        private Builder(String service) {
+            this.service = service;
+        }
+
+        public Builder limiter(AimdLimiter limiter) {
+            this.limiter = limiter;
+            return this;
+        }
+
+        public Builder circuitBreaker(double failureRateThreshold, int minimumCalls, int windowSize,
+                                      Duration openDuration, int halfOpenCalls) {
+            this.circuitBreaker = new CircuitBreakerSpec(failureRateThreshold, minimumCalls, windowSize,
+                    openDuration, halfOpenCalls);
+            return this;
+        }
+
+        /**
+         * Hedges attempts slower than {@code percentile} of the last {@code window} successful ones,
+         * but never sooner than {@code minDelay}, and only once {@code minSamples} are known.
+         */
+        public Builder hedge(double percentile, int window, int minSamples, Duration minDelay) {
+            this.hedgePercentile = percentile;
+            this.hedgeWindow = window;
+            this.hedgeMinSamples = minSamples;
+            this.minHedgeDelay = minDelay;
+            return this;
+        }
+
+        /**
+         * Makes up to {@code maxAttempts} attempts, backing off exponentially from {@code minBackoff}
+         * up to {@code maxBackoff}, each delay varied by up to {@code jitter} of itself.
+         */
+        public Builder retry(int maxAttempts, Duration minBackoff, Duration maxBackoff, double jitter) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            this.minBackoff = minBackoff;
+            this.maxBackoff = maxBackoff;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Which errors count against the service and are retried. Defaults to all of them.
+         */
+        public Builder failurePredicate(Predicate<Throwable> failurePredicate) {
+            this.failurePredicate = failurePredicate;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        /**
+         * The circuit breaker's time source, for tests.
+         */
+        Builder nanoTime(LongSupplier nanoTime) {
+            this.nanoTime = nanoTime;
+            return this;
+        }
+
+        public ResiliencePipeline build() {
+            if (meterRegistry == null) {
+                throw new IllegalStateException("meterRegistry is required");
+            }
+            return new ResiliencePipeline(this);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.eainde.synapse.resilience;
+
+import com.eainde.synapse.config.ExternalServiceProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * Builds the {@link ResiliencePipeline} of a service from its configuration.
+ */
+public class ResiliencePipelineFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    public ResiliencePipelineFactory(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns a pipeline that only passes calls through when resilience is disabled.
+     */
+    public ResiliencePipeline create(String service, ExternalServiceProperties.Resilience config) {
+        ResiliencePipeline.Builder builder = ResiliencePipeline.builder(service)
+                .failurePredicate(ResiliencePipelineFactory::isServiceFailure)
+                .meterRegistry(meterRegistry);
+        if (!config.isEnabled()) {
+            return builder.build();
+        }
+        ExternalServiceProperties.Resilience.Limit limit = config.getLimit();
+        if (limit.isEnabled()) {
+            builder.limiter(new AimdLimiter(limit.getInitial(), limit.getMin(), limit.getMax(),
+                    limit.getBackoffRatio(), limit.getLatencyThreshold()));
+        }
+        ExternalServiceProperties.Resilience.Hedge hedge = config.getHedge();
+        if (hedge.isEnabled()) {
+            builder.hedge(hedge.getPercentile(), 1024, hedge.getMinSamples(), hedge.getMinDelay());
+        }
+        ExternalServiceProperties.Resilience.Retry retry = config.getRetry();
+        builder.retry(retry.getMaxAttempts(), retry.getMinBackoff(), retry.getMaxBackoff(), retry.getJitter());
+        ExternalServiceProperties.Resilience.CircuitBreaker breaker = config.getCircuitBreaker();
+        if (breaker.isEnabled()) {
+            builder.circuitBreaker(breaker.getFailureRateThreshold(), breaker.getMinimumCalls(),
+                    breaker.getWindowSize(), breaker.getOpenDuration(), breaker.getHalfOpenCalls());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Server errors, throttling, timeouts and connection failures are the service's; other 4xx
+     * responses are ours, and retrying them won't help.
+     */
+    static boolean isServiceFailure(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError()
+                    || response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return true;
+    }
+}
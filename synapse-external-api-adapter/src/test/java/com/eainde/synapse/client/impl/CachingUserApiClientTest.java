@@ -0,0 +1,281 @@
+package com.eainde.synapse.client.impl;
+
+import com.eainde.synapse.client.UserApiClient;
+import com.eainde.synapse.dto.UserDTO;
+import com.eainde.synapse.dto.UserLookup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingUserApiClientTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final MutableClock clock = new MutableClock();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StubUserApiClient delegate = new StubUserApiClient();
+    private final CachingUserApiClient client = CachingUserApiClient.builder(delegate)
+            .maximumSize(3)
+            .ttl(Duration.ofMinutes(5))
+            .staleWhileRevalidate(Duration.ofMinutes(1))
+            .negativeTtl(Duration.ofSeconds(30))
+            .meterRegistry(registry)
+            .clock(clock)
+            .build();
+
+    private double requests(String result) {
+        return registry.get("synapse.client.cache.requests").tag("result", result).counter().count();
+    }
+
+    private double refreshes(String outcome) {
+        return registry.get("synapse.client.cache.refreshes").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void usersAreServedFromTheCacheUntilTheyExpire() {
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1"));
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1"));
+        assertThat(delegate.fetched).containsExactly("u1");
+
+        // Past the TTL and the stale window, the user is fetched again on the request path.
+        clock.advance(Duration.ofMinutes(6).plusSeconds(1));
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1"));
+        assertThat(delegate.fetched).containsExactly("u1", "u1");
+
+        assertThat(requests("hit")).isEqualTo(1);
+        assertThat(requests("miss")).isEqualTo(2);
+        assertThat(registry.get("synapse.client.cache.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneFetch() {
+        Sinks.One<UserDTO> response = Sinks.one();
+        delegate.responses.put("u1", response.asMono());
+
+        Mono<List<UserDTO>> all = Flux.merge(client.findUserById("u1"), client.findUserById("u1"),
+                client.fetchUserById("u1")).collectList();
+        StepVerifier.create(all)
+                .then(() -> response.tryEmitValue(new UserDTO("u1")))
+                .assertNext(users -> assertThat(users).hasSize(3).containsOnly(new UserDTO("u1")))
+                .verifyComplete();
+
+        assertThat(delegate.fetched).containsExactly("u1");
+    }
+
+    @Test
+    void staleUsersAreServedWhileTheyAreRefreshed() {
+        client.findUserById("u1").block(TIMEOUT);
+        clock.advance(Duration.ofMinutes(5).plusSeconds(1));
+        Sinks.One<UserDTO> refreshed = Sinks.one();
+        delegate.responses.put("u1", refreshed.asMono());
+
+        // The stale user is returned at once, without waiting for the refresh.
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1"));
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1"));
+        assertThat(delegate.fetched).containsExactly("u1", "u1");
+
+        refreshed.tryEmitValue(new UserDTO("u1-renamed"));
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1-renamed"));
+        assertThat(requests("stale_hit")).isEqualTo(2);
+        assertThat(refreshes("success")).isEqualTo(1);
+
+        // A failed refresh keeps serving the stale entry until the window ends.
+        clock.advance(Duration.ofMinutes(5).plusSeconds(1));
+        delegate.responses.put("u1", Mono.error(new IllegalStateException("503")));
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1-renamed"));
+        assertThat(refreshes("failure")).isEqualTo(1);
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1-renamed"));
+    }
+
+    @Test
+    void notFoundIsCachedForTheNegativeTtlButErrorsAreNot() {
+        delegate.responses.put("gone", Mono.empty());
+        assertThat(client.findUserById("gone").block(TIMEOUT)).isNull();
+        clock.advance(Duration.ofSeconds(29));
+        assertThat(client.findUserById("gone").block(TIMEOUT)).isNull();
+        assertThat(delegate.fetched).containsExactly("gone");
+        assertThat(requests("negative_hit")).isEqualTo(1);
+        clock.advance(Duration.ofSeconds(2));
+        client.findUserById("gone").block(TIMEOUT);
+        assertThat(delegate.fetched).containsExactly("gone", "gone");
+
+        delegate.responses.put("flaky", Mono.error(new IllegalStateException("timeout")));
+        StepVerifier.create(client.fetchUserById("flaky")).verifyErrorMessage("timeout");
+        StepVerifier.create(client.findUserById("flaky")).verifyComplete();
+        delegate.responses.remove("flaky");
+        assertThat(client.findUserById("flaky").block(TIMEOUT)).isEqualTo(new UserDTO("flaky"));
+        assertThat(delegate.fetched).filteredOn("flaky"::equals).hasSize(3);
+    }
+
+    @Test
+    void bulkLookupsOnlyPassMissesOnAndKeepRequestOrder() {
+        client.findUserById("u2").block(TIMEOUT);
+        delegate.responses.put("gone", Mono.empty());
+        delegate.responses.put("flaky", Mono.error(new IllegalStateException("timeout")));
+
+        List<UserLookup> lookups = client.findUsersByIds(Flux.just("u1", "u2", "gone", "u1", "flaky"))
+                .collectList().block(TIMEOUT);
+
+        assertThat(lookups).extracting(UserLookup::userId).containsExactly("u1", "u2", "gone", "u1", "flaky");
+        assertThat(lookups).extracting(UserLookup::isFound).containsExactly(true, true, false, true, false);
+        assertThat(lookups.get(4).isFailed()).isTrue();
+        assertThat(delegate.bulkRequested).containsExactly("u1", "gone", "flaky");
+
+        // Found users and 404s were cached; the failure was not.
+        client.findUsersByIds(Flux.just("u1", "gone", "flaky")).blockLast(TIMEOUT);
+        assertThat(delegate.bulkRequested).containsExactly("u1", "gone", "flaky", "flaky");
+    }
+
+    @Test
+    void staleUsersOfABulkLookupAreRefreshedThroughTheBatchedPath() {
+        client.findUsersByIds(Flux.just("u1", "u2")).blockLast(TIMEOUT);
+        clock.advance(Duration.ofMinutes(5).plusSeconds(1));
+        Sinks.One<UserDTO> refreshed = Sinks.one();
+        delegate.responses.put("u1", refreshed.asMono());
+        delegate.responses.put("u2", Mono.error(new IllegalStateException("503")));
+
+        // The stale users are returned at once, and each is refreshed once, by one bulk stream.
+        List<UserLookup> lookups = client.findUsersByIds(Flux.just("u1", "u2", "u1")).collectList().block(TIMEOUT);
+
+        assertThat(lookups).extracting(UserLookup::user)
+                .containsExactly(new UserDTO("u1"), new UserDTO("u2"), new UserDTO("u1"));
+        refreshed.tryEmitValue(new UserDTO("u1-renamed"));
+        assertThat(delegate.bulkRequested).containsExactly("u1", "u2", "u1", "u2");
+        assertThat(delegate.fetched).isEmpty();
+        assertThat(refreshes("success")).isEqualTo(1);
+        assertThat(refreshes("failure")).isEqualTo(1);
+        assertThat(client.findUserById("u1").block(TIMEOUT)).isEqualTo(new UserDTO("u1-renamed"));
+        assertThat(client.findUserById("u2").block(TIMEOUT)).isEqualTo(new UserDTO("u2"));
+    }
+
+    @Test
+    void aBulkLookupWithoutStaleHitsStartsNoRefreshStream() {
+        client.findUsersByIds(Flux.just("u1", "u2")).blockLast(TIMEOUT);
+        assertThat(delegate.bulkCalls).hasValue(1);
+
+        client.findUsersByIds(Flux.just("u1", "u2", "u1")).blockLast(TIMEOUT);
+
+        // Only the stream for the (absent) misses; the fresh hits need no refresh.
+        assertThat(delegate.bulkCalls).hasValue(2);
+        assertThat(delegate.bulkRequested).containsExactly("u1", "u2");
+    }
+
+    @Test
+    void durationsAreRequired() {
+        CachingUserApiClient.Builder builder = CachingUserApiClient.builder(delegate);
+
+        assertThatThrownBy(() -> builder.ttl(null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.staleWhileRevalidate(null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.negativeTtl(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void theDefaultFetchUserByIdSignalsFailures() {
+        UserApiClient bulkOnly = new UserApiClient() {
+            @Override
+            public Mono<UserDTO> findUserById(String userId) {
+                return fetchUserById(userId).onErrorResume(e -> Mono.empty());
+            }
+
+            @Override
+            public Flux<UserLookup> findUsersByIds(Flux<String> userIds) {
+                return delegate.findUsersByIds(userIds);
+            }
+        };
+        delegate.responses.put("gone", Mono.empty());
+        delegate.responses.put("flaky", Mono.error(new IllegalStateException("timeout")));
+
+        StepVerifier.create(bulkOnly.fetchUserById("u1")).expectNext(new UserDTO("u1")).verifyComplete();
+        StepVerifier.create(bulkOnly.fetchUserById("gone")).verifyComplete();
+        StepVerifier.create(bulkOnly.fetchUserById("flaky")).verifyErrorMessage("timeout");
+        StepVerifier.create(bulkOnly.findUserById("flaky")).verifyComplete();
+    }
+
+    @Test
+    void leastRecentlyUsedUsersAreEvicted() {
+        client.findUserById("u1").block(TIMEOUT);
+        client.findUserById("u2").block(TIMEOUT);
+        client.findUserById("u3").block(TIMEOUT);
+        client.findUserById("u1").block(TIMEOUT);
+        client.findUserById("u4").block(TIMEOUT);
+
+        assertThat(client.size()).isEqualTo(3);
+        client.findUserById("u1").block(TIMEOUT);
+        client.findUserById("u2").block(TIMEOUT);
+        assertThat(delegate.fetched).containsExactly("u1", "u2", "u3", "u4", "u2");
+        assertThat(registry.get("synapse.client.cache.evictions").counter().count()).isEqualTo(2);
+    }
+
+    /**
+     * Answers {@code id -> new UserDTO(id)} unless a response is set for the id.
+     */
+    private static class StubUserApiClient implements UserApiClient {
+        final Map<String, Mono<UserDTO>> responses = new ConcurrentHashMap<>();
+        final List<String> fetched = new CopyOnWriteArrayList<>();
+        final List<String> bulkRequested = new CopyOnWriteArrayList<>();
+        final AtomicInteger bulkCalls = new AtomicInteger();
+
+        @Override
+        public Mono<UserDTO> findUserById(String userId) {
+            return fetchUserById(userId).onErrorResume(e -> Mono.empty());
+        }
+
+        @Override
+        public Mono<UserDTO> fetchUserById(String userId) {
+            return Mono.defer(() -> {
+                fetched.add(userId);
+                return responses.getOrDefault(userId, Mono.just(new UserDTO(userId)));
+            });
+        }
+
+        @Override
+        public Flux<UserLookup> findUsersByIds(Flux<String> userIds) {
+            bulkCalls.incrementAndGet();
+            return userIds.doOnNext(bulkRequested::add)
+                    .concatMap(id -> responses.getOrDefault(id, Mono.just(new UserDTO(id)))
+                            .map(user -> new UserLookup(id, user))
+                            .defaultIfEmpty(new UserLookup(id, null))
+                            .onErrorResume(e -> Mono.just(new UserLookup(id, null, e))));
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.eainde.synapse.client.impl;
+
+import com.eainde.synapse.config.ExternalServiceProperties;
+import com.eainde.synapse.config.HttpClientFactory;
+import com.eainde.synapse.dto.UserDTO;
+import com.eainde.synapse.dto.UserLookup;
+import com.eainde.synapse.resilience.ResiliencePipelineFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the client against a local stand-in for the user service. Users {@code u0, u1, ...} exist,
+ * except those whose number is a multiple of 7.
+ */
+class UserApiClientImplTest {
+
+    private static final Duration LATENCY = Duration.ofMillis(100);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> singleRequests = new CopyOnWriteArrayList<>();
+    private final List<List<String>> bulkRequests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final LoopResources loops = LoopResources.create("test-http");
+    private final HttpClientFactory httpClients = new HttpClientFactory(loops, null);
+    private DisposableServer server;
+
+    @BeforeEach
+    void startServer() {
+        server = HttpServer.create().port(0)
+                .route(routes -> routes
+                        .get("/users/{id}", (request, response) -> {
+                            String id = request.param("id");
+                            singleRequests.add(id);
+                            return exists(id) ? respond(response, new UserDTO(id)) : response.status(404).send();
+                        })
+                        .post("/users/bulk", (request, response) -> request.receive().aggregate().asString()
+                                .flatMap(body -> {
+                                    List<String> ids = read(body);
+                                    bulkRequests.add(ids);
+                                    return Mono.from(respond(response,
+                                            ids.stream().filter(UserApiClientImplTest::exists).map(UserDTO::new).toList()));
+                                })))
+                .bindNow();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.disposeNow();
+        httpClients.dispose();
+        loops.dispose();
+    }
+
+    private static boolean exists(String id) {
+        return Integer.parseInt(id.substring(1)) % 7 != 0;
+    }
+
+    private List<String> read(String body) {
+        try {
+            return objectMapper.readValue(body, new TypeReference<>() {
+            });
+        } catch (Exception e) {
+            throw new IllegalArgumentException(body, e);
+        }
+    }
+
+    /**
+     * Answers after {@link #LATENCY}, tracking how many requests are being answered at once.
+     */
+    private Publisher<Void> respond(HttpServerResponse response, Object body) {
+        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+        return response.header("Content-Type", "application/json")
+                .sendString(Mono.delay(LATENCY).map(tick -> {
+                    concurrent.decrementAndGet();
+                    try {
+                        return objectMapper.writeValueAsString(body);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+    }
+
+    private UserApiClientImpl client(String bulkPath, int maxSize, int concurrency) {
+        ExternalServiceProperties.ServiceConfig config = new ExternalServiceProperties.ServiceConfig();
+        config.setBaseUrl("http://localhost:" + server.port());
+        config.getBatch().setBulkPath(bulkPath);
+        config.getBatch().setMaxSize(maxSize);
+        config.getBatch().setConcurrency(concurrency);
+        ExternalServiceProperties properties = new ExternalServiceProperties();
+        properties.setUserApi(config);
+        return new UserApiClientImpl(WebClient.builder(), properties, httpClients,
+                new ResiliencePipelineFactory(new SimpleMeterRegistry()));
+    }
+
+    private static List<UserLookup> expected(List<String> ids) {
+        return ids.stream().map(id -> new UserLookup(id, exists(id) ? new UserDTO(id) : null)).toList();
+    }
+
+    @Test
+    void bulkLookupsAreBatchedAndResultsFollowRequestOrder() {
+        List<String> ids = new ArrayList<>(IntStream.range(0, 250).mapToObj(i -> "u" + i).toList());
+        ids.add(0, "u42");
+        ids.add("u5"); // still in flight in the first batch when the last batch starts
+        Collections.swap(ids, 10, 20);
+
+        StepVerifier.create(client("/users/bulk", 100, 4).findUsersByIds(Flux.fromIterable(ids)))
+                .expectNextSequence(expected(ids))
+                .verifyComplete();
+
+        assertThat(bulkRequests).hasSize(3);
+        assertThat(bulkRequests).flatExtracting(batch -> batch).hasSize(250).doesNotHaveDuplicates();
+        assertThat(singleRequests).isEmpty();
+    }
+
+    @Test
+    void aSlowProducerAheadOfASlowerDownstreamDoesNotOverflowTheBuffer() {
+        // A batch times out every 10 ms while each takes 100 ms, so batches queue behind the 4 in flight.
+        List<String> ids = IntStream.range(0, 200).mapToObj(i -> "u" + i).toList();
+        Flux<String> slowIds = Flux.interval(Duration.ofMillis(3)).take(ids.size()).map(i -> ids.get(i.intValue()));
+
+        StepVerifier.create(client("/users/bulk", 100, 4).findUsersByIds(slowIds))
+                .expectNextSequence(expected(ids))
+                .verifyComplete();
+
+        assertThat(bulkRequests).flatExtracting(batch -> batch).containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(maxConcurrent.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void withoutBulkEndpointLookupsFanOutWithBoundedConcurrency() {
+        List<String> ids = IntStream.range(0, 20).mapToObj(i -> "u" + i).toList();
+
+        StepVerifier.create(client(null, 100, 3).findUsersByIds(Flux.fromIterable(ids)))
+                .expectNextSequence(expected(ids))
+                .verifyComplete();
+
+        assertThat(singleRequests).hasSize(20);
+        assertThat(maxConcurrent.get()).isBetween(2, 3);
+    }
+
+    @Test
+    void concurrentLookupsOfTheSameIdShareOneRequest() {
+        UserApiClientImpl client = client(null, 100, 8);
+
+        List<UserLookup> results = Flux.merge(
+                        client.findUsersByIds(Flux.just("u1", "u1", "u2")),
+                        client.findUserById("u1").map(user -> new UserLookup("u1", user)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(results).hasSize(4).allMatch(UserLookup::isFound);
+        ConcurrentHashMap<String, Integer> counts = new ConcurrentHashMap<>();
+        singleRequests.forEach(id -> counts.merge(id, 1, Integer::sum));
+        assertThat(counts).containsEntry("u1", 1).containsEntry("u2", 1);
+
+        // Once a fetch completes, the id is fetched again.
+        client.findUserById("u1").block(Duration.ofSeconds(5));
+        assertThat(singleRequests).filteredOn("u1"::equals).hasSize(2);
+    }
+}
@@ -0,0 +1,99 @@
+package com.eainde.synapse.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExchangeObservationFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Logger logger = (Logger) LoggerFactory.getLogger(ExchangeObservationFilter.class);
+    private final ListAppender<ILoggingEvent> logs = new ListAppender<>();
+
+    @BeforeEach
+    void captureLogs() {
+        logs.start();
+        logger.addAppender(logs);
+    }
+
+    @AfterEach
+    void releaseLogs() {
+        logger.detachAppender(logs);
+    }
+
+    private static ExternalServiceProperties.Observation observation(double logSampleRate) {
+        ExternalServiceProperties.Observation observation = new ExternalServiceProperties.Observation();
+        observation.setLogSampleRate(logSampleRate);
+        return observation;
+    }
+
+    private static ClientRequest request(String service) {
+        return ClientRequest.create(HttpMethod.GET, URI.create("http://users/users/u1?token=secret&page=2"))
+                .header("Authorization", "Bearer secret")
+                .header("X-Request-Id", "r1")
+                .attribute(ExchangeObservationFilter.SERVICE_ATTRIBUTE, service)
+                .build();
+    }
+
+    private long count(String service, String outcome) {
+        return registry.get("synapse.client.requests").tag("service", service).tag("outcome", outcome).timer().count();
+    }
+
+    @Test
+    void exchangesAreTimedByServiceAndStatusClassAndCountedWhileInFlight() {
+        ExchangeObservationFilter filter = new ExchangeObservationFilter(observation(0), registry);
+        Sinks.One<ClientResponse> pending = Sinks.one();
+
+        StepVerifier.create(filter.filter(request("user-api"), request -> pending.asMono()))
+                .then(() -> assertThat(registry.get("synapse.client.requests.active").tag("service", "user-api")
+                        .gauge().value()).isEqualTo(1))
+                .then(() -> pending.tryEmitValue(ClientResponse.create(HttpStatus.NOT_FOUND).build()))
+                .expectNextCount(1)
+                .verifyComplete();
+        filter.filter(request("user-api"), request -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        StepVerifier.create(filter.filter(request("user-api"), request -> Mono.error(new IOException("reset"))))
+                .verifyError(IOException.class);
+        StepVerifier.create(filter.filter(request("user-api"), request -> Mono.never()))
+                .thenAwait(Duration.ofMillis(10))
+                .thenCancel()
+                .verify();
+
+        assertThat(List.of(count("user-api", "2xx"), count("user-api", "4xx"), count("user-api", "error"),
+                count("user-api", "cancelled"))).containsExactly(1L, 1L, 1L, 1L);
+        assertThat(registry.get("synapse.client.requests.active").tag("service", "user-api").gauge().value()).isZero();
+        assertThat(logs.list).isEmpty();
+    }
+
+    @Test
+    void sampledExchangesAreLoggedWithSecretsRedacted() {
+        ExchangeObservationFilter filter = new ExchangeObservationFilter(observation(1), null);
+
+        filter.filter(request("user-api"), request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header("Set-Cookie", "session=secret").build())).block();
+
+        assertThat(logs.list).singleElement().satisfies(event -> assertThat(event.getFormattedMessage())
+                .contains("service=user-api", "method=GET", "outcome=2xx", "status=200",
+                        "url=http://users/users/u1?token=***&page=***", "Authorization=***", "X-Request-Id=[r1]",
+                        "Set-Cookie=***")
+                .doesNotContain("secret"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.eainde.synapse.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpClientFactoryTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final LoopResources loops = LoopResources.create("test-http");
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final HttpClientFactory factory = new HttpClientFactory(loops, registry);
+    private DisposableServer server;
+
+    @AfterEach
+    void dispose() {
+        server.disposeNow();
+        factory.dispose();
+        loops.dispose();
+    }
+
+    private ExternalServiceProperties.ServiceConfig config(int maxConnections) {
+        ExternalServiceProperties.ServiceConfig config = new ExternalServiceProperties.ServiceConfig();
+        config.setBaseUrl("http://localhost:" + server.port());
+        config.getConnection().setMaxConnections(maxConnections);
+        return config;
+    }
+
+    @Test
+    void clientsOfOneNameShareItsPoolWhichPublishesGauges() {
+        server = HttpServer.create().port(0)
+                .handle((request, response) -> response.sendString(Mono.delay(Duration.ofMillis(50)).map(tick -> "ok")))
+                .bindNow();
+        HttpClient client = factory.create("user-api", config(2));
+        HttpClient again = factory.create("user-api", config(50)); // The pool already exists
+
+        List<String> bodies = Flux.range(0, 6)
+                .flatMap(i -> (i % 2 == 0 ? client : again).baseUrl(config(2).getBaseUrl())
+                        .get().uri("/").responseContent().aggregate().asString())
+                .collectList()
+                .block(TIMEOUT);
+
+        assertThat(bodies).hasSize(6).containsOnly("ok");
+        assertThat(registry.get("synapse.client.pool.max.connections").tag("pool", "user-api").gauge().value())
+                .isEqualTo(2);
+        assertThat(registry.get("synapse.client.pool.connections").tag("pool", "user-api").tag("state", "total")
+                .gauge().value()).isEqualTo(2);
+        assertThat(registry.get("synapse.client.pool.connections").tag("state", "active").gauge().value()).isZero();
+    }
+
+    @Test
+    void http2AndCompressionAreUsedWhenEnabled() {
+        server = HttpServer.create().port(0)
+                .protocol(HttpProtocol.H2C, HttpProtocol.HTTP11)
+                .compress(true)
+                // Echoes what the client accepts, in a body big enough to be compressed
+                .handle((request, response) -> response.sendString(
+                        Mono.just(request.requestHeaders().get("accept-encoding") + "\n" + "x".repeat(4096))))
+                .bindNow();
+        ExternalServiceProperties.ServiceConfig config = config(10);
+        config.getConnection().setHttp2(true);
+        config.getConnection().setCompress(true);
+
+        String result = factory.create("h2", config).baseUrl(config.getBaseUrl())
+                .get().uri("/")
+                .responseSingle((response, body) -> body.asString()
+                        .map(text -> response.version() + " " + text.substring(0, text.indexOf('\n'))))
+                .block(TIMEOUT);
+
+        assertThat(result).isEqualTo("HTTP/2.0 gzip");
+    }
+}
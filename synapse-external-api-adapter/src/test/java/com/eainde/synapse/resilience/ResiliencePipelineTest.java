@@ -0,0 +1,188 @@
+package com.eainde.synapse.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResiliencePipelineTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private double count(String name, String... tags) {
+        return registry.get(name).tags(tags).counter().count();
+    }
+
+    /**
+     * A call whose attempts fail with {@code error} until {@code failures} attempts were made.
+     */
+    private Mono<String> failing(int failures, Throwable error) {
+        return Mono.defer(() -> attempts.incrementAndGet() <= failures ? Mono.error(error) : Mono.just("ok"));
+    }
+
+    @Test
+    void limiterRejectsCallsOverTheLimitAndBacksOffOnFailures() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 10, 0.5, Duration.ofSeconds(1));
+        ResiliencePipeline pipeline = ResiliencePipeline.builder("users").limiter(limiter).meterRegistry(registry).build();
+
+        pipeline.decorate(Mono.never()).subscribe();
+        pipeline.decorate(Mono.never()).subscribe();
+        StepVerifier.create(pipeline.decorate(Mono.just("ok")))
+                .verifyErrorSatisfies(e -> assertThat(e).isInstanceOfSatisfying(RejectedCallException.class,
+                        rejected -> assertThat(rejected.getReason()).isEqualTo(RejectedCallException.Reason.LIMIT_EXCEEDED)));
+        assertThat(count("synapse.client.resilience.rejected", "reason", "limit_exceeded")).isEqualTo(1);
+
+        AimdLimiter idle = new AimdLimiter(4, 1, 10, 0.5, Duration.ofMillis(100));
+        idle.tryAcquire();
+        idle.tryAcquire();
+        idle.onSuccess(Duration.ofMillis(1).toNanos()); // Half the limit in use: grows
+        assertThat(idle.getLimit()).isEqualTo(5);
+        idle.onSuccess(Duration.ofMillis(500).toNanos()); // Too slow: backs off
+        assertThat(idle.getLimit()).isEqualTo(2);
+        idle.tryAcquire();
+        idle.onDropped();
+        assertThat(idle.getLimit()).isEqualTo(1);
+        assertThat(idle.getInFlight()).isZero();
+    }
+
+    @Test
+    void serviceFailuresAreRetriedButClientErrorsAreNot() {
+        ResiliencePipeline pipeline = ResiliencePipeline.builder("users")
+                .retry(3, Duration.ofMillis(1), Duration.ofMillis(5), 0.5)
+                .failurePredicate(ResiliencePipelineFactory::isServiceFailure)
+                .meterRegistry(registry)
+                .build();
+
+        StepVerifier.create(pipeline.decorate(failing(2, new IOException("reset"))))
+                .expectNext("ok")
+                .expectComplete()
+                .verify(TIMEOUT);
+        assertThat(attempts).hasValue(3);
+        assertThat(count("synapse.client.resilience.retries")).isEqualTo(2);
+
+        attempts.set(0);
+        WebClientResponseException badRequest = WebClientResponseException.create(
+                HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null);
+        StepVerifier.create(pipeline.decorate(failing(5, badRequest)))
+                .expectErrorMatches(badRequest::equals)
+                .verify(TIMEOUT);
+        assertThat(attempts).hasValue(1);
+
+        attempts.set(0);
+        StepVerifier.create(pipeline.decorate(failing(5, new IOException("down"))))
+                .expectErrorMessage("down")
+                .verify(TIMEOUT);
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void attemptsSlowerThanThePercentileAreHedged() {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 10, 0.5, Duration.ofSeconds(1));
+        ResiliencePipeline pipeline = ResiliencePipeline.builder("users")
+                .limiter(limiter)
+                .hedge(0.5, 16, 4, Duration.ofMillis(1))
+                .meterRegistry(registry)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            pipeline.decorate(Mono.just("warm-up")).block(TIMEOUT);
+        }
+
+        // The first attempt hangs; the hedge answers.
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(10)).map(tick -> "slow")
+                : Mono.just("hedged"));
+        StepVerifier.create(pipeline.decorate(call))
+                .expectNext("hedged")
+                .expectComplete()
+                .verify(TIMEOUT);
+
+        assertThat(attempts).hasValue(2);
+        assertThat(count("synapse.client.resilience.hedges")).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero(); // The losing attempt was cancelled
+
+        // An attempt that fails before the hedge delay fails at once.
+        attempts.set(0);
+        StepVerifier.create(pipeline.decorate(failing(1, new IOException("reset"))))
+                .expectErrorMessage("reset")
+                .verify(TIMEOUT);
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void openCircuitFailsFastUntilTrialCallsSucceed() {
+        AtomicLong now = new AtomicLong();
+        ResiliencePipeline pipeline = ResiliencePipeline.builder("users")
+                .circuitBreaker(0.5, 4, 4, Duration.ofSeconds(10), 2)
+                .nanoTime(now::get)
+                .meterRegistry(registry)
+                .build();
+
+        for (int i = 0; i < 4; i++) {
+            pipeline.decorate(i % 2 == 0 ? Mono.just("ok") : Mono.error(new IOException("down")))
+                    .onErrorResume(e -> Mono.empty()).block(TIMEOUT);
+        }
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        StepVerifier.create(pipeline.decorate(failing(0, null)))
+                .expectErrorSatisfies(e -> assertThat(((RejectedCallException) e).getReason())
+                        .isEqualTo(RejectedCallException.Reason.CIRCUIT_OPEN))
+                .verify(TIMEOUT);
+        assertThat(attempts).hasValue(0);
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        pipeline.decorate(Mono.just("trial")).block(TIMEOUT);
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        pipeline.decorate(Mono.just("trial")).block(TIMEOUT);
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(count("synapse.client.resilience.circuit.transitions", "state", "open")).isEqualTo(1);
+        assertThat(count("synapse.client.resilience.rejected", "reason", "circuit_open")).isEqualTo(1);
+    }
+
+    @Test
+    void aLateSuccessFromBeforeTheCircuitOpenedDoesNotCloseIt() {
+        AtomicLong now = new AtomicLong();
+        ResiliencePipeline pipeline = ResiliencePipeline.builder("users")
+                .circuitBreaker(0.5, 2, 2, Duration.ofSeconds(10), 1)
+                .nanoTime(now::get)
+                .meterRegistry(registry)
+                .build();
+
+        Sinks.One<String> slow = Sinks.one();
+        Mono<String> stale = pipeline.decorate(slow.asMono()).cache();
+        stale.subscribe(value -> {
+        }, e -> {
+        });
+        for (int i = 0; i < 2; i++) {
+            pipeline.decorate(Mono.error(new IOException("down"))).onErrorResume(e -> Mono.empty()).block(TIMEOUT);
+        }
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        Sinks.One<String> trial = Sinks.one();
+        pipeline.decorate(trial.asMono()).subscribe(value -> {
+        }, e -> {
+        });
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        // The slow call was permitted while closed; its success says nothing about the service now.
+        slow.tryEmitValue("late");
+        assertThat(stale.block(TIMEOUT)).isEqualTo("late");
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        trial.tryEmitError(new IOException("still down"));
+        assertThat(pipeline.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,109 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.exception.RenderingException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fans a batch of messages out over an executor and collects one {@link RenderResult} per message,
+ * in input order. Equal messages are rendered once per batch and share the result.
+ */
+final class BatchRenderer {
+
+    /** Executors.newVirtualThreadPerTaskExecutor(), when running on a JDK that has it. */
+    private static final MethodHandle VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+    private BatchRenderer() {
+    }
+
+    /**
+     * Renders on a fresh virtual-thread-per-task executor, or on the common pool on JDKs without virtual threads.
+     */
+    static List<RenderResult> renderAll(JsonFormatRenderer renderer, Collection<CanonicalFormMessage> messages,
+                                        TargetFormat format) {
+        if (VIRTUAL_THREAD_EXECUTOR == null) {
+            return renderAll(renderer, messages, format, ForkJoinPool.commonPool());
+        }
+        ExecutorService executor = newVirtualThreadExecutor();
+        try {
+            return renderAll(renderer, messages, format, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static List<RenderResult> renderAll(JsonFormatRenderer renderer, Collection<CanonicalFormMessage> messages,
+                                        TargetFormat format, Executor executor) {
+        Map<CanonicalFormMessage, CompletableFuture<RenderResult>> distinct = new LinkedHashMap<>();
+        List<CompletableFuture<RenderResult>> perMessage = new ArrayList<>(messages.size());
+        for (CanonicalFormMessage message : messages) {
+            perMessage.add(distinct.computeIfAbsent(message, m -> submit(renderer, m, format, executor)));
+        }
+
+        List<RenderResult> results = new ArrayList<>(perMessage.size());
+        int index = 0;
+        for (CanonicalFormMessage message : messages) {
+            RenderResult result = perMessage.get(index++).join();
+            // Duplicates share the rendered output but report their own message instance.
+            results.add(result.message() == message ? result : new RenderResult(message, result.output(), result.error()));
+        }
+        return results;
+    }
+
+    /**
+     * Schedules one render; an executor that rejects it, being saturated or shut down, fails that
+     * message only.
+     */
+    private static CompletableFuture<RenderResult> submit(JsonFormatRenderer renderer, CanonicalFormMessage message,
+                                                          TargetFormat format, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(() -> renderOne(renderer, message, format), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(RenderResult.failure(message,
+                    new RenderingException("Executor rejected the render.", "ERR_RENDER_REJECTED", null, e)));
+        }
+    }
+
+    private static RenderResult renderOne(JsonFormatRenderer renderer, CanonicalFormMessage message, TargetFormat format) {
+        try {
+            return RenderResult.success(message, renderer.render(message, format));
+        } catch (RenderingException e) {
+            return RenderResult.failure(message, e);
+        } catch (RuntimeException e) {
+            return RenderResult.failure(message,
+                    new RenderingException("Unexpected failure while rendering.", "ERR_RENDER_FAILED", null, e));
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invokeExact();
+        } catch (Throwable e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static MethodHandle findVirtualThreadExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
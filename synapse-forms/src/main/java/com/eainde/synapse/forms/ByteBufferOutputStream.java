@@ -0,0 +1,55 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.exception.OutputOverflowException;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes into a caller's {@link ByteBuffer} without an intermediate array. Once the buffer is full
+ * it keeps counting, so an overflow can report the size the output needs. Output is not staged:
+ * on overflow the buffer's remaining space already holds the part that fit.
+ */
+final class ByteBufferOutputStream extends OutputStream {
+
+    private final ByteBuffer target;
+    private final int start;
+    private final int available;
+    private int written;
+
+    ByteBufferOutputStream(ByteBuffer target) {
+        this.target = target;
+        this.start = target.position();
+        this.available = target.remaining();
+    }
+
+    @Override
+    public void write(int b) {
+        if (written < available) {
+            target.put((byte) b);
+        }
+        written++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (written + len <= available) {
+            target.put(b, off, len);
+        } else if (written < available) {
+            target.put(b, off, available - written);
+        }
+        written += len;
+    }
+
+    /**
+     * Returns the number of bytes written, or rewinds the buffer to its original position and
+     * throws if they did not fit; the bytes written up to the limit stay in the buffer.
+     */
+    int finish() {
+        if (written > available) {
+            target.position(start);
+            throw new OutputOverflowException(written, available);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,100 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.exception.OutputOverflowException;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decorator that serves repeat renders of the same form definition from a {@link RenderCache}.
+ * A hit skips bean validation, mapping and schema validation entirely. Failed renders are not cached.
+ */
+public class CachingJsonFormatRenderer implements JsonFormatRenderer {
+
+    private final JsonFormatRenderer delegate;
+    private final RenderCache cache;
+    private final ObjectMapper objectMapper;
+
+    public CachingJsonFormatRenderer(JsonFormatRenderer delegate, RenderCache cache, ObjectMapper objectMapper) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String render(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
+        return new String(lookup(message, format).utf8(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a copy of the cached node, so callers cannot mutate the cached entry.
+     */
+    @Override
+    public JsonNode renderToNode(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
+        return lookup(message, format).node().deepCopy();
+    }
+
+    @Override
+    public void render(CanonicalFormMessage message, TargetFormat format, OutputStream out) throws RenderingException {
+        byte[] utf8 = lookup(message, format).utf8();
+        try {
+            out.write(utf8);
+            out.flush();
+        } catch (IOException e) {
+            throw new RenderingException("Failed to write rendered output.", "ERR_OUTPUT_IO", null, e);
+        }
+    }
+
+    /**
+     * Returns a copy of the cached bytes, so callers cannot mutate the cached entry.
+     */
+    @Override
+    public byte[] renderToBytes(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
+        return lookup(message, format).utf8().clone();
+    }
+
+    @Override
+    public int renderTo(CanonicalFormMessage message, TargetFormat format, ByteBuffer target) throws RenderingException {
+        byte[] utf8 = lookup(message, format).utf8();
+        if (utf8.length > target.remaining()) {
+            throw new OutputOverflowException(utf8.length, target.remaining());
+        }
+        target.put(utf8);
+        return utf8.length;
+    }
+
+    @Override
+    public void render(CanonicalFormMessage message, TargetFormat format, Writer writer) throws RenderingException {
+        try {
+            writer.write(render(message, format));
+            writer.flush();
+        } catch (IOException e) {
+            throw new RenderingException("Failed to write rendered output.", "ERR_OUTPUT_IO", null, e);
+        }
+    }
+
+    public RenderCache getCache() {
+        return cache;
+    }
+
+    private RenderCache.Entry lookup(CanonicalFormMessage message, TargetFormat format) {
+        RenderCache.Entry entry = cache.get(message, format);
+        if (entry != null) {
+            return entry;
+        }
+        JsonNode node = delegate.renderToNode(message, format);
+        try {
+            return cache.put(message, format, node, objectMapper.writeValueAsBytes(node));
+        } catch (JsonProcessingException e) {
+            throw new RenderingException("Failed to serialize rendered output.", "ERR_OUTPUT_IO", null, e);
+        }
+    }
+}
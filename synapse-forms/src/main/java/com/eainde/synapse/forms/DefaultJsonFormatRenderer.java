@@ -4,74 +4,281 @@ import com.eainde.synapse.forms.exception.RenderingException;
 import com.eainde.synapse.forms.exception.ValidationError;
 import com.eainde.synapse.forms.adapter.JsonFormAdapter;
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.instrumentation.RenderInstrumentation;
+import com.eainde.synapse.forms.instrumentation.RenderStage;
+import com.eainde.synapse.forms.validation.BeanValidationMemo;
+import com.eainde.synapse.forms.validation.SchemaValidationPolicy;
 import com.eainde.synapse.forms.validation.SchemaValidator;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
-import jakarta.validation.ConstraintViolation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import jakarta.validation.Validator;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Default implementation of the renderer.
  * Orchestrates bean validation, mapping, and JSON schema validation.
+ * Which renders are schema-checked is decided by the {@link SchemaValidationPolicy}; stage timings
+ * and failures are reported to the {@link RenderInstrumentation}.
  */
 public class DefaultJsonFormatRenderer implements JsonFormatRenderer {
 
-    private final Validator beanValidator;
+    private final BeanValidationMemo beanValidations;
     private final SchemaValidator schemaValidator;
     private final Map<TargetFormat, JsonFormAdapter> mappers;
+    private final ObjectMapper objectMapper;
+    private final SchemaValidationPolicy validationPolicy;
+    private final RenderInstrumentation instrumentation;
 
     public DefaultJsonFormatRenderer(Validator beanValidator,
                                      SchemaValidator schemaValidator,
                                      Map<TargetFormat, JsonFormAdapter> mappers) {
-        this.beanValidator = beanValidator;
+        this(beanValidator, schemaValidator, mappers, new ObjectMapper());
+    }
+
+    public DefaultJsonFormatRenderer(Validator beanValidator,
+                                     SchemaValidator schemaValidator,
+                                     Map<TargetFormat, JsonFormAdapter> mappers,
+                                     ObjectMapper objectMapper) {
+        this(beanValidator, schemaValidator, mappers, objectMapper, SchemaValidationPolicy.always());
+    }
+
+    public DefaultJsonFormatRenderer(Validator beanValidator,
+                                     SchemaValidator schemaValidator,
+                                     Map<TargetFormat, JsonFormAdapter> mappers,
+                                     ObjectMapper objectMapper,
+                                     SchemaValidationPolicy validationPolicy) {
+        this(beanValidator, schemaValidator, mappers, objectMapper, validationPolicy, RenderInstrumentation.NO_OP);
+    }
+
+    public DefaultJsonFormatRenderer(Validator beanValidator,
+                                     SchemaValidator schemaValidator,
+                                     Map<TargetFormat, JsonFormAdapter> mappers,
+                                     ObjectMapper objectMapper,
+                                     SchemaValidationPolicy validationPolicy,
+                                     RenderInstrumentation instrumentation) {
+        this.beanValidations = new BeanValidationMemo(beanValidator);
         this.schemaValidator = schemaValidator;
         this.mappers = mappers;
+        this.objectMapper = objectMapper;
+        this.validationPolicy = validationPolicy;
+        this.instrumentation = instrumentation;
     }
 
     @Override
     public String render(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
-        JsonNode node = renderToNode(message, format);
-        return node.toString();
+        RenderProbe probe = RenderProbe.start(instrumentation, message, format);
+        try {
+            JsonNode node = renderToNode(message, format, probe);
+            probe.beginStage();
+            String output = node.toString();
+            probe.endStage(RenderStage.SERIALIZATION);
+            probe.completed(output.length());
+            return output;
+        } catch (RenderingException e) {
+            probe.failed(e.getErrorCode());
+            throw e;
+        } catch (RuntimeException e) {
+            probe.failed("ERR_INTERNAL");
+            throw e;
+        }
     }
 
     @Override
     public JsonNode renderToNode(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
-        // 1. Get the correct mapper
-        JsonFormAdapter mapper = mappers.get(format);
-        if (mapper == null) {
-            throw new RenderingException("No mapper configured for format: " + format, "ERR_NO_MAPPER", null);
+        RenderProbe probe = RenderProbe.start(instrumentation, message, format);
+        try {
+            JsonNode node = renderToNode(message, format, probe);
+            probe.completed();
+            return node;
+        } catch (RenderingException e) {
+            probe.failed(e.getErrorCode());
+            throw e;
+        } catch (RuntimeException e) {
+            probe.failed("ERR_INTERNAL");
+            throw e;
         }
+    }
+
+    private JsonNode renderToNode(CanonicalFormMessage message, TargetFormat format, RenderProbe probe) {
+        // 1. Get the correct mapper
+        JsonFormAdapter mapper = getMapper(format);
 
         // 2. Perform Jakarta Bean Validation on the input POJO
+        probe.beginStage();
         validateBean(message);
+        probe.endStage(RenderStage.BEAN_VALIDATION);
 
         // 3. Perform the mapping (POJO -> JsonNode)
+        probe.beginStage();
         JsonNode outputNode = mapper.map(message);
+        probe.endStage(RenderStage.MAPPING);
 
-        // 4. Perform JSON Schema validation on the output JsonNode
-        List<ValidationError> schemaErrors = schemaValidator.validate(outputNode, format);
-        if (!schemaErrors.isEmpty()) {
-            throw new RenderingException("Output JSON failed schema validation.", "ERR_SCHEMA_VALIDATION", schemaErrors);
+        // 4. Perform JSON Schema validation on the output JsonNode, unless the policy skips it
+        if (validationPolicy.shouldValidate(message, format)) {
+            probe.beginStage();
+            validateSchema(message, outputNode, format);
+            probe.endStage(RenderStage.SCHEMA_VALIDATION);
         }
 
         // 5. Return the valid node
         return outputNode;
     }
 
+    @Override
+    public void render(CanonicalFormMessage message, TargetFormat format, OutputStream out) throws RenderingException {
+        RenderProbe probe = RenderProbe.start(instrumentation, message, format);
+        try {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(probe.counting(out), JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // A failed unchecked render must not be closed into a well-formed document.
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                render(message, format, generator, probe);
+            } catch (IOException e) {
+                throw new RenderingException("Failed to write rendered output.", "ERR_OUTPUT_IO", null, e);
+            }
+            probe.completed();
+        } catch (RenderingException e) {
+            probe.failed(e.getErrorCode());
+            throw e;
+        } catch (RuntimeException e) {
+            probe.failed("ERR_INTERNAL");
+            throw e;
+        }
+    }
+
+    /**
+     * Renders into a {@link ByteArrayBuilder} backed by Jackson's recycled buffers, so the only
+     * full-size allocation is the returned array.
+     */
+    @Override
+    public byte[] renderToBytes(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
+        BufferRecycler recycler = objectMapper.getFactory()._getBufferRecycler();
+        ByteArrayBuilder builder = new ByteArrayBuilder(recycler);
+        try {
+            render(message, format, builder);
+            return builder.getClearAndRelease();
+        } finally {
+            builder.release();
+            recycler.releaseToPool();
+        }
+    }
+
+    @Override
+    public void render(CanonicalFormMessage message, TargetFormat format, Writer writer) throws RenderingException {
+        RenderProbe probe = RenderProbe.start(instrumentation, message, format);
+        try {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(probe.counting(writer))) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // A failed unchecked render must not be closed into a well-formed document.
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                render(message, format, generator, probe);
+            } catch (IOException e) {
+                throw new RenderingException("Failed to write rendered output.", "ERR_OUTPUT_IO", null, e);
+            }
+            probe.completed();
+        } catch (RenderingException e) {
+            probe.failed(e.getErrorCode());
+            throw e;
+        } catch (RuntimeException e) {
+            probe.failed("ERR_INTERNAL");
+            throw e;
+        }
+    }
+
+    /**
+     * Streams the rendered output into a caller-owned generator.
+     * When the policy asks for a schema check, the adapter writes the records once into a token
+     * buffer, the check reads its tree from that buffer, and only a valid document is replayed into
+     * the generator. Otherwise the adapter writes straight into the generator, and a mapping failure
+     * leaves what was written so far in it.
+     *
+     * @param message   The canonical form message object.
+     * @param format    The desired output format.
+     * @param generator The generator to write the JSON to. It is flushed but not closed.
+     * @throws IOException if the generator fails to write.
+     */
+    public void render(CanonicalFormMessage message, TargetFormat format, JsonGenerator generator) throws IOException {
+        RenderProbe probe = RenderProbe.start(instrumentation, message, format);
+        try {
+            render(message, format, generator, probe);
+            probe.completed();
+        } catch (RenderingException e) {
+            probe.failed(e.getErrorCode());
+            throw e;
+        } catch (RuntimeException e) {
+            probe.failed("ERR_INTERNAL");
+            throw e;
+        } catch (IOException e) {
+            probe.failed("ERR_OUTPUT_IO");
+            throw e;
+        }
+    }
+
+    private void render(CanonicalFormMessage message, TargetFormat format, JsonGenerator generator,
+                        RenderProbe probe) throws IOException {
+        JsonFormAdapter mapper = getMapper(format);
+        probe.beginStage();
+        validateBean(message);
+        probe.endStage(RenderStage.BEAN_VALIDATION);
+
+        if (!validationPolicy.shouldValidate(message, format)) {
+            // Mapping and serialization are a single pass here, reported as MAPPING.
+            probe.beginStage();
+            mapper.write(message, generator);
+            generator.flush();
+            probe.endStage(RenderStage.MAPPING);
+            return;
+        }
+
+        probe.beginStage();
+        TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+        mapper.write(message, buffer);
+        probe.endStage(RenderStage.MAPPING);
+
+        probe.beginStage();
+        JsonNode outputNode = objectMapper.readTree(buffer.asParser());
+        validateSchema(message, outputNode, format);
+        probe.endStage(RenderStage.SCHEMA_VALIDATION);
+
+        probe.beginStage();
+        buffer.serialize(generator);
+        generator.flush();
+        probe.endStage(RenderStage.SERIALIZATION);
+    }
+
+    private JsonFormAdapter getMapper(TargetFormat format) {
+        JsonFormAdapter mapper = mappers.get(format);
+        if (mapper == null) {
+            throw new RenderingException("No mapper configured for format: " + format, "ERR_NO_MAPPER", null);
+        }
+        return mapper;
+    }
+
+    private void validateSchema(CanonicalFormMessage message, JsonNode outputNode, TargetFormat format) {
+        List<ValidationError> schemaErrors = schemaValidator.validate(outputNode, format);
+        validationPolicy.recordOutcome(message, format, schemaErrors);
+        if (!schemaErrors.isEmpty()) {
+            throw new RenderingException("Output JSON failed schema validation.", "ERR_SCHEMA_VALIDATION", schemaErrors);
+        }
+    }
+
+    /**
+     * Validates the message once; repeat renders of an equal message, and messages built with
+     * {@code buildValidated()}, are answered from this renderer's {@link BeanValidationMemo}.
+     */
     private void validateBean(CanonicalFormMessage message) {
-        Set<ConstraintViolation<CanonicalFormMessage>> violations = beanValidator.validate(message);
-        if (!violations.isEmpty()) {
-            List<ValidationError> errors = violations.stream()
-                    .map(v -> new ValidationError(
-                            "ERR_BEAN_VALIDATION",
-                            v.getMessage(),
-                            v.getPropertyPath().toString()
-                    ))
-                    .collect(Collectors.toList());
+        List<ValidationError> errors = beanValidations.validate(message);
+        if (!errors.isEmpty()) {
             throw new RenderingException("Input CanonicalFormMessage failed validation.", "ERR_BEAN_VALIDATION", errors);
         }
     }
@@ -0,0 +1,350 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.adapter.JsonFormAdapter;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.engine.FormIndex;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import com.eainde.synapse.forms.validation.BeanValidationMemo;
+import com.eainde.synapse.forms.validation.SchemaValidator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.Validator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Re-renders a changed form definition by patching the previous output.
+ * <p>
+ * The previous and new messages are diffed structurally: entries of {@code fields} are compared by
+ * key, and the {@code layout} tree element by element, descending into groups and rows whose own
+ * properties are unchanged. Only changed fields and layout elements are re-mapped and schema-checked
+ * against their schema definitions. The result carries the new document and an RFC 6902 JSON Patch
+ * from the previous output to it.
+ * <p>
+ * Changes that can affect document-level constraints are checked against the whole schema instead:
+ * formId, schemaVersion, the length of the top-level layout, adding or removing a field, and layout
+ * edits that change which fields are referenced. Adapters that cannot map fragments fall back to a
+ * full render, with a patch replacing the whole document.
+ */
+public class IncrementalRenderer {
+
+    private final JsonFormatRenderer renderer;
+    private final BeanValidationMemo beanValidations;
+    private final SchemaValidator schemaValidator;
+    private final Map<TargetFormat, JsonFormAdapter> mappers;
+
+    public IncrementalRenderer(JsonFormatRenderer renderer,
+                               Validator beanValidator,
+                               SchemaValidator schemaValidator,
+                               Map<TargetFormat, JsonFormAdapter> mappers) {
+        this.renderer = renderer;
+        this.beanValidations = new BeanValidationMemo(beanValidator);
+        this.schemaValidator = schemaValidator;
+        this.mappers = mappers;
+    }
+
+    /**
+     * The new document and the patch that turns the previous output into it.
+     *
+     * @param document   The rendered new message.
+     * @param patch      RFC 6902 operations to apply to the previous output.
+     * @param fullRender True if the message was rendered from scratch and the patch replaces the whole document.
+     */
+    public record IncrementalRender(JsonNode document, ArrayNode patch, boolean fullRender) {
+    }
+
+    /**
+     * Renders {@code next} by patching the output previously rendered for {@code previous}.
+     * Neither argument is modified.
+     *
+     * @param previous       The message the previous output was rendered from.
+     * @param previousOutput The previous output, as returned by the renderer for the same format.
+     * @param next           The changed message.
+     * @param format         The desired output format.
+     * @throws RenderingException if validation or mapping of the new message fails.
+     */
+    public IncrementalRender rerender(CanonicalFormMessage previous, JsonNode previousOutput,
+                                      CanonicalFormMessage next, TargetFormat format) throws RenderingException {
+        JsonFormAdapter mapper = mappers.get(format);
+        if (mapper == null) {
+            throw new RenderingException("No mapper configured for format: " + format, "ERR_NO_MAPPER", null);
+        }
+        validateBean(next);
+
+        if (previous == null || previousOutput == null || !previousOutput.isObject()
+                || !previousOutput.path("fields").isObject()) {
+            return fullRender(next, format);
+        }
+
+        Diff diff = new Diff(mapper, (ObjectNode) previousOutput.deepCopy());
+        if (!diff.apply(previous, next)) {
+            return fullRender(next, format);
+        }
+
+        List<ValidationError> errors = diff.wholeDocument
+                ? schemaValidator.validate(diff.document, format)
+                : diff.validateFragments(format);
+        if (!errors.isEmpty()) {
+            throw new RenderingException("Output JSON failed schema validation.", "ERR_SCHEMA_VALIDATION", errors);
+        }
+        return new IncrementalRender(diff.document, diff.patch, false);
+    }
+
+    private IncrementalRender fullRender(CanonicalFormMessage next, TargetFormat format) {
+        JsonNode document = renderer.renderToNode(next, format);
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        patch.addObject().put("op", "replace").put("path", "").set("value", document.deepCopy());
+        return new IncrementalRender(document, patch, true);
+    }
+
+    private void validateBean(CanonicalFormMessage message) {
+        List<ValidationError> errors = beanValidations.validate(message);
+        if (!errors.isEmpty()) {
+            throw new RenderingException("Input CanonicalFormMessage failed validation.", "ERR_BEAN_VALIDATION", errors);
+        }
+    }
+
+    private static String escape(String key) {
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * The JSONPath location of a field, in the dot or bracket notation the schema validator uses.
+     */
+    static String fieldLocation(String key) {
+        return FormIndex.memberLocation("$.fields", key);
+    }
+
+    private static Set<String> fieldRefs(List<LayoutElement> layout) {
+        Set<String> keys = new HashSet<>();
+        if (layout != null) {
+            collectFieldRefs(layout, keys);
+        }
+        return keys;
+    }
+
+    private static void collectFieldRefs(List<LayoutElement> elements, Set<String> keys) {
+        for (LayoutElement element : elements) {
+            if (element instanceof FieldRef ref) {
+                keys.add(ref.key());
+            } else if (element instanceof Group group && group.elements() != null) {
+                collectFieldRefs(group.elements(), keys);
+            } else if (element instanceof Row row && row.elements() != null) {
+                collectFieldRefs(row.elements(), keys);
+            }
+        }
+    }
+
+    /**
+     * Applies the differences between two messages to a copy of the previous output,
+     * recording patch operations and the fragments to validate.
+     */
+    private final class Diff {
+
+        private final JsonFormAdapter mapper;
+        private final ObjectNode document;
+        private final ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        private final List<Fragment> fragments = new ArrayList<>();
+        private boolean wholeDocument;
+
+        private Diff(JsonFormAdapter mapper, ObjectNode document) {
+            this.mapper = mapper;
+            this.document = document;
+        }
+
+        /**
+         * @return false if the adapter cannot map fragments.
+         */
+        boolean apply(CanonicalFormMessage previous, CanonicalFormMessage next) {
+            diffScalar("schemaVersion", previous.schemaVersion(), next.schemaVersion());
+            diffScalar("formId", previous.formId(), next.formId());
+            if (!Objects.equals(previous.layout(), next.layout())
+                    && !fieldRefs(previous.layout()).equals(fieldRefs(next.layout()))) {
+                // A reference may now point at a missing field, which fragments cannot show.
+                wholeDocument = true;
+            }
+            return diffLayout(previous.layout(), next.layout()) && diffFields(previous.fields(), next.fields());
+        }
+
+        List<ValidationError> validateFragments(TargetFormat format) {
+            List<ValidationError> errors = new ArrayList<>();
+            for (Fragment fragment : fragments) {
+                errors.addAll(schemaValidator.validateDefinition(fragment.node(), format, fragment.definition(),
+                        fragment.location()));
+            }
+            return errors;
+        }
+
+        private void diffScalar(String name, String previous, String next) {
+            if (Objects.equals(previous, next)) {
+                return;
+            }
+            wholeDocument = true;
+            if (next == null) {
+                document.remove(name);
+                operation("remove", "/" + name, null);
+            } else {
+                operation(document.has(name) ? "replace" : "add", "/" + name, document.textNode(next));
+                document.put(name, next);
+            }
+        }
+
+        private boolean diffFields(Map<String, FieldDefinition> previous, Map<String, FieldDefinition> next) {
+            Map<String, FieldDefinition> before = previous == null ? Map.of() : previous;
+            Map<String, FieldDefinition> after = next == null ? Map.of() : next;
+            ObjectNode fields = (ObjectNode) document.get("fields");
+
+            TreeSet<String> keys = new TreeSet<>(before.keySet());
+            keys.addAll(after.keySet());
+            boolean added = false;
+            for (String key : keys) {
+                FieldDefinition oldField = before.get(key);
+                FieldDefinition newField = after.get(key);
+                if (Objects.equals(oldField, newField)) {
+                    continue;
+                }
+                String pointer = "/fields/" + escape(key);
+                if (oldField == null || newField == null) {
+                    // The set of fields changed, and with it what the layout can reference.
+                    wholeDocument = true;
+                }
+                if (newField == null) {
+                    fields.remove(key);
+                    operation("remove", pointer, null);
+                    continue;
+                }
+                JsonNode mapped = mapper.mapField(newField);
+                if (mapped == null) {
+                    return false;
+                }
+                added |= oldField == null;
+                operation(oldField == null ? "add" : "replace", pointer, mapped);
+                fields.set(key, mapped);
+                fragments.add(new Fragment(mapped, "fieldDefinition", fieldLocation(key)));
+            }
+            if (added) {
+                // Keep the fields in key order, as the deterministic mapper writes them.
+                TreeMap<String, JsonNode> sorted = new TreeMap<>();
+                Iterator<Map.Entry<String, JsonNode>> entries = fields.fields();
+                while (entries.hasNext()) {
+                    Map.Entry<String, JsonNode> entry = entries.next();
+                    sorted.put(entry.getKey(), entry.getValue());
+                }
+                fields.removeAll();
+                fields.setAll(sorted);
+            }
+            return true;
+        }
+
+        private boolean diffLayout(List<LayoutElement> previous, List<LayoutElement> next) {
+            if (Objects.equals(previous, next)) {
+                return true;
+            }
+            JsonNode layout = document.get("layout");
+            if (previous == null || next == null || previous.size() != next.size() || layout == null || !layout.isArray()) {
+                // The top-level layout changed shape; its constraints apply to the document as a whole.
+                wholeDocument = true;
+                if (next == null) {
+                    document.remove("layout");
+                    operation("remove", "/layout", null);
+                    return true;
+                }
+                ArrayNode mapped = JsonNodeFactory.instance.arrayNode(next.size());
+                for (LayoutElement element : next) {
+                    JsonNode node = mapper.mapLayoutElement(element);
+                    if (node == null) {
+                        return false;
+                    }
+                    mapped.add(node);
+                }
+                operation(layout == null ? "add" : "replace", "/layout", mapped);
+                document.set("layout", mapped);
+                return true;
+            }
+            return diffElements(previous, next, (ArrayNode) layout, "/layout", "$.layout");
+        }
+
+        /**
+         * Diffs two element lists of equal size, patching the rendered array in place.
+         */
+        private boolean diffElements(List<LayoutElement> previous, List<LayoutElement> next, ArrayNode rendered,
+                                     String pointer, String location) {
+            for (int i = 0; i < next.size(); i++) {
+                LayoutElement oldElement = previous.get(i);
+                LayoutElement newElement = next.get(i);
+                if (Objects.equals(oldElement, newElement)) {
+                    continue;
+                }
+                String elementPointer = pointer + "/" + i;
+                String elementLocation = location + "[" + i + "]";
+                JsonNode children = rendered.get(i).path("elements");
+                if (sameContainer(oldElement, newElement) && children.isArray()
+                        && children.size() == elements(newElement).size()) {
+                    if (!diffElements(elements(oldElement), elements(newElement), (ArrayNode) children,
+                            elementPointer + "/elements", elementLocation + ".elements")) {
+                        return false;
+                    }
+                    continue;
+                }
+                JsonNode mapped = mapper.mapLayoutElement(newElement);
+                if (mapped == null) {
+                    return false;
+                }
+                operation("replace", elementPointer, mapped);
+                rendered.set(i, mapped);
+                fragments.add(new Fragment(mapped, "layoutElement", elementLocation));
+            }
+            return true;
+        }
+
+        /**
+         * True for two groups or two rows that differ only inside equally long element lists.
+         */
+        private boolean sameContainer(LayoutElement previous, LayoutElement next) {
+            if (previous instanceof Group oldGroup && next instanceof Group newGroup) {
+                return Objects.equals(oldGroup.labelKey(), newGroup.labelKey())
+                        && Objects.equals(oldGroup.visibilityRules(), newGroup.visibilityRules())
+                        && sameSize(oldGroup.elements(), newGroup.elements());
+            }
+            if (previous instanceof Row oldRow && next instanceof Row newRow) {
+                return Objects.equals(oldRow.visibilityRules(), newRow.visibilityRules())
+                        && sameSize(oldRow.elements(), newRow.elements());
+            }
+            return false;
+        }
+
+        private boolean sameSize(List<LayoutElement> previous, List<LayoutElement> next) {
+            return previous != null && next != null && previous.size() == next.size();
+        }
+
+        private List<LayoutElement> elements(LayoutElement element) {
+            return element instanceof Group group ? group.elements() : ((Row) element).elements();
+        }
+
+        private void operation(String op, String path, JsonNode value) {
+            ObjectNode operation = patch.addObject().put("op", op).put("path", path);
+            if (value != null) {
+                operation.set("value", value.deepCopy());
+            }
+        }
+    }
+
+    private record Fragment(JsonNode node, String definition, String location) {
+    }
+}
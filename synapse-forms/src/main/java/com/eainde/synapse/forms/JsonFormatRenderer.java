@@ -4,6 +4,14 @@ import com.eainde.synapse.forms.exception.RenderingException;
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * Public API for the form rendering library.
  */
@@ -28,4 +36,86 @@ public interface JsonFormatRenderer {
      * @throws RenderingException if validation or mapping fails.
      */
     JsonNode renderToNode(CanonicalFormMessage message, TargetFormat format) throws RenderingException;
+
+    /**
+     * Renders the canonical message as UTF-8 JSON straight into the given stream.
+     * Nothing is written if validation fails. When the output schema is not checked, the JSON is
+     * streamed as it is mapped, so a mapping failure can leave an unterminated prefix in the stream.
+     * The stream is flushed but not closed.
+     *
+     * @param message The canonical form message object.
+     * @param format  The desired output format.
+     * @param out     The stream to write the JSON to.
+     * @throws RenderingException if validation, mapping or writing fails.
+     */
+    void render(CanonicalFormMessage message, TargetFormat format, OutputStream out) throws RenderingException;
+
+    /**
+     * Renders the canonical message as JSON straight into the given writer.
+     * Nothing is written if validation fails. When the output schema is not checked, the JSON is
+     * streamed as it is mapped, so a mapping failure can leave an unterminated prefix in the writer.
+     * The writer is flushed but not closed.
+     *
+     * @param message The canonical form message object.
+     * @param format  The desired output format.
+     * @param writer  The writer to write the JSON to.
+     * @throws RenderingException if validation, mapping or writing fails.
+     */
+    void render(CanonicalFormMessage message, TargetFormat format, Writer writer) throws RenderingException;
+
+    /**
+     * Renders the canonical message as UTF-8 JSON bytes, ready for an HTTP body, a socket or a queue.
+     *
+     * @param message The canonical form message object.
+     * @param format  The desired output format.
+     * @return The UTF-8 encoded JSON. Its length is the exact output size.
+     * @throws RenderingException if validation or mapping fails.
+     */
+    default byte[] renderToBytes(CanonicalFormMessage message, TargetFormat format) throws RenderingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(message, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders the canonical message as UTF-8 JSON into the remaining space of the buffer, starting
+     * at its position, which is advanced past the output.
+     *
+     * @param message The canonical form message object.
+     * @param format  The desired output format.
+     * @param target  The buffer to write to.
+     * @return The number of bytes written.
+     * @throws com.eainde.synapse.forms.exception.OutputOverflowException if the output does not fit;
+     *         it carries the required size. The buffer's position is left unchanged, but the part of
+     *         the output that fit has already overwritten the bytes between position and limit.
+     * @throws RenderingException if validation or mapping fails.
+     */
+    default int renderTo(CanonicalFormMessage message, TargetFormat format, ByteBuffer target) throws RenderingException {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(target);
+        render(message, format, out);
+        return out.finish();
+    }
+
+    /**
+     * Renders a batch of messages in parallel on virtual threads (or the common pool on JDKs without them).
+     *
+     * @param messages The messages to render. Equal messages are rendered once.
+     * @param format   The desired output format.
+     * @return One result per message, in input order. A failed message does not fail the batch.
+     */
+    default List<RenderResult> renderAll(Collection<CanonicalFormMessage> messages, TargetFormat format) {
+        return BatchRenderer.renderAll(this, messages, format);
+    }
+
+    /**
+     * Renders a batch of messages in parallel on the given executor.
+     *
+     * @param messages The messages to render. Equal messages are rendered once.
+     * @param format   The desired output format.
+     * @param executor The executor to render on.
+     * @return One result per message, in input order. A failed message does not fail the batch.
+     */
+    default List<RenderResult> renderAll(Collection<CanonicalFormMessage> messages, TargetFormat format, Executor executor) {
+        return BatchRenderer.renderAll(this, messages, format, executor);
+    }
 }
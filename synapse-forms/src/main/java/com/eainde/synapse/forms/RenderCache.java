@@ -0,0 +1,163 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.FormFingerprint;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of rendered outputs, keyed by the {@link FormFingerprint} of a
+ * {@link CanonicalFormMessage} and the {@link TargetFormat}.
+ * The fingerprint is digested once per message instance, so a lookup neither hashes nor compares
+ * the record tree; equal messages built separately share an entry.
+ */
+public class RenderCache {
+
+    private final int maximumSize;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier ticker;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private RenderCache(Builder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.expireAfterWriteNanos = builder.expireAfterWrite == null ? Long.MAX_VALUE : builder.expireAfterWrite.toNanos();
+        this.ticker = builder.ticker;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Looks up a rendered output, counting a hit or a miss.
+     *
+     * @return The cached entry, or {@code null} if absent or expired.
+     */
+    public Entry get(CanonicalFormMessage message, TargetFormat format) {
+        Key key = new Key(message, format);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a rendered output, evicting the least recently used entries beyond the maximum size.
+     * The node is kept private to the cache; callers must hand out copies.
+     */
+    public Entry put(CanonicalFormMessage message, TargetFormat format, JsonNode node, byte[] utf8) {
+        Entry entry = new Entry(node, utf8, ticker.getAsLong());
+        synchronized (entries) {
+            entries.put(new Key(message, format), entry);
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maximumSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return entry;
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public RenderCacheStats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new RenderCacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size);
+    }
+
+    private boolean isExpired(Entry entry) {
+        return ticker.getAsLong() - entry.writtenAt >= expireAfterWriteNanos;
+    }
+
+    /**
+     * A cached output: the validated node and its UTF-8 serialization.
+     */
+    public static final class Entry {
+        private final JsonNode node;
+        private final byte[] utf8;
+        private final long writtenAt;
+
+        private Entry(JsonNode node, byte[] utf8, long writtenAt) {
+            this.node = node;
+            this.utf8 = utf8;
+            this.writtenAt = writtenAt;
+        }
+
+        JsonNode node() {
+            return node;
+        }
+
+        byte[] utf8() {
+            return utf8;
+        }
+    }
+
+    private record Key(FormFingerprint fingerprint, TargetFormat format) {
+
+        private Key(CanonicalFormMessage message, TargetFormat format) {
+            this(FormFingerprint.of(message), format);
+        }
+    }
+
+    public static class Builder {
+        private int maximumSize = 256;
+        private Duration expireAfterWrite;
+        private LongSupplier ticker = System::nanoTime;
+
+        public Builder maximumSize(int maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be positive");
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = Objects.requireNonNull(expireAfterWrite);
+            return this;
+        }
+
+        /**
+         * Overrides the nanosecond time source, for tests.
+         */
+        Builder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public RenderCache build() {
+            return new RenderCache(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.eainde.synapse.forms;
+
+/**
+ * Point-in-time snapshot of {@link RenderCache} counters.
+ */
+public record RenderCacheStats(
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long expiredCount,
+        int size
+) {
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
@@ -0,0 +1,136 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.instrumentation.RenderInstrumentation;
+import com.eainde.synapse.forms.instrumentation.RenderStage;
+import com.eainde.synapse.forms.instrumentation.ThreadAllocation;
+
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Measures one render for a {@link RenderInstrumentation}. With instrumentation disabled a shared
+ * inert probe is used, so an uninstrumented render reads no clocks and allocates nothing.
+ */
+final class RenderProbe {
+
+    private static final RenderProbe DISABLED = new RenderProbe(RenderInstrumentation.NO_OP, null, null, false);
+
+    private final RenderInstrumentation instrumentation;
+    private final TargetFormat format;
+    private final String formId;
+    private final boolean sampleAllocations;
+    private long stageStartNanos;
+    private long stageStartAllocated;
+    private long outputSize = -1;
+
+    private RenderProbe(RenderInstrumentation instrumentation, TargetFormat format, String formId,
+                        boolean sampleAllocations) {
+        this.instrumentation = instrumentation;
+        this.format = format;
+        this.formId = formId;
+        this.sampleAllocations = sampleAllocations;
+    }
+
+    static RenderProbe start(RenderInstrumentation instrumentation, CanonicalFormMessage message, TargetFormat format) {
+        if (!instrumentation.isEnabled()) {
+            return DISABLED;
+        }
+        return new RenderProbe(instrumentation, format, message.formId(), instrumentation.sampleAllocations());
+    }
+
+    boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    void beginStage() {
+        if (this == DISABLED) {
+            return;
+        }
+        if (sampleAllocations) {
+            stageStartAllocated = ThreadAllocation.currentThreadAllocatedBytes();
+        }
+        stageStartNanos = System.nanoTime();
+    }
+
+    void endStage(RenderStage stage) {
+        if (this == DISABLED) {
+            return;
+        }
+        long duration = System.nanoTime() - stageStartNanos;
+        long allocated = sampleAllocations ? ThreadAllocation.currentThreadAllocatedBytes() - stageStartAllocated : -1;
+        instrumentation.stageCompleted(stage, format, formId, duration, allocated);
+    }
+
+    void completed() {
+        if (this != DISABLED) {
+            instrumentation.renderCompleted(format, formId, outputSize);
+        }
+    }
+
+    void completed(long outputSize) {
+        this.outputSize = outputSize;
+        completed();
+    }
+
+    void failed(String errorCode) {
+        if (this != DISABLED) {
+            instrumentation.renderFailed(format, formId, errorCode);
+        }
+    }
+
+    /**
+     * Wraps the stream so the bytes written are reported on {@link #completed()}.
+     */
+    OutputStream counting(OutputStream out) {
+        if (this == DISABLED) {
+            return out;
+        }
+        outputSize = 0;
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                outputSize++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                outputSize += len;
+            }
+        };
+    }
+
+    /**
+     * Wraps the writer so the characters written are reported on {@link #completed()}.
+     */
+    Writer counting(Writer writer) {
+        if (this == DISABLED) {
+            return writer;
+        }
+        outputSize = 0;
+        return new FilterWriter(writer) {
+            @Override
+            public void write(int c) throws IOException {
+                out.write(c);
+                outputSize++;
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                out.write(cbuf, off, len);
+                outputSize += len;
+            }
+
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                out.write(str, off, len);
+                outputSize += len;
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.exception.RenderingException;
+
+/**
+ * The outcome of rendering one message of a batch: either the JSON output or the error.
+ */
+public record RenderResult(
+        CanonicalFormMessage message,
+        String output,
+        RenderingException error
+) {
+    public static RenderResult success(CanonicalFormMessage message, String output) {
+        return new RenderResult(message, output, null);
+    }
+
+    public static RenderResult failure(CanonicalFormMessage message, RenderingException error) {
+        return new RenderResult(message, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -1,12 +1,54 @@
 package com.eainde.synapse.forms.adapter;
 
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.io.IOException;
+
 /**
  * Interface for a mapper that transforms the canonical message into a target JsonNode.
  */
 @FunctionalInterface
 public interface JsonFormAdapter {
     JsonNode map(CanonicalFormMessage message);
+
+    /**
+     * Writes the mapped output as a token stream instead of building a tree.
+     * The default falls back to {@link #map(CanonicalFormMessage)}; 1:1 adapters
+     * override it to serialize the records straight into the generator.
+     *
+     * @param message   The canonical form message object.
+     * @param generator The generator to write the mapped output to.
+     * @throws IOException if the generator fails to write.
+     */
+    default void write(CanonicalFormMessage message, JsonGenerator generator) throws IOException {
+        generator.writeTree(map(message));
+    }
+
+    /**
+     * Maps a single field definition exactly as it appears under {@code fields} in the full output.
+     * Used for incremental re-rendering; the default returns {@code null}, meaning the adapter can
+     * only map whole messages.
+     *
+     * @param field The field definition.
+     * @return The mapped field, or {@code null} if unsupported.
+     */
+    default JsonNode mapField(FieldDefinition field) {
+        return null;
+    }
+
+    /**
+     * Maps a single layout element exactly as it appears in the full output's layout tree.
+     * Used for incremental re-rendering; the default returns {@code null}, meaning the adapter can
+     * only map whole messages.
+     *
+     * @param element The layout element.
+     * @return The mapped element, or {@code null} if unsupported.
+     */
+    default JsonNode mapLayoutElement(LayoutElement element) {
+        return null;
+    }
 }
@@ -1,9 +1,14 @@
 package com.eainde.synapse.forms.adapter;
 
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+
 /**
  * Mapper for DYNAMIC_FORM_V1.
  * This is a 1:1 mapping, so it just uses ObjectMapper to convert the POJO.
@@ -22,4 +27,19 @@ public class SynapseFormV1Adapter implements JsonFormAdapter {
         // A future V2 mapper might perform complex transformations here.
         return objectMapper.convertValue(message, JsonNode.class);
     }
+
+    @Override
+    public void write(CanonicalFormMessage message, JsonGenerator generator) throws IOException {
+        objectMapper.writeValue(generator, message);
+    }
+
+    @Override
+    public JsonNode mapField(FieldDefinition field) {
+        return objectMapper.convertValue(field, JsonNode.class);
+    }
+
+    @Override
+    public JsonNode mapLayoutElement(LayoutElement element) {
+        return objectMapper.convertValue(element, JsonNode.class);
+    }
 }
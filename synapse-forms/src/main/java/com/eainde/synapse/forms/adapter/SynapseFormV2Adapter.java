@@ -1,9 +1,14 @@
 package com.eainde.synapse.forms.adapter;
 
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+
 /**
  * Mapper for DYNAMIC_FORM_V2.
  * Like the V1 mapper, this is a 1:1 serialization from the V2 POJO model.
@@ -20,4 +25,19 @@ public class SynapseFormV2Adapter implements JsonFormAdapter {
     public JsonNode map(CanonicalFormMessage message) {
         return objectMapper.convertValue(message, JsonNode.class);
     }
+
+    @Override
+    public void write(CanonicalFormMessage message, JsonGenerator generator) throws IOException {
+        objectMapper.writeValue(generator, message);
+    }
+
+    @Override
+    public JsonNode mapField(FieldDefinition field) {
+        return objectMapper.convertValue(field, JsonNode.class);
+    }
+
+    @Override
+    public JsonNode mapLayoutElement(LayoutElement element) {
+        return objectMapper.convertValue(element, JsonNode.class);
+    }
 }
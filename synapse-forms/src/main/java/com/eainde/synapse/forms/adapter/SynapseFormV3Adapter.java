@@ -1,9 +1,14 @@
 package com.eainde.synapse.forms.adapter;
 
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+
 /**
  * Concrete Adapter for DYNAMIC_FORM_V3.
  * This is a 1:1 serialization for the recursive model.
@@ -21,4 +26,19 @@ public class SynapseFormV3Adapter implements JsonFormAdapter {
         // A future V2 mapper might perform complex transformations here.
         return objectMapper.convertValue(message, JsonNode.class);
     }
+
+    @Override
+    public void write(CanonicalFormMessage message, JsonGenerator generator) throws IOException {
+        objectMapper.writeValue(generator, message);
+    }
+
+    @Override
+    public JsonNode mapField(FieldDefinition field) {
+        return objectMapper.convertValue(field, JsonNode.class);
+    }
+
+    @Override
+    public JsonNode mapLayoutElement(LayoutElement element) {
+        return objectMapper.convertValue(element, JsonNode.class);
+    }
 }
@@ -0,0 +1,198 @@
+package com.eainde.synapse.forms.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one value read from a parser in the {@link BinaryFormat}. The tokens are consumed as they
+ * come; the body is assembled in memory, as each container's length is only known at its end and
+ * the string table goes first. Not thread-safe; use one per document.
+ */
+final class BinaryEncoder {
+
+    private byte[] body = new byte[256];
+    private int size;
+    private int[] containers = new int[16];
+    private int depth;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<String> table = new ArrayList<>();
+
+    /**
+     * Writes the value the parser is at, or its next one, to {@code out}, leaving the parser at
+     * the value's last token.
+     */
+    void encode(JsonParser parser, OutputStream out) throws IOException {
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token == null) {
+            throw new IOException("No value to encode");
+        }
+        do {
+            switch (token) {
+                case START_OBJECT -> open(BinaryFormat.OBJECT);
+                case START_ARRAY -> open(BinaryFormat.ARRAY);
+                case END_OBJECT, END_ARRAY -> close();
+                case FIELD_NAME -> string(parser.currentName());
+                case VALUE_STRING -> string(parser.getText());
+                case VALUE_NUMBER_INT -> integer(parser);
+                case VALUE_NUMBER_FLOAT -> decimal(parser.getDecimalValue());
+                case VALUE_TRUE -> put(BinaryFormat.TRUE);
+                case VALUE_FALSE -> put(BinaryFormat.FALSE);
+                case VALUE_NULL -> put(BinaryFormat.NULL);
+                default -> throw new IOException("Cannot encode token " + token);
+            }
+        } while (depth > 0 && (token = parser.nextToken()) != null);
+        if (depth > 0) {
+            throw new IOException("Value ended before its " + depth + " open containers were closed");
+        }
+        writeTo(out);
+    }
+
+    private void writeTo(OutputStream out) throws IOException {
+        byte[] header = new byte[64];
+        int headerSize = 0;
+        header[headerSize++] = BinaryFormat.MAGIC_0;
+        header[headerSize++] = BinaryFormat.MAGIC_1;
+        header[headerSize++] = BinaryFormat.VERSION;
+        headerSize = varint(header, headerSize, table.size());
+        out.write(header, 0, headerSize);
+        for (String string : table) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.write(header, 0, varint(header, 0, bytes.length));
+            out.write(bytes);
+        }
+        out.write(body, 0, size);
+    }
+
+    private void open(int tag) {
+        put(tag);
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+        }
+        containers[depth++] = size;
+        put(0); // One byte for the length, widened on close if needed
+    }
+
+    private void close() {
+        int lengthAt = containers[--depth];
+        int contentStart = lengthAt + 1;
+        int length = size - contentStart;
+        int width = varintWidth(length);
+        if (width > 1) {
+            ensure(width - 1);
+            System.arraycopy(body, contentStart, body, contentStart + width - 1, length);
+            size += width - 1;
+        }
+        varint(body, lengthAt, length);
+    }
+
+    private void string(String value) {
+        if (value.length() > BinaryFormat.MAX_SHARED_LENGTH) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            put(BinaryFormat.INLINE_STRING);
+            putVarint(bytes.length);
+            putBytes(bytes);
+            return;
+        }
+        Integer index = BinaryFormat.DICTIONARY_INDEX.get(value);
+        if (index == null) {
+            index = strings.get(value);
+            if (index == null) {
+                index = BinaryFormat.DICTIONARY.size() + table.size();
+                strings.put(value, index);
+                table.add(value);
+            }
+        }
+        if (index < BinaryFormat.SHORT_REF_COUNT) {
+            put(BinaryFormat.SHORT_STRING_REF + index);
+        } else {
+            put(BinaryFormat.STRING_REF);
+            putVarint(index);
+        }
+    }
+
+    private void integer(JsonParser parser) throws IOException {
+        JsonParser.NumberType type = parser.getNumberType();
+        if (type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG) {
+            put(BinaryFormat.INTEGER);
+            putVarint(zigzag(parser.getLongValue()));
+        } else {
+            byte[] bytes = parser.getBigIntegerValue().toByteArray();
+            put(BinaryFormat.BIG_INTEGER);
+            putVarint(bytes.length);
+            putBytes(bytes);
+        }
+    }
+
+    private void decimal(BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 64) {
+            put(BinaryFormat.DECIMAL);
+            putVarint(zigzag(value.scale()));
+            putVarint(zigzag(unscaled.longValue()));
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            put(BinaryFormat.BIG_DECIMAL);
+            putVarint(zigzag(value.scale()));
+            putVarint(bytes.length);
+            putBytes(bytes);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varintWidth(long value) {
+        int width = 1;
+        while ((value >>>= 7) != 0) {
+            width++;
+        }
+        return width;
+    }
+
+    /**
+     * @return The position after the varint.
+     */
+    private static int varint(byte[] target, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    private void putVarint(long value) {
+        ensure(10);
+        size = varint(body, size, value);
+    }
+
+    private void put(int value) {
+        ensure(1);
+        body[size++] = (byte) value;
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, body, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > body.length) {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.eainde.synapse.forms.codec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The constants of the Synapse binary encoding.
+ * <p>
+ * A document is the magic {@code 'S' 'B'}, the version byte, the string table and one value. The
+ * string table is a varint count of UTF-8 strings, each prefixed with its varint byte length; its
+ * indices continue after those of the {@link #DICTIONARY}. A value starts with a tag byte:
+ * <pre>
+ * 0x01 object     varint byte length, then key and value pairs; keys are strings
+ * 0x02 array      varint byte length, then values
+ * 0x03 null       0x04 false       0x05 true
+ * 0x06 integer    zigzag varint
+ * 0x07 big int    varint byte length, two's-complement big-endian bytes
+ * 0x08 decimal    zigzag varint scale, zigzag varint unscaled value
+ * 0x09 big dec.   zigzag varint scale, varint byte length, unscaled bytes
+ * 0x0A string     varint byte length, UTF-8, not in the table
+ * 0x0B string     varint index into the table
+ * 0x10-0xFF       string at table index tag - 0x10
+ * </pre>
+ * Varints are unsigned LEB128. The lengths let a reader skip a subtree without reading it, and as
+ * the table comes first, nothing it skips is needed later.
+ */
+final class BinaryFormat {
+
+    static final byte MAGIC_0 = 'S';
+    static final byte MAGIC_1 = 'B';
+    static final byte VERSION = 1;
+
+    static final int OBJECT = 0x01;
+    static final int ARRAY = 0x02;
+    static final int NULL = 0x03;
+    static final int FALSE = 0x04;
+    static final int TRUE = 0x05;
+    static final int INTEGER = 0x06;
+    static final int BIG_INTEGER = 0x07;
+    static final int DECIMAL = 0x08;
+    static final int BIG_DECIMAL = 0x09;
+    static final int INLINE_STRING = 0x0A;
+    static final int STRING_REF = 0x0B;
+    static final int SHORT_STRING_REF = 0x10;
+    static final int SHORT_REF_COUNT = 0x100 - SHORT_STRING_REF;
+
+    /**
+     * Strings longer than this are written inline rather than shared through the table.
+     */
+    static final int MAX_SHARED_LENGTH = 64;
+
+    /**
+     * Strings every document may reference without listing them: the keys and type names of the
+     * form domain, then the {@code Operator} and {@code LogicalOperator} constants, so that an
+     * operator costs one byte. Part of the format: only ever append, and bump {@link #VERSION} on
+     * any other change.
+     */
+    static final List<String> DICTIONARY = List.of(
+            "schemaVersion", "formId", "layout", "fields", "type", "widget", "labelKey", "optionsKey",
+            "validation", "permissions", "items", "required", "minimum", "maximum", "rules", "elements",
+            "visibilityRules", "key", "when", "then", "visible", "operator", "conditions", "field", "value",
+            "Group", "Row", "Field", "string", "number", "boolean", "array", "object",
+            "AND", "OR",
+            "EQUALS", "NOT_EQUALS", "IN", "NOT_IN", "IS_BLANK", "IS_NOT_BLANK");
+
+    static final Map<String, Integer> DICTIONARY_INDEX;
+
+    static {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < DICTIONARY.size(); i++) {
+            index.put(DICTIONARY.get(i), i);
+        }
+        DICTIONARY_INDEX = Map.copyOf(index);
+    }
+
+    private BinaryFormat() {
+    }
+}
@@ -0,0 +1,518 @@
+package com.eainde.synapse.forms.codec;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a document in the {@link BinaryFormat} as Jackson tokens, so anything that reads JSON
+ * through a {@code JsonParser} reads it too. {@link #skipChildren()} jumps over a subtree by its
+ * length without reading it. Strings of the table are decoded on first use.
+ * <p>
+ * Numbers report the types the JSON parser would: floating-point values are {@code DOUBLE}, while
+ * {@link #getDecimalValue()} and {@link #getNumberValueExact()} return them exactly as written.
+ */
+final class BinaryParser extends ParserMinimalBase {
+
+    private static final int LONG = 0;
+    private static final int BIG_INTEGER = 1;
+    private static final int DECIMAL = 2;
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+
+    private final int[] tableOffsets;
+    private final int[] tableLengths;
+    private final String[] table;
+
+    private ObjectCodec codec;
+    private JsonReadContext context = JsonReadContext.createRootContext(null);
+    private int[] containerEnds = new int[16];
+    private int depth;
+    private boolean rootRead;
+    private boolean closed;
+
+    private int tokenStart;
+    private String text;
+    private int numberKind;
+    private long longValue;
+    private BigInteger bigIntegerValue;
+    private BigDecimal decimalValue;
+
+    BinaryParser(byte[] data, int offset, int length) throws IOException {
+        this.data = data;
+        this.end = offset + length;
+        this.position = offset;
+        if (length < 3 || data[offset] != BinaryFormat.MAGIC_0 || data[offset + 1] != BinaryFormat.MAGIC_1) {
+            throw new IOException("Not a Synapse binary document");
+        }
+        if (data[offset + 2] != BinaryFormat.VERSION) {
+            throw new IOException("Unsupported Synapse binary version " + data[offset + 2]);
+        }
+        position += 3;
+        int count = readLength();
+        this.tableOffsets = new int[count];
+        this.tableLengths = new int[count];
+        this.table = new String[count];
+        for (int i = 0; i < count; i++) {
+            tableLengths[i] = readLength();
+            tableOffsets[i] = position;
+            position += tableLengths[i];
+        }
+    }
+
+    /**
+     * A parser over one value of {@code document}, from {@code start} to {@code end}, reading its
+     * strings from the document's table.
+     */
+    private BinaryParser(BinaryParser document, int start, int end) {
+        this.data = document.data;
+        this.end = end;
+        this.position = start;
+        this.tableOffsets = document.tableOffsets;
+        this.tableLengths = document.tableLengths;
+        this.table = document.table;
+    }
+
+    BinaryParser subtree(int start, int end) {
+        return new BinaryParser(this, start, end);
+    }
+
+    /**
+     * Where the current value starts.
+     */
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Where the next token starts; after an END token, the end of its container.
+     */
+    int position() {
+        return position;
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        if (closed) {
+            return null;
+        }
+        if (depth > 0 && position >= containerEnds[depth - 1]) {
+            if (position > containerEnds[depth - 1]) {
+                _reportError("Value runs past the end of its container");
+            }
+            depth--;
+            JsonToken token = context.inObject() ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+            context = context.clearAndGetParent();
+            return _currToken = token;
+        }
+        if (depth == 0 && rootRead) {
+            return _currToken = null;
+        }
+        if (context.inObject() && _currToken != JsonToken.FIELD_NAME) {
+            context.expectComma();
+            text = readString(readTag());
+            context.setCurrentName(text);
+            return _currToken = JsonToken.FIELD_NAME;
+        }
+        if (depth == 0) {
+            rootRead = true;
+        } else if (context.inArray()) {
+            context.expectComma();
+        }
+        tokenStart = position;
+        int tag = readTag();
+        switch (tag) {
+            case BinaryFormat.OBJECT -> {
+                enter(readLength());
+                context = context.createChildObjectContext(0, 0);
+                return _currToken = JsonToken.START_OBJECT;
+            }
+            case BinaryFormat.ARRAY -> {
+                enter(readLength());
+                context = context.createChildArrayContext(0, 0);
+                return _currToken = JsonToken.START_ARRAY;
+            }
+            case BinaryFormat.NULL -> {
+                return _currToken = JsonToken.VALUE_NULL;
+            }
+            case BinaryFormat.FALSE -> {
+                return _currToken = JsonToken.VALUE_FALSE;
+            }
+            case BinaryFormat.TRUE -> {
+                return _currToken = JsonToken.VALUE_TRUE;
+            }
+            case BinaryFormat.INTEGER -> {
+                numberKind = LONG;
+                longValue = unzigzag(readVarint());
+                return _currToken = JsonToken.VALUE_NUMBER_INT;
+            }
+            case BinaryFormat.BIG_INTEGER -> {
+                numberKind = BIG_INTEGER;
+                bigIntegerValue = new BigInteger(readBytes(readLength()));
+                return _currToken = JsonToken.VALUE_NUMBER_INT;
+            }
+            case BinaryFormat.DECIMAL -> {
+                int scale = (int) unzigzag(readVarint());
+                numberKind = DECIMAL;
+                decimalValue = BigDecimal.valueOf(unzigzag(readVarint()), scale);
+                return _currToken = JsonToken.VALUE_NUMBER_FLOAT;
+            }
+            case BinaryFormat.BIG_DECIMAL -> {
+                int scale = (int) unzigzag(readVarint());
+                numberKind = DECIMAL;
+                decimalValue = new BigDecimal(new BigInteger(readBytes(readLength())), scale);
+                return _currToken = JsonToken.VALUE_NUMBER_FLOAT;
+            }
+            default -> {
+                text = readString(tag);
+                return _currToken = JsonToken.VALUE_STRING;
+            }
+        }
+    }
+
+    /**
+     * Jumps to the end of the object or array just started, without reading its contents.
+     */
+    @Override
+    public BinaryParser skipChildren() throws IOException {
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            position = containerEnds[depth - 1];
+            nextToken();
+        }
+        return this;
+    }
+
+    private void enter(int length) throws IOException {
+        if (length > end - position) {
+            _reportError("Container runs past the end of the document");
+        }
+        if (depth == containerEnds.length) {
+            containerEnds = Arrays.copyOf(containerEnds, depth * 2);
+        }
+        containerEnds[depth++] = position + length;
+    }
+
+    private int readTag() throws IOException {
+        if (position >= end) {
+            _reportError("Unexpected end of document");
+        }
+        return data[position++] & 0xFF;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readTag();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        _reportError("Malformed varint");
+        return 0;
+    }
+
+    private int readLength() throws IOException {
+        long length = readVarint();
+        if (length < 0) {
+            _reportError("Negative length " + length);
+        }
+        if (length > end - position) {
+            _reportError("Length " + length + " runs past the end of the document");
+        }
+        return (int) length;
+    }
+
+    private byte[] readBytes(int length) {
+        byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+        position += length;
+        return bytes;
+    }
+
+    private String readString(int tag) throws IOException {
+        if (tag >= BinaryFormat.SHORT_STRING_REF) {
+            return tableString(tag - BinaryFormat.SHORT_STRING_REF);
+        }
+        if (tag == BinaryFormat.STRING_REF) {
+            return tableString(readVarint());
+        }
+        if (tag == BinaryFormat.INLINE_STRING) {
+            int length = readLength();
+            String string = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+        _reportError("Expected a string, found tag 0x" + Integer.toHexString(tag));
+        return null;
+    }
+
+    private String tableString(long index) throws IOException {
+        if (index < 0) {
+            _reportError("Negative string index " + index);
+        }
+        if (index < BinaryFormat.DICTIONARY.size()) {
+            return BinaryFormat.DICTIONARY.get((int) index);
+        }
+        long slot = index - BinaryFormat.DICTIONARY.size();
+        if (slot >= table.length) {
+            _reportError("String index " + index + " is not in the table");
+        }
+        String string = table[(int) slot];
+        if (string == null) {
+            string = new String(data, tableOffsets[(int) slot], tableLengths[(int) slot], StandardCharsets.UTF_8);
+            table[(int) slot] = string;
+        }
+        return string;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void requireNumber() throws IOException {
+        if (_currToken != JsonToken.VALUE_NUMBER_INT && _currToken != JsonToken.VALUE_NUMBER_FLOAT) {
+            _reportError("Current token (" + _currToken + ") is not numeric");
+        }
+    }
+
+    @Override
+    public NumberType getNumberType() throws IOException {
+        requireNumber();
+        return switch (numberKind) {
+            case LONG -> longValue == (int) longValue ? NumberType.INT : NumberType.LONG;
+            case BIG_INTEGER -> NumberType.BIG_INTEGER;
+            default -> NumberType.DOUBLE;
+        };
+    }
+
+    @Override
+    public Number getNumberValue() throws IOException {
+        requireNumber();
+        return switch (numberKind) {
+            case LONG -> longValue == (int) longValue ? (Number) (int) longValue : (Number) longValue;
+            case BIG_INTEGER -> bigIntegerValue;
+            default -> decimalValue.doubleValue();
+        };
+    }
+
+    @Override
+    public Number getNumberValueExact() throws IOException {
+        return numberKind == DECIMAL ? getDecimalValue() : getNumberValue();
+    }
+
+    @Override
+    public int getIntValue() throws IOException {
+        long value = getLongValue();
+        if (value != (int) value) {
+            reportOverflowInt();
+        }
+        return (int) value;
+    }
+
+    @Override
+    public long getLongValue() throws IOException {
+        requireNumber();
+        return switch (numberKind) {
+            case LONG -> longValue;
+            case BIG_INTEGER -> {
+                if (bigIntegerValue.bitLength() >= 64) {
+                    reportOverflowLong();
+                }
+                yield bigIntegerValue.longValue();
+            }
+            default -> decimalValue.longValue();
+        };
+    }
+
+    @Override
+    public BigInteger getBigIntegerValue() throws IOException {
+        requireNumber();
+        return switch (numberKind) {
+            case LONG -> BigInteger.valueOf(longValue);
+            case BIG_INTEGER -> bigIntegerValue;
+            default -> decimalValue.toBigInteger();
+        };
+    }
+
+    @Override
+    public float getFloatValue() throws IOException {
+        return (float) getDoubleValue();
+    }
+
+    @Override
+    public double getDoubleValue() throws IOException {
+        requireNumber();
+        return switch (numberKind) {
+            case LONG -> longValue;
+            case BIG_INTEGER -> bigIntegerValue.doubleValue();
+            default -> decimalValue.doubleValue();
+        };
+    }
+
+    @Override
+    public BigDecimal getDecimalValue() throws IOException {
+        requireNumber();
+        return switch (numberKind) {
+            case LONG -> BigDecimal.valueOf(longValue);
+            case BIG_INTEGER -> new BigDecimal(bigIntegerValue);
+            default -> decimalValue;
+        };
+    }
+
+    @Override
+    public boolean isNaN() {
+        return false;
+    }
+
+    @Override
+    public String getText() throws IOException {
+        if (_currToken == null) {
+            return null;
+        }
+        return switch (_currToken) {
+            case FIELD_NAME, VALUE_STRING -> text;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> numberKind == DECIMAL
+                    ? decimalValue.toString()
+                    : getBigIntegerValue().toString();
+            default -> _currToken.asString();
+        };
+    }
+
+    @Override
+    public char[] getTextCharacters() throws IOException {
+        String value = getText();
+        return value == null ? null : value.toCharArray();
+    }
+
+    @Override
+    public int getTextLength() throws IOException {
+        String value = getText();
+        return value == null ? 0 : value.length();
+    }
+
+    @Override
+    public int getTextOffset() {
+        return 0;
+    }
+
+    @Override
+    public boolean hasTextCharacters() {
+        return false;
+    }
+
+    @Override
+    public String currentName() {
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            JsonReadContext parent = context.getParent();
+            return parent == null ? null : parent.getCurrentName();
+        }
+        return context.getCurrentName();
+    }
+
+    /**
+     * Still abstract in Jackson 2.17; {@link #currentName()} is the one to call.
+     */
+    @Deprecated
+    @Override
+    public String getCurrentName() {
+        return currentName();
+    }
+
+    @Override
+    public void overrideCurrentName(String name) {
+        JsonReadContext target = context;
+        if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+            target = context.getParent();
+        }
+        try {
+            target.setCurrentName(name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public JsonReadContext getParsingContext() {
+        return context;
+    }
+
+    @Override
+    public byte[] getBinaryValue(Base64Variant variant) throws IOException {
+        _reportError("Binary values are not supported");
+        return null;
+    }
+
+    @Override
+    public ObjectCodec getCodec() {
+        return codec;
+    }
+
+    @Override
+    public void setCodec(ObjectCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Version version() {
+        return Version.unknownVersion();
+    }
+
+    @Override
+    public JsonLocation currentTokenLocation() {
+        return JsonLocation.NA;
+    }
+
+    @Override
+    public JsonLocation currentLocation() {
+        return JsonLocation.NA;
+    }
+
+    /**
+     * Still abstract in Jackson 2.17; {@link #currentTokenLocation()} is the one to call.
+     */
+    @Deprecated
+    @Override
+    public JsonLocation getTokenLocation() {
+        return currentTokenLocation();
+    }
+
+    /**
+     * Still abstract in Jackson 2.17; {@link #currentLocation()} is the one to call.
+     */
+    @Deprecated
+    @Override
+    public JsonLocation getCurrentLocation() {
+        return currentLocation();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        _currToken = null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    protected void _handleEOF() throws JsonParseException {
+        if (depth > 0) {
+            _reportInvalidEOF();
+        }
+    }
+}
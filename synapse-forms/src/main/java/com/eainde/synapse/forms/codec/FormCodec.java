@@ -0,0 +1,166 @@
+package com.eainde.synapse.forms.codec;
+
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes form definitions, submissions and any other JSON document in a compact {@link FormEncoding},
+ * and back. Values are written and read through the given {@link ObjectMapper}, so an encoded
+ * {@code CanonicalFormMessage} decodes to an equal one, and a JSON document transcoded with
+ * {@link #fromJson} and {@link #toJson} comes back as the same JSON. Transcoding is streamed token
+ * by token; no tree is built. Thread-safe.
+ */
+public class FormCodec {
+
+    private final ObjectMapper objectMapper;
+    private final FormEncoding encoding;
+    private final JsonFactory factory;
+
+    public FormCodec(ObjectMapper objectMapper, FormEncoding encoding) {
+        this.objectMapper = objectMapper;
+        this.encoding = encoding;
+        this.factory = switch (encoding) {
+            case BINARY -> null;
+            case SMILE -> new SmileFactory();
+            case CBOR -> new CBORFactory();
+        };
+    }
+
+    public FormEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @throws RenderingException with code ERR_CODEC_ENCODE if the value cannot be written.
+     */
+    public byte[] encode(Object value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (factory != null) {
+                try (JsonGenerator generator = factory.createGenerator(out)) {
+                    objectMapper.writeValue(generator, value);
+                }
+            } else {
+                TokenBuffer tokens = new TokenBuffer(objectMapper, false);
+                objectMapper.writeValue(tokens, value);
+                try (JsonParser parser = tokens.asParser(objectMapper)) {
+                    new BinaryEncoder().encode(parser, out);
+                }
+            }
+        } catch (IOException e) {
+            throw new RenderingException("Failed to encode " + value.getClass().getSimpleName(), "ERR_CODEC_ENCODE", null, e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws RenderingException with code ERR_CODEC_DECODE if the bytes are not a valid encoding of the type.
+     */
+    public <T> T decode(byte[] encoded, Class<T> type) {
+        try (JsonParser parser = parser(encoded)) {
+            return objectMapper.readValue(parser, type);
+        } catch (IOException e) {
+            throw new RenderingException("Failed to decode " + type.getSimpleName(), "ERR_CODEC_DECODE", null, e);
+        }
+    }
+
+    /**
+     * Opens a parser over an encoded document; it reads the same tokens as a JSON parser over the
+     * document's JSON.
+     *
+     * @throws IOException if the document does not start as expected.
+     */
+    public JsonParser parser(byte[] encoded) throws IOException {
+        JsonParser parser = factory != null
+                ? factory.createParser(encoded)
+                : new BinaryParser(encoded, 0, encoded.length);
+        parser.setCodec(objectMapper);
+        return parser;
+    }
+
+    /**
+     * Opens a form definition encoded by this codec for reading on demand.
+     *
+     * @throws RenderingException with code ERR_CODEC_DECODE if the bytes are not an encoded form
+     *         definition, or ERR_CODEC_UNSUPPORTED for encodings other than BINARY.
+     */
+    public LazyFormView view(byte[] encoded) {
+        if (encoding != FormEncoding.BINARY) {
+            throw new RenderingException("Lazy views need the BINARY encoding, not " + encoding,
+                    "ERR_CODEC_UNSUPPORTED", null);
+        }
+        return LazyFormView.ofBinary(objectMapper, encoded);
+    }
+
+    /**
+     * Encodes a JSON document, such as a submission.
+     *
+     * @throws RenderingException with code ERR_CODEC_ENCODE if the JSON is not well-formed.
+     */
+    public byte[] fromJson(InputStream json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (factory != null) {
+                try (JsonGenerator generator = factory.createGenerator(out)) {
+                    parser.nextToken();
+                    generator.copyCurrentStructure(parser);
+                }
+            } else {
+                new BinaryEncoder().encode(parser, out);
+            }
+        } catch (IOException e) {
+            throw new RenderingException("Failed to encode JSON", "ERR_CODEC_ENCODE", null, e);
+        }
+        return out.toByteArray();
+    }
+
+    public byte[] fromJson(byte[] json) {
+        return fromJson(new ByteArrayInputStream(json));
+    }
+
+    /**
+     * Writes an encoded document as JSON, decimals exactly as they were encoded.
+     *
+     * @throws RenderingException with code ERR_CODEC_DECODE if the bytes are not a valid encoding.
+     */
+    public void toJson(byte[] encoded, OutputStream out) {
+        try (JsonParser parser = parser(encoded);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            JsonToken token = parser.nextToken();
+            int depth = 0;
+            while (token != null) {
+                generator.copyCurrentEventExact(parser);
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                token = depth > 0 ? parser.nextToken() : null;
+            }
+        } catch (IOException e) {
+            throw new RenderingException("Failed to decode to JSON", "ERR_CODEC_DECODE", null, e);
+        }
+    }
+
+    public String toJson(byte[] encoded) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        toJson(encoded, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
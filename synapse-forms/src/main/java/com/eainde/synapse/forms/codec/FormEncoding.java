@@ -0,0 +1,20 @@
+package com.eainde.synapse.forms.codec;
+
+/**
+ * The wire encodings a {@link FormCodec} reads and writes.
+ */
+public enum FormEncoding {
+    /**
+     * The compact Synapse binary encoding: a string table shared by keys and values, pre-seeded with
+     * the form vocabulary and rule operators, and length-prefixed objects and arrays.
+     */
+    BINARY,
+    /**
+     * Jackson Smile, as a baseline.
+     */
+    SMILE,
+    /**
+     * CBOR (RFC 8949), as a baseline.
+     */
+    CBOR
+}
@@ -0,0 +1,361 @@
+package com.eainde.synapse.forms.codec;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.engine.FormRules;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A form definition read on demand from its JSON or {@link FormEncoding#BINARY} bytes.
+ * <p>
+ * Opening the view makes one pass over the document that records where each field definition and
+ * each top-level layout element lies, with the type and label of the latter, but builds none of
+ * them. A field or layout element is only deserialized when it is first asked for, and then kept.
+ * The binary encoding jumps over the subtrees it records; JSON still has to tokenize them.
+ * <p>
+ * The view keeps the bytes it was opened on, which must not change. Its positions are final once
+ * opened, so it is thread-safe; two threads asking for the same element at once may both build it.
+ */
+public final class LazyFormView {
+
+    private final ObjectMapper objectMapper;
+    private final Source source;
+    private final String schemaVersion;
+    private final String formId;
+    private final Map<String, Subtree> fields;
+    private final List<LayoutSubtree> layout;
+    private volatile FormRules rules;
+
+    private LazyFormView(ObjectMapper objectMapper, Source source, Scan scan) {
+        this.objectMapper = objectMapper;
+        this.source = source;
+        this.schemaVersion = scan.schemaVersion;
+        this.formId = scan.formId;
+        this.fields = scan.fields;
+        this.layout = scan.layout == null ? null : List.copyOf(scan.layout);
+    }
+
+    /**
+     * @throws RenderingException with code ERR_CODEC_DECODE if the bytes are not a JSON object.
+     */
+    public static LazyFormView ofJson(ObjectMapper objectMapper, byte[] json) {
+        return open(objectMapper, new JsonSource(objectMapper, json));
+    }
+
+    static LazyFormView ofBinary(ObjectMapper objectMapper, byte[] encoded) {
+        try {
+            return open(objectMapper, new BinarySource(new BinaryParser(encoded, 0, encoded.length)));
+        } catch (IOException e) {
+            throw decodeFailure("form definition", e);
+        }
+    }
+
+    private static LazyFormView open(ObjectMapper objectMapper, Source source) {
+        Scan scan = new Scan(source);
+        try (JsonParser parser = source.parser()) {
+            scan.scan(parser);
+        } catch (IOException e) {
+            throw decodeFailure("form definition", e);
+        }
+        return new LazyFormView(objectMapper, source, scan);
+    }
+
+    private static RenderingException decodeFailure(String what, IOException e) {
+        return new RenderingException("Failed to read " + what, "ERR_CODEC_DECODE", null, e);
+    }
+
+    public String getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    public String getFormId() {
+        return formId;
+    }
+
+    /**
+     * @return The field keys, in document order.
+     */
+    public Set<String> fieldKeys() {
+        return Collections.unmodifiableSet(fields.keySet());
+    }
+
+    /**
+     * @return The field, deserialized on first access, or {@code null} if the form has no such field.
+     * @throws RenderingException with code ERR_CODEC_DECODE if its definition is invalid.
+     */
+    public FieldDefinition field(String key) {
+        Subtree subtree = fields.get(key);
+        return subtree == null ? null : materialize(subtree, FieldDefinition.class, "field '" + key + "'");
+    }
+
+    /**
+     * @return The number of top-level layout elements.
+     */
+    public int layoutSize() {
+        return layout == null ? 0 : layout.size();
+    }
+
+    /**
+     * @return The top-level layout element, deserialized on first access.
+     * @throws IndexOutOfBoundsException if there is no such element.
+     */
+    public LayoutElement layoutElement(int index) {
+        if (layout == null) {
+            throw new IndexOutOfBoundsException("The form has no layout");
+        }
+        return materialize(layout.get(index), LayoutElement.class, "layout element " + index);
+    }
+
+    /**
+     * @return The first top-level group with the label, deserialized on first access, or {@code null}.
+     */
+    public Group group(String labelKey) {
+        for (int i = 0; i < layoutSize(); i++) {
+            LayoutSubtree element = layout.get(i);
+            if ("Group".equals(element.type) && labelKey.equals(element.labelKey)) {
+                return (Group) layoutElement(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deserializes everything not yet deserialized.
+     */
+    public CanonicalFormMessage toMessage() {
+        Map<String, FieldDefinition> definitions = new LinkedHashMap<>();
+        for (String key : fields.keySet()) {
+            definitions.put(key, field(key));
+        }
+        List<LayoutElement> elements = null;
+        if (layout != null) {
+            elements = new ArrayList<>(layout.size());
+            for (int i = 0; i < layout.size(); i++) {
+                elements.add(layoutElement(i));
+            }
+        }
+        return new CanonicalFormMessage(schemaVersion, formId, elements, definitions);
+    }
+
+    /**
+     * The compiled rules of the form. They need every field and layout element, so the first call
+     * deserializes the whole form.
+     */
+    public FormRules rules() {
+        FormRules compiled = rules;
+        if (compiled == null) {
+            compiled = FormRules.compile(toMessage());
+            rules = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * @return How many fields and layout elements have been deserialized.
+     */
+    int materializedCount() {
+        int count = 0;
+        for (Subtree subtree : fields.values()) {
+            count += subtree.value != null ? 1 : 0;
+        }
+        if (layout != null) {
+            for (Subtree subtree : layout) {
+                count += subtree.value != null ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private <T> T materialize(Subtree subtree, Class<T> type, String what) {
+        Object value = subtree.value;
+        if (value == null) {
+            try (JsonParser parser = source.parser(subtree.start, subtree.end)) {
+                parser.setCodec(objectMapper);
+                value = objectMapper.readValue(parser, type);
+            } catch (IOException e) {
+                throw decodeFailure(what, e);
+            }
+            subtree.value = value;
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * The result of the opening pass, collected before the view is built.
+     */
+    private static final class Scan {
+        private final Source source;
+        private final Map<String, Subtree> fields = new LinkedHashMap<>();
+        private String schemaVersion;
+        private String formId;
+        private List<LayoutSubtree> layout;
+
+        private Scan(Source source) {
+            this.source = source;
+        }
+
+        void scan(JsonParser parser) throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("A form definition must be an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (name) {
+                    case "schemaVersion" -> schemaVersion = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    case "formId" -> formId = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    case "fields" -> scanFields(parser, token);
+                    case "layout" -> scanLayout(parser, token);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        private void scanFields(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Field '" + key + "' must be an object");
+                }
+                int start = source.start(parser);
+                parser.skipChildren();
+                fields.put(key, new Subtree(start, source.end(parser)));
+            }
+        }
+
+        private void scanLayout(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                return;
+            }
+            layout = new ArrayList<>();
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Layout element " + layout.size() + " must be an object");
+                }
+                int start = source.start(parser);
+                String type = null;
+                String labelKey = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if (value == JsonToken.VALUE_STRING && name.equals("type")) {
+                        type = parser.getText();
+                    } else if (value == JsonToken.VALUE_STRING && name.equals("labelKey")) {
+                        labelKey = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                layout.add(new LayoutSubtree(start, source.end(parser), type, labelKey));
+            }
+        }
+    }
+
+    /**
+     * Where a field or layout element lies, and the element once deserialized.
+     */
+    private static class Subtree {
+        final int start;
+        final int end;
+        volatile Object value;
+
+        Subtree(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class LayoutSubtree extends Subtree {
+        final String type;
+        final String labelKey;
+
+        LayoutSubtree(int start, int end, String type, String labelKey) {
+            super(start, end);
+            this.type = type;
+            this.labelKey = labelKey;
+        }
+    }
+
+    /**
+     * Parsers over the document and its parts, and the offsets of the object a parser is at.
+     */
+    private interface Source {
+        JsonParser parser() throws IOException;
+
+        JsonParser parser(int start, int end) throws IOException;
+
+        /**
+         * @return Where the object whose START_OBJECT the parser is at begins.
+         */
+        int start(JsonParser parser);
+
+        /**
+         * @return Where the object whose END_OBJECT the parser is at ends.
+         */
+        int end(JsonParser parser);
+    }
+
+    private record JsonSource(ObjectMapper objectMapper, byte[] json) implements Source {
+
+        @Override
+        public JsonParser parser() throws IOException {
+            return objectMapper.getFactory().createParser(json);
+        }
+
+        @Override
+        public JsonParser parser(int start, int end) throws IOException {
+            return objectMapper.getFactory().createParser(json, start, end - start);
+        }
+
+        @Override
+        public int start(JsonParser parser) {
+            return (int) parser.currentTokenLocation().getByteOffset();
+        }
+
+        @Override
+        public int end(JsonParser parser) {
+            return (int) parser.currentTokenLocation().getByteOffset() + 1;
+        }
+    }
+
+    private record BinarySource(BinaryParser document) implements Source {
+
+        @Override
+        public JsonParser parser() {
+            return document;
+        }
+
+        @Override
+        public JsonParser parser(int start, int end) {
+            return document.subtree(start, end);
+        }
+
+        @Override
+        public int start(JsonParser parser) {
+            return ((BinaryParser) parser).tokenStart();
+        }
+
+        @Override
+        public int end(JsonParser parser) {
+            return ((BinaryParser) parser).position();
+        }
+    }
+}
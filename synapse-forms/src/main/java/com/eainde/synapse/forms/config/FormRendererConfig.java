@@ -1,21 +1,25 @@
 package com.eainde.synapse.forms.config;
 
+import com.eainde.synapse.forms.CachingJsonFormatRenderer;
 import com.eainde.synapse.forms.DefaultJsonFormatRenderer;
+import com.eainde.synapse.forms.IncrementalRenderer;
 import com.eainde.synapse.forms.JsonFormatRenderer;
+import com.eainde.synapse.forms.RenderCache;
 import com.eainde.synapse.forms.TargetFormat;
 import com.eainde.synapse.forms.adapter.JsonFormAdapter;
 import com.eainde.synapse.forms.adapter.SynapseFormV1Adapter;
 import com.eainde.synapse.forms.adapter.SynapseFormV2Adapter;
 import com.eainde.synapse.forms.adapter.SynapseFormV3Adapter;
+import com.eainde.synapse.forms.domain.BeanConstraints;
+import com.eainde.synapse.forms.instrumentation.RenderInstrumentation;
+import com.eainde.synapse.forms.validation.SchemaValidationPolicy;
 import com.eainde.synapse.forms.validation.SchemaValidator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import jakarta.validation.Validation;
 import jakarta.validation.Validator;
-import jakarta.validation.ValidatorFactory;
 
 import java.util.Map;
 
@@ -39,12 +43,11 @@ public class FormRendererConfig {
     }
 
     /**
-     * Creates the Jakarta Bean Validator.
+     * Returns the Jakarta Bean Validator: the default one, which the builders' {@code buildValidated()}
+     * also use, so the renderers trust messages built that way.
      */
     public Validator beanValidator() {
-        try (ValidatorFactory factory = Validation.buildDefaultValidatorFactory()) {
-            return factory.getValidator();
-        }
+        return BeanConstraints.defaultValidator();
     }
 
     /**
@@ -54,6 +57,21 @@ public class FormRendererConfig {
         return new SchemaValidator();
     }
 
+    /**
+     * Creates the output schema validation policy. Validates every render by default.
+     */
+    public SchemaValidationPolicy schemaValidationPolicy() {
+        return SchemaValidationPolicy.always();
+    }
+
+    /**
+     * Creates the render instrumentation. Reports nothing by default; override to return a
+     * {@link com.eainde.synapse.forms.instrumentation.MicrometerRenderInstrumentation}.
+     */
+    public RenderInstrumentation renderInstrumentation() {
+        return RenderInstrumentation.NO_OP;
+    }
+
     /**
      * Creates the V1 mapper.
      */
@@ -83,13 +101,41 @@ public class FormRendererConfig {
         Validator validator = beanValidator();
         SchemaValidator schemaValidator = schemaValidator();
 
+        return new DefaultJsonFormatRenderer(validator, schemaValidator, formAdapters(objectMapper), objectMapper,
+                schemaValidationPolicy(), renderInstrumentation());
+    }
+
+    /**
+     * Creates the registry of adapters, one per target format.
+     */
+    public Map<TargetFormat, JsonFormAdapter> formAdapters(ObjectMapper objectMapper) {
         // This is the extensible registry
-        Map<TargetFormat, JsonFormAdapter> mappers = Map.of(
+        return Map.of(
                 TargetFormat.SYNAPSE_FORM_V1, dynamicFormV1Mapper(objectMapper),
                 TargetFormat.SYNAPSE_FORM_V2, dynamicFormV2Mapper(objectMapper),
                 TargetFormat.SYNAPSE_FORM_V3, dynamicFormV3Mapper(objectMapper)
         );
+    }
 
-        return new DefaultJsonFormatRenderer(validator, schemaValidator, mappers);
+    /**
+     * Assembles a renderer that patches previous output when a form definition changes.
+     */
+    public IncrementalRenderer incrementalRenderer() {
+        ObjectMapper objectMapper = formObjectMapper();
+        Validator validator = beanValidator();
+        SchemaValidator schemaValidator = schemaValidator();
+        Map<TargetFormat, JsonFormAdapter> mappers = formAdapters(objectMapper);
+
+        JsonFormatRenderer renderer = new DefaultJsonFormatRenderer(validator, schemaValidator, mappers, objectMapper,
+                schemaValidationPolicy(), renderInstrumentation());
+        return new IncrementalRenderer(renderer, validator, schemaValidator, mappers);
+    }
+
+    /**
+     * Assembles the main JsonFormatRenderer behind a render cache.
+     * Use this when the same form definitions are rendered repeatedly.
+     */
+    public JsonFormatRenderer cachingJsonFormatRenderer(RenderCache cache) {
+        return new CachingJsonFormatRenderer(jsonFormatRenderer(), cache, formObjectMapper());
     }
 }
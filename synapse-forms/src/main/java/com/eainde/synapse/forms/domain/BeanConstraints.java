@@ -0,0 +1,81 @@
+package com.eainde.synapse.forms.domain;
+
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Enforces the bean constraints of the domain records at build time, for the builders'
+ * {@code buildValidated()} methods.
+ * <p>
+ * Messages built with {@link CanonicalFormMessage.Builder#buildValidated()} are remembered per
+ * instance, so renderers validating with the {@link #defaultValidator()} can trust them.
+ */
+public final class BeanConstraints {
+
+    private static final InstanceMemo<CanonicalFormMessage, Boolean> PREVALIDATED = new InstanceMemo<>();
+
+    private BeanConstraints() {
+    }
+
+    /**
+     * @return The lazily created default validator, the one the builders validate with.
+     */
+    public static Validator defaultValidator() {
+        return DefaultValidatorHolder.VALIDATOR;
+    }
+
+    /**
+     * Validates any bean with the default validator.
+     *
+     * @throws RenderingException with code ERR_BEAN_VALIDATION if a constraint is violated.
+     */
+    public static <T> T requireValid(T bean) {
+        List<ValidationError> errors = toErrors(defaultValidator().validate(bean));
+        if (!errors.isEmpty()) {
+            throw new RenderingException(bean.getClass().getSimpleName() + " failed validation.", "ERR_BEAN_VALIDATION", errors);
+        }
+        return bean;
+    }
+
+    /**
+     * @return Whether this message instance was built with {@code buildValidated()}.
+     */
+    public static boolean isPrevalidated(CanonicalFormMessage message) {
+        return PREVALIDATED.get(message) != null;
+    }
+
+    static void markPrevalidated(CanonicalFormMessage message) {
+        PREVALIDATED.put(message, Boolean.TRUE);
+    }
+
+    public static <T> List<ValidationError> toErrors(Set<ConstraintViolation<T>> violations) {
+        if (violations.isEmpty()) {
+            return List.of();
+        }
+        return violations.stream()
+                .map(v -> new ValidationError(
+                        "ERR_BEAN_VALIDATION",
+                        v.getMessage(),
+                        v.getPropertyPath().toString()
+                ))
+                .collect(Collectors.toList());
+    }
+
+    private static final class DefaultValidatorHolder {
+        private static final Validator VALIDATOR;
+
+        static {
+            try (ValidatorFactory factory = Validation.buildDefaultValidatorFactory()) {
+                VALIDATOR = factory.getValidator();
+            }
+        }
+    }
+}
@@ -69,5 +69,18 @@ public record CanonicalFormMessage(
         public CanonicalFormMessage build() {
             return new CanonicalFormMessage(schemaVersion, formId, layout, fields);
         }
+
+        /**
+         * Builds the message and enforces its bean constraints immediately. The result is recorded as
+         * pre-validated, so renderers using the default validator trust it without validating it again.
+         *
+         * @throws com.eainde.synapse.forms.exception.RenderingException with code ERR_BEAN_VALIDATION
+         *         if a constraint is violated.
+         */
+        public CanonicalFormMessage buildValidated() {
+            CanonicalFormMessage message = BeanConstraints.requireValid(build());
+            BeanConstraints.markPrevalidated(message);
+            return message;
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.eainde.synapse.forms.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Objects;
+
+/**
+ * The structure of a {@link CanonicalFormMessage}, reduced to its formId, schemaVersion and a
+ * SHA-256 digest of its JSON with map entries ordered by key.
+ * <p>
+ * The digest is computed once per message instance and remembered for as long as the instance is
+ * reachable, so caches and memos can key on it without walking the record tree on every lookup,
+ * and compare two fingerprints in constant time. Messages should be built from immutable
+ * collections: a message mutated after its fingerprint was taken keeps the old one.
+ */
+public final class FormFingerprint {
+
+    private static final ObjectMapper CANONICAL = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final InstanceMemo<CanonicalFormMessage, FormFingerprint> FINGERPRINTS = new InstanceMemo<>();
+
+    private final String formId;
+    private final String schemaVersion;
+    private final byte[] digest;
+    private final int hash;
+
+    private FormFingerprint(String formId, String schemaVersion, byte[] digest) {
+        this.formId = formId;
+        this.schemaVersion = schemaVersion;
+        this.digest = digest;
+        this.hash = ByteBuffer.wrap(digest).getInt();
+    }
+
+    /**
+     * @return The message's fingerprint, computed on first use of this instance.
+     * @throws IllegalStateException if the message cannot be serialized.
+     */
+    public static FormFingerprint of(CanonicalFormMessage message) {
+        return FINGERPRINTS.computeIfAbsent(message, FormFingerprint::compute);
+    }
+
+    private static FormFingerprint compute(CanonicalFormMessage message) {
+        try {
+            byte[] json = CANONICAL.writeValueAsBytes(message);
+            return new FormFingerprint(message.formId(), message.schemaVersion(),
+                    MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot fingerprint form " + message.formId(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public String formId() {
+        return formId;
+    }
+
+    public String schemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * @return The digest as lowercase hex.
+     */
+    public String digestHex() {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FormFingerprint other)) return false;
+        return hash == other.hash && Arrays.equals(digest, other.digest)
+                && Objects.equals(formId, other.formId) && Objects.equals(schemaVersion, other.schemaVersion);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return formId + "@" + schemaVersion + ":" + digestHex();
+    }
+}
@@ -0,0 +1,113 @@
+package com.eainde.synapse.forms.domain;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Values remembered per object instance, for as long as the instance is reachable.
+ * <p>
+ * Lookups compare keys by identity, so they never walk a record tree the way its equals/hashCode
+ * would, and take no lock beyond the concurrent map's own. Entries of collected keys are purged on
+ * the next write.
+ */
+public final class InstanceMemo<K, V> {
+
+    private final ConcurrentHashMap<Object, V> values = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> collected = new ReferenceQueue<>();
+
+    /**
+     * @return The value remembered for this instance, or {@code null}.
+     */
+    public V get(K key) {
+        return values.get(new Lookup(key));
+    }
+
+    /**
+     * Returns the value remembered for this instance, computing it first if there is none.
+     * Concurrent callers for the same instance wait for a single computation.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> compute) {
+        V value = values.get(new Lookup(key));
+        if (value != null) {
+            return value;
+        }
+        purge();
+        return values.computeIfAbsent(new Ref<>(key, collected), ref -> compute.apply(key));
+    }
+
+    public void put(K key, V value) {
+        purge();
+        values.put(new Ref<>(key, collected), value);
+    }
+
+    /**
+     * The number of remembered instances, including collected ones not yet purged.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    private void purge() {
+        Object ref;
+        while ((ref = collected.poll()) != null) {
+            values.remove(ref);
+        }
+    }
+
+    /**
+     * Identity of a key: a weak reference to it in the map, the key itself when looking it up.
+     */
+    private interface Identity {
+        Object referent();
+    }
+
+    private static boolean sameReferent(Identity identity, Object other) {
+        if (identity == other) {
+            return true;
+        }
+        if (!(other instanceof Identity that)) {
+            return false;
+        }
+        Object referent = identity.referent();
+        return referent != null && referent == that.referent();
+    }
+
+    private static final class Ref<K> extends WeakReference<K> implements Identity {
+        private final int hash;
+
+        private Ref(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameReferent(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private record Lookup(Object referent) implements Identity {
+
+        @Override
+        public boolean equals(Object o) {
+            return sameReferent(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.eainde.synapse.forms.domain.fields;
 
+import com.eainde.synapse.forms.domain.BeanConstraints;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -53,5 +54,15 @@ public record ArrayField(
         public ArrayField build() {
             return new ArrayField(widget, labelKey, items, validation, permissions);
         }
+
+        /**
+         * Builds the field and enforces its bean constraints immediately.
+         *
+         * @throws com.eainde.synapse.forms.exception.RenderingException with code ERR_BEAN_VALIDATION
+         *         if a constraint is violated.
+         */
+        public ArrayField buildValidated() {
+            return BeanConstraints.requireValid(build());
+        }
     }
 }
@@ -1,6 +1,7 @@
 package com.eainde.synapse.forms.domain.fields;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import jakarta.validation.Valid;
@@ -13,8 +14,9 @@ import java.util.List;
  */
 @JsonTypeInfo(
         use = JsonTypeInfo.Id.NAME,
-        include = JsonTypeInfo.As.PROPERTY,
-        property = "type"
+        include = JsonTypeInfo.As.EXISTING_PROPERTY,
+        property = "type",
+        visible = true
 )
 @JsonSubTypes({
         @JsonSubTypes.Type(value = SimpleField.class, name = "string"),
@@ -22,6 +24,7 @@ import java.util.List;
         @JsonSubTypes.Type(value = SimpleField.class, name = "boolean"),
         @JsonSubTypes.Type(value = ArrayField.class, name = "array")
 })
+@JsonPropertyOrder({"type"})
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public interface FieldDefinition {
     @NotBlank(message = "Field type cannot be blank")
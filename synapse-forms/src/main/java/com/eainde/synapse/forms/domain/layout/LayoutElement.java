@@ -1,6 +1,7 @@
 package com.eainde.synapse.forms.domain.layout;
 
 import com.eainde.synapse.forms.domain.rules.VisibilityRule;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
@@ -11,14 +12,16 @@ import java.util.List;
  */
 @JsonTypeInfo(
         use = JsonTypeInfo.Id.NAME,
-        include = JsonTypeInfo.As.PROPERTY,
-        property = "type"
+        include = JsonTypeInfo.As.EXISTING_PROPERTY,
+        property = "type",
+        visible = true
 )
 @JsonSubTypes({
         @JsonSubTypes.Type(value = Group.class, name = "Group"),
         @JsonSubTypes.Type(value = Row.class, name = "Row"),
         @JsonSubTypes.Type(value = FieldRef.class, name = "Field")
 })
+@JsonPropertyOrder({"type"})
 public interface LayoutElement {
     String getType();
     List<VisibilityRule> getVisibilityRules();
@@ -0,0 +1,427 @@
+package com.eainde.synapse.forms.engine;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.Condition;
+import com.eainde.synapse.forms.domain.rules.RuleBlock;
+import com.eainde.synapse.forms.domain.rules.ValidationRule;
+import com.eainde.synapse.forms.domain.rules.VisibilityRule;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fields and layout of a form, resolved once to dense integer ids.
+ * <p>
+ * Top-level fields get ids {@code 0 .. rootFieldCount() - 1} in key order, which are also their
+ * {@link FormRules} slots; the item fields of array fields follow, grouped by array and in key order.
+ * The layout tree is flattened in pre-order into nodes with parent, child and position links, and
+ * every {@link FieldRef} and {@link Condition} is resolved to a field id: conditions of top-level
+ * validation and visibility rules against the top-level fields, conditions of item validation rules
+ * against the sibling item fields.
+ * <p>
+ * References that resolve to nothing are collected rather than thrown, so callers choose how strict
+ * to be; {@link #requireResolved()} turns them into an {@code ERR_DANGLING_REFERENCE}.
+ * Instances are immutable and safe to share across threads.
+ */
+public final class FormIndex implements SlotResolver {
+
+    private static final int[] NONE = new int[0];
+
+    private final int rootFieldCount;
+    private final String[] fieldKeys;
+    private final FieldDefinition[] fields;
+    private final int[] parentField;
+    private final int[][] itemFields;
+    private final Map<String, Integer> rootIdByKey;
+    private final Map<String, Integer>[] itemIdByKey;
+
+    private final LayoutElement[] nodes;
+    private final int[] parentNode;
+    private final int[] positionInParent;
+    private final int[][] childNodes;
+    private final int[] rootNodes;
+    private final int[] nodeField;
+    private final int[][] placements;
+
+    private final IdentityHashMap<Condition, Integer> conditionTargets;
+    private final List<ValidationError> danglingReferences;
+
+    @SuppressWarnings("unchecked")
+    private FormIndex(Map<String, FieldDefinition> fieldMap, List<LayoutElement> layout) {
+        Builder builder = new Builder();
+        String[] rootKeys = fieldMap.keySet().stream().sorted().toArray(String[]::new);
+        for (String key : rootKeys) {
+            builder.addField(key, fieldMap.get(key), -1);
+        }
+        this.rootFieldCount = rootKeys.length;
+        // The list grows as arrays are expanded, so arrays nested in items are indexed too.
+        for (int id = 0; id < builder.keys.size(); id++) {
+            if (builder.fields.get(id) instanceof ArrayField array && array.items() != null
+                    && array.items().fields() != null) {
+                Map<String, FieldDefinition> columns = array.items().fields();
+                for (String key : columns.keySet().stream().sorted().toList()) {
+                    builder.addField(key, columns.get(key), id);
+                }
+            }
+        }
+
+        int count = builder.keys.size();
+        this.fieldKeys = builder.keys.toArray(new String[0]);
+        this.fields = builder.fields.toArray(new FieldDefinition[0]);
+        this.parentField = builder.parents.stream().mapToInt(Integer::intValue).toArray();
+        this.rootIdByKey = new HashMap<>(rootFieldCount * 2);
+        this.itemIdByKey = new Map[count];
+        List<List<Integer>> items = new ArrayList<>(count);
+        for (int id = 0; id < count; id++) {
+            items.add(new ArrayList<>());
+        }
+        for (int id = 0; id < count; id++) {
+            int parent = parentField[id];
+            if (parent < 0) {
+                rootIdByKey.put(fieldKeys[id], id);
+            } else {
+                items.get(parent).add(id);
+                if (itemIdByKey[parent] == null) {
+                    itemIdByKey[parent] = new HashMap<>();
+                }
+                itemIdByKey[parent].put(fieldKeys[id], id);
+            }
+        }
+        this.itemFields = new int[count][];
+        for (int id = 0; id < count; id++) {
+            itemFields[id] = toArray(items.get(id));
+        }
+
+        LayoutWalker walker = new LayoutWalker();
+        if (layout != null) {
+            walker.walk(layout, -1, "$.layout");
+        }
+        this.nodes = walker.elements.toArray(new LayoutElement[0]);
+        this.parentNode = walker.parents.stream().mapToInt(Integer::intValue).toArray();
+        this.positionInParent = walker.positions.stream().mapToInt(Integer::intValue).toArray();
+        this.nodeField = walker.fieldIds.stream().mapToInt(Integer::intValue).toArray();
+        List<List<Integer>> children = new ArrayList<>(nodes.length);
+        List<List<Integer>> fieldNodes = new ArrayList<>(count);
+        for (int node = 0; node < nodes.length; node++) {
+            children.add(new ArrayList<>());
+        }
+        for (int id = 0; id < count; id++) {
+            fieldNodes.add(new ArrayList<>());
+        }
+        List<Integer> roots = new ArrayList<>();
+        for (int node = 0; node < nodes.length; node++) {
+            (parentNode[node] < 0 ? roots : children.get(parentNode[node])).add(node);
+            if (nodeField[node] >= 0) {
+                fieldNodes.get(nodeField[node]).add(node);
+            }
+        }
+        this.childNodes = new int[nodes.length][];
+        for (int node = 0; node < nodes.length; node++) {
+            childNodes[node] = toArray(children.get(node));
+        }
+        this.rootNodes = toArray(roots);
+        this.placements = new int[count][];
+        for (int id = 0; id < count; id++) {
+            placements[id] = toArray(fieldNodes.get(id));
+        }
+
+        for (int id = 0; id < count; id++) {
+            ValidationRules validation = fields[id].getValidation();
+            if (validation == null || validation.rules() == null) {
+                continue;
+            }
+            String location = fieldLocation(id) + ".validation.rules";
+            List<ValidationRule> rules = validation.rules();
+            for (int i = 0; i < rules.size(); i++) {
+                walker.resolveBlock(rules.get(i).when(), parentField[id], location + "[" + i + "].when");
+            }
+        }
+        this.conditionTargets = walker.conditionTargets;
+        this.danglingReferences = List.copyOf(walker.dangling);
+    }
+
+    /**
+     * Indexes the fields and layout of a message.
+     */
+    public static FormIndex of(CanonicalFormMessage message) {
+        return new FormIndex(message.fields() == null ? Map.of() : message.fields(), message.layout());
+    }
+
+    /**
+     * Indexes a set of fields without a layout, e.g. the columns of an array field.
+     */
+    public static FormIndex of(Map<String, FieldDefinition> fields) {
+        return new FormIndex(fields, null);
+    }
+
+    // --- Fields ---
+
+    /**
+     * Returns the number of fields, including item fields.
+     */
+    public int fieldCount() {
+        return fieldKeys.length;
+    }
+
+    /**
+     * Returns the number of top-level fields. Their ids come first.
+     */
+    public int rootFieldCount() {
+        return rootFieldCount;
+    }
+
+    /**
+     * @return The id of a top-level field, or -1 if the form has no such field.
+     */
+    public int idOf(String fieldKey) {
+        Integer id = rootIdByKey.get(fieldKey);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return The id of an item field of an array field, or -1 if the items have no such field.
+     */
+    public int itemIdOf(int arrayId, String fieldKey) {
+        Map<String, Integer> ids = itemIdByKey[arrayId];
+        Integer id = ids == null ? null : ids.get(fieldKey);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Same as {@link #idOf(String)}: top-level field ids are the rule slots.
+     */
+    @Override
+    public int slotOf(String fieldKey) {
+        return idOf(fieldKey);
+    }
+
+    public String fieldKey(int id) {
+        return fieldKeys[id];
+    }
+
+    public FieldDefinition field(int id) {
+        return fields[id];
+    }
+
+    /**
+     * @return The id of the array field an item field belongs to, or -1 for a top-level field.
+     */
+    public int parentField(int id) {
+        return parentField[id];
+    }
+
+    /**
+     * Returns the ids of the item fields of an array field, in key order. The array must not be modified.
+     */
+    public int[] itemFields(int id) {
+        return itemFields[id];
+    }
+
+    /**
+     * Returns the layout nodes that place a field, in pre-order. The array must not be modified.
+     */
+    public int[] placementsOf(int id) {
+        return placements[id];
+    }
+
+    // --- Layout ---
+
+    public int layoutNodeCount() {
+        return nodes.length;
+    }
+
+    public LayoutElement layoutNode(int node) {
+        return nodes[node];
+    }
+
+    /**
+     * @return The parent node, or -1 for an element of the top-level layout.
+     */
+    public int parentNode(int node) {
+        return parentNode[node];
+    }
+
+    /**
+     * @return The index of the node in its parent's elements, or in the top-level layout.
+     */
+    public int positionInParent(int node) {
+        return positionInParent[node];
+    }
+
+    /**
+     * Returns the child nodes of a group or row. The array must not be modified.
+     */
+    public int[] childNodes(int node) {
+        return childNodes[node];
+    }
+
+    /**
+     * Returns the nodes of the top-level layout. The array must not be modified.
+     */
+    public int[] rootNodes() {
+        return rootNodes;
+    }
+
+    /**
+     * @return The field a {@link FieldRef} node places, or -1 for other nodes and dangling references.
+     */
+    public int fieldOfNode(int node) {
+        return nodeField[node];
+    }
+
+    // --- Conditions and references ---
+
+    /**
+     * @return The field a condition of this form tests, or -1 if it is dangling or not part of this form.
+     */
+    public int fieldOf(Condition condition) {
+        Integer id = conditionTargets.get(condition);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the layout references and conditions that name no field, with the location of each.
+     */
+    public List<ValidationError> danglingReferences() {
+        return danglingReferences;
+    }
+
+    /**
+     * @return This index.
+     * @throws RenderingException with code ERR_DANGLING_REFERENCE if any reference names no field.
+     */
+    public FormIndex requireResolved() {
+        if (!danglingReferences.isEmpty()) {
+            throw new RenderingException("Form references unknown fields.", "ERR_DANGLING_REFERENCE",
+                    danglingReferences);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a member to a JSONPath location, in the dot or bracket notation the schema validator
+     * uses: {@code $.fields.occupation}, but {@code $.fields['a.b']}.
+     */
+    public static String memberLocation(String location, String key) {
+        if (!key.isEmpty() && isIdentifier(key)) {
+            return location + "." + key;
+        }
+        return location + "['" + key.replace("\\", "\\\\").replace("'", "\\'") + "']";
+    }
+
+    private static boolean isIdentifier(String key) {
+        if (!Character.isLetter(key.charAt(0)) && key.charAt(0) != '_') {
+            return false;
+        }
+        for (int i = 1; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String fieldLocation(int id) {
+        int parent = parentField[id];
+        return memberLocation(parent < 0 ? "$.fields" : fieldLocation(parent) + ".items.fields", fieldKeys[id]);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.isEmpty() ? NONE : ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static final class Builder {
+        private final List<String> keys = new ArrayList<>();
+        private final List<FieldDefinition> fields = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+
+        private void addField(String key, FieldDefinition field, int parent) {
+            keys.add(key);
+            fields.add(field);
+            parents.add(parent);
+        }
+    }
+
+    /**
+     * Flattens the layout and resolves references, collecting the dangling ones.
+     */
+    private final class LayoutWalker {
+        private final List<LayoutElement> elements = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private final List<Integer> fieldIds = new ArrayList<>();
+        private final IdentityHashMap<Condition, Integer> conditionTargets = new IdentityHashMap<>();
+        private final List<ValidationError> dangling = new ArrayList<>();
+
+        private void walk(List<LayoutElement> layout, int parent, String location) {
+            for (int i = 0; i < layout.size(); i++) {
+                LayoutElement element = layout.get(i);
+                String elementLocation = location + "[" + i + "]";
+                int node = elements.size();
+                elements.add(element);
+                parents.add(parent);
+                positions.add(i);
+                fieldIds.add(-1);
+
+                List<VisibilityRule> rules = element.getVisibilityRules();
+                if (rules != null) {
+                    for (int r = 0; r < rules.size(); r++) {
+                        resolveBlock(rules.get(r).when(), -1, elementLocation + ".visibilityRules[" + r + "].when");
+                    }
+                }
+                if (element instanceof FieldRef ref) {
+                    int id = idOf(ref.key());
+                    if (id < 0) {
+                        dangling.add(new ValidationError("ERR_DANGLING_REFERENCE",
+                                "Layout references unknown field: " + ref.key(), elementLocation + ".key"));
+                    }
+                    fieldIds.set(node, id);
+                } else if (element instanceof Group group && group.elements() != null) {
+                    walk(group.elements(), node, elementLocation + ".elements");
+                } else if (element instanceof Row row && row.elements() != null) {
+                    walk(row.elements(), node, elementLocation + ".elements");
+                }
+            }
+        }
+
+        /**
+         * @param scope The array field whose item fields the conditions name, or -1 for top-level fields.
+         */
+        private void resolveBlock(RuleBlock block, int scope, String location) {
+            if (block == null) {
+                return;
+            }
+            if (block.conditions() != null) {
+                for (int i = 0; i < block.conditions().size(); i++) {
+                    Condition condition = block.conditions().get(i);
+                    int id = scope < 0 ? idOf(condition.field()) : itemIdOf(scope, condition.field());
+                    if (id < 0) {
+                        dangling.add(new ValidationError("ERR_DANGLING_REFERENCE",
+                                "Condition references unknown field: " + condition.field(),
+                                location + ".conditions[" + i + "].field"));
+                    } else {
+                        conditionTargets.put(condition, id);
+                    }
+                }
+            }
+            if (block.rules() != null) {
+                for (int i = 0; i < block.rules().size(); i++) {
+                    resolveBlock(block.rules().get(i), scope, location + ".rules[" + i + "]");
+                }
+            }
+        }
+    }
+}
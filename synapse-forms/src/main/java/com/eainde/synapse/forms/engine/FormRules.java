@@ -0,0 +1,212 @@
+package com.eainde.synapse.forms.engine;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.rules.ValidationAction;
+import com.eainde.synapse.forms.domain.rules.ValidationRule;
+import com.eainde.synapse.forms.domain.rules.VisibilityRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The visibility and validation rules of a form, compiled once into {@link RuleProgram}s.
+ * <p>
+ * Fields get dense slots in key order, the top-level field ids of the form's {@link FormIndex}.
+ * A layout element is visible when every one of its visibility rules resolves to visible (a rule
+ * resolves to {@code visible} when its block matches, and to {@code !visible} otherwise); a field is
+ * visible when one of its placements and all of that placement's ancestors are visible.
+ * <p>
+ * Matching {@link ValidationRule}s apply their actions in order, each non-null property overriding
+ * the field's base {@link ValidationRules}.
+ * <p>
+ * Instances are immutable and safe to share across threads.
+ */
+public final class FormRules {
+
+    private final FormIndex index;
+    private final int slotCount;
+
+    private final RuleProgram[] visibilityPrograms;
+    private final boolean[] visibleWhenMatched;
+    /** Per field slot, one entry per layout placement: the visibility rule ids on the path to that placement. */
+    private final int[][][] placements;
+
+    private final ValidationRules[] baseValidation;
+    private final RuleProgram[][] validationPrograms;
+    private final ValidationAction[][] validationActions;
+
+    private FormRules(FormIndex index) {
+        this.index = index;
+        this.slotCount = index.rootFieldCount();
+        RuleCompiler compiler = new RuleCompiler(index);
+
+        // Layout nodes are in pre-order, so each node's parent path is known before the node itself.
+        IdentityHashMap<VisibilityRule, Integer> ids = new IdentityHashMap<>();
+        List<RuleProgram> programs = new ArrayList<>();
+        List<Boolean> whenMatched = new ArrayList<>();
+        int[][] nodePaths = new int[index.layoutNodeCount()][];
+        for (int node = 0; node < nodePaths.length; node++) {
+            int parent = index.parentNode(node);
+            int[] path = parent < 0 ? new int[0] : nodePaths[parent];
+            List<VisibilityRule> rules = index.layoutNode(node).getVisibilityRules();
+            if (rules != null && !rules.isEmpty()) {
+                path = Arrays.copyOf(path, path.length + rules.size());
+                for (int i = 0; i < rules.size(); i++) {
+                    path[path.length - rules.size() + i] = ids.computeIfAbsent(rules.get(i), rule -> {
+                        programs.add(compiler.compile(rule.when()));
+                        whenMatched.add(rule.visible());
+                        return programs.size() - 1;
+                    });
+                }
+            }
+            nodePaths[node] = path;
+        }
+        this.visibilityPrograms = programs.toArray(new RuleProgram[0]);
+        this.visibleWhenMatched = new boolean[visibilityPrograms.length];
+        for (int i = 0; i < visibleWhenMatched.length; i++) {
+            visibleWhenMatched[i] = whenMatched.get(i);
+        }
+        this.placements = new int[slotCount][][];
+        for (int slot = 0; slot < slotCount; slot++) {
+            int[] nodes = index.placementsOf(slot);
+            placements[slot] = new int[nodes.length][];
+            for (int i = 0; i < nodes.length; i++) {
+                placements[slot][i] = nodePaths[nodes[i]];
+            }
+        }
+
+        this.baseValidation = new ValidationRules[slotCount];
+        this.validationPrograms = new RuleProgram[slotCount][];
+        this.validationActions = new ValidationAction[slotCount][];
+        for (int slot = 0; slot < slotCount; slot++) {
+            ValidationRules validation = index.field(slot).getValidation();
+            baseValidation[slot] = validation;
+            List<ValidationRule> rules = validation == null || validation.rules() == null ? List.of() : validation.rules();
+            validationPrograms[slot] = new RuleProgram[rules.size()];
+            validationActions[slot] = new ValidationAction[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                validationPrograms[slot][i] = compiler.compile(rules.get(i).when());
+                validationActions[slot][i] = rules.get(i).then();
+            }
+        }
+    }
+
+    /**
+     * Compiles the rules of a form.
+     *
+     * @throws com.eainde.synapse.forms.exception.RenderingException if a condition references an unknown field.
+     */
+    public static FormRules compile(CanonicalFormMessage message) {
+        return new FormRules(FormIndex.of(message));
+    }
+
+    /**
+     * Compiles the rules of a set of fields without a layout, e.g. the columns of an array field.
+     */
+    public static FormRules compile(Map<String, FieldDefinition> fields) {
+        return new FormRules(FormIndex.of(fields));
+    }
+
+    /**
+     * Compiles the rules of an already indexed form.
+     *
+     * @throws com.eainde.synapse.forms.exception.RenderingException if a condition references an unknown field.
+     */
+    public static FormRules compile(FormIndex index) {
+        return new FormRules(index);
+    }
+
+    /**
+     * @return The slot of a field, or -1 if the form has no such field.
+     */
+    public int slotOf(String fieldKey) {
+        return index.slotOf(fieldKey);
+    }
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public String fieldKey(int slot) {
+        return index.fieldKey(slot);
+    }
+
+    /**
+     * Returns the index the rules were compiled against; its top-level field ids are the slots.
+     */
+    public FormIndex index() {
+        return index;
+    }
+
+    /**
+     * Binds submitted values to slots (one map lookup per field) and evaluates all rules.
+     */
+    public RuleEvaluation evaluate(Map<String, ?> values) {
+        Object[] slotValues = new Object[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            slotValues[slot] = values.get(index.fieldKey(slot));
+        }
+        return evaluate(slotValues);
+    }
+
+    /**
+     * Evaluates all rules against values already bound to slots.
+     */
+    public RuleEvaluation evaluate(Object[] slotValues) {
+        boolean[] ruleVisible = new boolean[visibilityPrograms.length];
+        for (int i = 0; i < visibilityPrograms.length; i++) {
+            ruleVisible[i] = visibilityPrograms[i].test(slotValues) == visibleWhenMatched[i];
+        }
+
+        int count = slotCount;
+        boolean[] visible = new boolean[count];
+        boolean[] required = new boolean[count];
+        Integer[] minimum = new Integer[count];
+        Integer[] maximum = new Integer[count];
+        for (int slot = 0; slot < count; slot++) {
+            visible[slot] = isAnyPlacementVisible(placements[slot], ruleVisible);
+
+            ValidationRules base = baseValidation[slot];
+            Boolean isRequired = base == null ? null : base.required();
+            Integer min = base == null ? null : base.minimum();
+            Integer max = base == null ? null : base.maximum();
+            RuleProgram[] programs = validationPrograms[slot];
+            for (int i = 0; i < programs.length; i++) {
+                if (programs[i].test(slotValues)) {
+                    ValidationAction action = validationActions[slot][i];
+                    if (action.required() != null) isRequired = action.required();
+                    if (action.minimum() != null) min = action.minimum();
+                    if (action.maximum() != null) max = action.maximum();
+                }
+            }
+            required[slot] = Boolean.TRUE.equals(isRequired);
+            minimum[slot] = min;
+            maximum[slot] = max;
+        }
+        return new RuleEvaluation(this, visible, required, minimum, maximum);
+    }
+
+    private static boolean isAnyPlacementVisible(int[][] fieldPlacements, boolean[] ruleVisible) {
+        if (fieldPlacements.length == 0) {
+            return true;
+        }
+        for (int[] path : fieldPlacements) {
+            boolean visible = true;
+            for (int rule : path) {
+                if (!ruleVisible[rule]) {
+                    visible = false;
+                    break;
+                }
+            }
+            if (visible) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,115 @@
+package com.eainde.synapse.forms.engine;
+
+import com.eainde.synapse.forms.domain.rules.Condition;
+import com.eainde.synapse.forms.domain.rules.LogicalOperator;
+import com.eainde.synapse.forms.domain.rules.RuleBlock;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compiles {@link RuleBlock} trees into {@link RuleProgram}s.
+ * Within a block, leaf conditions are laid out before nested blocks, so the cheap checks
+ * get the first chance to short-circuit.
+ */
+public class RuleCompiler {
+
+    private final SlotResolver slots;
+
+    public RuleCompiler(SlotResolver slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * @param block The rule block to compile.
+     * @return The flattened program.
+     * @throws RenderingException if a condition references a field the resolver does not know.
+     */
+    public RuleProgram compile(RuleBlock block) {
+        Emitter emitter = new Emitter();
+        List<ValidationError> errors = new ArrayList<>();
+        emitBlock(block, emitter, errors);
+        if (!errors.isEmpty()) {
+            throw new RenderingException("Rule references unknown fields.", "ERR_RULE_COMPILATION", errors);
+        }
+        return emitter.toProgram();
+    }
+
+    private void emitBlock(RuleBlock block, Emitter emitter, List<ValidationError> errors) {
+        int node = emitter.add(block.operator() == LogicalOperator.OR ? RuleProgram.OR : RuleProgram.AND, 0, null);
+        if (block.conditions() != null) {
+            for (Condition condition : block.conditions()) {
+                emitCondition(condition, emitter, errors);
+            }
+        }
+        if (block.rules() != null) {
+            for (RuleBlock child : block.rules()) {
+                emitBlock(child, emitter, errors);
+            }
+        }
+        emitter.close(node);
+    }
+
+    private void emitCondition(Condition condition, Emitter emitter, List<ValidationError> errors) {
+        int slot = slots.slotOf(condition.field());
+        if (slot < 0) {
+            errors.add(new ValidationError("ERR_RULE_COMPILATION",
+                    "Condition references unknown field: " + condition.field(), condition.field()));
+            slot = 0;
+        }
+        int node = switch (condition.operator()) {
+            case EQUALS -> emitter.add(RuleProgram.EQUALS, slot, condition.value());
+            case NOT_EQUALS -> emitter.add(RuleProgram.NOT_EQUALS, slot, condition.value());
+            case IN -> emitter.add(RuleProgram.IN, slot, candidates(condition.value()));
+            case NOT_IN -> emitter.add(RuleProgram.NOT_IN, slot, candidates(condition.value()));
+            case IS_BLANK -> emitter.add(RuleProgram.IS_BLANK, slot, null);
+            case IS_NOT_BLANK -> emitter.add(RuleProgram.IS_NOT_BLANK, slot, null);
+        };
+        emitter.close(node);
+    }
+
+    private static Object[] candidates(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return collection.toArray();
+        }
+        return value == null ? new Object[0] : new Object[]{value};
+    }
+
+    private static final class Emitter {
+        private int[] opcodes = new int[16];
+        private int[] subtreeEnd = new int[16];
+        private int[] slots = new int[16];
+        private Object[] operands = new Object[16];
+        private int size;
+
+        int add(int opcode, int slot, Object operand) {
+            if (size == opcodes.length) {
+                int capacity = size * 2;
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                subtreeEnd = Arrays.copyOf(subtreeEnd, capacity);
+                slots = Arrays.copyOf(slots, capacity);
+                operands = Arrays.copyOf(operands, capacity);
+            }
+            opcodes[size] = opcode;
+            slots[size] = slot;
+            operands[size] = operand;
+            return size++;
+        }
+
+        void close(int node) {
+            subtreeEnd[node] = size;
+        }
+
+        RuleProgram toProgram() {
+            return new RuleProgram(
+                    Arrays.copyOf(opcodes, size),
+                    Arrays.copyOf(subtreeEnd, size),
+                    Arrays.copyOf(slots, size),
+                    Arrays.copyOf(operands, size));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.eainde.synapse.forms.engine;
+
+/**
+ * The outcome of evaluating {@link FormRules} against one set of submitted values.
+ */
+public final class RuleEvaluation {
+
+    private final FormRules rules;
+    private final boolean[] visible;
+    private final boolean[] required;
+    private final Integer[] minimum;
+    private final Integer[] maximum;
+
+    RuleEvaluation(FormRules rules, boolean[] visible, boolean[] required, Integer[] minimum, Integer[] maximum) {
+        this.rules = rules;
+        this.visible = visible;
+        this.required = required;
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+    public boolean isVisible(int slot) {
+        return visible[slot];
+    }
+
+    public boolean isRequired(int slot) {
+        return required[slot];
+    }
+
+    /**
+     * @return The effective minimum, or {@code null} if none applies.
+     */
+    public Integer getMinimum(int slot) {
+        return minimum[slot];
+    }
+
+    /**
+     * @return The effective maximum, or {@code null} if none applies.
+     */
+    public Integer getMaximum(int slot) {
+        return maximum[slot];
+    }
+
+    public boolean isVisible(String fieldKey) {
+        return visible[requireSlot(fieldKey)];
+    }
+
+    public boolean isRequired(String fieldKey) {
+        return required[requireSlot(fieldKey)];
+    }
+
+    public Integer getMinimum(String fieldKey) {
+        return minimum[requireSlot(fieldKey)];
+    }
+
+    public Integer getMaximum(String fieldKey) {
+        return maximum[requireSlot(fieldKey)];
+    }
+
+    private int requireSlot(String fieldKey) {
+        int slot = rules.slotOf(fieldKey);
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unknown field: " + fieldKey);
+        }
+        return slot;
+    }
+}
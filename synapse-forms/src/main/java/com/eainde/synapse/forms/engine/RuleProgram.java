@@ -0,0 +1,119 @@
+package com.eainde.synapse.forms.engine;
+
+import java.util.Collection;
+
+/**
+ * A {@link com.eainde.synapse.forms.domain.rules.RuleBlock} flattened into parallel arrays in pre-order.
+ * Each node stores the index just past its subtree, so a short-circuited AND/OR block jumps over its
+ * remaining children. Evaluation reads field values by slot index and allocates nothing.
+ */
+public final class RuleProgram {
+
+    static final int AND = 0;
+    static final int OR = 1;
+    static final int EQUALS = 2;
+    static final int NOT_EQUALS = 3;
+    static final int IN = 4;
+    static final int NOT_IN = 5;
+    static final int IS_BLANK = 6;
+    static final int IS_NOT_BLANK = 7;
+
+    private final int[] opcodes;
+    private final int[] subtreeEnd;
+    private final int[] slots;
+    private final Object[] operands;
+
+    RuleProgram(int[] opcodes, int[] subtreeEnd, int[] slots, Object[] operands) {
+        this.opcodes = opcodes;
+        this.subtreeEnd = subtreeEnd;
+        this.slots = slots;
+        this.operands = operands;
+    }
+
+    /**
+     * Evaluates the program against slot-indexed field values.
+     *
+     * @param values Field values indexed by the slots assigned at compile time; missing values are {@code null}.
+     * @return Whether the rule block matches.
+     */
+    public boolean test(Object[] values) {
+        return eval(0, values);
+    }
+
+    /**
+     * @return The number of flattened nodes (blocks and conditions).
+     */
+    public int size() {
+        return opcodes.length;
+    }
+
+    private boolean eval(int pc, Object[] values) {
+        int opcode = opcodes[pc];
+        if (opcode == AND || opcode == OR) {
+            boolean and = opcode == AND;
+            int end = subtreeEnd[pc];
+            for (int child = pc + 1; child < end; child = subtreeEnd[child]) {
+                if (eval(child, values) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+        Object value = values[slots[pc]];
+        return switch (opcode) {
+            case EQUALS -> matches(value, operands[pc]);
+            case NOT_EQUALS -> !matches(value, operands[pc]);
+            case IN -> in(value, (Object[]) operands[pc]);
+            case NOT_IN -> !in(value, (Object[]) operands[pc]);
+            case IS_BLANK -> isBlank(value);
+            case IS_NOT_BLANK -> !isBlank(value);
+            default -> throw new IllegalStateException("Unknown opcode " + opcode);
+        };
+    }
+
+    private static boolean in(Object value, Object[] candidates) {
+        if (value instanceof Collection<?> selected) {
+            for (Object element : selected) {
+                if (in(element, candidates)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (Object candidate : candidates) {
+            if (matches(value, candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Equality that treats numbers by value, so a submitted 1 matches a rule constant 1.0.
+     */
+    static boolean matches(Object value, Object operand) {
+        if (value == operand) {
+            return true;
+        }
+        if (value == null || operand == null) {
+            return false;
+        }
+        if (value instanceof Number a && operand instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        return value.equals(operand);
+    }
+
+    static boolean isBlank(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof String text) {
+            return text.isBlank();
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.isEmpty();
+        }
+        return false;
+    }
+}
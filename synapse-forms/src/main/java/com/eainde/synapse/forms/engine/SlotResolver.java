@@ -0,0 +1,14 @@
+package com.eainde.synapse.forms.engine;
+
+/**
+ * Maps a field key to the dense slot index its value is bound to at evaluation time.
+ */
+@FunctionalInterface
+public interface SlotResolver {
+
+    /**
+     * @param fieldKey The key referenced by a condition.
+     * @return The slot index, or a negative value if the key is unknown.
+     */
+    int slotOf(String fieldKey);
+}
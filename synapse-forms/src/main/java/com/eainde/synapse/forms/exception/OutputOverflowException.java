@@ -0,0 +1,20 @@
+package com.eainde.synapse.forms.exception;
+
+/**
+ * Thrown when rendered output does not fit the caller's buffer.
+ * Carries the size the output needs, so the caller can retry with a larger buffer.
+ */
+public class OutputOverflowException extends RenderingException {
+
+    private final int requiredBytes;
+
+    public OutputOverflowException(int requiredBytes, int availableBytes) {
+        super("Rendered output needs " + requiredBytes + " bytes but only " + availableBytes + " remain.",
+                "ERR_BUFFER_OVERFLOW", null);
+        this.requiredBytes = requiredBytes;
+    }
+
+    public int getRequiredBytes() {
+        return requiredBytes;
+    }
+}
@@ -16,6 +16,12 @@ public class RenderingException extends RuntimeException {
         this.details = details;
     }
 
+    public RenderingException(String message, String errorCode, List<ValidationError> details, Throwable cause) {
+        super(message, cause);
+        this.errorCode = errorCode;
+        this.details = details;
+    }
+
     public String getErrorCode() {
         return errorCode;
     }
@@ -0,0 +1,207 @@
+package com.eainde.synapse.forms.instrumentation;
+
+import com.eainde.synapse.forms.TargetFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records render metrics in a Micrometer {@link MeterRegistry}:
+ * <ul>
+ *     <li>{@code synapse.render.stage}: timer per stage, with a percentile histogram.</li>
+ *     <li>{@code synapse.render.stage.allocated}: bytes allocated per stage, for sampled renders.</li>
+ *     <li>{@code synapse.render.output.size}: characters or bytes written per render.</li>
+ *     <li>{@code synapse.render.errors}: failed renders, tagged by error code.</li>
+ * </ul>
+ * All meters are tagged by {@code format} and, unless disabled, {@code formId}. Each meter is
+ * registered on first use and kept, so reporting does not go through the registry.
+ * Micrometer is an optional dependency of this library; add micrometer-core to use this class.
+ */
+public class MicrometerRenderInstrumentation implements RenderInstrumentation {
+
+    private static final String UNKNOWN = "unknown";
+    private static final RenderStage[] STAGES = RenderStage.values();
+    private static final TargetFormat[] FORMATS = TargetFormat.values();
+    private static final String[] STAGE_TAGS = Arrays.stream(STAGES)
+            .map(stage -> stage.name().toLowerCase(Locale.ROOT))
+            .toArray(String[]::new);
+
+    private final MeterRegistry registry;
+    private final boolean tagFormId;
+    private final double allocationSampleRate;
+    private final ConcurrentHashMap<String, FormMeters> meters = new ConcurrentHashMap<>();
+
+    private MicrometerRenderInstrumentation(Builder builder) {
+        this.registry = builder.registry;
+        this.tagFormId = builder.tagFormId;
+        this.allocationSampleRate = ThreadAllocation.isSupported() ? builder.allocationSampleRate : 0.0;
+    }
+
+    public static Builder builder(MeterRegistry registry) {
+        return new Builder(registry);
+    }
+
+    @Override
+    public boolean sampleAllocations() {
+        return allocationSampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < allocationSampleRate;
+    }
+
+    @Override
+    public void stageCompleted(RenderStage stage, TargetFormat format, String formId, long durationNanos,
+                               long allocatedBytes) {
+        FormMeters form = meters(formId);
+        form.stageTimer(stage, format).record(durationNanos, TimeUnit.NANOSECONDS);
+        if (allocatedBytes >= 0) {
+            form.allocated(stage, format).record(allocatedBytes);
+        }
+    }
+
+    @Override
+    public void renderCompleted(TargetFormat format, String formId, long outputSize) {
+        if (outputSize < 0) {
+            return;
+        }
+        meters(formId).outputSize(format).record(outputSize);
+    }
+
+    @Override
+    public void renderFailed(TargetFormat format, String formId, String errorCode) {
+        meters(formId).errors(format, errorCode == null ? UNKNOWN : errorCode).increment();
+    }
+
+    private FormMeters meters(String formId) {
+        String tag = formIdTag(formId);
+        FormMeters form = meters.get(tag);
+        return form != null ? form : meters.computeIfAbsent(tag, FormMeters::new);
+    }
+
+    private String formIdTag(String formId) {
+        if (!tagFormId) {
+            return "all";
+        }
+        return formId == null ? UNKNOWN : formId;
+    }
+
+    /**
+     * The meters of one formId tag, registered on first use and then reused, so a render only
+     * indexes into arrays instead of looking meters up in the registry.
+     */
+    private final class FormMeters {
+        private final String formId;
+        private final AtomicReferenceArray<Timer> stageTimers = new AtomicReferenceArray<>(STAGES.length * FORMATS.length);
+        private final AtomicReferenceArray<DistributionSummary> allocated =
+                new AtomicReferenceArray<>(STAGES.length * FORMATS.length);
+        private final AtomicReferenceArray<DistributionSummary> outputSizes = new AtomicReferenceArray<>(FORMATS.length);
+        private final Map<TargetFormat, Map<String, Counter>> errors = new EnumMap<>(TargetFormat.class);
+
+        private FormMeters(String formId) {
+            this.formId = formId;
+            for (TargetFormat format : FORMATS) {
+                errors.put(format, new ConcurrentHashMap<>());
+            }
+        }
+
+        // Registering a meter twice returns the first one, so racing threads end up with the same meter.
+
+        private Timer stageTimer(RenderStage stage, TargetFormat format) {
+            int index = stage.ordinal() * FORMATS.length + format.ordinal();
+            Timer timer = stageTimers.get(index);
+            if (timer == null) {
+                timer = Timer.builder("synapse.render.stage")
+                        .description("Time spent in one stage of the render pipeline")
+                        .tag("stage", STAGE_TAGS[stage.ordinal()])
+                        .tag("format", format.name())
+                        .tag("formId", formId)
+                        .publishPercentileHistogram()
+                        .register(registry);
+                stageTimers.set(index, timer);
+            }
+            return timer;
+        }
+
+        private DistributionSummary allocated(RenderStage stage, TargetFormat format) {
+            int index = stage.ordinal() * FORMATS.length + format.ordinal();
+            DistributionSummary summary = allocated.get(index);
+            if (summary == null) {
+                summary = DistributionSummary.builder("synapse.render.stage.allocated")
+                        .description("Bytes allocated by the rendering thread in one stage")
+                        .baseUnit("bytes")
+                        .tag("stage", STAGE_TAGS[stage.ordinal()])
+                        .tag("format", format.name())
+                        .tag("formId", formId)
+                        .register(registry);
+                allocated.set(index, summary);
+            }
+            return summary;
+        }
+
+        private DistributionSummary outputSize(TargetFormat format) {
+            DistributionSummary summary = outputSizes.get(format.ordinal());
+            if (summary == null) {
+                summary = DistributionSummary.builder("synapse.render.output.size")
+                        .description("Size of the rendered output")
+                        .tag("format", format.name())
+                        .tag("formId", formId)
+                        .register(registry);
+                outputSizes.set(format.ordinal(), summary);
+            }
+            return summary;
+        }
+
+        private Counter errors(TargetFormat format, String errorCode) {
+            Map<String, Counter> counters = errors.get(format);
+            Counter counter = counters.get(errorCode);
+            return counter != null ? counter : counters.computeIfAbsent(errorCode, code -> Counter.builder("synapse.render.errors")
+                    .description("Renders that failed, by error code")
+                    .tag("format", format.name())
+                    .tag("formId", formId)
+                    .tag("errorCode", code)
+                    .register(registry));
+        }
+    }
+
+    public static final class Builder {
+        private final MeterRegistry registry;
+        private boolean tagFormId = true;
+        private double allocationSampleRate = 0.0;
+
+        private Builder(MeterRegistry registry) {
+            this.registry = Objects.requireNonNull(registry, "registry");
+        }
+
+        /**
+         * Whether meters are tagged by formId. Disable when the number of distinct forms is unbounded.
+         */
+        public Builder tagFormId(boolean tagFormId) {
+            this.tagFormId = tagFormId;
+            return this;
+        }
+
+        /**
+         * Fraction of renders whose stages also record allocated bytes, between 0 (default) and 1.
+         * Ignored on JVMs without per-thread allocation counters.
+         */
+        public Builder allocationSampleRate(double allocationSampleRate) {
+            if (allocationSampleRate < 0.0 || allocationSampleRate > 1.0) {
+                throw new IllegalArgumentException("allocationSampleRate must be between 0 and 1: " + allocationSampleRate);
+            }
+            this.allocationSampleRate = allocationSampleRate;
+            return this;
+        }
+
+        public MicrometerRenderInstrumentation build() {
+            return new MicrometerRenderInstrumentation(this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.eainde.synapse.forms.instrumentation;
+
+import com.eainde.synapse.forms.TargetFormat;
+
+/**
+ * SPI through which the renderer reports per-stage timings, output sizes and failures.
+ * <p>
+ * Implementations are called on the rendering thread and must be thread-safe and cheap.
+ * The formId is {@code null} when the message has none (it then fails bean validation).
+ */
+public interface RenderInstrumentation {
+
+    /** Reports nothing; the renderer skips all clock reads when this is configured. */
+    RenderInstrumentation NO_OP = new RenderInstrumentation() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Returns false if nothing is reported, letting the renderer skip measuring entirely.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called once per render to decide whether its stages also measure the bytes allocated by the
+     * rendering thread. Reading the thread's allocation counter is cheap but not free, so
+     * implementations typically sample.
+     */
+    default boolean sampleAllocations() {
+        return false;
+    }
+
+    /**
+     * A stage completed.
+     *
+     * @param allocatedBytes Bytes allocated by the rendering thread during the stage, or -1 if not sampled.
+     */
+    default void stageCompleted(RenderStage stage, TargetFormat format, String formId, long durationNanos,
+                                long allocatedBytes) {
+    }
+
+    /**
+     * A render completed.
+     *
+     * @param outputSize Characters or bytes written, or -1 when the output is a tree or a caller-owned generator.
+     */
+    default void renderCompleted(TargetFormat format, String formId, long outputSize) {
+    }
+
+    /**
+     * A render failed with the given {@link com.eainde.synapse.forms.exception.RenderingException} error code,
+     * {@code ERR_OUTPUT_IO} if the output could not be written, or {@code ERR_INTERNAL} for any other exception.
+     */
+    default void renderFailed(TargetFormat format, String formId, String errorCode) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.eainde.synapse.forms.instrumentation;
+
+/**
+ * The stages of the render pipeline reported to {@link RenderInstrumentation}.
+ */
+public enum RenderStage {
+    /** Jakarta Bean Validation of the input message. */
+    BEAN_VALIDATION,
+    /** The adapter mapping the message to a tree or writing it as tokens. */
+    MAPPING,
+    /** JSON Schema validation of the output. */
+    SCHEMA_VALIDATION,
+    /** Writing the output as text or bytes. */
+    SERIALIZATION
+}
@@ -0,0 +1,45 @@
+package com.eainde.synapse.forms.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the bytes allocated so far by the current thread, where the JVM supports it.
+ */
+public final class ThreadAllocation {
+
+    private static final com.sun.management.ThreadMXBean THREADS = supportedBean();
+
+    private ThreadAllocation() {
+    }
+
+    /**
+     * Returns true if {@link #currentThreadAllocatedBytes()} returns real values.
+     */
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread since it started, or -1 if unsupported.
+     */
+    public static long currentThreadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean supportedBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            try {
+                if (!threads.isThreadAllocatedMemoryEnabled()) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                }
+                return threads;
+            } catch (UnsupportedOperationException | SecurityException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
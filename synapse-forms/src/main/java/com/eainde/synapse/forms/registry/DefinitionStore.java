@@ -0,0 +1,41 @@
+package com.eainde.synapse.forms.registry;
+
+import java.nio.file.Path;
+
+/**
+ * Content-addressed storage of canonical form definitions: each is stored once, under the
+ * SHA-256 of its bytes. Implementations must be thread-safe.
+ */
+public interface DefinitionStore {
+
+    /**
+     * Stores the bytes under their hash; storing the same hash again does nothing.
+     *
+     * @throws com.eainde.synapse.forms.exception.RenderingException with code ERR_REGISTRY_IO if
+     *         the bytes cannot be stored.
+     */
+    void put(String hash, byte[] definition);
+
+    /**
+     * @return The bytes stored under the hash, or {@code null} if there are none.
+     * @throws com.eainde.synapse.forms.exception.RenderingException with code ERR_REGISTRY_IO if
+     *         the bytes cannot be read.
+     */
+    byte[] get(String hash);
+
+    /**
+     * A store that lives as long as the registry.
+     */
+    static DefinitionStore inMemory() {
+        return new InMemoryDefinitionStore();
+    }
+
+    /**
+     * A store of one file per definition under {@code directory}, fanned out by the first two
+     * characters of the hash. Files are written to a temporary name and moved into place, so a
+     * definition is either absent or complete.
+     */
+    static DefinitionStore directory(Path directory) {
+        return new DirectoryDefinitionStore(directory);
+    }
+}
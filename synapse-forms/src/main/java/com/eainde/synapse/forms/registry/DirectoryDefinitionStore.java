@@ -0,0 +1,56 @@
+package com.eainde.synapse.forms.registry;
+
+import com.eainde.synapse.forms.exception.RenderingException;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+final class DirectoryDefinitionStore implements DefinitionStore {
+
+    private final Path directory;
+
+    DirectoryDefinitionStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void put(String hash, byte[] definition) {
+        Path target = pathOf(hash);
+        if (Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Path temporary = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try {
+                Files.write(temporary, definition);
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Stored concurrently; the content is the same
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new RenderingException("Failed to store form definition " + hash, "ERR_REGISTRY_IO", null, e);
+        }
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        try {
+            return Files.readAllBytes(pathOf(hash));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RenderingException("Failed to read form definition " + hash, "ERR_REGISTRY_IO", null, e);
+        }
+    }
+
+    private Path pathOf(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
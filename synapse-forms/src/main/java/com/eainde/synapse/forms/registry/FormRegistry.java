@@ -0,0 +1,408 @@
+package com.eainde.synapse.forms.registry;
+
+import com.eainde.synapse.forms.JsonFormatRenderer;
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.engine.FormRules;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The published form definitions, served without parsing, validating or rendering them again.
+ * <p>
+ * {@link #publish} validates a definition, compiles its rules and renders it for each of its
+ * formats before anything changes; if any step fails, nothing does. Only then is the definition
+ * stored in the {@link DefinitionStore} under the SHA-256 of its canonical JSON and made the
+ * current revision of its {@link FormVersion} in one atomic step. {@link #rollback} makes the
+ * previous revision current again, equally atomically. Readers see either revision, never a mix.
+ * <p>
+ * The current revision of each form is pinned in its history, so {@link #get} is a lock-free map
+ * lookup that never prepares anything. Superseded revisions are kept in a bounded LRU index keyed
+ * by hash and formats, so a rollback usually finds them prepared; one evicted from the index is
+ * prepared again from the store, once however many rollbacks ask for it at the same time. Which
+ * revision is current is only kept in memory.
+ */
+public class FormRegistry {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final JsonFormatRenderer renderer;
+    private final ObjectMapper objectMapper;
+    private final DefinitionStore store;
+    private final Set<TargetFormat> defaultFormats;
+    private final int maximumSize;
+
+    private final Map<FormVersion, History> histories = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Revision, PublishedForm> superseded = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<Revision, CompletableFuture<PublishedForm>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    private FormRegistry(Builder builder) {
+        this.renderer = builder.renderer;
+        this.objectMapper = builder.objectMapper;
+        this.store = builder.store;
+        this.defaultFormats = builder.formats;
+        this.maximumSize = builder.maximumSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Publishes a definition for the registry's formats.
+     */
+    public PublishedForm publish(CanonicalFormMessage message) {
+        return publish(message, defaultFormats);
+    }
+
+    /**
+     * Publishes a definition as the current revision of its form ID and schema version. Publishing
+     * the current revision again changes nothing.
+     *
+     * @param formats The formats to render it for; at least one.
+     * @return The published revision.
+     * @throws RenderingException if the definition fails validation or cannot be rendered for a
+     *         format, with the renderer's error code, or ERR_REGISTRY_IO if it cannot be stored.
+     */
+    public PublishedForm publish(CanonicalFormMessage message, Set<TargetFormat> formats) {
+        if (formats.isEmpty()) {
+            throw new IllegalArgumentException("At least one format is required");
+        }
+        byte[] canonical = canonicalJson(message);
+        String hash = hash(canonical);
+        PublishedForm published = prepare(message, hash, formats);
+        store.put(hash, canonical);
+        Revision revision = new Revision(hash, Collections.unmodifiableSet(EnumSet.copyOf(formats)));
+        FormVersion version = published.getVersion();
+        while (true) {
+            History history = histories.get(version);
+            if (history == null) {
+                if (histories.putIfAbsent(version, new History(List.of(revision), published)) == null) {
+                    return published;
+                }
+            } else if (history.currentRevision().equals(revision)) {
+                return history.current;
+            } else if (histories.replace(version, history, history.push(revision, published))) {
+                retire(history);
+                return published;
+            }
+        }
+    }
+
+    /**
+     * Makes the revision published before the current one current again; the current one is dropped
+     * from the history but stays in the store.
+     *
+     * @return The revision that is now current.
+     * @throws RenderingException with code ERR_REGISTRY_NOT_FOUND if the form was never published, or
+     *         ERR_REGISTRY_NO_PREVIOUS_REVISION if it has a single revision.
+     */
+    public PublishedForm rollback(String formId, String schemaVersion) {
+        FormVersion version = new FormVersion(formId, schemaVersion);
+        while (true) {
+            History history = histories.get(version);
+            if (history == null) {
+                throw notFound(version);
+            }
+            if (history.revisions.size() < 2) {
+                throw new RenderingException("Form " + version + " has no previous revision",
+                        "ERR_REGISTRY_NO_PREVIOUS_REVISION", null);
+            }
+            Revision revision = history.revisions.get(history.revisions.size() - 2);
+            // Prepared before the switch, so readers never wait on it
+            PublishedForm published = resolve(revision);
+            if (histories.replace(version, history, history.pop(published))) {
+                synchronized (superseded) {
+                    superseded.remove(revision);
+                }
+                retire(history);
+                return published;
+            }
+        }
+    }
+
+    /**
+     * @return The current revision, or {@code null} if the form was never published.
+     */
+    public PublishedForm get(String formId, String schemaVersion) {
+        History history = histories.get(new FormVersion(formId, schemaVersion));
+        if (history == null) {
+            return null;
+        }
+        hits.increment();
+        return history.current;
+    }
+
+    /**
+     * @return The current revision rendered for the format, as UTF-8 JSON.
+     * @throws RenderingException with code ERR_REGISTRY_NOT_FOUND if the form was never published,
+     *         or ERR_FORMAT_NOT_PUBLISHED if it was not rendered for the format.
+     */
+    public byte[] renderToBytes(String formId, String schemaVersion, TargetFormat format) {
+        PublishedForm published = get(formId, schemaVersion);
+        if (published == null) {
+            throw notFound(new FormVersion(formId, schemaVersion));
+        }
+        return published.renderToBytes(format);
+    }
+
+    /**
+     * @return The hashes of the form's revisions, oldest first; the last is current.
+     */
+    public List<String> history(String formId, String schemaVersion) {
+        History history = histories.get(new FormVersion(formId, schemaVersion));
+        if (history == null) {
+            return List.of();
+        }
+        return history.revisions.stream().map(Revision::hash).toList();
+    }
+
+    /**
+     * @return Lookups of current revisions, and superseded revisions found prepared in the index.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Superseded revisions prepared again from the store after leaving the index.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    private static RenderingException notFound(FormVersion version) {
+        return new RenderingException("Form " + version + " is not published", "ERR_REGISTRY_NOT_FOUND", null);
+    }
+
+    /**
+     * Returns a superseded revision from the index, or prepares it from the store. Concurrent
+     * misses for the same revision share one load.
+     */
+    private PublishedForm resolve(Revision revision) {
+        PublishedForm indexed = indexed(revision);
+        if (indexed != null) {
+            return indexed;
+        }
+        CompletableFuture<PublishedForm> result = loading.get(revision);
+        if (result == null) {
+            CompletableFuture<PublishedForm> created = new CompletableFuture<>();
+            result = loading.putIfAbsent(revision, created);
+            if (result == null) {
+                result = created;
+                try {
+                    // A load that finished since the lookup above has left it in the index
+                    PublishedForm published = indexed(revision);
+                    if (published == null) {
+                        loads.increment();
+                        published = load(revision);
+                        cache(revision, published);
+                    }
+                    created.complete(published);
+                } catch (RuntimeException e) {
+                    created.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    loading.remove(revision, created);
+                }
+            }
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private PublishedForm indexed(Revision revision) {
+        PublishedForm published;
+        synchronized (superseded) {
+            published = superseded.get(revision);
+        }
+        if (published != null) {
+            hits.increment();
+        }
+        return published;
+    }
+
+    private PublishedForm load(Revision revision) {
+        byte[] canonical = store.get(revision.hash);
+        if (canonical == null || !hash(canonical).equals(revision.hash)) {
+            throw new RenderingException("Form definition " + revision.hash + " is missing or damaged in the store",
+                    "ERR_REGISTRY_CORRUPT", null);
+        }
+        CanonicalFormMessage message;
+        try {
+            message = objectMapper.readValue(canonical, CanonicalFormMessage.class);
+        } catch (IOException e) {
+            throw new RenderingException("Failed to read form definition " + revision.hash, "ERR_REGISTRY_CORRUPT", null, e);
+        }
+        return prepare(message, revision.hash, revision.formats);
+    }
+
+    /**
+     * Validates, compiles and renders a definition. Rendering validates the definition.
+     */
+    private PublishedForm prepare(CanonicalFormMessage message, String hash, Set<TargetFormat> formats) {
+        Map<TargetFormat, byte[]> outputs = new EnumMap<>(TargetFormat.class);
+        for (TargetFormat format : formats) {
+            outputs.put(format, renderer.renderToBytes(message, format));
+        }
+        FormRules rules = FormRules.compile(message);
+        return new PublishedForm(new FormVersion(message.formId(), message.schemaVersion()), hash, message, rules,
+                Collections.unmodifiableMap(outputs));
+    }
+
+    /**
+     * Keeps the revision a swap replaced, so a later rollback finds it prepared.
+     */
+    private void retire(History replaced) {
+        cache(replaced.currentRevision(), replaced.current);
+    }
+
+    private void cache(Revision revision, PublishedForm published) {
+        synchronized (superseded) {
+            superseded.put(revision, published);
+            Iterator<Map.Entry<Revision, PublishedForm>> eldest = superseded.entrySet().iterator();
+            while (superseded.size() > maximumSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private byte[] canonicalJson(CanonicalFormMessage message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new RenderingException("Failed to serialize form definition", "ERR_REGISTRY_IO", null, e);
+        }
+    }
+
+    private static String hash(byte[] canonical) {
+        return HexFormat.of().formatHex(SHA_256.get().digest(canonical));
+    }
+
+    /**
+     * A published revision: the hash of its definition and the formats it was rendered for.
+     */
+    private record Revision(String hash, Set<TargetFormat> formats) {
+    }
+
+    /**
+     * The revisions of a form, oldest first, and the prepared current one. Replaced, never changed,
+     * so a swap is atomic.
+     */
+    private record History(List<Revision> revisions, PublishedForm current) {
+
+        Revision currentRevision() {
+            return revisions.get(revisions.size() - 1);
+        }
+
+        History push(Revision revision, PublishedForm published) {
+            List<Revision> next = new ArrayList<>(revisions);
+            next.add(revision);
+            return new History(List.copyOf(next), published);
+        }
+
+        /**
+         * @param previous The prepared revision before the current one.
+         */
+        History pop(PublishedForm previous) {
+            return new History(revisions.subList(0, revisions.size() - 1), previous);
+        }
+    }
+
+    public static class Builder {
+        private JsonFormatRenderer renderer;
+        private ObjectMapper objectMapper;
+        private DefinitionStore store;
+        private Set<TargetFormat> formats = EnumSet.allOf(TargetFormat.class);
+        private int maximumSize = 1_000;
+
+        /**
+         * Renders and validates definitions. Defaults to {@link FormRendererConfig#jsonFormatRenderer()}.
+         */
+        public Builder renderer(JsonFormatRenderer renderer) {
+            this.renderer = renderer;
+            return this;
+        }
+
+        /**
+         * Writes the canonical JSON that is hashed and stored; it must be deterministic. Defaults to
+         * {@link FormRendererConfig#formObjectMapper()}, which orders map entries by key.
+         */
+        public Builder objectMapper(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Defaults to {@link DefinitionStore#inMemory()}.
+         */
+        public Builder store(DefinitionStore store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * The formats {@link #publish(CanonicalFormMessage)} renders for. Defaults to all of them.
+         */
+        public Builder formats(Set<TargetFormat> formats) {
+            this.formats = EnumSet.copyOf(formats);
+            return this;
+        }
+
+        /**
+         * How many prepared superseded revisions the index keeps; current revisions are always
+         * kept. Defaults to 1,000.
+         */
+        public Builder maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public FormRegistry build() {
+            FormRendererConfig config = new FormRendererConfig();
+            if (renderer == null) {
+                renderer = config.jsonFormatRenderer();
+            }
+            if (objectMapper == null) {
+                objectMapper = config.formObjectMapper();
+            }
+            if (store == null) {
+                store = DefinitionStore.inMemory();
+            }
+            return new FormRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.eainde.synapse.forms.registry;
+
+import java.util.Objects;
+
+/**
+ * Identifies a form definition in a {@link FormRegistry}. Each is published in revisions, one of
+ * which is current.
+ */
+public record FormVersion(String formId, String schemaVersion) {
+
+    public FormVersion {
+        Objects.requireNonNull(formId, "formId");
+        Objects.requireNonNull(schemaVersion, "schemaVersion");
+    }
+}
@@ -0,0 +1,20 @@
+package com.eainde.synapse.forms.registry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class InMemoryDefinitionStore implements DefinitionStore {
+
+    private final Map<String, byte[]> definitions = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String hash, byte[] definition) {
+        definitions.putIfAbsent(hash, definition.clone());
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        byte[] definition = definitions.get(hash);
+        return definition == null ? null : definition.clone();
+    }
+}
@@ -0,0 +1,104 @@
+package com.eainde.synapse.forms.registry;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.engine.FormRules;
+import com.eainde.synapse.forms.exception.RenderingException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A revision of a form definition as published: validated, its rules compiled and its outputs
+ * rendered for each of its formats. Immutable and shared between threads.
+ */
+public final class PublishedForm {
+
+    private final FormVersion version;
+    private final String hash;
+    private final CanonicalFormMessage message;
+    private final FormRules rules;
+    private final Map<TargetFormat, byte[]> outputs;
+
+    PublishedForm(FormVersion version, String hash, CanonicalFormMessage message, FormRules rules,
+                  Map<TargetFormat, byte[]> outputs) {
+        this.version = version;
+        this.hash = hash;
+        this.message = message;
+        this.rules = rules;
+        this.outputs = outputs;
+    }
+
+    public FormVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The SHA-256 of the canonical definition, in lowercase hex.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The definition. Its bean constraints are known to hold.
+     */
+    public CanonicalFormMessage getMessage() {
+        return message;
+    }
+
+    public FormRules getRules() {
+        return rules;
+    }
+
+    /**
+     * @return The formats rendered at publish time.
+     */
+    public Set<TargetFormat> getFormats() {
+        return Collections.unmodifiableSet(outputs.keySet());
+    }
+
+    /**
+     * @return The rendered JSON.
+     * @throws RenderingException with code ERR_FORMAT_NOT_PUBLISHED if the format was not rendered.
+     */
+    public String render(TargetFormat format) {
+        return new String(output(format), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a copy of the rendered UTF-8 JSON, so callers cannot mutate the published output.
+     *
+     * @throws RenderingException with code ERR_FORMAT_NOT_PUBLISHED if the format was not rendered.
+     */
+    public byte[] renderToBytes(TargetFormat format) {
+        return output(format).clone();
+    }
+
+    /**
+     * Writes the rendered UTF-8 JSON to the stream, which is neither flushed nor closed.
+     *
+     * @throws RenderingException with code ERR_FORMAT_NOT_PUBLISHED if the format was not rendered,
+     *         or ERR_OUTPUT_IO if writing fails.
+     */
+    public void writeTo(TargetFormat format, OutputStream out) {
+        try {
+            out.write(output(format));
+        } catch (IOException e) {
+            throw new RenderingException("Failed to write rendered output.", "ERR_OUTPUT_IO", null, e);
+        }
+    }
+
+    private byte[] output(TargetFormat format) {
+        byte[] output = outputs.get(format);
+        if (output == null) {
+            throw new RenderingException("Form " + version + " was not published for " + format,
+                    "ERR_FORMAT_NOT_PUBLISHED", null);
+        }
+        return output;
+    }
+}
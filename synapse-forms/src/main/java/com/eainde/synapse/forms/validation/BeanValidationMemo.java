@@ -0,0 +1,97 @@
+package com.eainde.synapse.forms.validation;
+
+import com.eainde.synapse.forms.domain.BeanConstraints;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.FormFingerprint;
+import com.eainde.synapse.forms.exception.ValidationError;
+import jakarta.validation.Validator;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers one validator's bean validation outcome per {@link CanonicalFormMessage}, so a message
+ * rendered many times (or from many threads at once) is validated only once. Each renderer owns a
+ * memo for its validator.
+ * <p>
+ * Outcomes are keyed by the message's {@link FormFingerprint}, so equal messages share one, and
+ * held in a concurrent map bounded to {@code maximumSize} definitions. Concurrent callers for the
+ * same definition wait for the first one's result. When the validator is the
+ * {@link BeanConstraints#defaultValidator()}, messages built with {@code buildValidated()} are
+ * trusted without validating them again.
+ */
+public final class BeanValidationMemo {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 1_024;
+
+    private final Validator validator;
+    private final boolean trustsPrevalidated;
+    private final int maximumSize;
+    private final ConcurrentHashMap<FormFingerprint, CompletableFuture<List<ValidationError>>> results =
+            new ConcurrentHashMap<>();
+
+    public BeanValidationMemo(Validator validator) {
+        this(validator, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public BeanValidationMemo(Validator validator, int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.validator = validator;
+        this.trustsPrevalidated = validator == BeanConstraints.defaultValidator();
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Validates the message unless an equal message has been validated before.
+     *
+     * @return The bean validation errors; empty if the message is valid.
+     */
+    public List<ValidationError> validate(CanonicalFormMessage message) {
+        if (trustsPrevalidated && BeanConstraints.isPrevalidated(message)) {
+            return List.of();
+        }
+        FormFingerprint key = FormFingerprint.of(message);
+        CompletableFuture<List<ValidationError>> result = results.get(key);
+        if (result == null) {
+            CompletableFuture<List<ValidationError>> created = new CompletableFuture<>();
+            result = results.putIfAbsent(key, created);
+            if (result == null) {
+                result = created;
+                evictBeyondMaximum(key);
+                try {
+                    created.complete(BeanConstraints.toErrors(validator.validate(message)));
+                } catch (RuntimeException e) {
+                    results.remove(key, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * The number of remembered definitions.
+     */
+    public int size() {
+        return results.size();
+    }
+
+    private void evictBeyondMaximum(FormFingerprint added) {
+        Iterator<FormFingerprint> keys = results.keySet().iterator();
+        while (results.size() > maximumSize && keys.hasNext()) {
+            if (!keys.next().equals(added)) {
+                keys.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.eainde.synapse.forms.validation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A draft-07 schema compiled into a tree of specialised checks that only answer "valid or not".
+ * <p>
+ * It covers the keywords our form schemas use. It never produces error messages: when a document
+ * fails, {@link SchemaValidator} re-runs networknt on it so the reported errors stay exactly the
+ * same. Compilation fails with {@link UnsupportedSchemaException} on any keyword it cannot check
+ * with identical semantics, in which case the schema is always validated by networknt.
+ */
+final class CompiledSchema {
+
+    /** Keywords that carry no validation semantics. */
+    private static final Set<String> ANNOTATIONS =
+            Set.of("$schema", "$id", "$comment", "title", "description", "definitions", "default", "examples");
+
+    private static final Check ALWAYS_VALID = node -> true;
+
+    @FunctionalInterface
+    private interface Check {
+        boolean test(JsonNode node);
+    }
+
+    private final Check root;
+
+    private CompiledSchema(Check root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles the given schema document.
+     *
+     * @throws UnsupportedSchemaException if the schema uses a keyword or form this compiler does not handle.
+     */
+    static CompiledSchema compile(JsonNode schema) {
+        return new CompiledSchema(new Compiler(schema).compile(schema));
+    }
+
+    /**
+     * Returns true if the document is valid against the schema.
+     */
+    boolean isValid(JsonNode document) {
+        return root.test(document);
+    }
+
+    static final class UnsupportedSchemaException extends RuntimeException {
+        UnsupportedSchemaException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Compiler {
+
+        private final JsonNode document;
+        private final Map<String, Check[]> refs = new HashMap<>();
+
+        Compiler(JsonNode document) {
+            this.document = document;
+        }
+
+        Check compile(JsonNode schema) {
+            if (schema.isBoolean()) {
+                return schema.booleanValue() ? ALWAYS_VALID : node -> false;
+            }
+            if (!schema.isObject()) {
+                throw new UnsupportedSchemaException("Schema must be an object or boolean: " + schema);
+            }
+            if (schema.has("$ref")) {
+                // Draft-07 ignores siblings of $ref.
+                return ref(schema.get("$ref").asText());
+            }
+
+            List<Check> checks = new ArrayList<>();
+            JsonNode properties = schema.get("properties");
+            Iterator<Map.Entry<String, JsonNode>> keywords = schema.fields();
+            while (keywords.hasNext()) {
+                Map.Entry<String, JsonNode> keyword = keywords.next();
+                JsonNode value = keyword.getValue();
+                switch (keyword.getKey()) {
+                    case "type" -> checks.add(type(value));
+                    case "properties" -> checks.add(properties(value));
+                    case "required" -> checks.add(required(value));
+                    case "additionalProperties" -> checks.add(additionalProperties(value, properties));
+                    case "minProperties" -> checks.add(minProperties(value.intValue()));
+                    case "maxProperties" -> checks.add(maxProperties(value.intValue()));
+                    case "items" -> checks.add(items(value));
+                    case "minItems" -> checks.add(minItems(value.intValue()));
+                    case "pattern" -> checks.add(pattern(value.asText()));
+                    case "const" -> checks.add(enumeration(List.of(literal(value))));
+                    case "enum" -> checks.add(enumeration(literals(value)));
+                    case "oneOf" -> checks.add(oneOf(compileAll(value)));
+                    case "anyOf" -> checks.add(anyOf(compileAll(value)));
+                    case "allOf" -> checks.add(allOf(compileAll(value)));
+                    default -> {
+                        if (!ANNOTATIONS.contains(keyword.getKey())) {
+                            throw new UnsupportedSchemaException("Unsupported keyword: " + keyword.getKey());
+                        }
+                    }
+                }
+            }
+            return allOf(checks.toArray(Check[]::new));
+        }
+
+        private Check[] compileAll(JsonNode schemas) {
+            Check[] checks = new Check[schemas.size()];
+            for (int i = 0; i < checks.length; i++) {
+                checks[i] = compile(schemas.get(i));
+            }
+            return checks;
+        }
+
+        /**
+         * Resolves a local reference. The target is compiled once and shared, which also ties the
+         * knot for recursive definitions.
+         */
+        private Check ref(String ref) {
+            if (!ref.startsWith("#")) {
+                throw new UnsupportedSchemaException("Only local references are supported: " + ref);
+            }
+            Check[] target = refs.get(ref);
+            if (target == null) {
+                target = new Check[1];
+                refs.put(ref, target);
+                JsonNode resolved = document.at(ref.substring(1));
+                if (resolved.isMissingNode()) {
+                    throw new UnsupportedSchemaException("Unresolvable reference: " + ref);
+                }
+                target[0] = compile(resolved);
+            }
+            Check[] resolvedTarget = target;
+            return node -> resolvedTarget[0].test(node);
+        }
+
+        private static Check type(JsonNode value) {
+            if (value.isArray()) {
+                Check[] alternatives = new Check[value.size()];
+                for (int i = 0; i < alternatives.length; i++) {
+                    alternatives[i] = type(value.get(i));
+                }
+                return anyOf(alternatives);
+            }
+            return switch (value.asText()) {
+                case "object" -> JsonNode::isObject;
+                case "array" -> JsonNode::isArray;
+                case "string" -> JsonNode::isTextual;
+                case "number" -> JsonNode::isNumber;
+                case "boolean" -> JsonNode::isBoolean;
+                case "null" -> JsonNode::isNull;
+                // "integer" is left to networknt, whose treatment of 1.0 depends on its configuration.
+                default -> throw new UnsupportedSchemaException("Unsupported type: " + value);
+            };
+        }
+
+        private Check properties(JsonNode value) {
+            int size = value.size();
+            String[] names = new String[size];
+            Check[] checks = new Check[size];
+            int i = 0;
+            Iterator<Map.Entry<String, JsonNode>> entries = value.fields();
+            while (entries.hasNext()) {
+                Map.Entry<String, JsonNode> entry = entries.next();
+                names[i] = entry.getKey();
+                checks[i++] = compile(entry.getValue());
+            }
+            return node -> {
+                if (!node.isObject()) {
+                    return true;
+                }
+                for (int p = 0; p < names.length; p++) {
+                    JsonNode property = node.get(names[p]);
+                    if (property != null && !checks[p].test(property)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        private static Check required(JsonNode value) {
+            String[] names = new String[value.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = value.get(i).asText();
+            }
+            return node -> {
+                if (!node.isObject()) {
+                    return true;
+                }
+                for (String name : names) {
+                    if (!node.has(name)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        private Check additionalProperties(JsonNode value, JsonNode properties) {
+            Check check = compile(value);
+            if (check == ALWAYS_VALID) {
+                return ALWAYS_VALID;
+            }
+            return node -> {
+                if (!node.isObject()) {
+                    return true;
+                }
+                Iterator<Map.Entry<String, JsonNode>> entries = node.fields();
+                while (entries.hasNext()) {
+                    Map.Entry<String, JsonNode> entry = entries.next();
+                    boolean declared = properties != null && properties.has(entry.getKey());
+                    if (!declared && !check.test(entry.getValue())) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        private static Check minProperties(int min) {
+            return node -> !node.isObject() || node.size() >= min;
+        }
+
+        private static Check maxProperties(int max) {
+            return node -> !node.isObject() || node.size() <= max;
+        }
+
+        private Check items(JsonNode value) {
+            if (value.isArray()) {
+                throw new UnsupportedSchemaException("Tuple-form items is not supported");
+            }
+            Check check = compile(value);
+            return node -> {
+                if (!node.isArray()) {
+                    return true;
+                }
+                for (int i = 0; i < node.size(); i++) {
+                    if (!check.test(node.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        private static Check minItems(int min) {
+            return node -> !node.isArray() || node.size() >= min;
+        }
+
+        private static Check pattern(String regex) {
+            // networknt applies patterns with find() semantics, as ECMA-262 does.
+            Pattern pattern = Pattern.compile(regex);
+            return node -> !node.isTextual() || pattern.matcher(node.textValue()).find();
+        }
+
+        private static List<JsonNode> literals(JsonNode values) {
+            List<JsonNode> literals = new ArrayList<>(values.size());
+            for (JsonNode value : values) {
+                literals.add(literal(value));
+            }
+            return literals;
+        }
+
+        /**
+         * Only literals whose equality is plain {@link JsonNode#equals} are supported; numeric
+         * comparison across representations (1 vs 1.0) is left to networknt.
+         */
+        private static JsonNode literal(JsonNode value) {
+            if (!value.isTextual() && !value.isBoolean() && !value.isNull()) {
+                throw new UnsupportedSchemaException("Unsupported enum/const literal: " + value);
+            }
+            return value;
+        }
+
+        private static Check enumeration(List<JsonNode> values) {
+            JsonNode[] allowed = values.toArray(JsonNode[]::new);
+            return node -> {
+                for (JsonNode value : allowed) {
+                    if (value.equals(node)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        private static Check oneOf(Check[] checks) {
+            return node -> {
+                int matches = 0;
+                for (Check check : checks) {
+                    if (check.test(node) && ++matches > 1) {
+                        return false;
+                    }
+                }
+                return matches == 1;
+            };
+        }
+
+        private static Check anyOf(Check[] checks) {
+            return node -> {
+                for (Check check : checks) {
+                    if (check.test(node)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        private static Check allOf(Check[] checks) {
+            if (checks.length == 0) {
+                return ALWAYS_VALID;
+            }
+            if (checks.length == 1) {
+                return checks[0];
+            }
+            return node -> {
+                for (Check check : checks) {
+                    if (!check.test(node)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+    }
+}
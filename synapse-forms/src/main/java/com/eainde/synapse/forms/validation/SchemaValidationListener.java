@@ -0,0 +1,34 @@
+package com.eainde.synapse.forms.validation;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.exception.ValidationError;
+
+import java.util.List;
+
+/**
+ * Metrics hook for {@link SchemaValidationPolicy} decisions. All methods default to no-ops.
+ */
+public interface SchemaValidationListener {
+
+    SchemaValidationListener NO_OP = new SchemaValidationListener() {
+    };
+
+    /**
+     * The output was schema-checked and passed.
+     */
+    default void onValidated(String formId, TargetFormat format) {
+    }
+
+    /**
+     * The schema check was skipped by the policy.
+     */
+    default void onSkipped(String formId, TargetFormat format) {
+    }
+
+    /**
+     * The adapter produced output that failed the schema check.
+     * Under SAMPLED or NEVER_AFTER_PROOF this means renders that skipped the check may have been invalid too.
+     */
+    default void onMismatch(String formId, TargetFormat format, List<ValidationError> errors) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.eainde.synapse.forms.validation;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.FormFingerprint;
+import com.eainde.synapse.forms.exception.ValidationError;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which renders have their output schema-checked.
+ * <p>
+ * The adapters are deterministic serializations of bean-validated records, so once they are known to
+ * produce valid output for a form the check can be relaxed on hot paths:
+ * <ul>
+ *     <li>{@link Mode#ALWAYS}: every render is checked (the default).</li>
+ *     <li>{@link Mode#SAMPLED}: a random fraction of renders is checked.</li>
+ *     <li>{@link Mode#NEVER_AFTER_PROOF}: checking stops once a formId has passed a number of consecutive
+ *     renders in a format. A failure, or a changed definition under the same formId, restarts the proof;
+ *     definitions are told apart by their {@link FormFingerprint}, digested once per message.</li>
+ * </ul>
+ * Failures are reported to the {@link SchemaValidationListener} in every mode.
+ */
+public final class SchemaValidationPolicy {
+
+    public enum Mode {
+        ALWAYS,
+        SAMPLED,
+        NEVER_AFTER_PROOF
+    }
+
+    private final Mode mode;
+    private final double sampleRate;
+    private final int proofThreshold;
+    private final SchemaValidationListener listener;
+    private final ConcurrentHashMap<ProofKey, Proof> proofs = new ConcurrentHashMap<>();
+
+    private SchemaValidationPolicy(Builder builder) {
+        this.mode = builder.mode;
+        this.sampleRate = builder.sampleRate;
+        this.proofThreshold = builder.proofThreshold;
+        this.listener = builder.listener;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The default policy: validate every render.
+     */
+    public static SchemaValidationPolicy always() {
+        return builder().build();
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Returns true if this render's output must be schema-checked.
+     * Renders that are not checked are reported as skipped.
+     */
+    public boolean shouldValidate(CanonicalFormMessage message, TargetFormat format) {
+        boolean validate = switch (mode) {
+            case ALWAYS -> true;
+            case SAMPLED -> sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+            case NEVER_AFTER_PROOF -> !isProven(message, format);
+        };
+        if (!validate) {
+            listener.onSkipped(message.formId(), format);
+        }
+        return validate;
+    }
+
+    /**
+     * Records the outcome of a schema check that {@link #shouldValidate} asked for.
+     */
+    public void recordOutcome(CanonicalFormMessage message, TargetFormat format, List<ValidationError> errors) {
+        boolean passed = errors.isEmpty();
+        if (mode == Mode.NEVER_AFTER_PROOF) {
+            FormFingerprint definition = FormFingerprint.of(message);
+            proofs.compute(new ProofKey(message.formId(), format), (key, proof) -> {
+                if (!passed) {
+                    return null;
+                }
+                int streak = proof != null && proof.definition().equals(definition) ? proof.passes() + 1 : 1;
+                return new Proof(definition, streak);
+            });
+        }
+        if (passed) {
+            listener.onValidated(message.formId(), format);
+        } else {
+            listener.onMismatch(message.formId(), format, errors);
+        }
+    }
+
+    private boolean isProven(CanonicalFormMessage message, TargetFormat format) {
+        Proof proof = proofs.get(new ProofKey(message.formId(), format));
+        return proof != null && proof.passes() >= proofThreshold && proof.definition().equals(FormFingerprint.of(message));
+    }
+
+    private record ProofKey(String formId, TargetFormat format) {
+    }
+
+    /**
+     * Consecutive passes of the definition with the given fingerprint.
+     */
+    private record Proof(FormFingerprint definition, int passes) {
+    }
+
+    public static final class Builder {
+        private Mode mode = Mode.ALWAYS;
+        private double sampleRate = 1.0;
+        private int proofThreshold = 100;
+        private SchemaValidationListener listener = SchemaValidationListener.NO_OP;
+
+        private Builder() {
+        }
+
+        public Builder mode(Mode mode) {
+            this.mode = Objects.requireNonNull(mode, "mode");
+            return this;
+        }
+
+        /**
+         * Fraction of renders checked in {@link Mode#SAMPLED}, between 0 and 1. Defaults to 1.
+         */
+        public Builder sampleRate(double sampleRate) {
+            if (sampleRate < 0.0 || sampleRate > 1.0) {
+                throw new IllegalArgumentException("sampleRate must be between 0 and 1: " + sampleRate);
+            }
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Consecutive passes after which {@link Mode#NEVER_AFTER_PROOF} stops checking a formId. Defaults to 100.
+         */
+        public Builder proofThreshold(int proofThreshold) {
+            if (proofThreshold < 1) {
+                throw new IllegalArgumentException("proofThreshold must be positive: " + proofThreshold);
+            }
+            this.proofThreshold = proofThreshold;
+            return this;
+        }
+
+        public Builder listener(SchemaValidationListener listener) {
+            this.listener = Objects.requireNonNull(listener, "listener");
+            return this;
+        }
+
+        public SchemaValidationPolicy build() {
+            return new SchemaValidationPolicy(this);
+        }
+    }
+}
@@ -4,8 +4,12 @@ import com.eainde.synapse.forms.TargetFormat;
 import com.eainde.synapse.forms.exception.RenderingException;
 import com.eainde.synapse.forms.exception.ValidationError;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.PathType;
 import com.networknt.schema.SchemaValidatorsConfig;
 import com.networknt.schema.SpecVersion;
 import com.networknt.schema.ValidationMessage;
@@ -15,15 +19,23 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
  * Handles JSON Schema validation.
- * Loads and caches schemas from the classpath.
+ * Loads and caches schemas from the classpath. Thread-safe once constructed.
+ * <p>
+ * Each schema is also compiled into a {@link CompiledSchema}, which answers the common "is this
+ * output valid" case without building any messages. Only documents it rejects are re-validated by
+ * networknt, so the reported errors are always networknt's.
  */
 public class SchemaValidator {
 
     private final Map<TargetFormat, JsonSchema> schemaCache = new EnumMap<>(TargetFormat.class);
+    private final Map<TargetFormat, CompiledSchema> compiledCache = new EnumMap<>(TargetFormat.class);
+    private final Map<TargetFormat, JsonNode> schemaDocuments = new EnumMap<>(TargetFormat.class);
+    private final Map<DefinitionKey, DefinitionSchema> definitionCache = new ConcurrentHashMap<>();
     private final JsonSchemaFactory schemaFactory;
 
     public SchemaValidator() {
@@ -38,17 +50,113 @@ public class SchemaValidator {
                 if (schemaStream == null) {
                     throw new RuntimeException("Could not find schema file: " + format.getSchemaName());
                 }
-                SchemaValidatorsConfig config = new SchemaValidatorsConfig();
-                config.setHandleNullableField(false);
-
-                JsonSchema schema = schemaFactory.getSchema(schemaStream, config);
+                JsonNode schemaNode = new ObjectMapper().readTree(schemaStream);
+                JsonSchema schema = schemaFactory.getSchema(schemaNode, newConfig());
+                // Resolve all keyword validators now; lazy initialization is not safe under concurrent renders.
+                schema.initializeValidators();
                 schemaCache.put(format, schema);
+                schemaDocuments.put(format, schemaNode);
+                compile(format, schemaNode);
             } catch (Exception e) {
                 throw new RuntimeException("Failed to load schema: " + format.getSchemaName(), e);
             }
         }
     }
 
+    /**
+     * Error locations use JSONPath, which puts keys that are not identifiers (e.g. {@code a.b}) in
+     * escaped brackets instead of running them into the path.
+     */
+    private static SchemaValidatorsConfig newConfig() {
+        SchemaValidatorsConfig config = new SchemaValidatorsConfig();
+        config.setHandleNullableField(false);
+        config.setPathType(PathType.JSON_PATH);
+        return config;
+    }
+
+    private void compile(TargetFormat format, JsonNode schemaNode) {
+        try {
+            compiledCache.put(format, CompiledSchema.compile(schemaNode));
+        } catch (CompiledSchema.UnsupportedSchemaException e) {
+            // Leave this format to networknt alone.
+        }
+    }
+
+    /**
+     * Validates a fragment of an output document against one of the format schema's definitions,
+     * e.g. a single field against {@code fieldDefinition}. Error locations are reported relative to
+     * the full document.
+     *
+     * @param fragment   The fragment to validate.
+     * @param format     The target format (to select the correct schema).
+     * @param definition The name of the definition under {@code #/definitions}.
+     * @param location   The fragment's location in the full document, e.g. {@code $.fields.occupation}.
+     * @return A list of validation errors. Empty if valid.
+     */
+    public List<ValidationError> validateDefinition(JsonNode fragment, TargetFormat format, String definition,
+                                                    String location) {
+        DefinitionSchema schema = definitionCache.computeIfAbsent(new DefinitionKey(format, definition), this::loadDefinition);
+        if (schema.compiled() != null && schema.compiled().isValid(fragment)) {
+            return List.of();
+        }
+        return schema.schema().validate(fragment).stream()
+                .map(msg -> rebase(msg, location))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Moves an error reported for a fragment to the fragment's location in the full document,
+     * in both the pointer and the message networknt prefixes with it.
+     */
+    private static ValidationError rebase(ValidationMessage msg, String location) {
+        String relative = msg.getInstanceLocation().toString();
+        String absolute = location + relative.substring(1);
+        String text = msg.getMessage();
+        if (text.startsWith(relative)) {
+            text = absolute + text.substring(relative.length());
+        }
+        return new ValidationError(msg.getCode(), text, absolute);
+    }
+
+    /**
+     * Builds a schema that applies one definition of the format's schema, resolving its references
+     * against a copy of the schema's definitions.
+     */
+    private DefinitionSchema loadDefinition(DefinitionKey key) {
+        JsonNode document = schemaDocuments.get(key.format());
+        if (document == null || !document.path("definitions").has(key.definition())) {
+            throw new RenderingException("No schema definition '" + key.definition() + "' for format: " + key.format(),
+                    "ERR_NO_SCHEMA", null);
+        }
+        ObjectNode wrapper = JsonNodeFactory.instance.objectNode();
+        wrapper.set("$schema", document.get("$schema"));
+        wrapper.put("$ref", "#/definitions/" + key.definition());
+        wrapper.set("definitions", document.get("definitions"));
+
+        JsonSchema schema = schemaFactory.getSchema(wrapper, newConfig());
+        schema.initializeValidators();
+        CompiledSchema compiled;
+        try {
+            compiled = CompiledSchema.compile(wrapper);
+        } catch (CompiledSchema.UnsupportedSchemaException e) {
+            compiled = null;
+        }
+        return new DefinitionSchema(schema, compiled);
+    }
+
+    private record DefinitionKey(TargetFormat format, String definition) {
+    }
+
+    private record DefinitionSchema(JsonSchema schema, CompiledSchema compiled) {
+    }
+
+    /**
+     * Returns true if the format's schema is served by the compiled fast path.
+     */
+    boolean isCompiled(TargetFormat format) {
+        return compiledCache.containsKey(format);
+    }
+
     /**
      * Validates a JsonNode against the cached schema for the given format.
      *
@@ -62,6 +170,11 @@ public class SchemaValidator {
             throw new RenderingException("No schema loaded for format: " + format, "ERR_NO_SCHEMA", null);
         }
 
+        CompiledSchema compiled = compiledCache.get(format);
+        if (compiled != null && compiled.isValid(node)) {
+            return List.of();
+        }
+
         Set<ValidationMessage> messages = schema.validate(node);
 
         return messages.stream()
@@ -0,0 +1,144 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchRendererTest {
+
+    private final JsonFormatRenderer renderer = new FormRendererConfig().jsonFormatRenderer();
+
+    private static CanonicalFormMessage form(String formId) {
+        return CanonicalFormMessage.builder()
+                .formId(formId)
+                .layout(List.of(new Group("kyc.sof.title", List.of(new FieldRef("occupation")))))
+                .fields(Map.of("occupation",
+                        SimpleField.builder().type("string").widget("text").labelKey("kyc.sof.q2.occupation").build()))
+                .build();
+    }
+
+    private static CanonicalFormMessage schemaInvalidForm() {
+        return new CanonicalFormMessage("1.0.0", "broken", List.of(),
+                Map.of("b", SimpleField.builder().type("string").widget("text").labelKey("c").build()));
+    }
+
+    @Test
+    void resultsFollowInputOrderAndFailuresStayPerItem() {
+        List<CanonicalFormMessage> batch = List.of(form("a"), schemaInvalidForm(), form("b"));
+
+        List<RenderResult> results = renderer.renderAll(batch, TargetFormat.SYNAPSE_FORM_V1);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).output()).isEqualTo(renderer.render(form("a"), TargetFormat.SYNAPSE_FORM_V1));
+        assertThat(results.get(1).isSuccess()).isFalse();
+        assertThat(results.get(1).error().getErrorCode()).isEqualTo("ERR_SCHEMA_VALIDATION");
+        assertThat(results.get(2).output()).isEqualTo(renderer.render(form("b"), TargetFormat.SYNAPSE_FORM_V1));
+        assertThat(results).extracting(RenderResult::message).containsExactlyElementsOf(batch);
+    }
+
+    @Test
+    void equalDefinitionsAreRenderedOncePerBatch() {
+        AtomicInteger renders = new AtomicInteger();
+        JsonFormatRenderer counting = new JsonFormatRenderer() {
+            @Override
+            public String render(CanonicalFormMessage message, TargetFormat format) {
+                renders.incrementAndGet();
+                return renderer.render(message, format);
+            }
+
+            @Override
+            public JsonNode renderToNode(CanonicalFormMessage message, TargetFormat format) {
+                return renderer.renderToNode(message, format);
+            }
+
+            @Override
+            public void render(CanonicalFormMessage message, TargetFormat format, OutputStream out) {
+                renderer.render(message, format, out);
+            }
+
+            @Override
+            public void render(CanonicalFormMessage message, TargetFormat format, Writer writer) {
+                renderer.render(message, format, writer);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<RenderResult> results = counting.renderAll(
+                    List.of(form("a"), form("a"), form("b"), form("a")), TargetFormat.SYNAPSE_FORM_V3, executor);
+
+            assertThat(results).allMatch(RenderResult::isSuccess);
+            assertThat(results.get(1).output()).isEqualTo(results.get(0).output());
+            assertThat(renders).hasValue(2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void unexpectedFailuresAreReportedAsRenderingExceptions() {
+        JsonFormatRenderer failing = new JsonFormatRenderer() {
+            @Override
+            public String render(CanonicalFormMessage message, TargetFormat format) {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public JsonNode renderToNode(CanonicalFormMessage message, TargetFormat format) {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void render(CanonicalFormMessage message, TargetFormat format, OutputStream out) {
+            }
+
+            @Override
+            public void render(CanonicalFormMessage message, TargetFormat format, Writer writer) {
+            }
+        };
+
+        RenderResult result = failing.renderAll(List.of(form("a")), TargetFormat.SYNAPSE_FORM_V1).get(0);
+
+        assertThat(result.error()).isInstanceOf(RenderingException.class).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(result.error().getErrorCode()).isEqualTo("ERR_RENDER_FAILED");
+    }
+
+    @Test
+    void rejectedRendersFailOnlyTheirMessage() {
+        AtomicInteger submitted = new AtomicInteger();
+        Executor saturated = task -> {
+            if (submitted.incrementAndGet() > 1) {
+                throw new RejectedExecutionException("queue full");
+            }
+            task.run();
+        };
+
+        List<RenderResult> results = renderer.renderAll(List.of(form("a"), form("b")), TargetFormat.SYNAPSE_FORM_V1, saturated);
+
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(1).error().getErrorCode()).isEqualTo("ERR_RENDER_REJECTED");
+        assertThat(results.get(1).error()).hasCauseInstanceOf(RejectedExecutionException.class);
+
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        assertThat(renderer.renderAll(List.of(form("a")), TargetFormat.SYNAPSE_FORM_V1, shutDown))
+                .allSatisfy(result -> assertThat(result.error().getErrorCode()).isEqualTo("ERR_RENDER_REJECTED"));
+    }
+}
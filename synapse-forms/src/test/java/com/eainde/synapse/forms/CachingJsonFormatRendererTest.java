@@ -0,0 +1,125 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.FormFingerprint;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingJsonFormatRendererTest {
+
+    private final FormRendererConfig config = new FormRendererConfig();
+
+    private static CanonicalFormMessage form(String formId, String labelKey) {
+        return CanonicalFormMessage.builder()
+                .formId(formId)
+                .layout(List.of(new Group("kyc.sof.title", List.of(new FieldRef("occupation")))))
+                .fields(Map.of("occupation",
+                        SimpleField.builder().type("string").widget("text").labelKey(labelKey).build()))
+                .build();
+    }
+
+    @Test
+    void repeatRendersOfAnEqualDefinitionAreServedFromCache() {
+        RenderCache cache = RenderCache.builder().maximumSize(10).build();
+        JsonFormatRenderer renderer = config.cachingJsonFormatRenderer(cache);
+
+        String first = renderer.render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        String second = renderer.render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        renderer.render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V3);
+
+        assertThat(second).isEqualTo(first)
+                .isEqualTo(config.jsonFormatRenderer().render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1));
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void entriesAreKeyedByAFingerprintDigestedOncePerMessage() {
+        CanonicalFormMessage message = form("kyc", "label");
+        FormFingerprint fingerprint = FormFingerprint.of(message);
+
+        assertThat(FormFingerprint.of(message)).isSameAs(fingerprint);
+        assertThat(FormFingerprint.of(form("kyc", "label"))).isEqualTo(fingerprint).isNotSameAs(fingerprint);
+        assertThat(FormFingerprint.of(form("kyc", "other"))).isNotEqualTo(fingerprint);
+
+        RenderCache cache = RenderCache.builder().build();
+        JsonFormatRenderer renderer = config.cachingJsonFormatRenderer(cache);
+        renderer.render(message, TargetFormat.SYNAPSE_FORM_V1);
+        assertThat(renderer.render(form("kyc", "other"), TargetFormat.SYNAPSE_FORM_V1)).contains("other");
+        assertThat(cache.stats().hitCount()).isZero();
+    }
+
+    @Test
+    void cachedNodesCannotBeMutatedByCallers() {
+        JsonFormatRenderer renderer = config.cachingJsonFormatRenderer(RenderCache.builder().build());
+
+        JsonNode node = renderer.renderToNode(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        ((ObjectNode) node).put("formId", "tampered");
+
+        assertThat(renderer.renderToNode(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1).get("formId").asText())
+                .isEqualTo("kyc");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAndExpiredEntries() {
+        AtomicLong now = new AtomicLong();
+        RenderCache cache = RenderCache.builder()
+                .maximumSize(2)
+                .expireAfterWrite(Duration.ofSeconds(5))
+                .ticker(now::get)
+                .build();
+        JsonFormatRenderer renderer = config.cachingJsonFormatRenderer(cache);
+
+        renderer.render(form("a", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        renderer.render(form("b", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        renderer.render(form("a", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        renderer.render(form("c", "label"), TargetFormat.SYNAPSE_FORM_V1);
+
+        assertThat(cache.stats().evictionCount()).isEqualTo(1);
+        assertThat(cache.get(form("b", "label"), TargetFormat.SYNAPSE_FORM_V1)).isNull();
+
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertThat(cache.get(form("a", "label"), TargetFormat.SYNAPSE_FORM_V1)).isNull();
+        assertThat(cache.stats().expiredCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRendersAreNotCached() {
+        RenderCache cache = RenderCache.builder().build();
+        JsonFormatRenderer renderer = config.cachingJsonFormatRenderer(cache);
+        CanonicalFormMessage invalid = form(null, "label");
+
+        assertThatThrownBy(() -> renderer.render(invalid, TargetFormat.SYNAPSE_FORM_V1))
+                .isInstanceOf(RenderingException.class);
+        assertThat(cache.stats().size()).isZero();
+    }
+
+    @Test
+    void cachedBytesAreCopiedAndWrittenToBuffers() {
+        JsonFormatRenderer renderer = config.cachingJsonFormatRenderer(RenderCache.builder().build());
+
+        byte[] first = renderer.renderToBytes(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        first[0] = 'x';
+        byte[] second = renderer.renderToBytes(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+
+        assertThat(second[0]).isEqualTo((byte) '{');
+        ByteBuffer buffer = ByteBuffer.allocate(second.length);
+        assertThat(renderer.renderTo(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1, buffer)).isEqualTo(second.length);
+        assertThat(buffer.array()).isEqualTo(second);
+    }
+}
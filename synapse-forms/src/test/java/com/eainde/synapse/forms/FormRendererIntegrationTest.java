@@ -1,6 +1,7 @@
 package com.eainde.synapse.forms;
 
 import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.exception.OutputOverflowException;
 import com.eainde.synapse.forms.exception.RenderingException;
 import com.eainde.synapse.forms.exception.ValidationError;
 import com.eainde.synapse.forms.domain.CanonicalFormMessage;
@@ -14,6 +15,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -380,6 +386,88 @@ class FormRendererIntegrationTest {
         assertThat(actualNode).isEqualTo(expectedNode);
     }
 
+    @Test
+    void testStreamingRenderMatchesTreeRender() throws Exception {
+        CanonicalFormMessage message = CanonicalFormMessage.builder()
+                .formId("streaming_form")
+                .schemaVersion("3.0.0")
+                .layout(List.of(new Group("kyc.sof.title", List.of(
+                        new Row(List.of(new FieldRef("occupation"), new FieldRef("deposit")))
+                ))))
+                .fields(Map.of(
+                        "occupation", SimpleField.builder().type("string").widget("text").labelKey("kyc.sof.q2.occupation")
+                                .validation(ValidationRules.builder().required(true).build()).build(),
+                        "deposit", SimpleField.builder().type("number").widget("currency").labelKey("kyc.sof.q6.deposit")
+                                .validation(ValidationRules.builder().minimum(0).maximum(100).build()).build()
+                ))
+                .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(message, TargetFormat.SYNAPSE_FORM_V3, out);
+        StringWriter writer = new StringWriter();
+        renderer.render(message, TargetFormat.SYNAPSE_FORM_V3, writer);
+
+        String expected = renderer.render(message, TargetFormat.SYNAPSE_FORM_V3);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+        assertThat(writer.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    void testStreamingRenderWritesNothingOnSchemaFailure() {
+        CanonicalFormMessage message = new CanonicalFormMessage(
+                "1.0.0",
+                "test-form",
+                List.of(), // Invalid, schema requires minItems: 1
+                Map.of("b", SimpleField.builder().type("string").widget("text").labelKey("c").build())
+        );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> renderer.render(message, TargetFormat.SYNAPSE_FORM_V1, out))
+                .isInstanceOf(RenderingException.class)
+                .extracting(ex -> ((RenderingException) ex).getErrorCode())
+                .isEqualTo("ERR_SCHEMA_VALIDATION");
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    void testRenderToBytesAndByteBufferMatchStringRender() {
+        CanonicalFormMessage message = CanonicalFormMessage.builder()
+                .formId("bytes_form")
+                .layout(List.of(new Group("kyc.sof.title", List.of(new FieldRef("occupation")))))
+                .fields(Map.of("occupation", SimpleField.builder().type("string").widget("text")
+                        .labelKey("kyc.sof.q2.occupation.é").build()))
+                .build();
+        byte[] expected = renderer.render(message, TargetFormat.SYNAPSE_FORM_V1).getBytes(StandardCharsets.UTF_8);
+
+        assertThat(renderer.renderToBytes(message, TargetFormat.SYNAPSE_FORM_V1)).isEqualTo(expected);
+
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length + 8);
+        buffer.put((byte) '!');
+        int written = renderer.renderTo(message, TargetFormat.SYNAPSE_FORM_V1, buffer);
+        assertThat(written).isEqualTo(expected.length);
+        assertThat(buffer.position()).isEqualTo(1 + expected.length);
+        assertThat(Arrays.copyOfRange(buffer.array(), 1, 1 + written)).isEqualTo(expected);
+    }
+
+    @Test
+    void testRenderToByteBufferReportsRequiredSizeOnOverflow() {
+        CanonicalFormMessage message = CanonicalFormMessage.builder()
+                .formId("bytes_form")
+                .layout(List.of(new Group("kyc.sof.title", List.of(new FieldRef("occupation")))))
+                .fields(Map.of("occupation", SimpleField.builder().type("string").widget("text")
+                        .labelKey("kyc.sof.q2.occupation").build()))
+                .build();
+        int required = renderer.renderToBytes(message, TargetFormat.SYNAPSE_FORM_V1).length;
+        ByteBuffer small = ByteBuffer.allocate(16);
+
+        assertThatThrownBy(() -> renderer.renderTo(message, TargetFormat.SYNAPSE_FORM_V1, small))
+                .isInstanceOfSatisfying(OutputOverflowException.class, ex -> {
+                    assertThat(ex.getErrorCode()).isEqualTo("ERR_BUFFER_OVERFLOW");
+                    assertThat(ex.getRequiredBytes()).isEqualTo(required);
+                });
+        assertThat(small.position()).isZero();
+    }
+
     /*@Test
     void testRenderConditionalFormV2_Example4() throws Exception {
         // 1. Define the conditional rule for 'hrtcExposure'
@@ -0,0 +1,237 @@
+package com.eainde.synapse.forms;
+
+import com.eainde.synapse.forms.IncrementalRenderer.IncrementalRender;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.Condition;
+import com.eainde.synapse.forms.domain.rules.LogicalOperator;
+import com.eainde.synapse.forms.domain.rules.Operator;
+import com.eainde.synapse.forms.domain.rules.RuleBlock;
+import com.eainde.synapse.forms.domain.rules.VisibilityRule;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import com.eainde.synapse.forms.validation.SchemaValidator;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IncrementalRendererTest {
+
+    private final FormRendererConfig config = new FormRendererConfig();
+    private final JsonFormatRenderer renderer = config.jsonFormatRenderer();
+    private final IncrementalRenderer incremental = config.incrementalRenderer();
+
+    private static SimpleField text(String labelKey) {
+        return SimpleField.builder().type("string").widget("text").labelKey(labelKey).build();
+    }
+
+    private static CanonicalFormMessage form(List<LayoutElement> layout, Map<String, FieldDefinition> fields) {
+        return CanonicalFormMessage.builder().formId("kyc").schemaVersion("3.0.0").layout(layout).fields(fields).build();
+    }
+
+    private static List<LayoutElement> layout(VisibilityRule occupationRule) {
+        return List.of(new Group("kyc.sof.title", List.of(
+                new Row(List.of(new FieldRef("source"))),
+                new Row(List.of(new FieldRef("occupation", occupationRule == null ? null : List.of(occupationRule)))))));
+    }
+
+    private final Map<String, FieldDefinition> fields = Map.of(
+            "source", text("kyc.sof.q1.source"),
+            "occupation", text("kyc.sof.q2.occupation"));
+
+    /**
+     * Applies add/replace/remove operations, which is all the incremental renderer emits.
+     */
+    private static JsonNode applyPatch(JsonNode document, ArrayNode patch) {
+        JsonNode result = document.deepCopy();
+        for (JsonNode operation : patch) {
+            JsonPointer path = JsonPointer.compile(operation.get("path").asText());
+            if (path.matches()) {
+                result = operation.get("value");
+                continue;
+            }
+            JsonNode parent = result.at(path.head());
+            String name = path.last().getMatchingProperty();
+            switch (operation.get("op").asText()) {
+                case "remove" -> ((ObjectNode) parent).remove(name);
+                case "add", "replace" -> {
+                    if (parent.isArray()) {
+                        ((ArrayNode) parent).set(path.last().getMatchingIndex(), operation.get("value"));
+                    } else {
+                        ((ObjectNode) parent).set(name, operation.get("value"));
+                    }
+                }
+                default -> throw new IllegalArgumentException(operation.toString());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void changingOneFieldPatchesOnlyThatField() {
+        CanonicalFormMessage previous = form(layout(null), fields);
+        JsonNode previousOutput = renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V3);
+        Map<String, FieldDefinition> changed = new HashMap<>(fields);
+        changed.put("occupation", SimpleField.builder().type("string").widget("text").labelKey("kyc.sof.q2.occupation")
+                .validation(ValidationRules.builder().required(true).build()).build());
+        CanonicalFormMessage next = form(layout(null), changed);
+
+        IncrementalRender result = incremental.rerender(previous, previousOutput, next, TargetFormat.SYNAPSE_FORM_V3);
+
+        assertThat(result.fullRender()).isFalse();
+        assertThat(result.document()).isEqualTo(renderer.renderToNode(next, TargetFormat.SYNAPSE_FORM_V3));
+        assertThat(result.patch()).hasSize(1);
+        assertThat(result.patch().get(0).get("op").asText()).isEqualTo("replace");
+        assertThat(result.patch().get(0).get("path").asText()).isEqualTo("/fields/occupation");
+        assertThat(previousOutput).isEqualTo(renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V3));
+    }
+
+    @Test
+    void nestedLayoutChangesAndFieldAdditionsProduceTheFullRenderOutput() {
+        CanonicalFormMessage previous = form(layout(null), fields);
+        JsonNode previousOutput = renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V3);
+        VisibilityRule rule = new VisibilityRule(new RuleBlock(LogicalOperator.AND,
+                List.of(new Condition("source", Operator.EQUALS, "SALARY")), null), true);
+        Map<String, FieldDefinition> changed = new HashMap<>(fields);
+        changed.remove("source");
+        changed.put("annualIncome", text("kyc.sof.q3.income"));
+        changed.put("source", text("kyc.sof.q1.source.v2"));
+        CanonicalFormMessage next = form(layout(rule), changed);
+
+        IncrementalRender result = incremental.rerender(previous, previousOutput, next, TargetFormat.SYNAPSE_FORM_V3);
+
+        JsonNode expected = renderer.renderToNode(next, TargetFormat.SYNAPSE_FORM_V3);
+        assertThat(result.document()).isEqualTo(expected);
+        assertThat(result.document().get("fields").fieldNames()).toIterable()
+                .containsExactly("annualIncome", "occupation", "source");
+        assertThat(result.patch()).extracting(op -> op.get("path").asText())
+                .containsExactly("/layout/0/elements/1/elements/0", "/fields/annualIncome", "/fields/source");
+        assertThat(applyPatch(previousOutput, result.patch())).isEqualTo(expected);
+    }
+
+    @Test
+    void invalidFragmentsReportTheSameErrorsAsAFullRender() {
+        CanonicalFormMessage previous = form(layout(null), fields);
+        JsonNode previousOutput = renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V3);
+        Map<String, FieldDefinition> changed = new HashMap<>(fields);
+        changed.put("occupation", SimpleField.builder().type("date").widget("text").labelKey("x").build());
+        CanonicalFormMessage next = form(layout(null), changed);
+
+        List<ValidationError> fullErrors = catchDetails(() -> renderer.render(next, TargetFormat.SYNAPSE_FORM_V3));
+        List<ValidationError> incrementalErrors = catchDetails(
+                () -> incremental.rerender(previous, previousOutput, next, TargetFormat.SYNAPSE_FORM_V3));
+
+        assertThat(incrementalErrors).isNotEmpty().containsExactlyInAnyOrderElementsOf(fullErrors);
+    }
+
+    @Test
+    void topLevelLayoutResizingIsValidatedAgainstTheWholeSchema() {
+        CanonicalFormMessage previous = CanonicalFormMessage.builder().formId("kyc")
+                .layout(List.of(new Row(List.of(new FieldRef("source")))))
+                .fields(fields).build();
+        JsonNode previousOutput = renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V1);
+        CanonicalFormMessage next = new CanonicalFormMessage("1.0.0", "kyc", List.of(), fields);
+
+        assertThatThrownBy(() -> incremental.rerender(previous, previousOutput, next, TargetFormat.SYNAPSE_FORM_V1))
+                .isInstanceOfSatisfying(RenderingException.class, ex -> {
+                    assertThat(ex.getErrorCode()).isEqualTo("ERR_SCHEMA_VALIDATION");
+                    assertThat(ex.getDetails()).extracting(ValidationError::jsonPointer).containsExactly("$.layout");
+                });
+    }
+
+    @Test
+    void addingRemovingOrReferencingFieldsIsValidatedAgainstTheWholeSchema() {
+        CountingSchemaValidator schemaValidator = new CountingSchemaValidator();
+        IncrementalRenderer counting = new IncrementalRenderer(renderer, config.beanValidator(), schemaValidator,
+                config.formAdapters(config.formObjectMapper()));
+        CanonicalFormMessage previous = form(layout(null), fields);
+        JsonNode previousOutput = renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V3);
+
+        Map<String, FieldDefinition> relabelled = new HashMap<>(fields);
+        relabelled.put("source", text("kyc.sof.q1.source.v2"));
+        Map<String, FieldDefinition> added = new HashMap<>(fields);
+        added.put("annualIncome", text("kyc.sof.q3.income"));
+        Map<String, FieldDefinition> removed = Map.of("source", text("kyc.sof.q1.source"));
+        List<LayoutElement> rereferenced = List.of(new Group("kyc.sof.title", List.of(
+                new Row(List.of(new FieldRef("source"))),
+                new Row(List.of(new FieldRef("annualIncome"))))));
+
+        counting.rerender(previous, previousOutput, form(layout(null), relabelled), TargetFormat.SYNAPSE_FORM_V3);
+        assertThat(schemaValidator.wholeDocuments).isZero();
+        assertThat(schemaValidator.locations).containsExactly("$.fields.source");
+
+        for (CanonicalFormMessage next : List.of(form(layout(null), added), form(layout(null), removed),
+                form(rereferenced, added))) {
+            schemaValidator.wholeDocuments = 0;
+            counting.rerender(previous, previousOutput, next, TargetFormat.SYNAPSE_FORM_V3);
+            assertThat(schemaValidator.wholeDocuments).as(next.toString()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void fragmentLocationsEscapeFieldKeys() {
+        assertThat(IncrementalRenderer.fieldLocation("occupation")).isEqualTo("$.fields.occupation");
+        assertThat(IncrementalRenderer.fieldLocation("a.b")).isEqualTo("$.fields['a.b']");
+        assertThat(IncrementalRenderer.fieldLocation("it's")).isEqualTo("$.fields['it\\'s']");
+        assertThat(IncrementalRenderer.fieldLocation("")).isEqualTo("$.fields['']");
+
+        Map<String, FieldDefinition> dotted = Map.of("source", text("kyc.sof.q1.source"), "a.b", text("x"));
+        List<LayoutElement> dottedLayout = List.of(new Row(List.of(new FieldRef("source"), new FieldRef("a.b"))));
+        CanonicalFormMessage previous = form(dottedLayout, dotted);
+        JsonNode previousOutput = renderer.renderToNode(previous, TargetFormat.SYNAPSE_FORM_V3);
+        Map<String, FieldDefinition> changed = new HashMap<>(dotted);
+        changed.put("a.b", SimpleField.builder().type("date").widget("text").labelKey("x").build());
+        CanonicalFormMessage next = form(dottedLayout, changed);
+
+        List<ValidationError> fullErrors = catchDetails(() -> renderer.render(next, TargetFormat.SYNAPSE_FORM_V3));
+        List<ValidationError> incrementalErrors = catchDetails(
+                () -> incremental.rerender(previous, previousOutput, next, TargetFormat.SYNAPSE_FORM_V3));
+
+        assertThat(incrementalErrors).isNotEmpty().containsExactlyInAnyOrderElementsOf(fullErrors);
+    }
+
+    private static final class CountingSchemaValidator extends SchemaValidator {
+        private final List<String> locations = new ArrayList<>();
+        private int wholeDocuments;
+
+        @Override
+        public List<ValidationError> validate(JsonNode node, TargetFormat format) {
+            wholeDocuments++;
+            return super.validate(node, format);
+        }
+
+        @Override
+        public List<ValidationError> validateDefinition(JsonNode fragment, TargetFormat format, String definition,
+                                                        String location) {
+            locations.add(location);
+            return super.validateDefinition(fragment, format, definition, location);
+        }
+    }
+
+    private static List<ValidationError> catchDetails(Runnable render) {
+        try {
+            render.run();
+        } catch (RenderingException e) {
+            assertThat(e.getErrorCode()).isEqualTo("ERR_SCHEMA_VALIDATION");
+            return e.getDetails();
+        }
+        throw new AssertionError("Expected a schema validation failure");
+    }
+}
@@ -0,0 +1,178 @@
+package com.eainde.synapse.forms.codec;
+
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.ObjectItem;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.*;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FormCodecTest {
+
+    private static final ObjectMapper MAPPER = new FormRendererConfig().formObjectMapper();
+
+    private static CanonicalFormMessage kycForm() {
+        RuleBlock otherSource = new RuleBlock(LogicalOperator.OR, List.of(
+                new Condition("source", Operator.EQUALS, "OTHER"),
+                new Condition("source", Operator.IN, List.of("GIFT", "INHERITANCE"))),
+                List.of(new RuleBlock(LogicalOperator.AND, List.of(new Condition("income", Operator.IS_BLANK, null)), null)));
+        return CanonicalFormMessage.builder()
+                .formId("kyc_source_of_funds")
+                .layout(List.of(new Group("kyc.sof.title", List.of(
+                        new Row(List.of(new FieldRef("source"), new FieldRef("income"))),
+                        new Row(List.of(new FieldRef("details", List.of(new VisibilityRule(otherSource, true))))),
+                        new Row(List.of(new FieldRef("countries")))))))
+                .fields(Map.of(
+                        "source", SimpleField.builder().type("string").widget("select").labelKey("kyc.sof.source")
+                                .optionsKey("sources").build(),
+                        "income", SimpleField.builder().type("number").widget("number").labelKey("kyc.sof.income")
+                                .validation(ValidationRules.builder().required(true).minimum(0).build()).build(),
+                        "details", SimpleField.builder().type("string").widget("textarea").labelKey("kyc.sof.details")
+                                .validation(ValidationRules.builder().rules(List.of(new ValidationRule(otherSource,
+                                        new ValidationAction(true, 10, 2000)))).build())
+                                .permissions(List.of("kyc.read", "kyc.write")).build(),
+                        "countries", ArrayField.builder().widget("table").labelKey("kyc.sof.countries")
+                                .items(new ObjectItem(Map.of(
+                                        "code", SimpleField.builder().type("string").widget("text").labelKey("country").build(),
+                                        "highRisk", SimpleField.builder().type("boolean").widget("checkbox").labelKey("hrtc").build())))
+                                .build()))
+                .build();
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = FormCodecTest.class.getClassLoader().getResourceAsStream("test-fixtures/" + name)) {
+            assertThat(in).isNotNull();
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void formDefinitionsRoundTrip() throws IOException {
+        CanonicalFormMessage form = kycForm();
+        for (FormEncoding encoding : FormEncoding.values()) {
+            FormCodec codec = new FormCodec(MAPPER, encoding);
+
+            byte[] encoded = codec.encode(form);
+
+            assertThat(codec.decode(encoded, CanonicalFormMessage.class)).as(encoding.name()).isEqualTo(form);
+            assertThat(MAPPER.readTree(codec.toJson(encoded))).as(encoding.name()).isEqualTo(MAPPER.valueToTree(form));
+            assertThat(encoded.length).as(encoding.name()).isLessThan(MAPPER.writeValueAsBytes(form).length);
+        }
+    }
+
+    @Test
+    void jsonDocumentsRoundTripToTheSameJson() throws IOException {
+        for (FormEncoding encoding : FormEncoding.values()) {
+            FormCodec codec = new FormCodec(MAPPER, encoding);
+            for (String name : List.of("example3_grid.json", "example5_v3_nested_rules.json")) {
+                byte[] json = fixture(name);
+                assertThat(MAPPER.readTree(codec.toJson(codec.fromJson(json)))).as(encoding + " " + name)
+                        .isEqualTo(MAPPER.readTree(json));
+            }
+        }
+    }
+
+    @Test
+    void binaryKeepsNumbersExactlyAndIsSmallerThanTheBaselines() throws IOException {
+        FormCodec binary = new FormCodec(MAPPER, FormEncoding.BINARY);
+        String submission = "{\"income\":1.50,\"count\":-3,\"big\":123456789012345678901234567890,"
+                + "\"tiny\":1.0E-12,\"rows\":[{\"code\":\"DE\"},{\"code\":\"DE\"}],\"note\":null,\"ok\":true}";
+
+        assertThat(binary.toJson(binary.fromJson(submission.getBytes(StandardCharsets.UTF_8))))
+                .isEqualTo(submission);
+
+        byte[] form = fixture("example5_v3_nested_rules.json");
+        int binarySize = binary.fromJson(form).length;
+        assertThat(binarySize).isLessThan(new FormCodec(MAPPER, FormEncoding.SMILE).fromJson(form).length);
+        assertThat(binarySize).isLessThan(new FormCodec(MAPPER, FormEncoding.CBOR).fromJson(form).length);
+        assertThat(binarySize).isLessThan(form.length / 3);
+    }
+
+    @Test
+    void operatorsAreSingleByteReferencesAndSubtreesAreSkipped() throws IOException {
+        for (Operator operator : Operator.values()) {
+            assertThat(BinaryFormat.DICTIONARY_INDEX.get(operator.name())).isLessThan(BinaryFormat.SHORT_REF_COUNT);
+        }
+        for (LogicalOperator operator : LogicalOperator.values()) {
+            assertThat(BinaryFormat.DICTIONARY_INDEX.get(operator.name())).isLessThan(BinaryFormat.SHORT_REF_COUNT);
+        }
+
+        // "late" is first written inside the skipped subtree and read again after it.
+        FormCodec codec = new FormCodec(MAPPER, FormEncoding.BINARY);
+        byte[] encoded = codec.fromJson("{\"skipped\":{\"a\":[\"late\",{\"b\":1}]},\"kept\":\"late\"}"
+                .getBytes(StandardCharsets.UTF_8));
+        try (JsonParser parser = codec.parser(encoded)) {
+            assertThat(parser.nextToken()).isEqualTo(JsonToken.START_OBJECT);
+            assertThat(parser.nextFieldName()).isEqualTo("skipped");
+            assertThat(parser.nextToken()).isEqualTo(JsonToken.START_OBJECT);
+            parser.skipChildren();
+            assertThat(parser.currentToken()).isEqualTo(JsonToken.END_OBJECT);
+            assertThat(parser.nextFieldName()).isEqualTo("kept");
+            assertThat(parser.nextTextValue()).isEqualTo("late");
+            assertThat(parser.nextToken()).isEqualTo(JsonToken.END_OBJECT);
+            assertThat(parser.nextToken()).isNull();
+        }
+    }
+
+    @Test
+    void malformedInputIsRejected() {
+        FormCodec codec = new FormCodec(MAPPER, FormEncoding.BINARY);
+        byte[] encoded = codec.encode(kycForm());
+
+        assertThatThrownBy(() -> codec.decode(new byte[]{'{', '}'}, CanonicalFormMessage.class))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_DECODE"));
+        assertThatThrownBy(() -> codec.decode(Arrays.copyOf(encoded, encoded.length - 5), CanonicalFormMessage.class))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_DECODE"));
+        // Negative lengths and string indexes: varints with bit 63 set.
+        byte[] negative = {-1, -1, -1, -1, -1, -1, -1, -1, -1, 0x01};
+        List<byte[]> corrupt = List.of(
+                document(negative),
+                document(new byte[]{0, BinaryFormat.OBJECT}, negative),
+                document(new byte[]{0, BinaryFormat.OBJECT, 11, BinaryFormat.STRING_REF}, negative),
+                document(new byte[]{0, BinaryFormat.OBJECT, 11, BinaryFormat.INLINE_STRING}, negative),
+                document(new byte[]{0, BinaryFormat.BIG_INTEGER}, negative));
+        for (byte[] bytes : corrupt) {
+            assertThatThrownBy(() -> codec.decode(bytes, CanonicalFormMessage.class))
+                    .as(Arrays.toString(bytes))
+                    .isInstanceOfSatisfying(RenderingException.class,
+                            e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_DECODE"));
+        }
+        assertThatThrownBy(() -> codec.fromJson("{\"a\":".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_ENCODE"));
+    }
+
+    /**
+     * A binary document header followed by the given bytes.
+     */
+    private static byte[] document(byte[]... parts) {
+        byte[] document = {BinaryFormat.MAGIC_0, BinaryFormat.MAGIC_1, BinaryFormat.VERSION};
+        for (byte[] part : parts) {
+            int length = document.length;
+            document = Arrays.copyOf(document, length + part.length);
+            System.arraycopy(part, 0, document, length, part.length);
+        }
+        return document;
+    }
+}
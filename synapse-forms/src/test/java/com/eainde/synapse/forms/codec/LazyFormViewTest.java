@@ -0,0 +1,114 @@
+package com.eainde.synapse.forms.codec;
+
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.ObjectItem;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.*;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LazyFormViewTest {
+
+    private static final ObjectMapper MAPPER = new FormRendererConfig().formObjectMapper();
+    private static final FormCodec BINARY = new FormCodec(MAPPER, FormEncoding.BINARY);
+
+    /**
+     * Groups of ten fields each; every second field is shown only when the group's first is set.
+     */
+    private static CanonicalFormMessage largeForm(int groups) {
+        Map<String, FieldDefinition> fields = new LinkedHashMap<>();
+        List<LayoutElement> layout = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            List<LayoutElement> rows = new ArrayList<>();
+            for (int f = 0; f < 10; f++) {
+                String key = "field_" + g + "_" + f;
+                fields.put(key, SimpleField.builder().type("string").widget("text").labelKey("label." + key)
+                        .validation(ValidationRules.builder().required(f == 0).maximum(100).build()).build());
+                List<VisibilityRule> visibility = f % 2 == 1
+                        ? List.of(new VisibilityRule(new RuleBlock(LogicalOperator.AND,
+                        List.of(new Condition("field_" + g + "_0", Operator.IS_NOT_BLANK, null)), null), true))
+                        : null;
+                rows.add(new Row(List.of(new FieldRef(key, visibility))));
+            }
+            layout.add(new Group("group." + g, rows));
+        }
+        fields.put("rows", ArrayField.builder().widget("table").labelKey("rows")
+                .items(new ObjectItem(Map.of("code", SimpleField.builder().type("string").widget("text").labelKey("code").build())))
+                .build());
+        layout.add(new Row(List.of(new FieldRef("rows"))));
+        return CanonicalFormMessage.builder().formId("large").layout(layout).fields(fields).build();
+    }
+
+    @Test
+    void elementsAreOnlyDeserializedWhenAccessed() throws Exception {
+        CanonicalFormMessage form = largeForm(50);
+        List<LazyFormView> views = List.of(
+                LazyFormView.ofJson(MAPPER, MAPPER.writeValueAsBytes(form)),
+                BINARY.view(BINARY.encode(form)));
+
+        for (LazyFormView view : views) {
+            assertThat(view.getFormId()).isEqualTo("large");
+            assertThat(view.getSchemaVersion()).isEqualTo("1.0.0");
+            assertThat(view.fieldKeys()).containsExactlyInAnyOrderElementsOf(form.fields().keySet());
+            assertThat(view.layoutSize()).isEqualTo(51);
+            assertThat(view.materializedCount()).isZero();
+
+            assertThat(view.field("field_7_3")).isEqualTo(form.fields().get("field_7_3"));
+            assertThat(view.field("rows")).isEqualTo(form.fields().get("rows"));
+            assertThat(view.field("missing")).isNull();
+            assertThat(view.group("group.42")).isEqualTo(form.layout().get(42));
+            assertThat(view.group("group.missing")).isNull();
+            assertThat(view.layoutElement(50)).isEqualTo(form.layout().get(50));
+            assertThat(view.materializedCount()).isEqualTo(4);
+
+            assertThat(view.toMessage()).isEqualTo(form);
+            assertThat(view.rules().evaluate(Map.of("field_3_0", "set")).isVisible(view.rules().slotOf("field_3_1")))
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void invalidElementsOnlyFailWhenAccessed() {
+        String json = """
+                {"formId": "f", "unknown": {"ignored": [1, 2]},
+                 "fields": {
+                   "name": {"type": "string", "widget": "text", "labelKey": "name"},
+                   "born": {"type": "date", "widget": "date", "labelKey": "born"}
+                 },
+                 "layout": [{"type": "Row", "elements": [{"type": "Field", "key": "name"}]}]}
+                """;
+        LazyFormView view = LazyFormView.ofJson(MAPPER, json.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(view.field("name")).isInstanceOf(SimpleField.class);
+        assertThat(view.layoutElement(0)).isInstanceOf(Row.class);
+        assertThat(view.group("name")).isNull();
+        assertThatThrownBy(() -> view.field("born"))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_DECODE"));
+
+        assertThatThrownBy(() -> LazyFormView.ofJson(MAPPER, "[]".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_DECODE"));
+        assertThatThrownBy(() -> new FormCodec(MAPPER, FormEncoding.CBOR).view(new byte[0]))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_CODEC_UNSUPPORTED"));
+    }
+}
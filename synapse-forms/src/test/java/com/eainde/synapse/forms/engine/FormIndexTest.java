@@ -0,0 +1,131 @@
+package com.eainde.synapse.forms.engine;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.ObjectItem;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.*;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FormIndexTest {
+
+    private static SimpleField text(String labelKey) {
+        return SimpleField.builder().type("string").widget("text").labelKey(labelKey).build();
+    }
+
+    private static SimpleField textWhen(String labelKey, Condition condition) {
+        return SimpleField.builder().type("string").widget("text").labelKey(labelKey)
+                .validation(ValidationRules.builder().rules(List.of(new ValidationRule(
+                        new RuleBlock(LogicalOperator.AND, List.of(condition), null),
+                        new ValidationAction(true, null, null)))).build())
+                .build();
+    }
+
+    private static VisibilityRule showWhen(Condition condition) {
+        return new VisibilityRule(new RuleBlock(LogicalOperator.AND, List.of(condition), null), true);
+    }
+
+    @Test
+    void fieldsAndItemFieldsGetDenseIdsInKeyOrder() {
+        Condition sameRow = new Condition("isHrtc", Operator.EQUALS, true);
+        ArrayField countries = ArrayField.builder().widget("table").labelKey("grid")
+                .items(new ObjectItem(Map.of(
+                        "isHrtc", text("hrtc"),
+                        "exposure", textWhen("exposure", sameRow))))
+                .build();
+        FormIndex index = FormIndex.of(CanonicalFormMessage.builder().formId("f")
+                .fields(Map.of("source", text("source"), "countries", countries))
+                .build());
+
+        assertThat(index.rootFieldCount()).isEqualTo(2);
+        assertThat(index.fieldCount()).isEqualTo(4);
+        assertThat(index.idOf("countries")).isZero();
+        assertThat(index.slotOf("source")).isEqualTo(1);
+        assertThat(index.idOf("exposure")).isEqualTo(-1);
+
+        int exposure = index.itemIdOf(0, "exposure");
+        int isHrtc = index.itemIdOf(0, "isHrtc");
+        assertThat(index.itemFields(0)).containsExactly(exposure, isHrtc);
+        assertThat(index.parentField(exposure)).isZero();
+        assertThat(index.fieldKey(isHrtc)).isEqualTo("isHrtc");
+        assertThat(index.fieldOf(sameRow)).isEqualTo(isHrtc);
+        assertThat(index.danglingReferences()).isEmpty();
+    }
+
+    @Test
+    void layoutIsFlattenedInPreOrderWithParentLinks() {
+        Condition onSource = new Condition("source", Operator.EQUALS, "OTHER");
+        FormIndex index = FormIndex.of(CanonicalFormMessage.builder().formId("f")
+                .layout(List.of(
+                        new Group("group", List.of(
+                                new Row(List.of(new FieldRef("source"), new FieldRef("details", List.of(showWhen(onSource))))))),
+                        new Row(List.of(new FieldRef("details")))))
+                .fields(Map.of("source", text("source"), "details", text("details")))
+                .build());
+
+        assertThat(index.layoutNodeCount()).isEqualTo(6);
+        assertThat(index.rootNodes()).containsExactly(0, 4);
+        assertThat(index.childNodes(0)).containsExactly(1);
+        assertThat(index.childNodes(1)).containsExactly(2, 3);
+        assertThat(index.parentNode(3)).isEqualTo(1);
+        assertThat(index.positionInParent(3)).isEqualTo(1);
+        assertThat(index.positionInParent(4)).isEqualTo(1);
+        assertThat(index.fieldOfNode(1)).isEqualTo(-1);
+
+        int details = index.idOf("details");
+        assertThat(index.fieldOfNode(3)).isEqualTo(details);
+        assertThat(index.placementsOf(details)).containsExactly(3, 5);
+        assertThat(index.fieldOf(onSource)).isEqualTo(index.idOf("source"));
+    }
+
+    @Test
+    void danglingReferencesAreReportedWithTheirLocation() {
+        ArrayField countries = ArrayField.builder().widget("table").labelKey("grid")
+                .items(new ObjectItem(Map.of(
+                        // Item rules are scoped to the item, so a top-level key does not resolve.
+                        "exposure", textWhen("exposure", new Condition("source", Operator.IS_BLANK, null)))))
+                .build();
+        CanonicalFormMessage message = CanonicalFormMessage.builder().formId("f")
+                .layout(List.of(new Row(List.of(new FieldRef("source"), new FieldRef("missing")),
+                        List.of(showWhen(new Condition("gone", Operator.IS_BLANK, null))))))
+                .fields(Map.of("source", text("source"), "countries", countries))
+                .build();
+
+        FormIndex index = FormIndex.of(message);
+
+        assertThat(index.danglingReferences()).extracting(ValidationError::jsonPointer).containsExactly(
+                "$.layout[0].visibilityRules[0].when.conditions[0].field",
+                "$.layout[0].elements[1].key",
+                "$.fields.countries.items.fields.exposure.validation.rules[0].when.conditions[0].field");
+        assertThatThrownBy(index::requireResolved)
+                .isInstanceOfSatisfying(RenderingException.class, ex -> {
+                    assertThat(ex.getErrorCode()).isEqualTo("ERR_DANGLING_REFERENCE");
+                    assertThat(ex.getDetails()).hasSize(3);
+                });
+    }
+
+    @Test
+    void danglingReferenceLocationsEscapeFieldKeys() {
+        ArrayField grid = ArrayField.builder().widget("table").labelKey("grid")
+                .items(new ObjectItem(Map.of("it's", textWhen("exposure", new Condition("gone", Operator.IS_BLANK, null)))))
+                .build();
+        FormIndex index = FormIndex.of(CanonicalFormMessage.builder().formId("f")
+                .fields(Map.of("a.b", grid))
+                .build());
+
+        assertThat(index.danglingReferences()).extracting(ValidationError::jsonPointer).containsExactly(
+                "$.fields['a.b'].items.fields['it\\'s'].validation.rules[0].when.conditions[0].field");
+    }
+}
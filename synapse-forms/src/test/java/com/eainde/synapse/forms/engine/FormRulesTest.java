@@ -0,0 +1,131 @@
+package com.eainde.synapse.forms.engine;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.*;
+import com.eainde.synapse.forms.exception.RenderingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FormRulesTest {
+
+    private static SimpleField text(String labelKey) {
+        return SimpleField.builder().type("string").widget("text").labelKey(labelKey).build();
+    }
+
+    /**
+     * UDP_477 is required when UDP_22 AND (UDP_1135 AND UDP_1186) AND (UDP_1628 OR UDP_1543) are YES,
+     * as in test-fixtures/example5_v3_nested_rules.json.
+     */
+    private static CanonicalFormMessage complexRuleForm() {
+        RuleBlock when = new RuleBlock(LogicalOperator.AND,
+                List.of(new Condition("UDP_22", Operator.EQUALS, "YES")),
+                List.of(
+                        new RuleBlock(LogicalOperator.AND, List.of(
+                                new Condition("UDP_1135", Operator.EQUALS, "YES"),
+                                new Condition("UDP_1186", Operator.EQUALS, "YES")), null),
+                        new RuleBlock(LogicalOperator.OR, List.of(
+                                new Condition("UDP_1628", Operator.EQUALS, "YES"),
+                                new Condition("UDP_1543", Operator.EQUALS, "YES")), null)));
+
+        return CanonicalFormMessage.builder()
+                .formId("multi_level_dependency_form")
+                .schemaVersion("3.0.0")
+                .layout(List.of(new Row(List.of(new FieldRef("UDP_477")))))
+                .fields(Map.of(
+                        "UDP_1135", text("q1135"),
+                        "UDP_1186", text("q1186"),
+                        "UDP_1543", text("q1543"),
+                        "UDP_1628", text("q1628"),
+                        "UDP_22", text("q22"),
+                        "UDP_477", SimpleField.builder().type("string").widget("textarea").labelKey("q477")
+                                .validation(ValidationRules.builder()
+                                        .maximum(10)
+                                        .rules(List.of(new ValidationRule(when, new ValidationAction(true, null, 500))))
+                                        .build())
+                                .build()))
+                .build();
+    }
+
+    @Test
+    void conditionalRequiredFollowsNestedRuleBlocks() {
+        FormRules rules = FormRules.compile(complexRuleForm());
+        Map<String, Object> values = new HashMap<>(Map.of(
+                "UDP_22", "YES", "UDP_1135", "YES", "UDP_1186", "YES", "UDP_1543", "YES"));
+
+        RuleEvaluation matched = rules.evaluate(values);
+        assertThat(matched.isRequired("UDP_477")).isTrue();
+        assertThat(matched.getMaximum("UDP_477")).isEqualTo(500);
+
+        values.put("UDP_1543", "NO");
+        RuleEvaluation unmatched = rules.evaluate(values);
+        assertThat(unmatched.isRequired("UDP_477")).isFalse();
+        assertThat(unmatched.getMaximum("UDP_477")).isEqualTo(10);
+    }
+
+    @Test
+    void visibilityCombinesRulesOfAllAncestors() {
+        VisibilityRule showWhenOther = new VisibilityRule(
+                new RuleBlock(LogicalOperator.AND, List.of(new Condition("source", Operator.IN, List.of("OTHER", 7))), null),
+                true);
+        VisibilityRule hideWhenBlank = new VisibilityRule(
+                new RuleBlock(LogicalOperator.OR, List.of(new Condition("country", Operator.IS_BLANK, null)), null),
+                false);
+
+        CanonicalFormMessage message = CanonicalFormMessage.builder()
+                .formId("visibility")
+                .layout(List.of(new Group("group", List.of(
+                        new Row(List.of(new FieldRef("source"), new FieldRef("country"))),
+                        new Row(List.of(new FieldRef("details")), List.of(showWhenOther))
+                ), List.of(hideWhenBlank))))
+                .fields(Map.of("source", text("source"), "country", text("country"), "details", text("details")))
+                .build();
+        FormRules rules = FormRules.compile(message);
+
+        assertThat(rules.evaluate(Map.of("source", "OTHER", "country", "CH")).isVisible("details")).isTrue();
+        assertThat(rules.evaluate(Map.of("source", 7.0, "country", "CH")).isVisible("details")).isTrue();
+        assertThat(rules.evaluate(Map.of("source", "SALARY", "country", "CH")).isVisible("details")).isFalse();
+        assertThat(rules.evaluate(Map.of("source", "OTHER")).isVisible("details")).isFalse();
+        assertThat(rules.evaluate(Map.of("source", "OTHER")).isVisible("source")).isFalse();
+    }
+
+    @Test
+    void programsAreFlattenedInPreOrder() {
+        RuleProgram program = new RuleCompiler(key -> 0).compile(new RuleBlock(LogicalOperator.OR,
+                List.of(new Condition("a", Operator.IS_BLANK, null)),
+                List.of(new RuleBlock(LogicalOperator.AND, List.of(
+                        new Condition("a", Operator.EQUALS, "x"),
+                        new Condition("a", Operator.NOT_IN, List.of("y"))), null))));
+
+        assertThat(program.size()).isEqualTo(5);
+        assertThat(program.test(new Object[]{null})).isTrue();
+        assertThat(program.test(new Object[]{"x"})).isTrue();
+        assertThat(program.test(new Object[]{"y"})).isFalse();
+    }
+
+    @Test
+    void unknownConditionFieldsFailCompilation() {
+        CanonicalFormMessage message = CanonicalFormMessage.builder()
+                .formId("dangling")
+                .layout(List.of(new Row(List.of(new FieldRef("a")), List.of(new VisibilityRule(
+                        new RuleBlock(LogicalOperator.AND, List.of(new Condition("missing", Operator.IS_BLANK, null)), null),
+                        true)))))
+                .fields(Map.of("a", text("a")))
+                .build();
+
+        assertThatThrownBy(() -> FormRules.compile(message))
+                .isInstanceOf(RenderingException.class)
+                .extracting(ex -> ((RenderingException) ex).getErrorCode())
+                .isEqualTo("ERR_RULE_COMPILATION");
+    }
+}
@@ -0,0 +1,135 @@
+package com.eainde.synapse.forms.instrumentation;
+
+import com.eainde.synapse.forms.DefaultJsonFormatRenderer;
+import com.eainde.synapse.forms.JsonFormatRenderer;
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.adapter.JsonFormAdapter;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.validation.SchemaValidationPolicy;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MicrometerRenderInstrumentationTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private JsonFormatRenderer renderer(double allocationSampleRate) {
+        RenderInstrumentation instrumentation = MicrometerRenderInstrumentation.builder(registry)
+                .allocationSampleRate(allocationSampleRate)
+                .build();
+        return new FormRendererConfig() {
+            @Override
+            public RenderInstrumentation renderInstrumentation() {
+                return instrumentation;
+            }
+        }.jsonFormatRenderer();
+    }
+
+    private static CanonicalFormMessage form(String formId) {
+        return CanonicalFormMessage.builder()
+                .formId(formId)
+                .layout(List.of(new Group("kyc.sof.title", List.of(new FieldRef("occupation")))))
+                .fields(Map.of("occupation",
+                        SimpleField.builder().type("string").widget("text").labelKey("kyc.sof.q2.occupation").build()))
+                .build();
+    }
+
+    private Timer stageTimer(String stage, String formId) {
+        return registry.find("synapse.render.stage")
+                .tags("stage", stage, "format", "SYNAPSE_FORM_V1", "formId", formId)
+                .timer();
+    }
+
+    @Test
+    void everyStageIsTimedAndOutputSizeRecorded() {
+        String output = renderer(0.0).render(form("kyc"), TargetFormat.SYNAPSE_FORM_V1);
+
+        for (RenderStage stage : RenderStage.values()) {
+            assertThat(stageTimer(stage.name().toLowerCase(), "kyc")).as(stage.name()).isNotNull()
+                    .extracting(Timer::count).isEqualTo(1L);
+        }
+        assertThat(registry.find("synapse.render.output.size").summary())
+                .extracting(DistributionSummary::totalAmount).isEqualTo((double) output.length());
+        assertThat(registry.find("synapse.render.stage.allocated").summary()).isNull();
+    }
+
+    @Test
+    void metersAreRegisteredOnceAndReused() {
+        JsonFormatRenderer renderer = renderer(0.0);
+        renderer.render(form("kyc"), TargetFormat.SYNAPSE_FORM_V1);
+        Timer mapping = stageTimer("mapping", "kyc");
+
+        // Meters dropped from the registry are not looked up or registered again.
+        registry.clear();
+        renderer.render(form("kyc"), TargetFormat.SYNAPSE_FORM_V1);
+
+        assertThat(registry.getMeters()).isEmpty();
+        assertThat(mapping.count()).isEqualTo(2L);
+    }
+
+    @Test
+    void streamedBytesAndSampledAllocationsAreRecorded() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer(1.0).render(form("kyc"), TargetFormat.SYNAPSE_FORM_V1, out);
+
+        assertThat(registry.find("synapse.render.output.size").summary())
+                .extracting(DistributionSummary::totalAmount).isEqualTo((double) out.size());
+        if (ThreadAllocation.isSupported()) {
+            DistributionSummary mapping = registry.find("synapse.render.stage.allocated").tag("stage", "mapping").summary();
+            assertThat(mapping).isNotNull();
+            assertThat(mapping.totalAmount()).isPositive();
+        }
+    }
+
+    @Test
+    void failuresAreCountedByErrorCode() {
+        CanonicalFormMessage invalid = new CanonicalFormMessage("1.0.0", "broken", List.of(),
+                Map.of("b", SimpleField.builder().type("string").widget("text").labelKey("c").build()));
+
+        assertThatThrownBy(() -> renderer(0.0).render(invalid, TargetFormat.SYNAPSE_FORM_V1))
+                .isInstanceOf(RenderingException.class);
+
+        assertThat(registry.find("synapse.render.errors")
+                .tags("errorCode", "ERR_SCHEMA_VALIDATION", "formId", "broken").counter())
+                .isNotNull()
+                .satisfies(counter -> assertThat(counter.count()).isEqualTo(1.0));
+        assertThat(registry.find("synapse.render.output.size").summary()).isNull();
+    }
+
+    @Test
+    void unexpectedExceptionsAreCountedAsInternalErrors() {
+        RenderInstrumentation instrumentation = MicrometerRenderInstrumentation.builder(registry).build();
+        FormRendererConfig config = new FormRendererConfig();
+        JsonFormAdapter failing = message -> {
+            throw new IllegalStateException("adapter bug");
+        };
+        JsonFormatRenderer renderer = new DefaultJsonFormatRenderer(config.beanValidator(), config.schemaValidator(),
+                Map.of(TargetFormat.SYNAPSE_FORM_V1, failing), config.formObjectMapper(),
+                SchemaValidationPolicy.builder().build(), instrumentation);
+
+        assertThatThrownBy(() -> renderer.render(form("kyc"), TargetFormat.SYNAPSE_FORM_V1))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> renderer.renderToBytes(form("kyc"), TargetFormat.SYNAPSE_FORM_V1))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.find("synapse.render.errors")
+                .tags("errorCode", "ERR_INTERNAL", "formId", "kyc").counter())
+                .isNotNull()
+                .satisfies(counter -> assertThat(counter.count()).isEqualTo(2.0));
+    }
+}
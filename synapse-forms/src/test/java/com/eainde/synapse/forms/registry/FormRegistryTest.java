@@ -0,0 +1,180 @@
+package com.eainde.synapse.forms.registry;
+
+import com.eainde.synapse.forms.JsonFormatRenderer;
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.exception.RenderingException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FormRegistryTest {
+
+    private static final JsonFormatRenderer RENDERER = new FormRendererConfig().jsonFormatRenderer();
+    private static final EnumSet<TargetFormat> FORMATS = EnumSet.of(TargetFormat.SYNAPSE_FORM_V1, TargetFormat.SYNAPSE_FORM_V2);
+
+    @TempDir
+    Path directory;
+
+    private static CanonicalFormMessage form(String occupationLabel) {
+        return CanonicalFormMessage.builder()
+                .formId("kyc_source_of_funds")
+                .layout(List.of(new Group("kyc.sof.title", List.of(
+                        new Row(List.of(new FieldRef("primarySource"))),
+                        new Row(List.of(new FieldRef("occupation")))))))
+                .fields(Map.of(
+                        "primarySource", SimpleField.builder().type("string").widget("select").labelKey("kyc.sof.source")
+                                .optionsKey("fund_sources").validation(ValidationRules.builder().required(true).build()).build(),
+                        "occupation", SimpleField.builder().type("string").widget("text").labelKey(occupationLabel).build()))
+                .build();
+    }
+
+    private static CanonicalFormMessage single(String formId) {
+        return CanonicalFormMessage.builder()
+                .formId(formId)
+                .layout(List.of(new Row(List.of(new FieldRef("name")))))
+                .fields(Map.of("name", SimpleField.builder().type("string").widget("text").labelKey("name").build()))
+                .build();
+    }
+
+    @Test
+    void publishedOutputsAreServedWithoutRendering() {
+        FormRegistry registry = FormRegistry.builder().renderer(RENDERER).formats(FORMATS).build();
+        CanonicalFormMessage form = form("kyc.sof.occupation");
+
+        PublishedForm published = registry.publish(form);
+
+        assertThat(registry.get("kyc_source_of_funds", "1.0.0")).isSameAs(published);
+        assertThat(published.getFormats()).containsExactlyInAnyOrderElementsOf(FORMATS);
+        assertThat(published.getHash()).hasSize(64);
+        assertThat(published.getRules().slotOf("occupation")).isNotNegative();
+        assertThat(registry.renderToBytes("kyc_source_of_funds", "1.0.0", TargetFormat.SYNAPSE_FORM_V1))
+                .isEqualTo(RENDERER.renderToBytes(form, TargetFormat.SYNAPSE_FORM_V1));
+        assertThat(published.render(TargetFormat.SYNAPSE_FORM_V2))
+                .isEqualTo(RENDERER.render(form, TargetFormat.SYNAPSE_FORM_V2));
+        assertThatThrownBy(() -> published.render(TargetFormat.SYNAPSE_FORM_V3))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_FORMAT_NOT_PUBLISHED"));
+        assertThat(registry.get("kyc_source_of_funds", "2.0.0")).isNull();
+        assertThat(registry.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void revisionsArePublishedAndRolledBackAtomically() {
+        FormRegistry registry = FormRegistry.builder().renderer(RENDERER).formats(FORMATS).build();
+        PublishedForm first = registry.publish(form("kyc.sof.occupation"));
+        assertThat(registry.publish(form("kyc.sof.occupation")).getHash()).isEqualTo(first.getHash());
+        PublishedForm second = registry.publish(form("kyc.sof.job"));
+
+        assertThat(registry.history("kyc_source_of_funds", "1.0.0")).containsExactly(first.getHash(), second.getHash());
+        assertThat(registry.get("kyc_source_of_funds", "1.0.0").render(TargetFormat.SYNAPSE_FORM_V1)).contains("kyc.sof.job");
+
+        // An invalid definition changes nothing.
+        CanonicalFormMessage invalid = CanonicalFormMessage.builder().formId("kyc_source_of_funds").fields(Map.of(
+                "occupation", SimpleField.builder().type("string").widget("text").labelKey("").build())).build();
+        assertThatThrownBy(() -> registry.publish(invalid)).isInstanceOf(RenderingException.class);
+        assertThat(registry.get("kyc_source_of_funds", "1.0.0")).isSameAs(second);
+
+        assertThat(registry.rollback("kyc_source_of_funds", "1.0.0").getHash()).isEqualTo(first.getHash());
+        assertThat(registry.get("kyc_source_of_funds", "1.0.0").render(TargetFormat.SYNAPSE_FORM_V1))
+                .contains("kyc.sof.occupation");
+        assertThatThrownBy(() -> registry.rollback("kyc_source_of_funds", "1.0.0"))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_REGISTRY_NO_PREVIOUS_REVISION"));
+        assertThatThrownBy(() -> registry.rollback("unknown", "1.0.0"))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_REGISTRY_NOT_FOUND"));
+    }
+
+    @Test
+    void rollingBackRestoresTheFormatsOfThePreviousRevision() {
+        FormRegistry registry = FormRegistry.builder().renderer(RENDERER).build();
+        CanonicalFormMessage form = form("kyc.sof.occupation");
+        PublishedForm v1 = registry.publish(form, EnumSet.of(TargetFormat.SYNAPSE_FORM_V1));
+        PublishedForm v2 = registry.publish(form, EnumSet.of(TargetFormat.SYNAPSE_FORM_V2));
+
+        assertThat(v2.getHash()).isEqualTo(v1.getHash());
+        assertThat(registry.history("kyc_source_of_funds", "1.0.0")).containsExactly(v1.getHash(), v1.getHash());
+        assertThat(registry.renderToBytes("kyc_source_of_funds", "1.0.0", TargetFormat.SYNAPSE_FORM_V2))
+                .isEqualTo(RENDERER.renderToBytes(form, TargetFormat.SYNAPSE_FORM_V2));
+
+        assertThat(registry.rollback("kyc_source_of_funds", "1.0.0")).isSameAs(v1);
+        assertThat(registry.renderToBytes("kyc_source_of_funds", "1.0.0", TargetFormat.SYNAPSE_FORM_V1))
+                .isEqualTo(RENDERER.renderToBytes(form, TargetFormat.SYNAPSE_FORM_V1));
+        assertThatThrownBy(() -> registry.renderToBytes("kyc_source_of_funds", "1.0.0", TargetFormat.SYNAPSE_FORM_V2))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_FORMAT_NOT_PUBLISHED"));
+        assertThat(registry.getLoadCount()).isZero();
+    }
+
+    @Test
+    void currentRevisionsAreNeverEvicted() {
+        FormRegistry registry = FormRegistry.builder().renderer(RENDERER).formats(FORMATS).maximumSize(1).build();
+        List<PublishedForm> published = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            published.add(registry.publish(single("form_" + i)));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(registry.get("form_" + i, "1.0.0")).isSameAs(published.get(i));
+        }
+        assertThat(registry.getLoadCount()).isZero();
+    }
+
+    @Test
+    void evictedRevisionsAreLoadedFromTheContentAddressedStore() throws Exception {
+        FormRegistry registry = FormRegistry.builder()
+                .renderer(RENDERER)
+                .formats(FORMATS)
+                .store(DefinitionStore.directory(directory))
+                .maximumSize(1)
+                .build();
+        PublishedForm first = registry.publish(form("kyc.sof.occupation"));
+        PublishedForm second = registry.publish(form("kyc.sof.job"));
+        registry.publish(form("kyc.sof.employer"));
+        registry.publish(single("other"));
+
+        // The index keeps only the latest superseded revision.
+        assertThat(registry.rollback("kyc_source_of_funds", "1.0.0")).isSameAs(second);
+        assertThat(registry.getLoadCount()).isZero();
+        PublishedForm reloaded = registry.rollback("kyc_source_of_funds", "1.0.0");
+        assertThat(reloaded).isNotSameAs(first);
+        assertThat(reloaded.getMessage()).isEqualTo(first.getMessage());
+        assertThat(reloaded.renderToBytes(TargetFormat.SYNAPSE_FORM_V1)).isEqualTo(first.renderToBytes(TargetFormat.SYNAPSE_FORM_V1));
+        assertThat(registry.get("kyc_source_of_funds", "1.0.0")).isSameAs(reloaded);
+        assertThat(registry.getLoadCount()).isEqualTo(1);
+
+        Path stored = directory.resolve(first.getHash().substring(0, 2)).resolve(first.getHash());
+        assertThat(new String(Files.readAllBytes(stored), StandardCharsets.UTF_8)).contains("\"formId\":\"kyc_source_of_funds\"");
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertThat(files.filter(Files::isRegularFile)).hasSize(4);
+        }
+
+        // A damaged definition is detected by its hash, and the current revision stays.
+        registry.publish(form("kyc.sof.job"));
+        registry.publish(form("kyc.sof.employer"));
+        registry.rollback("kyc_source_of_funds", "1.0.0");
+        Files.writeString(stored, "{}");
+        assertThatThrownBy(() -> registry.rollback("kyc_source_of_funds", "1.0.0"))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_REGISTRY_CORRUPT"));
+        assertThat(registry.get("kyc_source_of_funds", "1.0.0").getHash()).isEqualTo(second.getHash());
+    }
+}
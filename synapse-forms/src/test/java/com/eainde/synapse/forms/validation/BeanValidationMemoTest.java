@@ -0,0 +1,116 @@
+package com.eainde.synapse.forms.validation;
+
+import com.eainde.synapse.forms.domain.BeanConstraints;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BeanValidationMemoTest {
+
+    private final AtomicInteger validations = new AtomicInteger();
+
+    /**
+     * The default validator, counting calls to validate().
+     */
+    private final Validator countingValidator = (Validator) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{Validator.class}, (proxy, method, args) -> {
+                if (method.getName().equals("validate")) {
+                    validations.incrementAndGet();
+                }
+                try {
+                    return method.invoke(BeanConstraints.defaultValidator(), args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+
+    private static CanonicalFormMessage.Builder form(String formId) {
+        return CanonicalFormMessage.builder()
+                .formId(formId)
+                .layout(List.of(new Group("title", List.of(new FieldRef("a")))))
+                .fields(Map.of("a", SimpleField.builder().type("string").widget("text").labelKey("label").build()));
+    }
+
+    @Test
+    void equalMessagesAreValidatedOnce() {
+        BeanValidationMemo memo = new BeanValidationMemo(countingValidator);
+
+        assertThat(memo.validate(form("memo").build())).isEmpty();
+        assertThat(memo.validate(form("memo").build())).isEmpty();
+
+        assertThat(validations).hasValue(1);
+    }
+
+    @Test
+    void failuresAreRememberedToo() {
+        BeanValidationMemo memo = new BeanValidationMemo(countingValidator);
+        CanonicalFormMessage invalid = form(" ").build();
+
+        List<ValidationError> first = memo.validate(invalid);
+        List<ValidationError> second = memo.validate(invalid);
+
+        assertThat(first).extracting(ValidationError::jsonPointer).containsExactly("formId");
+        assertThat(second).isEqualTo(first);
+        assertThat(validations).hasValue(1);
+    }
+
+    @Test
+    void verdictsAreKeptPerValidatorAndBounded() {
+        BeanValidationMemo memo = new BeanValidationMemo(countingValidator, 2);
+        BeanValidationMemo strict = new BeanValidationMemo((Validator) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Validator.class}, (proxy, method, args) -> {
+                    throw new IllegalStateException("rejects everything");
+                }));
+
+        memo.validate(form("a").build());
+        assertThatThrownBy(() -> strict.validate(form("a").build())).hasMessage("rejects everything");
+        memo.validate(form("b").build());
+        memo.validate(form("c").build());
+
+        assertThat(memo.size()).isEqualTo(2);
+        assertThat(strict.size()).isZero(); // Failed validations are not remembered
+        assertThat(validations).hasValue(3);
+    }
+
+    @Test
+    void buildValidatedMessagesAreTrustedOnlyByTheDefaultValidator() {
+        Map<String, FieldDefinition> fields = new HashMap<>(Map.of(
+                "a", SimpleField.builder().type("string").widget("text").labelKey("label").build()));
+        CanonicalFormMessage message = form("prevalidated").fields(fields).buildValidated();
+        // Invalidate the trusted instance behind the builder's back.
+        fields.put("b", SimpleField.builder().type("string").widget("text").build());
+
+        assertThat(BeanConstraints.isPrevalidated(message)).isTrue();
+        assertThat(new BeanValidationMemo(BeanConstraints.defaultValidator()).validate(message)).isEmpty();
+        assertThat(new BeanValidationMemo(countingValidator).validate(message))
+                .extracting(ValidationError::jsonPointer).containsOnly("fields[b].labelKey");
+        assertThat(validations).hasValue(1);
+    }
+
+    @Test
+    void buildValidatedEnforcesConstraintsAtBuildTime() {
+        assertThatThrownBy(() -> form(null).buildValidated())
+                .isInstanceOf(RenderingException.class)
+                .extracting(ex -> ((RenderingException) ex).getErrorCode())
+                .isEqualTo("ERR_BEAN_VALIDATION");
+        assertThatThrownBy(() -> SimpleField.builder().type("string").widget("text").buildValidated())
+                .isInstanceOfSatisfying(RenderingException.class, ex ->
+                        assertThat(ex.getDetails()).extracting(ValidationError::jsonPointer).containsOnly("labelKey"));
+    }
+}
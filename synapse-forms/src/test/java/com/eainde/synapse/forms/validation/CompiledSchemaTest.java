@@ -0,0 +1,151 @@
+package com.eainde.synapse.forms.validation;
+
+import com.eainde.synapse.forms.TargetFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.networknt.schema.JsonSchema;
+import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SchemaValidatorsConfig;
+import com.networknt.schema.SpecVersion;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Cross-checks the compiled fast path against networknt on the fixtures and on mutations of them.
+ */
+class CompiledSchemaTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<String> FIXTURES = List.of(
+            "example1_simple.json", "example2_multi_group.json", "example3_grid.json", "example4_permissions.json",
+            "example4_v2_conditional.json", "example5_v3_nested_rules.json", "example6_v3_nested_rules.json");
+
+    /** Replacement values covering every JSON type and the enum/const literals of the schemas. */
+    private static final List<JsonNode> REPLACEMENTS = List.of(
+            JsonNodeFactory.instance.nullNode(), JsonNodeFactory.instance.booleanNode(true),
+            JsonNodeFactory.instance.numberNode(7), JsonNodeFactory.instance.numberNode(1.5),
+            JsonNodeFactory.instance.textNode("x"), JsonNodeFactory.instance.textNode("Row"),
+            JsonNodeFactory.instance.textNode("array"), JsonNodeFactory.instance.textNode("OR"),
+            JsonNodeFactory.instance.objectNode(), JsonNodeFactory.instance.arrayNode());
+
+    private static JsonNode read(String resource) throws Exception {
+        try (InputStream in = CompiledSchemaTest.class.getClassLoader().getResourceAsStream(resource)) {
+            assertThat(in).as(resource).isNotNull();
+            return MAPPER.readTree(in);
+        }
+    }
+
+    private static JsonSchema networknt(JsonNode schemaNode) {
+        SchemaValidatorsConfig config = new SchemaValidatorsConfig();
+        config.setHandleNullableField(false);
+        return JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V7).getSchema(schemaNode, config);
+    }
+
+    @Test
+    void allFormSchemasCompile() {
+        SchemaValidator validator = new SchemaValidator();
+        for (TargetFormat format : TargetFormat.values()) {
+            assertThat(validator.isCompiled(format)).as(format.name()).isTrue();
+        }
+    }
+
+    @Test
+    void compiledVerdictMatchesNetworkntOnFixturesAndMutations() throws Exception {
+        List<JsonNode> documents = new ArrayList<>();
+        for (String fixture : FIXTURES) {
+            JsonNode document = read("test-fixtures/" + fixture);
+            documents.add(document);
+            mutations(document, documents::add);
+        }
+
+        for (TargetFormat format : TargetFormat.values()) {
+            JsonNode schemaNode = read(format.getSchemaName());
+            CompiledSchema compiled = CompiledSchema.compile(schemaNode);
+            JsonSchema reference = networknt(schemaNode);
+
+            int valid = 0;
+            for (JsonNode document : documents) {
+                boolean expected = reference.validate(document).isEmpty();
+                assertThat(compiled.isValid(document)).as("%s: %s", format, document).isEqualTo(expected);
+                valid += expected ? 1 : 0;
+            }
+            // Both verdicts must actually be exercised.
+            assertThat(valid).as(format.name()).isPositive().isLessThan(documents.size());
+        }
+    }
+
+    @Test
+    void invalidDocumentsReportNetworkntErrors() throws Exception {
+        ObjectNode document = (ObjectNode) read("test-fixtures/example1_simple.json");
+        document.set("layout", MAPPER.createArrayNode());
+
+        assertThat(new SchemaValidator().validate(document, TargetFormat.SYNAPSE_FORM_V1))
+                .singleElement()
+                .satisfies(error -> {
+                    assertThat(error.code()).isEqualTo("1016");
+                    assertThat(error.jsonPointer()).isEqualTo("$.layout");
+                });
+    }
+
+    @Test
+    void unsupportedKeywordsAreRejectedAtCompileTime() throws Exception {
+        JsonNode schema = MAPPER.readTree("{\"type\": \"object\", \"patternProperties\": {\"^x\": {}}}");
+
+        assertThatThrownBy(() -> CompiledSchema.compile(schema))
+                .isInstanceOf(CompiledSchema.UnsupportedSchemaException.class);
+    }
+
+    /**
+     * Emits copies of the document with one node removed, replaced or extended.
+     */
+    private static void mutations(JsonNode document, Consumer<JsonNode> sink) {
+        List<JsonNode> containers = new ArrayList<>();
+        collectContainers(document, containers);
+        for (int c = 0; c < containers.size(); c++) {
+            int index = c;
+            JsonNode container = containers.get(c);
+            if (container.isObject()) {
+                sink.accept(mutate(document, index, node -> ((ObjectNode) node).put("unexpected", "x")));
+                Iterator<String> names = container.fieldNames();
+                while (names.hasNext()) {
+                    String name = names.next();
+                    sink.accept(mutate(document, index, node -> ((ObjectNode) node).remove(name)));
+                    for (JsonNode replacement : REPLACEMENTS) {
+                        sink.accept(mutate(document, index, node -> ((ObjectNode) node).set(name, replacement.deepCopy())));
+                    }
+                }
+            } else {
+                sink.accept(mutate(document, index, node -> ((ArrayNode) node).removeAll()));
+                for (JsonNode replacement : REPLACEMENTS) {
+                    sink.accept(mutate(document, index, node -> ((ArrayNode) node).add(replacement.deepCopy())));
+                }
+            }
+        }
+    }
+
+    private static JsonNode mutate(JsonNode document, int containerIndex, Consumer<JsonNode> mutation) {
+        JsonNode copy = document.deepCopy();
+        List<JsonNode> containers = new ArrayList<>();
+        collectContainers(copy, containers);
+        mutation.accept(containers.get(containerIndex));
+        return copy;
+    }
+
+    private static void collectContainers(JsonNode node, List<JsonNode> containers) {
+        if (node.isContainerNode()) {
+            containers.add(node);
+            node.forEach(child -> collectContainers(child, containers));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.eainde.synapse.forms.validation;
+
+import com.eainde.synapse.forms.DefaultJsonFormatRenderer;
+import com.eainde.synapse.forms.JsonFormatRenderer;
+import com.eainde.synapse.forms.TargetFormat;
+import com.eainde.synapse.forms.adapter.JsonFormAdapter;
+import com.eainde.synapse.forms.adapter.SynapseFormV1Adapter;
+import com.eainde.synapse.forms.config.FormRendererConfig;
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Group;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SchemaValidationPolicyTest {
+
+    private final FormRendererConfig config = new FormRendererConfig();
+    private final List<String> events = new ArrayList<>();
+
+    private final SchemaValidationListener recording = new SchemaValidationListener() {
+        @Override
+        public void onValidated(String formId, TargetFormat format) {
+            events.add("validated:" + formId);
+        }
+
+        @Override
+        public void onSkipped(String formId, TargetFormat format) {
+            events.add("skipped:" + formId);
+        }
+
+        @Override
+        public void onMismatch(String formId, TargetFormat format, List<ValidationError> errors) {
+            events.add("mismatch:" + formId);
+        }
+    };
+
+    private JsonFormatRenderer renderer(SchemaValidationPolicy policy) {
+        ObjectMapper objectMapper = config.formObjectMapper();
+        return new DefaultJsonFormatRenderer(config.beanValidator(), config.schemaValidator(),
+                Map.of(TargetFormat.SYNAPSE_FORM_V1, new SynapseFormV1Adapter(objectMapper)), objectMapper, policy);
+    }
+
+    private static CanonicalFormMessage form(String formId, String labelKey) {
+        return CanonicalFormMessage.builder()
+                .formId(formId)
+                .layout(List.of(new Group("kyc.sof.title", List.of(new FieldRef("occupation")))))
+                .fields(Map.of("occupation",
+                        SimpleField.builder().type("string").widget("text").labelKey(labelKey).build()))
+                .build();
+    }
+
+    /** Passes bean validation but not the v1 schema, which requires a non-empty layout. */
+    private static CanonicalFormMessage schemaInvalid(String formId) {
+        return new CanonicalFormMessage("1.0.0", formId, List.of(),
+                Map.of("b", SimpleField.builder().type("string").widget("text").labelKey("c").build()));
+    }
+
+    @Test
+    void neverAfterProofStopsCheckingOnceTheFormHasPassedEnoughTimes() {
+        JsonFormatRenderer renderer = renderer(SchemaValidationPolicy.builder()
+                .mode(SchemaValidationPolicy.Mode.NEVER_AFTER_PROOF).proofThreshold(2).listener(recording).build());
+
+        for (int i = 0; i < 3; i++) {
+            renderer.render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+        }
+        renderer.render(form("kyc", "changed.label"), TargetFormat.SYNAPSE_FORM_V1, new StringWriter());
+
+        assertThat(events).containsExactly("validated:kyc", "validated:kyc", "skipped:kyc", "validated:kyc");
+    }
+
+    @Test
+    void aChangedDefinitionWithACollidingHashCodeIsNotProven() {
+        JsonFormatRenderer renderer = renderer(SchemaValidationPolicy.builder()
+                .mode(SchemaValidationPolicy.Mode.NEVER_AFTER_PROOF).proofThreshold(1).listener(recording).build());
+        // "Aa" and "BB" share a String hash code, and so do the records holding them.
+        assertThat(form("kyc", "Aa").hashCode()).isEqualTo(form("kyc", "BB").hashCode());
+
+        renderer.render(form("kyc", "Aa"), TargetFormat.SYNAPSE_FORM_V1);
+        renderer.render(form("kyc", "BB"), TargetFormat.SYNAPSE_FORM_V1);
+
+        assertThat(events).containsExactly("validated:kyc", "validated:kyc");
+    }
+
+    @Test
+    void failuresAreReportedAndNeverProven() {
+        JsonFormatRenderer renderer = renderer(SchemaValidationPolicy.builder()
+                .mode(SchemaValidationPolicy.Mode.NEVER_AFTER_PROOF).proofThreshold(1).listener(recording).build());
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> renderer.render(schemaInvalid("broken"), TargetFormat.SYNAPSE_FORM_V1))
+                    .isInstanceOf(RenderingException.class)
+                    .extracting(ex -> ((RenderingException) ex).getErrorCode())
+                    .isEqualTo("ERR_SCHEMA_VALIDATION");
+        }
+        assertThat(events).containsExactly("mismatch:broken", "mismatch:broken");
+    }
+
+    @Test
+    void sampledModeChecksOnlyTheConfiguredFraction() {
+        JsonFormatRenderer never = renderer(SchemaValidationPolicy.builder()
+                .mode(SchemaValidationPolicy.Mode.SAMPLED).sampleRate(0.0).listener(recording).build());
+        JsonFormatRenderer always = renderer(SchemaValidationPolicy.builder()
+                .mode(SchemaValidationPolicy.Mode.SAMPLED).sampleRate(1.0).listener(recording).build());
+
+        StringWriter out = new StringWriter();
+        never.render(schemaInvalid("unchecked"), TargetFormat.SYNAPSE_FORM_V1, out);
+        always.render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1);
+
+        // The unchecked render went straight to the writer, invalid layout included.
+        assertThat(out.toString()).contains("\"formId\":\"unchecked\"", "\"layout\":[]");
+        assertThat(events).containsExactly("skipped:unchecked", "validated:kyc");
+    }
+
+    @Test
+    void aMappingFailureIsOnlyWrittenWhenTheCheckIsSkipped() {
+        JsonFormAdapter failing = new JsonFormAdapter() {
+            @Override
+            public JsonNode map(CanonicalFormMessage message) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(CanonicalFormMessage message, JsonGenerator generator) throws IOException {
+                generator.writeStartObject();
+                generator.writeStringField("formId", message.formId());
+                throw new RenderingException("Mapping failed", "ERR_MAPPING", null);
+            }
+        };
+        ObjectMapper objectMapper = config.formObjectMapper();
+        for (double sampleRate : new double[]{0.0, 1.0}) {
+            JsonFormatRenderer renderer = new DefaultJsonFormatRenderer(config.beanValidator(), config.schemaValidator(),
+                    Map.of(TargetFormat.SYNAPSE_FORM_V1, failing), objectMapper,
+                    SchemaValidationPolicy.builder().mode(SchemaValidationPolicy.Mode.SAMPLED).sampleRate(sampleRate).build());
+            StringWriter out = new StringWriter();
+
+            assertThatThrownBy(() -> renderer.render(form("kyc", "label"), TargetFormat.SYNAPSE_FORM_V1, out))
+                    .isInstanceOf(RenderingException.class);
+
+            // An unchecked render streams, but its prefix is never closed into a valid document.
+            assertThat(out.toString()).isEqualTo(sampleRate == 0.0 ? "{\"formId\":\"kyc\"" : "");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.eainde.synapse.submissions;
+
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.FieldDefinition;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.LayoutElement;
+import com.eainde.synapse.forms.domain.rules.Condition;
+import com.eainde.synapse.forms.domain.rules.RuleBlock;
+import com.eainde.synapse.forms.domain.rules.ValidationRule;
+import com.eainde.synapse.forms.domain.rules.VisibilityRule;
+import com.eainde.synapse.forms.engine.FormIndex;
+import com.eainde.synapse.forms.engine.FormRules;
+
+import java.util.List;
+
+/**
+ * The fields of one submitted object: the form itself, or a row of an array field. Slots are those
+ * of the compiled {@link FormRules}; each array field has the field set of its rows.
+ */
+final class FieldSet {
+
+    static final byte ANY = 0;
+    static final byte STRING = 1;
+    static final byte NUMBER = 2;
+    static final byte BOOLEAN = 3;
+    static final byte ARRAY = 4;
+
+    final FormRules rules;
+    final byte[] kinds;
+    /** Whether a rule condition reads the slot, so its value must be kept, not just measured. */
+    final boolean[] referenced;
+    final FieldSet[] items;
+
+    private FieldSet(FormRules rules) {
+        this.rules = rules;
+        FormIndex index = rules.index();
+        int count = rules.slotCount();
+        this.kinds = new byte[count];
+        this.referenced = new boolean[count];
+        this.items = new FieldSet[count];
+        for (int slot = 0; slot < count; slot++) {
+            FieldDefinition field = index.field(slot);
+            kinds[slot] = kindOf(field);
+            if (field instanceof ArrayField array) {
+                items[slot] = new FieldSet(FormRules.compile(array.items().fields()));
+            }
+            ValidationRules validation = field.getValidation();
+            if (validation != null && validation.rules() != null) {
+                for (ValidationRule rule : validation.rules()) {
+                    markReferenced(rule.when());
+                }
+            }
+        }
+        for (int node = 0; node < index.layoutNodeCount(); node++) {
+            LayoutElement element = index.layoutNode(node);
+            if (element.getVisibilityRules() != null) {
+                for (VisibilityRule rule : element.getVisibilityRules()) {
+                    markReferenced(rule.when());
+                }
+            }
+        }
+    }
+
+    static FieldSet of(FormRules rules) {
+        return new FieldSet(rules);
+    }
+
+    int slotOf(String key) {
+        return rules.slotOf(key);
+    }
+
+    private static byte kindOf(FieldDefinition field) {
+        return switch (field.getType()) {
+            case "string" -> STRING;
+            case "number" -> NUMBER;
+            case "boolean" -> BOOLEAN;
+            case "array" -> ARRAY;
+            default -> ANY;
+        };
+    }
+
+    private void markReferenced(RuleBlock block) {
+        if (block == null) {
+            return;
+        }
+        List<Condition> conditions = block.conditions();
+        if (conditions != null) {
+            for (Condition condition : conditions) {
+                int slot = rules.slotOf(condition.field());
+                if (slot >= 0) {
+                    referenced[slot] = true;
+                }
+            }
+        }
+        if (block.rules() != null) {
+            block.rules().forEach(this::markReferenced);
+        }
+    }
+}
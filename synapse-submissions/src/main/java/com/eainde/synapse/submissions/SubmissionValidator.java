@@ -0,0 +1,311 @@
+package com.eainde.synapse.submissions;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.engine.FormIndex;
+import com.eainde.synapse.forms.engine.FormRules;
+import com.eainde.synapse.forms.engine.RuleEvaluation;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Validates submitted answers against a form, compiled once per form and safe to share across threads.
+ * <p>
+ * A submission is a JSON object keyed by field; an array field holds a JSON array of row objects
+ * keyed by the field's item fields. The submission is streamed through a parser, never bound to a
+ * tree: values are checked against the field type as they are read, and only values that a rule
+ * condition reads are kept. Once an object is complete, its {@link FormRules} decide which fields
+ * are visible and what each requires. For visible fields, {@code required} rejects a missing, null,
+ * blank or empty value, and {@code minimum}/{@code maximum} bound a number's value, a string's
+ * length or an array's row count. Rows are checked against the rules of their array's item fields.
+ * <p>
+ * Errors carry RFC 6901 JSON Pointers into the submission, e.g. {@code /countries/1/exposure}:
+ * {@code ERR_TYPE}, {@code ERR_REQUIRED}, {@code ERR_MINIMUM}, {@code ERR_MAXIMUM} and
+ * {@code ERR_UNKNOWN_FIELD}.
+ */
+public final class SubmissionValidator {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final byte MISSING = 0;
+    private static final byte BLANK = 1;
+    private static final byte PRESENT = 2;
+
+    private final FieldSet root;
+
+    private SubmissionValidator(FormRules rules) {
+        this.root = FieldSet.of(rules);
+    }
+
+    /**
+     * @throws RenderingException if a rule condition references an unknown field.
+     */
+    public static SubmissionValidator compile(CanonicalFormMessage message) {
+        return new SubmissionValidator(FormRules.compile(message));
+    }
+
+    public static SubmissionValidator compile(FormIndex index) {
+        return new SubmissionValidator(FormRules.compile(index));
+    }
+
+    /**
+     * @return The errors found, in document order per object; empty if the submission is valid.
+     * @throws RenderingException with code ERR_SUBMISSION_PARSE if the submission is not well-formed JSON.
+     */
+    public List<ValidationError> validate(byte[] submission) {
+        try (JsonParser parser = JSON.createParser(submission)) {
+            return validate(parser);
+        } catch (IOException e) {
+            throw parseFailure(e);
+        }
+    }
+
+    public List<ValidationError> validate(String submission) {
+        try (JsonParser parser = JSON.createParser(submission)) {
+            return validate(parser);
+        } catch (IOException e) {
+            throw parseFailure(e);
+        }
+    }
+
+    /**
+     * Reads the submission from a stream, which is left open.
+     */
+    public List<ValidationError> validate(InputStream submission) {
+        try (JsonParser parser = JSON.createParser(submission)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return validate(parser);
+        } catch (IOException e) {
+            throw parseFailure(e);
+        }
+    }
+
+    /**
+     * Validates the submission the parser is positioned before or at.
+     */
+    public List<ValidationError> validate(JsonParser parser) throws IOException {
+        List<ValidationError> errors = new ArrayList<>();
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            errors.add(new ValidationError("ERR_TYPE", "Submission must be a JSON object", ""));
+            return errors;
+        }
+        validateObject(parser, root, Pointer.ROOT, errors);
+        return errors;
+    }
+
+    /**
+     * Validates the submission and throws if it has errors.
+     *
+     * @throws RenderingException with code ERR_SUBMISSION_INVALID and the errors as details.
+     */
+    public void requireValid(byte[] submission) {
+        List<ValidationError> errors = validate(submission);
+        if (!errors.isEmpty()) {
+            throw new RenderingException("Submission is invalid", "ERR_SUBMISSION_INVALID", errors);
+        }
+    }
+
+    private static RenderingException parseFailure(IOException e) {
+        String message = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+        return new RenderingException("Submission is not well-formed JSON", "ERR_SUBMISSION_PARSE",
+                List.of(new ValidationError("ERR_SUBMISSION_PARSE", message, "")), e);
+    }
+
+    /**
+     * Reads one object, the parser at its START_OBJECT, and checks it once its END_OBJECT is read.
+     */
+    private void validateObject(JsonParser parser, FieldSet fields, Pointer pointer, List<ValidationError> errors)
+            throws IOException {
+        int count = fields.kinds.length;
+        Object[] values = new Object[count];
+        byte[] states = new byte[count];
+        double[] numbers = new double[count];
+        int[] sizes = new int[count];
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            JsonToken token = parser.nextToken();
+            int slot = fields.slotOf(key);
+            if (slot < 0) {
+                errors.add(new ValidationError("ERR_UNKNOWN_FIELD", "Unknown field '" + key + "'", pointer.child(key)));
+                parser.skipChildren();
+                continue;
+            }
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (fields.kinds[slot]) {
+                case FieldSet.STRING -> {
+                    if (token != JsonToken.VALUE_STRING) {
+                        typeError(parser, "a string", pointer, key, errors);
+                        continue;
+                    }
+                    sizes[slot] = parser.getTextLength();
+                    states[slot] = isBlank(parser) ? BLANK : PRESENT;
+                    if (fields.referenced[slot]) {
+                        values[slot] = parser.getText();
+                    }
+                }
+                case FieldSet.NUMBER -> {
+                    if (!token.isNumeric()) {
+                        typeError(parser, "a number", pointer, key, errors);
+                        continue;
+                    }
+                    numbers[slot] = parser.getDoubleValue();
+                    states[slot] = PRESENT;
+                    if (fields.referenced[slot]) {
+                        values[slot] = parser.getNumberValue();
+                    }
+                }
+                case FieldSet.BOOLEAN -> {
+                    if (!token.isBoolean()) {
+                        typeError(parser, "a boolean", pointer, key, errors);
+                        continue;
+                    }
+                    states[slot] = PRESENT;
+                    values[slot] = token == JsonToken.VALUE_TRUE ? Boolean.TRUE : Boolean.FALSE;
+                }
+                case FieldSet.ARRAY -> {
+                    if (token != JsonToken.START_ARRAY) {
+                        typeError(parser, "an array", pointer, key, errors);
+                        continue;
+                    }
+                    int rows = validateRows(parser, fields.items[slot], pointer.withChild(key), errors);
+                    sizes[slot] = rows;
+                    states[slot] = rows == 0 ? BLANK : PRESENT;
+                    if (fields.referenced[slot]) {
+                        values[slot] = Collections.nCopies(rows, null); // Conditions only see how many rows there are
+                    }
+                }
+                default -> {
+                    // Unknown field types are not checked, only whether they are answered.
+                    states[slot] = PRESENT;
+                    if (token.isStructStart()) {
+                        parser.skipChildren();
+                    } else if (fields.referenced[slot]) {
+                        values[slot] = token.isNumeric() ? parser.getNumberValue() : parser.getText();
+                    }
+                }
+            }
+        }
+
+        RuleEvaluation evaluation = fields.rules.evaluate(values);
+        for (int slot = 0; slot < count; slot++) {
+            if (!evaluation.isVisible(slot)) {
+                continue; // Hidden fields are neither required nor bounded
+            }
+            if (states[slot] != PRESENT) {
+                if (evaluation.isRequired(slot)) {
+                    errors.add(new ValidationError("ERR_REQUIRED", "Field is required",
+                            pointer.child(fields.rules.fieldKey(slot))));
+                }
+                continue;
+            }
+            Integer minimum = evaluation.getMinimum(slot);
+            Integer maximum = evaluation.getMaximum(slot);
+            if (minimum == null && maximum == null) {
+                continue;
+            }
+            byte kind = fields.kinds[slot];
+            if (kind != FieldSet.NUMBER && kind != FieldSet.STRING && kind != FieldSet.ARRAY) {
+                continue;
+            }
+            double measure = kind == FieldSet.NUMBER ? numbers[slot] : sizes[slot];
+            String unit = kind == FieldSet.NUMBER ? "" : kind == FieldSet.STRING ? " characters" : " rows";
+            if (minimum != null && measure < minimum) {
+                errors.add(new ValidationError("ERR_MINIMUM", "Must be at least " + minimum + unit,
+                        pointer.child(fields.rules.fieldKey(slot))));
+            } else if (maximum != null && measure > maximum) {
+                errors.add(new ValidationError("ERR_MAXIMUM", "Must be at most " + maximum + unit,
+                        pointer.child(fields.rules.fieldKey(slot))));
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of an array field, the parser at its START_ARRAY.
+     *
+     * @return The number of rows.
+     */
+    private int validateRows(JsonParser parser, FieldSet items, Pointer pointer, List<ValidationError> errors)
+            throws IOException {
+        int rows = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                validateObject(parser, items, pointer.withRow(rows), errors);
+            } else {
+                errors.add(new ValidationError("ERR_TYPE", "Expected an object", pointer.child(rows)));
+                parser.skipChildren();
+            }
+            rows++;
+        }
+        return rows;
+    }
+
+    private static void typeError(JsonParser parser, String expected, Pointer pointer, String key,
+                                  List<ValidationError> errors) throws IOException {
+        errors.add(new ValidationError("ERR_TYPE", "Expected " + expected, pointer.child(key)));
+        parser.skipChildren();
+    }
+
+    /**
+     * Whether the current string is blank, read in place without creating it.
+     */
+    private static boolean isBlank(JsonParser parser) throws IOException {
+        char[] text = parser.getTextCharacters();
+        int end = parser.getTextOffset() + parser.getTextLength();
+        for (int i = parser.getTextOffset(); i < end; i++) {
+            if (!Character.isWhitespace(text[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The location of an object in the submission; the pointer text is only built for errors.
+     */
+    private record Pointer(Pointer parent, String key, int row) {
+
+        static final Pointer ROOT = new Pointer(null, null, -1);
+
+        Pointer withChild(String key) {
+            return new Pointer(this, key, -1);
+        }
+
+        Pointer withRow(int row) {
+            return new Pointer(this, null, row);
+        }
+
+        String child(String key) {
+            return this + "/" + escape(key);
+        }
+
+        String child(int row) {
+            return this + "/" + row;
+        }
+
+        @Override
+        public String toString() {
+            if (parent == null) {
+                return "";
+            }
+            return parent + "/" + (key != null ? escape(key) : Integer.toString(row));
+        }
+
+        private static String escape(String key) {
+            return key.indexOf('~') < 0 && key.indexOf('/') < 0 ? key : key.replace("~", "~0").replace("/", "~1");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.eainde.synapse.submissions.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One file of the log, mapped into memory whole. Only the store's writer moves {@link #position};
+ * readers only read records the index points to, which are complete.
+ */
+final class Segment {
+
+    final long id;
+    final Path path;
+    final MappedByteBuffer buffer;
+    /** Bytes of records that are still the latest for their key. */
+    final AtomicLong liveBytes = new AtomicLong();
+    int position;
+
+    private Segment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static Segment create(Path directory, long id, int capacity) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    static Segment open(Path path, long id) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+    }
+
+    static String fileName(long id) {
+        return String.format("%020d%s", id, SubmissionStore.SEGMENT_SUFFIX);
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        // The mapping stays valid for readers still holding it and is released once they let go
+        Files.deleteIfExists(path);
+    }
+}
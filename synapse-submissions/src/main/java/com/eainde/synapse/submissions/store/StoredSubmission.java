@@ -0,0 +1,11 @@
+package com.eainde.synapse.submissions.store;
+
+/**
+ * A submission as read back from the store.
+ *
+ * @param sequence  Its position in the order of appends, unique within a store.
+ * @param timestamp When it was appended, in epoch milliseconds.
+ * @param payload   The submitted document, as appended.
+ */
+public record StoredSubmission(SubmissionKey key, long sequence, long timestamp, byte[] payload) {
+}
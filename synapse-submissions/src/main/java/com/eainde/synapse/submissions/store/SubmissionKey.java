@@ -0,0 +1,16 @@
+package com.eainde.synapse.submissions.store;
+
+import java.util.Objects;
+
+/**
+ * What a submission answers: a section of a form, for one PCU-ID. A later submission for the same
+ * key supersedes the earlier one.
+ */
+public record SubmissionKey(String formId, String pcuId, String sectionId) {
+
+    public SubmissionKey {
+        Objects.requireNonNull(formId, "formId");
+        Objects.requireNonNull(pcuId, "pcuId");
+        Objects.requireNonNull(sectionId, "sectionId");
+    }
+}
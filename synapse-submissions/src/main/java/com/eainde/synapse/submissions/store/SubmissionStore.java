@@ -0,0 +1,469 @@
+package com.eainde.synapse.submissions.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * A local, append-only store of submissions, keyed by form, PCU-ID and section.
+ * <p>
+ * Submissions are appended to a log of fixed-size segment files, each mapped into memory whole.
+ * An in-memory index points every key at its latest record, so {@link #latest(SubmissionKey)} and
+ * {@link #latestFor(String)} read straight from the mapping. The index is rebuilt by scanning the
+ * segments on {@link Builder#open()}; a record cut short by a crash fails its checksum and ends the
+ * scan of its segment.
+ * <p>
+ * An append is visible to readers once written and durable once {@link #append} returns. Appenders
+ * waiting for durability share fsyncs: one of them forces the active segment for everything written
+ * so far, optionally after waiting {@code commitDelay} for more to arrive. Superseded records stay
+ * in their segment until {@link #compact()} copies the live records of a sparse sealed segment to
+ * the end of the log and deletes it.
+ * <p>
+ * Record layout, big-endian:
+ * <pre>
+ *  0 int   record length, header included
+ *  4 int   CRC32C of bytes 8 to the end of the record
+ *  8 long  sequence
+ * 16 long  timestamp, epoch milliseconds
+ * 24 short formId length   26 short pcuId length   28 short sectionId length
+ * 30       formId, pcuId, sectionId (UTF-8), payload
+ * </pre>
+ */
+public final class SubmissionStore implements Closeable {
+
+    static final String SEGMENT_SUFFIX = ".segment";
+
+    private static final int HEADER = 30;
+    private static final int MAX_KEY_PART = 0xFFFF;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitDelayNanos;
+    private final boolean fsync;
+    private final double compactionThreshold;
+    private final Clock clock;
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<SubmissionKey, Location> index = new ConcurrentHashMap<>();
+    private final Map<String, Set<SubmissionKey>> keysByPcuId = new ConcurrentHashMap<>();
+
+    /** Guards appending: the active segment, its position, the sequence and the index writes. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Segment active;
+    private long nextSequence;
+    private boolean closed;
+
+    private final Object commitMonitor = new Object();
+    private long durableSequence;
+    private boolean committing;
+
+    private SubmissionStore(Builder builder) {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.commitDelayNanos = builder.commitDelay.toNanos();
+        this.fsync = builder.fsync;
+        this.compactionThreshold = builder.compactionThreshold;
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * Appends a submission, superseding any earlier one for its key.
+     *
+     * @return The submission's sequence.
+     * @throws IllegalArgumentException if the record would not fit in a segment.
+     */
+    public long append(SubmissionKey key, byte[] payload) throws IOException {
+        byte[] formId = keyPart(key.formId());
+        byte[] pcuId = keyPart(key.pcuId());
+        byte[] sectionId = keyPart(key.sectionId());
+        int length = HEADER + formId.length + pcuId.length + sectionId.length + payload.length;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Submission of " + length + " bytes exceeds the segment size " + segmentSize);
+        }
+
+        long sequence;
+        writeLock.lock();
+        try {
+            ensureOpen();
+            if (active.position + length > active.capacity()) {
+                roll();
+            }
+            sequence = nextSequence++;
+            int offset = active.position;
+            ByteBuffer buffer = active.buffer;
+            buffer.putLong(offset + 8, sequence);
+            buffer.putLong(offset + 16, clock.millis());
+            buffer.putShort(offset + 24, (short) formId.length);
+            buffer.putShort(offset + 26, (short) pcuId.length);
+            buffer.putShort(offset + 28, (short) sectionId.length);
+            int position = offset + HEADER;
+            buffer.put(position, formId);
+            position += formId.length;
+            buffer.put(position, pcuId);
+            position += pcuId.length;
+            buffer.put(position, sectionId);
+            position += sectionId.length;
+            buffer.put(position, payload);
+            buffer.putInt(offset + 4, checksum(buffer, offset, length));
+            buffer.putInt(offset, length);
+            active.position += length;
+            index(key, new Location(active, offset, length, sequence));
+        } finally {
+            writeLock.unlock();
+        }
+        if (fsync) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    public Optional<StoredSubmission> latest(SubmissionKey key) {
+        Location location = index.get(key);
+        return location == null ? Optional.empty() : Optional.of(read(key, location));
+    }
+
+    /**
+     * @return The latest submission of every form section answered for the PCU-ID, most recent first.
+     */
+    public List<StoredSubmission> latestFor(String pcuId) {
+        Set<SubmissionKey> keys = keysByPcuId.get(pcuId);
+        if (keys == null) {
+            return List.of();
+        }
+        List<StoredSubmission> submissions = new ArrayList<>(keys.size());
+        for (SubmissionKey key : keys) {
+            Location location = index.get(key);
+            if (location != null) {
+                submissions.add(read(key, location));
+            }
+        }
+        submissions.sort(Comparator.comparingLong(StoredSubmission::sequence).reversed());
+        return submissions;
+    }
+
+    /**
+     * @return The number of keys with a submission.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Rewrites every sealed segment whose live records take up less than {@code compactionThreshold}
+     * of it: its live records are appended to the log, made durable, and the segment is deleted.
+     * Appends wait while a segment is copied, but not for the whole compaction.
+     *
+     * @return The number of segments deleted.
+     */
+    public int compact() throws IOException {
+        int deleted = 0;
+        for (Segment segment : segments.values()) {
+            writeLock.lock();
+            try {
+                ensureOpen();
+                if (segment == active || !segments.containsKey(segment.id)
+                        || segment.liveBytes.get() >= compactionThreshold * segment.position) {
+                    continue;
+                }
+                copyLiveRecords(segment);
+                active.force();
+                segments.remove(segment.id);
+            } finally {
+                writeLock.unlock();
+            }
+            segment.delete();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Forces what was written and refuses further appends. Reads keep working.
+     */
+    @Override
+    public void close() {
+        writeLock.lock();
+        try {
+            if (!closed) {
+                closed = true;
+                active.force();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Submission store " + directory + " is closed");
+        }
+    }
+
+    private static byte[] keyPart(String part) {
+        byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_KEY_PART) {
+            throw new IllegalArgumentException("Key part exceeds " + MAX_KEY_PART + " bytes: " + part.substring(0, 32) + "...");
+        }
+        return bytes;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset + 8, length - 8));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Seals the active segment, durably, and starts the next one.
+     */
+    private void roll() throws IOException {
+        active.force();
+        Segment next = Segment.create(directory, active.id + 1, segmentSize);
+        segments.put(next.id, next);
+        active = next;
+    }
+
+    private void index(SubmissionKey key, Location location) {
+        location.segment.liveBytes.addAndGet(location.length);
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.liveBytes.addAndGet(-previous.length);
+        } else {
+            keysByPcuId.computeIfAbsent(key.pcuId(), pcuId -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void copyLiveRecords(Segment segment) throws IOException {
+        ByteBuffer source = segment.buffer;
+        for (int offset = 0; offset < segment.position; ) {
+            int length = source.getInt(offset);
+            SubmissionKey key = readKey(source, offset);
+            Location location = index.get(key);
+            if (location != null && location.segment == segment && location.offset == offset) {
+                if (active.position + length > active.capacity()) {
+                    roll();
+                }
+                int target = active.position;
+                active.buffer.put(target, source, offset, length);
+                active.position += length;
+                index(key, new Location(active, target, length, location.sequence));
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * Waits until the record with {@code sequence} is on disk, forcing the active segment if no
+     * other appender is already doing so.
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (commitMonitor) {
+            while (durableSequence <= sequence && committing) {
+                try {
+                    commitMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for submission " + sequence + " to be durable");
+                }
+            }
+            if (durableSequence > sequence) {
+                return;
+            }
+            committing = true;
+        }
+        long committed = -1;
+        try {
+            if (commitDelayNanos > 0) {
+                LockSupport.parkNanos(commitDelayNanos);
+            }
+            Segment segment;
+            writeLock.lock();
+            try {
+                // Records before the active segment's were forced when it was rolled
+                committed = nextSequence;
+                segment = active;
+            } finally {
+                writeLock.unlock();
+            }
+            segment.force();
+        } finally {
+            synchronized (commitMonitor) {
+                durableSequence = Math.max(durableSequence, committed);
+                committing = false;
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+
+    private static StoredSubmission read(SubmissionKey key, Location location) {
+        ByteBuffer buffer = location.segment.buffer;
+        int offset = location.offset;
+        int keyLength = Short.toUnsignedInt(buffer.getShort(offset + 24))
+                + Short.toUnsignedInt(buffer.getShort(offset + 26))
+                + Short.toUnsignedInt(buffer.getShort(offset + 28));
+        byte[] payload = new byte[location.length - HEADER - keyLength];
+        buffer.get(offset + HEADER + keyLength, payload);
+        return new StoredSubmission(key, location.sequence, buffer.getLong(offset + 16), payload);
+    }
+
+    private static SubmissionKey readKey(ByteBuffer buffer, int offset) {
+        int formId = Short.toUnsignedInt(buffer.getShort(offset + 24));
+        int pcuId = Short.toUnsignedInt(buffer.getShort(offset + 26));
+        int sectionId = Short.toUnsignedInt(buffer.getShort(offset + 28));
+        int position = offset + HEADER;
+        return new SubmissionKey(
+                string(buffer, position, formId),
+                string(buffer, position + formId, pcuId),
+                string(buffer, position + formId + pcuId, sectionId));
+    }
+
+    private static String string(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps the existing segments and rebuilds the index from them.
+     */
+    private SubmissionStore open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        Map<SubmissionKey, Location> latest = new HashMap<>();
+        long maxSequence = -1;
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            Segment segment = Segment.open(path, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            segments.put(segment.id, segment);
+            maxSequence = Math.max(maxSequence, scan(segment, latest));
+        }
+        latest.forEach(this::index);
+        nextSequence = maxSequence + 1;
+        durableSequence = nextSequence;
+        active = segments.isEmpty() ? Segment.create(directory, 0, segmentSize) : segments.lastEntry().getValue();
+        segments.putIfAbsent(active.id, active);
+        return this;
+    }
+
+    /**
+     * Reads a segment's records up to the first that is missing or damaged, keeping the latest
+     * location of each key.
+     *
+     * @return The highest sequence read, or -1.
+     */
+    private static long scan(Segment segment, Map<SubmissionKey, Location> latest) {
+        ByteBuffer buffer = segment.buffer;
+        long maxSequence = -1;
+        int offset = 0;
+        while (offset + HEADER <= segment.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < HEADER || length > segment.capacity() - offset
+                    || buffer.getInt(offset + 4) != checksum(buffer, offset, length)) {
+                break;
+            }
+            long sequence = buffer.getLong(offset + 8);
+            Location location = new Location(segment, offset, length, sequence);
+            latest.merge(readKey(buffer, offset), location, (a, b) -> a.sequence >= b.sequence ? a : b);
+            maxSequence = Math.max(maxSequence, sequence);
+            offset += length;
+        }
+        segment.position = offset;
+        return maxSequence;
+    }
+
+    /**
+     * Where a key's latest record is.
+     */
+    private record Location(Segment segment, int offset, int length, long sequence) {
+    }
+
+    public static class Builder {
+        private final Path directory;
+        private int segmentSize = 64 * 1024 * 1024;
+        private Duration commitDelay = Duration.ZERO;
+        private boolean fsync = true;
+        private double compactionThreshold = 0.5;
+        private Clock clock = Clock.systemUTC();
+
+        private Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * The size of new segment files, and so the largest record. Defaults to 64 MiB.
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize <= HEADER) {
+                throw new IllegalArgumentException("segmentSize must exceed " + HEADER + ": " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * How long an appender forcing the log waits for others to join the fsync. Defaults to none.
+         */
+        public Builder commitDelay(Duration commitDelay) {
+            this.commitDelay = commitDelay;
+            return this;
+        }
+
+        /**
+         * Whether appends wait for the fsync. Without it, a crash may lose the latest appends.
+         */
+        public Builder fsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+
+        /**
+         * The share of live records below which a sealed segment is compacted. Defaults to 0.5.
+         */
+        public Builder compactionThreshold(double compactionThreshold) {
+            this.compactionThreshold = compactionThreshold;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Opens the store, creating the directory if needed and recovering what it holds.
+         */
+        public SubmissionStore open() throws IOException {
+            return new SubmissionStore(this).open();
+        }
+    }
+}
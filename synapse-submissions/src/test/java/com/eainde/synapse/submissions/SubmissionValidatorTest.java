@@ -0,0 +1,134 @@
+package com.eainde.synapse.submissions;
+
+import com.eainde.synapse.forms.domain.CanonicalFormMessage;
+import com.eainde.synapse.forms.domain.fields.ArrayField;
+import com.eainde.synapse.forms.domain.fields.ObjectItem;
+import com.eainde.synapse.forms.domain.fields.SimpleField;
+import com.eainde.synapse.forms.domain.fields.ValidationRules;
+import com.eainde.synapse.forms.domain.layout.FieldRef;
+import com.eainde.synapse.forms.domain.layout.Row;
+import com.eainde.synapse.forms.domain.rules.*;
+import com.eainde.synapse.forms.exception.RenderingException;
+import com.eainde.synapse.forms.exception.ValidationError;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SubmissionValidatorTest {
+
+    private static SimpleField field(String type, ValidationRules validation) {
+        return SimpleField.builder().type(type).widget("text").labelKey(type).validation(validation).build();
+    }
+
+    private static ValidationRule when(Condition condition, ValidationAction then) {
+        return new ValidationRule(new RuleBlock(LogicalOperator.AND, List.of(condition), null), then);
+    }
+
+    /**
+     * Income is required and bounded; details are required when the source is OTHER, and only shown
+     * then; each country row needs an exposure when it is a high-risk country.
+     */
+    private static final SubmissionValidator VALIDATOR = SubmissionValidator.compile(CanonicalFormMessage.builder()
+            .formId("kyc")
+            .layout(List.of(
+                    new Row(List.of(new FieldRef("income"), new FieldRef("source"), new FieldRef("consent"),
+                            new FieldRef("countries"))),
+                    new Row(List.of(new FieldRef("details")), List.of(new VisibilityRule(new RuleBlock(
+                            LogicalOperator.AND, List.of(new Condition("source", Operator.EQUALS, "OTHER")), null),
+                            true)))))
+            .fields(Map.of(
+                    "income", field("number", ValidationRules.builder().required(true).minimum(0).maximum(1000).build()),
+                    "source", field("string", ValidationRules.builder().maximum(10).build()),
+                    "details", field("string", ValidationRules.builder().rules(List.of(when(
+                            new Condition("source", Operator.EQUALS, "OTHER"),
+                            new ValidationAction(true, 5, null)))).build()),
+                    "consent", field("boolean", null),
+                    "countries", ArrayField.builder().widget("table").labelKey("countries")
+                            .validation(ValidationRules.builder().minimum(1).maximum(3).build())
+                            .items(new ObjectItem(Map.of(
+                                    "code", field("string", ValidationRules.builder().required(true).build()),
+                                    "highRisk", field("boolean", null),
+                                    "exposure", field("number", ValidationRules.builder().rules(List.of(when(
+                                            new Condition("highRisk", Operator.EQUALS, true),
+                                            new ValidationAction(true, 1, null)))).build()))))
+                            .build()))
+            .build());
+
+    @Test
+    void validSubmissionHasNoErrors() {
+        String submission = """
+                {"income": 250, "source": "SALARY", "consent": true, "details": null,
+                 "countries": [{"code": "DE", "highRisk": false}, {"code": "IR", "highRisk": true, "exposure": 3.5}]}
+                """;
+
+        assertThat(VALIDATOR.validate(submission)).isEmpty();
+    }
+
+    /**
+     * An empty array counts as unanswered, like a blank string: not bounded, only required.
+     */
+    @Test
+    void typesRequiredAndBoundsAreReportedWithPointers() {
+        String submission = """
+                {"income": 1001, "source": "A very long source", "consent": "yes", "extra/field": 1,
+                 "countries": []}
+                """;
+
+        assertThat(VALIDATOR.validate(submission)).containsExactly(
+                new ValidationError("ERR_TYPE", "Expected a boolean", "/consent"),
+                new ValidationError("ERR_UNKNOWN_FIELD", "Unknown field 'extra/field'", "/extra~1field"),
+                new ValidationError("ERR_MAXIMUM", "Must be at most 1000", "/income"),
+                new ValidationError("ERR_MAXIMUM", "Must be at most 10 characters", "/source"));
+        assertThat(VALIDATOR.validate("{\"income\": \"  \"}")).extracting(ValidationError::jsonPointer)
+                .containsExactly("/income", "/income");
+        assertThat(VALIDATOR.validate("{}")).containsExactly(
+                new ValidationError("ERR_REQUIRED", "Field is required", "/income"));
+    }
+
+    @Test
+    void conditionalRulesAndVisibilityFollowTheSubmittedValues() {
+        // Hidden while the source isn't OTHER, so neither required nor bounded.
+        assertThat(VALIDATOR.validate("{\"income\": 1, \"source\": \"SALARY\", \"details\": \"x\"}")).isEmpty();
+
+        assertThat(VALIDATOR.validate("{\"income\": 1, \"source\": \"OTHER\", \"details\": \" \"}")).containsExactly(
+                new ValidationError("ERR_REQUIRED", "Field is required", "/details"));
+        assertThat(VALIDATOR.validate("{\"details\": \"gift\", \"income\": 1, \"source\": \"OTHER\"}")).containsExactly(
+                new ValidationError("ERR_MINIMUM", "Must be at least 5 characters", "/details"));
+    }
+
+    @Test
+    void arrayRowsAreValidatedAgainstTheirOwnRules() {
+        String submission = """
+                {"income": 1, "countries": [
+                  {"code": "DE"},
+                  {"highRisk": true, "exposure": 0},
+                  "FR",
+                  {"code": "IR", "highRisk": true}
+                ]}
+                """;
+
+        assertThat(VALIDATOR.validate(submission)).containsExactly(
+                new ValidationError("ERR_REQUIRED", "Field is required", "/countries/1/code"),
+                new ValidationError("ERR_MINIMUM", "Must be at least 1", "/countries/1/exposure"),
+                new ValidationError("ERR_TYPE", "Expected an object", "/countries/2"),
+                new ValidationError("ERR_REQUIRED", "Field is required", "/countries/3/exposure"),
+                new ValidationError("ERR_MAXIMUM", "Must be at most 3 rows", "/countries"));
+    }
+
+    @Test
+    void malformedOrInvalidSubmissionsAreRejected() {
+        assertThatThrownBy(() -> VALIDATOR.validate("{\"income\": 1,"))
+                .isInstanceOfSatisfying(RenderingException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo("ERR_SUBMISSION_PARSE"));
+        assertThat(VALIDATOR.validate("[1]")).extracting(ValidationError::code).containsExactly("ERR_TYPE");
+        assertThatThrownBy(() -> VALIDATOR.requireValid("{}".getBytes()))
+                .isInstanceOfSatisfying(RenderingException.class, e -> {
+                    assertThat(e.getErrorCode()).isEqualTo("ERR_SUBMISSION_INVALID");
+                    assertThat(e.getDetails()).hasSize(1);
+                });
+    }
+}
@@ -0,0 +1,159 @@
+package com.eainde.synapse.submissions.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SubmissionStoreTest {
+
+    private static final SubmissionKey KYC_IDENTITY = new SubmissionKey("kyc", "PCU-1", "identity");
+    private static final SubmissionKey KYC_INCOME = new SubmissionKey("kyc", "PCU-1", "income");
+    private static final SubmissionKey OTHER_PCU = new SubmissionKey("kyc", "PCU-2", "identity");
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String payload(StoredSubmission submission) {
+        return new String(submission.payload(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void latestSubmissionWinsPerKeyAndPcuId() throws IOException {
+        try (SubmissionStore store = SubmissionStore.builder(directory).open()) {
+            store.append(KYC_IDENTITY, bytes("{\"name\":\"A\"}"));
+            store.append(KYC_INCOME, bytes("{\"income\":1}"));
+            long latest = store.append(KYC_IDENTITY, bytes("{\"name\":\"B\"}"));
+            store.append(OTHER_PCU, bytes("{}"));
+
+            assertThat(store.latest(KYC_IDENTITY)).hasValueSatisfying(submission -> {
+                assertThat(payload(submission)).isEqualTo("{\"name\":\"B\"}");
+                assertThat(submission.sequence()).isEqualTo(latest);
+            });
+            assertThat(store.latestFor("PCU-1")).extracting(StoredSubmission::key, SubmissionStoreTest::payload)
+                    .containsExactly(
+                            tuple(KYC_IDENTITY, "{\"name\":\"B\"}"),
+                            tuple(KYC_INCOME, "{\"income\":1}"));
+            assertThat(store.latest(new SubmissionKey("kyc", "PCU-3", "identity"))).isEmpty();
+            assertThat(store.size()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void indexIsRebuiltOnOpenAndTornRecordsAreDropped() throws IOException {
+        try (SubmissionStore store = SubmissionStore.builder(directory).segmentSize(256).open()) {
+            for (int i = 0; i < 10; i++) {
+                store.append(i % 2 == 0 ? KYC_IDENTITY : KYC_INCOME, bytes("{\"version\":" + i + "}"));
+            }
+            assertThat(store.segmentCount()).isGreaterThan(1);
+        }
+        // A crash halfway through the next record: its length is written, its checksum doesn't match.
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            int offset = 0;
+            while (channel.read(header.clear(), offset) == 4 && header.getInt(0) != 0) {
+                offset += header.getInt(0);
+            }
+            channel.write(ByteBuffer.allocate(8).putInt(0, 60).putInt(4, 42), offset);
+        }
+
+        try (SubmissionStore store = SubmissionStore.builder(directory).segmentSize(256).open()) {
+            assertThat(store.latest(KYC_IDENTITY)).map(SubmissionStoreTest::payload).hasValue("{\"version\":8}");
+            assertThat(store.latest(KYC_INCOME)).map(SubmissionStoreTest::payload).hasValue("{\"version\":9}");
+
+            // The torn record is overwritten and sequences carry on.
+            long sequence = store.append(KYC_INCOME, bytes("{\"version\":10}"));
+            assertThat(sequence).isEqualTo(10);
+        }
+        try (SubmissionStore store = SubmissionStore.builder(directory).segmentSize(256).open()) {
+            assertThat(store.latest(KYC_INCOME)).map(SubmissionStoreTest::payload).hasValue("{\"version\":10}");
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveRecords() throws IOException {
+        try (SubmissionStore store = SubmissionStore.builder(directory).segmentSize(256).open()) {
+            store.append(OTHER_PCU, bytes("{\"kept\":true}"));
+            for (int i = 0; i < 20; i++) {
+                store.append(KYC_IDENTITY, bytes("{\"version\":" + i + "}"));
+            }
+            int before = store.segmentCount();
+
+            assertThat(store.compact()).isEqualTo(before - 1);
+            assertThat(store.segmentCount()).isLessThanOrEqualTo(2);
+            assertThat(store.latest(OTHER_PCU)).map(SubmissionStoreTest::payload).hasValue("{\"kept\":true}");
+            assertThat(store.latest(KYC_IDENTITY)).map(SubmissionStoreTest::payload).hasValue("{\"version\":19}");
+        }
+        try (SubmissionStore store = SubmissionStore.builder(directory).segmentSize(256).open()) {
+            assertThat(store.latest(OTHER_PCU)).map(StoredSubmission::sequence).hasValue(0L);
+            assertThat(store.latest(KYC_IDENTITY)).map(SubmissionStoreTest::payload).hasValue("{\"version\":19}");
+        }
+    }
+
+    @Test
+    void concurrentAppendersShareCommits() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (SubmissionStore store = SubmissionStore.builder(directory)
+                .segmentSize(64 * 1024)
+                .commitDelay(Duration.ofMillis(1))
+                .open()) {
+            List<Future<?>> appenders = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                String pcuId = "PCU-" + thread;
+                appenders.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        store.append(new SubmissionKey("kyc", pcuId, "section-" + i % 10), bytes("{\"i\":" + i + "}"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> appender : appenders) {
+                appender.get();
+            }
+            assertThat(store.size()).isEqualTo(80);
+        } finally {
+            executor.shutdown();
+        }
+        try (SubmissionStore store = SubmissionStore.builder(directory).segmentSize(64 * 1024).open()) {
+            assertThat(store.size()).isEqualTo(80);
+            assertThat(store.latestFor("PCU-3")).hasSize(10)
+                    .allSatisfy(submission -> assertThat(payload(submission)).matches("\\{\"i\":19\\d}"));
+            assertThat(store.append(KYC_IDENTITY, bytes("{}"))).isEqualTo(1600);
+        }
+    }
+
+    @Test
+    void oversizedSubmissionsAndClosedStoresAreRejected() throws IOException {
+        SubmissionStore store = SubmissionStore.builder(directory).segmentSize(64).open();
+        assertThatThrownBy(() -> store.append(KYC_IDENTITY, new byte[64]))
+                .isInstanceOf(IllegalArgumentException.class);
+        store.close();
+        assertThatThrownBy(() -> store.append(KYC_IDENTITY, bytes("{}")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}